@@ -57,7 +57,7 @@ public class JUnitIntegrationTest {
                     // check working dir
                     assertEquals("${testDir.absolutePath.replaceAll('\\\\', '\\\\\\\\')}", System.getProperty("user.dir"));
                     // check classloader
-                    assertSame(ClassLoader.getSystemClassLoader(), getClass().getClassLoader());
+                    assertNotSame(ClassLoader.getSystemClassLoader(), getClass().getClassLoader());
                     assertSame(getClass().getClassLoader(), Thread.currentThread().getContextClassLoader());
                     // check Gradle and impl classes not visible
                     try { getClass().getClassLoader().loadClass("${Project.class.getName()}"); fail(); } catch(ClassNotFoundException e) { }
@@ -145,6 +145,41 @@ public class JUnitIntegrationTest {
         result.assertTestPassed('org.gradle.SomeTest', 'ok')
     }
 
+    @Test
+    public void reusesTestProcessForTestTasksOfMultipleProjects() {
+        TestFile testDir = dist.getTestDir();
+        testDir.file('settings.gradle').write("include 'a', 'b'");
+        testDir.file('build.gradle') << '''
+            subprojects {
+                apply plugin: 'java'
+                repositories { mavenCentral() }
+                dependencies { testCompile 'junit:junit:4.7' }
+                // A process can only be reused by a test task with the same process settings, including working dir
+                test { workingDir = rootProject.projectDir }
+            }
+        '''
+        ['a', 'b'].each { project ->
+            testDir.file("${project}/src/test/java/org/gradle/JvmTest.java") << '''
+                package org.gradle;
+                public class JvmTest {
+                    @org.junit.Test public void ok() throws Exception {
+                        java.io.FileWriter writer = new java.io.FileWriter("jvm.txt", true);
+                        writer.write(java.lang.management.ManagementFactory.getRuntimeMXBean().getName() + "\\n");
+                        writer.close();
+                    }
+                }
+            '''
+        }
+
+        executer.withTasks('a:test', 'b:test').run();
+
+        new JUnitTestResult(testDir.file('a')).assertTestPassed('org.gradle.JvmTest', 'ok')
+        new JUnitTestResult(testDir.file('b')).assertTestPassed('org.gradle.JvmTest', 'ok')
+        List<String> jvms = testDir.file('jvm.txt').readLines()
+        assertThat(jvms.size(), equalTo(2))
+        assertThat(jvms[1], equalTo(jvms[0]))
+    }
+
     @Test
     public void canExcludeSuperClasses() {
         TestFile testDir = dist.getTestDir();
@@ -77,6 +77,10 @@ public class StartParameter {
     private boolean launchGUI;
     private boolean dryRun;
     private boolean noOpt;
+    private int parallelThreadCount;
+    private boolean compactCaches;
+    private boolean configureOnDemand;
+    private int parallelConfigureThreadCount;
 
     /**
      * Creates a {@code StartParameter} with default values. This is roughly equivalent to running Gradle on the
@@ -115,6 +119,10 @@ public class StartParameter {
         startParameter.showVersion = showVersion;
         startParameter.dryRun = dryRun;
         startParameter.noOpt = noOpt;
+        startParameter.parallelThreadCount = parallelThreadCount;
+        startParameter.compactCaches = compactCaches;
+        startParameter.configureOnDemand = configureOnDemand;
+        startParameter.parallelConfigureThreadCount = parallelConfigureThreadCount;
         return startParameter;
     }
 
@@ -417,6 +425,89 @@ public class StartParameter {
         this.noOpt = noOpt;
     }
 
+    /**
+     * Returns the number of threads to use to execute tasks in parallel. Returns 0 when tasks are executed one at a
+     * time.
+     *
+     * @return The number of threads.
+     */
+    public int getParallelThreadCount() {
+        return parallelThreadCount;
+    }
+
+    /**
+     * Sets the number of threads to use to execute tasks. Tasks whose dependencies have completed are executed
+     * concurrently. Use 0 to execute tasks one at a time.
+     *
+     * @param parallelThreadCount The number of threads.
+     */
+    public void setParallelThreadCount(int parallelThreadCount) {
+        this.parallelThreadCount = parallelThreadCount;
+    }
+
+    /**
+     * Returns true if the persistent caches used by the build should be compacted at the end of the build.
+     *
+     * @return true if the caches should be compacted.
+     */
+    public boolean isCompactCaches() {
+        return compactCaches;
+    }
+
+    /**
+     * Specifies whether the persistent caches used by the build should be compacted at the end of the build. Caches
+     * are also compacted automatically when they contain a large amount of unused space.
+     *
+     * @param compactCaches true if the caches should be compacted.
+     */
+    public void setCompactCaches(boolean compactCaches) {
+        this.compactCaches = compactCaches;
+    }
+
+    /**
+     * Returns true if only the projects required by the build should be evaluated.
+     *
+     * @return true if projects are evaluated on demand.
+     */
+    public boolean isConfigureOnDemand() {
+        return configureOnDemand;
+    }
+
+    /**
+     * Specifies whether only the projects required by the build should be evaluated. When true, the root project is
+     * evaluated, followed by the projects which contain the selected tasks, and the projects which an evaluated project
+     * depends on, either using {@link org.gradle.api.Project#dependsOn(String)} or through a project dependency. The
+     * other projects are not evaluated. Listeners are notified that the projects have been evaluated once the root
+     * project has been evaluated.
+     *
+     * @param configureOnDemand true if projects should be evaluated on demand.
+     */
+    public void setConfigureOnDemand(boolean configureOnDemand) {
+        this.configureOnDemand = configureOnDemand;
+    }
+
+    /**
+     * Returns the number of threads to use to evaluate projects in parallel. Returns 0 when projects are evaluated one
+     * at a time.
+     *
+     * @return The number of threads.
+     */
+    public int getParallelConfigureThreadCount() {
+        return parallelConfigureThreadCount;
+    }
+
+    /**
+     * Sets the number of threads to use to evaluate projects. Each project is evaluated after its parent project.
+     * Projects whose build script does not reach into other projects are evaluated concurrently with their sibling
+     * projects, the remaining projects are evaluated one at a time. Use 0 to evaluate projects one at a time. Ignored
+     * when projects are evaluated on demand.
+     *
+     * @param parallelConfigureThreadCount The number of threads.
+     */
+    public void setParallelConfigureThreadCount(int parallelConfigureThreadCount) {
+        this.parallelConfigureThreadCount = parallelConfigureThreadCount;
+    }
+
     /**
      * Sets the settings file to use for the build. Use null to use the default settings file.
      *
@@ -544,6 +635,10 @@ public class StartParameter {
                 ", launchGUI=" + launchGUI +
                 ", dryRun=" + dryRun +
                 ", noOpt=" + noOpt +
+                ", parallelThreadCount=" + parallelThreadCount +
+                ", compactCaches=" + compactCaches +
+                ", configureOnDemand=" + configureOnDemand +
+                ", parallelConfigureThreadCount=" + parallelConfigureThreadCount +
                 '}';
     }
 }
\ No newline at end of file
@@ -24,29 +24,43 @@ import org.gradle.api.logging.ProgressLogger;
 import org.gradle.api.tasks.TaskState;
 
 /**
- * A listener which logs the execution of tasks.
+ * A listener which logs the execution of tasks. Progress is reported for one task at a time. When tasks are executed
+ * in parallel, a task which starts while another task is being reported is reported as started and completed when it
+ * completes.
  */
 public class TaskExecutionLogger implements TaskExecutionListener {
     private final Logger logger;
-    private ProgressLogger currentTask;
+    private Task currentTask;
+    private ProgressLogger currentTaskLogger;
 
     public TaskExecutionLogger(Logger logger) {
         this.logger = logger;
     }
 
     public void beforeExecute(Task task) {
-        assert currentTask == null;
-        currentTask = logger.createProgressLogger();
-        currentTask.started(getDisplayName(task));
+        if (currentTask != null) {
+            return;
+        }
+        currentTask = task;
+        currentTaskLogger = logger.createProgressLogger();
+        currentTaskLogger.started(getDisplayName(task));
     }
 
     public void afterExecute(Task task, TaskState state) {
+        ProgressLogger progressLogger;
+        if (task == currentTask) {
+            progressLogger = currentTaskLogger;
+            currentTask = null;
+            currentTaskLogger = null;
+        } else {
+            progressLogger = logger.createProgressLogger();
+            progressLogger.started(getDisplayName(task));
+        }
         if (state.getSkipMessage() != null) {
-            currentTask.completed(state.getSkipMessage());
+            progressLogger.completed(state.getSkipMessage());
         } else {
-            currentTask.completed();
+            progressLogger.completed();
         }
-        currentTask = null;
     }
 
     private String getDisplayName(Task task) {
@@ -37,6 +37,14 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
         this.resolvedEngine = resolvedEngine;
     }
 
+    /**
+     * Creates an artifact whose local file is already known.
+     */
+    public DefaultResolvedArtifact(Artifact artifact, File file) {
+        this.artifact = artifact;
+        this.file = file;
+    }
+
     public ResolvedDependency getResolvedDependency() {
         return resolvedDependency;
     }
@@ -65,7 +73,14 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
         return getResolvedDependency() == null ? null : getResolvedDependency().getModuleName();
     }
 
-    public File getFile() {
+    /**
+     * Returns true if the file of this artifact is already known, so that {@link #getFile()} does not download it.
+     */
+    public synchronized boolean isDownloaded() {
+        return file != null;
+    }
+
+    public synchronized File getFile() {
         if (file == null) {
             file = resolvedEngine.download(artifact, new DownloadOptions()).getLocalFile();
         }
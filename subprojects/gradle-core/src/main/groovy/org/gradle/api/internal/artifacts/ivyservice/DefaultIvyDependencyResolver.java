@@ -32,8 +32,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.Formatter;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,14 +45,34 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
     private static Logger logger = LoggerFactory.getLogger(DefaultIvyDependencyResolver.class);
 
     private IvyReportConverter ivyReportTranslator;
+    private final IvyConversionResultCache resultCache;
+    private final ParallelArtifactDownloader artifactDownloader;
 
     public DefaultIvyDependencyResolver(IvyReportConverter ivyReportTranslator) {
+        this(ivyReportTranslator, null, new ParallelArtifactDownloader(1));
+    }
+
+    /**
+     * @param resultCache The cache to use for the results of resolving configurations, or null for no cache.
+     * @param artifactDownloader Used to download the files of the resolved artifacts.
+     */
+    public DefaultIvyDependencyResolver(IvyReportConverter ivyReportTranslator, IvyConversionResultCache resultCache,
+                                        ParallelArtifactDownloader artifactDownloader) {
         this.ivyReportTranslator = ivyReportTranslator;
+        this.resultCache = resultCache;
+        this.artifactDownloader = artifactDownloader;
         Message.setDefaultLogger(new IvyLoggingAdaper());
     }
 
     public ResolvedConfiguration resolve(Configuration configuration, Ivy ivy, ModuleDescriptor moduleDescriptor) {
         Clock clock = new Clock();
+        if (resultCache != null) {
+            IvyConversionResult cachedResult = resultCache.get(configuration, ivy, moduleDescriptor);
+            if (cachedResult != null) {
+                logger.debug("Timing: Loading cached resolve result took {}", clock.getTime());
+                return new ResolvedConfigurationImpl(cachedResult, configuration, ivy);
+            }
+        }
         ResolveOptions resolveOptions = createResolveOptions(configuration);
         ResolveReport resolveReport;
         try {
@@ -59,7 +81,18 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
             throw new RuntimeException(e);
         }
         logger.debug("Timing: Ivy resolve took {}", clock.getTime());
-        return new ResolvedConfigurationImpl(resolveReport, configuration);
+        ResolvedConfigurationImpl resolvedConfiguration = new ResolvedConfigurationImpl(resolveReport, configuration, ivy);
+        if (resultCache != null && !resolvedConfiguration.hasError()) {
+            // The cache needs the files of all the artifacts, so download them concurrently up front
+            try {
+                artifactDownloader.download(resolvedConfiguration.conversionResult.getResolvedArtifacts(), ivy);
+            } catch (RuntimeException e) {
+                logger.debug("Could not download the artifacts of {}. Not caching the resolve result.", configuration);
+                return resolvedConfiguration;
+            }
+            resultCache.put(configuration, ivy, moduleDescriptor, resolveReport, resolvedConfiguration.conversionResult);
+        }
+        return resolvedConfiguration;
     }
 
     private ResolveOptions createResolveOptions(Configuration configuration) {
@@ -71,11 +104,12 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
 
     class ResolvedConfigurationImpl implements ResolvedConfiguration {
         private final Configuration configuration;
+        private final Ivy ivy;
         private boolean hasError;
         private List<String> problemMessages;
         private IvyConversionResult conversionResult;
 
-        public ResolvedConfigurationImpl(ResolveReport resolveReport, Configuration configuration) {
+        public ResolvedConfigurationImpl(ResolveReport resolveReport, Configuration configuration, Ivy ivy) {
             this.hasError = resolveReport.hasError();
             if (this.hasError) {
                 this.problemMessages = resolveReport.getAllProblemMessages();
@@ -85,6 +119,13 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
                     configuration);
             }
             this.configuration = configuration;
+            this.ivy = ivy;
+        }
+
+        public ResolvedConfigurationImpl(IvyConversionResult conversionResult, Configuration configuration, Ivy ivy) {
+            this.conversionResult = conversionResult;
+            this.configuration = configuration;
+            this.ivy = ivy;
         }
 
         public boolean hasError() {
@@ -104,18 +145,27 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
         public Set<File> getFiles(Spec<Dependency> dependencySpec) {
             rethrowFailure();
             Set<ModuleDependency> allModuleDependencies = Specs.filterIterable(configuration.getAllDependencies(ModuleDependency.class), dependencySpec);
-            Set<File> files = new LinkedHashSet<File>();
+            Map<ResolvedDependency, Set<ResolvedArtifact>> artifacts = new LinkedHashMap<ResolvedDependency, Set<ResolvedArtifact>>();
+            Set<ResolvedArtifact> allArtifacts = new LinkedHashSet<ResolvedArtifact>();
             for (ModuleDependency moduleDependency : allModuleDependencies) {
                 Set<ResolvedDependency> resolvedDependencies = conversionResult.getFirstLevelResolvedDependencies().get(moduleDependency);
                 if (resolvedDependencies != null) {
                     for (ResolvedDependency resolvedDependency : resolvedDependencies) {
-                        for (File depFile : ResolvedDependencies.getFilesFromArtifacts(resolvedDependency.getAllArtifacts(null))) {
-                            if (depFile == null) {
-                                throw new GradleException(String.format("Resolved files for %s contains a null value.", resolvedDependency));
-                            }
-                            files.add(depFile);
-                        }
+                        Set<ResolvedArtifact> dependencyArtifacts = resolvedDependency.getAllArtifacts(null);
+                        artifacts.put(resolvedDependency, dependencyArtifacts);
+                        allArtifacts.addAll(dependencyArtifacts);
+                    }
+                }
+            }
+            artifactDownloader.download(allArtifacts, ivy);
+
+            Set<File> files = new LinkedHashSet<File>();
+            for (Map.Entry<ResolvedDependency, Set<ResolvedArtifact>> entry : artifacts.entrySet()) {
+                for (File depFile : ResolvedDependencies.getFilesFromArtifacts(entry.getValue())) {
+                    if (depFile == null) {
+                        throw new GradleException(String.format("Resolved files for %s contains a null value.", entry.getKey()));
                     }
+                    files.add(depFile);
                 }
             }
             return files;
@@ -174,27 +174,41 @@ public class DefaultSettingsConverter implements SettingsConverter {
         this.ivySettings = ivySettings;
     }
 
+    /**
+     * Logs the progress of each transfer. Artifacts may be downloaded concurrently, and the events of a transfer are
+     * fired by the thread which performs it, so the state of each transfer is held per thread.
+     */
     private static class ProgressLoggingTransferListener implements TransferListener {
-        private ProgressLogger logger;
-        private long total;
+        private final ThreadLocal<TransferState> transfer = new ThreadLocal<TransferState>();
 
         public void transferProgress(TransferEvent evt) {
             if (evt.getResource().isLocal()) {
                 return;
             }
             if (evt.getEventType() == TransferEvent.TRANSFER_STARTED) {
-                total = 0;
-                logger = DefaultSettingsConverter.logger.createProgressLogger();
-                logger.started(evt.getResource().getName());
+                TransferState state = new TransferState();
+                state.logger = DefaultSettingsConverter.logger.createProgressLogger();
+                state.logger.started(evt.getResource().getName());
+                transfer.set(state);
+            }
+            TransferState state = transfer.get();
+            if (state == null) {
+                return;
             }
             if (evt.getEventType() == TransferEvent.TRANSFER_PROGRESS) {
-                total += evt.getLength();
-                logger.progress(String.format("%s/%s downloaded", getLengthText(total), getLengthText(evt)));
+                state.total += evt.getLength();
+                state.logger.progress(String.format("%s/%s downloaded", getLengthText(state.total), getLengthText(evt)));
             }
             if (evt.getEventType() == TransferEvent.TRANSFER_COMPLETED
                     || evt.getEventType() == TransferEvent.TRANSFER_ERROR) {
-                logger.completed(String.format("downloaded (%s)", getLengthText(total)));
+                state.logger.completed(String.format("downloaded (%s)", getLengthText(state.total)));
+                transfer.remove();
             }
         }
     }
+
+    private static class TransferState {
+        private ProgressLogger logger;
+        private long total;
+    }
 }
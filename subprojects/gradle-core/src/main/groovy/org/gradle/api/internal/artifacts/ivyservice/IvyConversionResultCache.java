@@ -0,0 +1,407 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.DefaultArtifact;
+import org.apache.ivy.core.module.descriptor.DependencyArtifactDescriptor;
+import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.ExcludeRule;
+import org.apache.ivy.core.module.descriptor.IncludeRule;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.report.ResolveReport;
+import org.apache.ivy.core.resolve.IvyNode;
+import org.apache.ivy.core.resolve.IvyNodeCallers;
+import org.apache.ivy.plugins.resolver.AbstractPatternsBasedResolver;
+import org.apache.ivy.plugins.version.VersionMatcher;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A persistent cache of the results of resolving configurations. A configuration whose dependencies and repositories
+ * have not changed since it was last resolved, in this or an earlier build, can then be resolved without using Ivy.
+ *
+ * <p>A result is cached using a hash of the module descriptor of the configuration, the resolvers and the Ivy cache
+ * directory. The cached result holds the resolved dependency graph and the local file of each artifact, so the
+ * artifacts are downloaded when the result is cached. A cached result is discarded when one of its files no longer
+ * exists. A result which contains dynamic or changing revisions, such as {@code 1.+} or {@code 1.0-SNAPSHOT}, at any
+ * level of the dependency graph is discarded once it is older than the given time-to-live, so that new revisions are
+ * picked up.</p>
+ *
+ * <p>Configurations with project dependencies or client modules are not cached, as their dependency graph is not
+ * described by the module descriptor alone.</p>
+ */
+public class IvyConversionResultCache {
+    /**
+     * The default time-to-live of a result with dynamic or changing revisions: 24 hours.
+     */
+    public static final long DEFAULT_DYNAMIC_REVISION_TTL = 24 * 60 * 60 * 1000L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(IvyConversionResultCache.class);
+    private final CacheRepository cacheRepository;
+    private final long dynamicRevisionTtl;
+    private PersistentIndexedCache<String, CachedResult> cache;
+
+    /**
+     * @param cacheRepository The repository to create the cache in.
+     * @param dynamicRevisionTtl The time, in milliseconds, for which a result with dynamic or changing revisions is
+     * used.
+     */
+    public IvyConversionResultCache(CacheRepository cacheRepository, long dynamicRevisionTtl) {
+        this.cacheRepository = cacheRepository;
+        this.dynamicRevisionTtl = dynamicRevisionTtl;
+    }
+
+    /**
+     * Returns the cached result of resolving the given configuration, or null when there is no usable result.
+     */
+    public IvyConversionResult get(Configuration configuration, Ivy ivy, ModuleDescriptor moduleDescriptor) {
+        if (!isCacheable(configuration)) {
+            return null;
+        }
+        CachedResult result;
+        synchronized (this) {
+            result = getCache().get(getKey(configuration, ivy, moduleDescriptor));
+        }
+        if (result == null) {
+            return null;
+        }
+        if (result.dynamic && System.currentTimeMillis() - result.timestamp >= dynamicRevisionTtl) {
+            LOGGER.debug("Cached resolve result for {} contains dynamic revisions and has expired.", configuration);
+            return null;
+        }
+        return result.restore(configuration);
+    }
+
+    /**
+     * Caches the result of resolving the given configuration. Downloads the artifacts of the result.
+     *
+     * @param resolveReport The Ivy report which the result was converted from.
+     */
+    public void put(Configuration configuration, Ivy ivy, ModuleDescriptor moduleDescriptor,
+                    ResolveReport resolveReport, IvyConversionResult conversionResult) {
+        if (!isCacheable(configuration)) {
+            return;
+        }
+        CachedResult result;
+        try {
+            result = new CachedResult(conversionResult, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            // Leave the failure to be reported when the files of the configuration are used
+            LOGGER.debug(String.format("Could not cache resolve result for %s.", configuration), e);
+            return;
+        }
+        result.dynamic |= hasDynamicRevisions(ivy, resolveReport);
+        synchronized (this) {
+            getCache().put(getKey(configuration, ivy, moduleDescriptor), result);
+        }
+    }
+
+    private PersistentIndexedCache<String, CachedResult> getCache() {
+        if (cache == null) {
+            cache = cacheRepository.cache("resolvedConfigurations").open().openIndexedCache();
+        }
+        return cache;
+    }
+
+    private boolean isCacheable(Configuration configuration) {
+        return configuration.getAllDependencies(ProjectDependency.class).isEmpty()
+                && configuration.getAllDependencies(ClientModule.class).isEmpty();
+    }
+
+    private boolean hasDynamicRevisions(Ivy ivy, ResolveReport resolveReport) {
+        VersionMatcher versionMatcher = ivy.getSettings().getVersionMatcher();
+        for (Object element : resolveReport.getDependencies()) {
+            IvyNode node = (IvyNode) element;
+            if (versionMatcher.isDynamic(node.getId())) {
+                return true;
+            }
+            for (IvyNodeCallers.Caller caller : node.getAllCallers()) {
+                DependencyDescriptor dependency = caller.getDependencyDescriptor();
+                if (dependency.isChanging() || versionMatcher.isDynamic(dependency.getDependencyRevisionId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String getKey(Configuration configuration, Ivy ivy, ModuleDescriptor moduleDescriptor) {
+        StringBuilder key = new StringBuilder();
+        key.append(configuration.getName()).append('\n');
+        key.append(moduleDescriptor.getModuleRevisionId().encodeToString()).append('\n');
+        for (org.apache.ivy.core.module.descriptor.Configuration conf : moduleDescriptor.getConfigurations()) {
+            key.append("conf ").append(conf.getName()).append(' ').append(Arrays.asList(conf.getExtends()));
+            key.append(' ').append(conf.isTransitive()).append(' ').append(conf.getVisibility()).append('\n');
+        }
+        for (DependencyDescriptor dependency : moduleDescriptor.getDependencies()) {
+            key.append("dependency ").append(dependency.getDependencyRevisionId().encodeToString());
+            key.append(' ').append(dependency.isForce()).append(' ').append(dependency.isChanging());
+            key.append(' ').append(dependency.isTransitive()).append('\n');
+            for (String conf : dependency.getModuleConfigurations()) {
+                key.append("  conf ").append(conf).append(" -> ");
+                key.append(Arrays.asList(dependency.getDependencyConfigurations(conf))).append('\n');
+            }
+            for (DependencyArtifactDescriptor artifact : dependency.getAllDependencyArtifacts()) {
+                key.append("  artifact ").append(artifact.getName()).append(' ').append(artifact.getType());
+                key.append(' ').append(artifact.getExt()).append(' ').append(artifact.getUrl());
+                key.append(' ').append(Arrays.asList(artifact.getConfigurations()));
+                key.append(' ').append(new TreeMap(artifact.getQualifiedExtraAttributes())).append('\n');
+            }
+            for (ExcludeRule rule : dependency.getAllExcludeRules()) {
+                key.append("  exclude ").append(rule.getId()).append(' ').append(rule.getMatcher().getName());
+                key.append(' ').append(Arrays.asList(rule.getConfigurations())).append('\n');
+            }
+            for (IncludeRule rule : dependency.getAllIncludeRules()) {
+                key.append("  include ").append(rule.getId()).append(' ').append(rule.getMatcher().getName());
+                key.append(' ').append(Arrays.asList(rule.getConfigurations())).append('\n');
+            }
+        }
+        for (ExcludeRule rule : moduleDescriptor.getAllExcludeRules()) {
+            key.append("exclude ").append(rule.getId()).append(' ').append(rule.getMatcher().getName());
+            key.append(' ').append(Arrays.asList(rule.getConfigurations())).append('\n');
+        }
+        for (Object element : ivy.getSettings().getResolvers()) {
+            DependencyResolver resolver = (DependencyResolver) element;
+            key.append("resolver ").append(resolver.getClass().getName()).append(' ').append(resolver.getName());
+            if (resolver instanceof AbstractPatternsBasedResolver) {
+                AbstractPatternsBasedResolver patternsBasedResolver = (AbstractPatternsBasedResolver) resolver;
+                key.append(' ').append(patternsBasedResolver.getIvyPatterns());
+                key.append(' ').append(patternsBasedResolver.getArtifactPatterns());
+                key.append(' ').append(patternsBasedResolver.isM2compatible());
+            }
+            key.append('\n');
+        }
+        key.append("default resolver ").append(ivy.getSettings().getDefaultResolver().getName()).append('\n');
+        key.append("cache ").append(ivy.getSettings().getDefaultCache()).append('\n');
+        return HashUtil.createHash(key.toString());
+    }
+
+    private static String getKey(Dependency dependency) {
+        return String.format("%s:%s:%s:%s", dependency.getGroup(), dependency.getName(), dependency.getVersion(),
+                ((ModuleDependency) dependency).getConfiguration());
+    }
+
+    /**
+     * The serialized form of an {@link IvyConversionResult}. Dependencies and artifacts refer to each other by their
+     * index, so that each object of the graph is restored once.
+     */
+    private static class CachedResult implements Serializable {
+        private final long timestamp;
+        private boolean dynamic;
+        private final List<CachedDependency> dependencies = new ArrayList<CachedDependency>();
+        private final List<CachedArtifact> artifacts = new ArrayList<CachedArtifact>();
+        private final Map<String, int[]> firstLevelDependencies = new LinkedHashMap<String, int[]>();
+        private final int[] resolvedArtifacts;
+
+        private CachedResult(IvyConversionResult result, long timestamp) {
+            this.timestamp = timestamp;
+            Map<ResolvedDependency, Integer> dependencyIndexes = new IdentityHashMap<ResolvedDependency, Integer>();
+            Map<ResolvedArtifact, Integer> artifactIndexes = new IdentityHashMap<ResolvedArtifact, Integer>();
+            for (Map.Entry<Dependency, Set<ResolvedDependency>> entry : result.getFirstLevelResolvedDependencies().entrySet()) {
+                firstLevelDependencies.put(getKey(entry.getKey()), indexDependencies(entry.getValue(),
+                        dependencyIndexes, artifactIndexes));
+            }
+            resolvedArtifacts = indexArtifacts(result.getResolvedArtifacts(), dependencyIndexes, artifactIndexes);
+        }
+
+        private int indexDependency(ResolvedDependency dependency, Map<ResolvedDependency, Integer> dependencyIndexes,
+                                    Map<ResolvedArtifact, Integer> artifactIndexes) {
+            if (dependency == null) {
+                return -1;
+            }
+            Integer index = dependencyIndexes.get(dependency);
+            if (index != null) {
+                return index;
+            }
+            index = dependencies.size();
+            dependencyIndexes.put(dependency, index);
+            CachedDependency cachedDependency = new CachedDependency(dependency);
+            dependencies.add(cachedDependency);
+
+            cachedDependency.moduleArtifacts = indexArtifacts(dependency.getModuleArtifacts(), dependencyIndexes,
+                    artifactIndexes);
+            cachedDependency.children = indexDependencies(dependency.getChildren(), dependencyIndexes, artifactIndexes);
+            cachedDependency.parents = indexDependencies(dependency.getParents(), dependencyIndexes, artifactIndexes);
+            cachedDependency.parentArtifacts = new int[cachedDependency.parents.length][];
+            int i = 0;
+            for (ResolvedDependency parent : dependency.getParents()) {
+                cachedDependency.parentArtifacts[i++] = indexArtifacts(dependency.getParentArtifacts(parent),
+                        dependencyIndexes, artifactIndexes);
+            }
+            if (dependency.getModuleVersion() != null && dependency.getModuleVersion().endsWith("-SNAPSHOT")) {
+                dynamic = true;
+            }
+            return index;
+        }
+
+        private int[] indexDependencies(Collection<ResolvedDependency> dependencies,
+                                        Map<ResolvedDependency, Integer> dependencyIndexes,
+                                        Map<ResolvedArtifact, Integer> artifactIndexes) {
+            int[] indexes = new int[dependencies.size()];
+            int i = 0;
+            for (ResolvedDependency dependency : dependencies) {
+                indexes[i++] = indexDependency(dependency, dependencyIndexes, artifactIndexes);
+            }
+            return indexes;
+        }
+
+        private int[] indexArtifacts(Collection<ResolvedArtifact> artifacts,
+                                     Map<ResolvedDependency, Integer> dependencyIndexes,
+                                     Map<ResolvedArtifact, Integer> artifactIndexes) {
+            int[] indexes = new int[artifacts.size()];
+            int i = 0;
+            for (ResolvedArtifact artifact : artifacts) {
+                Integer index = artifactIndexes.get(artifact);
+                if (index == null) {
+                    index = this.artifacts.size();
+                    artifactIndexes.put(artifact, index);
+                    CachedArtifact cachedArtifact = new CachedArtifact(artifact);
+                    this.artifacts.add(cachedArtifact);
+                    cachedArtifact.dependency = indexDependency(artifact.getResolvedDependency(), dependencyIndexes,
+                            artifactIndexes);
+                }
+                indexes[i++] = index;
+            }
+            return indexes;
+        }
+
+        /**
+         * Restores the result for the given configuration. Returns null when the result cannot be used.
+         */
+        IvyConversionResult restore(Configuration configuration) {
+            for (CachedArtifact artifact : artifacts) {
+                if (!artifact.file.exists()) {
+                    LOGGER.debug("Cached resolve result for {} refers to missing file {}.", configuration, artifact.file);
+                    return null;
+                }
+            }
+            Map<String, Dependency> declaredDependencies = new HashMap<String, Dependency>();
+            for (ModuleDependency dependency : configuration.getAllDependencies(ModuleDependency.class)) {
+                declaredDependencies.put(getKey(dependency), dependency);
+            }
+
+            DefaultResolvedArtifact[] restoredArtifacts = new DefaultResolvedArtifact[artifacts.size()];
+            for (int i = 0; i < restoredArtifacts.length; i++) {
+                restoredArtifacts[i] = artifacts.get(i).restore(dependencies);
+            }
+            DefaultResolvedDependency[] restoredDependencies = new DefaultResolvedDependency[dependencies.size()];
+            for (int i = 0; i < restoredDependencies.length; i++) {
+                restoredDependencies[i] = dependencies.get(i).restore(restoredArtifacts);
+            }
+            for (int i = 0; i < restoredDependencies.length; i++) {
+                dependencies.get(i).connect(restoredDependencies[i], restoredDependencies, restoredArtifacts);
+            }
+            for (int i = 0; i < restoredArtifacts.length; i++) {
+                int dependency = artifacts.get(i).dependency;
+                restoredArtifacts[i].setResolvedDependency(dependency < 0 ? null : restoredDependencies[dependency]);
+            }
+
+            Map<Dependency, Set<ResolvedDependency>> firstLevel = new LinkedHashMap<Dependency, Set<ResolvedDependency>>();
+            for (Map.Entry<String, int[]> entry : firstLevelDependencies.entrySet()) {
+                Dependency dependency = declaredDependencies.get(entry.getKey());
+                if (dependency == null) {
+                    return null;
+                }
+                firstLevel.put(dependency, CachedResult.<ResolvedDependency>select(restoredDependencies, entry.getValue()));
+            }
+            return new DefaultIvyConversionResult(firstLevel, CachedResult.<ResolvedArtifact>select(restoredArtifacts,
+                    resolvedArtifacts));
+        }
+
+        private static <T> Set<T> select(T[] values, int[] indexes) {
+            Set<T> result = new LinkedHashSet<T>();
+            for (int index : indexes) {
+                result.add(index < 0 ? null : values[index]);
+            }
+            return result;
+        }
+    }
+
+    private static class CachedDependency implements Serializable {
+        private final String name;
+        private final String group;
+        private final String module;
+        private final String version;
+        private final String configuration;
+        private final List<String> configurationHierarchy;
+        private int[] moduleArtifacts;
+        private int[] children;
+        private int[] parents;
+        private int[][] parentArtifacts;
+
+        private CachedDependency(ResolvedDependency dependency) {
+            name = dependency.getName();
+            group = dependency.getModuleGroup();
+            module = dependency.getModuleName();
+            version = dependency.getModuleVersion();
+            configuration = dependency.getConfiguration();
+            configurationHierarchy = new ArrayList<String>(
+                    ((DefaultResolvedDependency) dependency).getConfigurationHierarchy());
+        }
+
+        DefaultResolvedDependency restore(ResolvedArtifact[] artifacts) {
+            return new DefaultResolvedDependency(name, group, module, version, configuration,
+                    new LinkedHashSet<String>(configurationHierarchy), CachedResult.select(artifacts, moduleArtifacts));
+        }
+
+        void connect(DefaultResolvedDependency dependency, ResolvedDependency[] dependencies,
+                     ResolvedArtifact[] artifacts) {
+            for (int child : children) {
+                dependency.getChildren().add(dependencies[child]);
+            }
+            for (int i = 0; i < parents.length; i++) {
+                ResolvedDependency parent = parents[i] < 0 ? null : dependencies[parents[i]];
+                dependency.getParents().add(parent);
+                dependency.addParentSpecificArtifacts(parent, CachedResult.select(artifacts, parentArtifacts[i]));
+            }
+        }
+    }
+
+    private static class CachedArtifact implements Serializable {
+        private final String name;
+        private final String type;
+        private final String extension;
+        private final File file;
+        private int dependency;
+
+        private CachedArtifact(ResolvedArtifact artifact) {
+            name = artifact.getName();
+            type = artifact.getType();
+            extension = artifact.getExtension();
+            file = artifact.getFile();
+        }
+
+        DefaultResolvedArtifact restore(List<CachedDependency> dependencies) {
+            ModuleRevisionId id = dependency < 0 ? ModuleRevisionId.newInstance("", "", "")
+                    : ModuleRevisionId.newInstance(dependencies.get(dependency).group,
+                    dependencies.get(dependency).module, dependencies.get(dependency).version);
+            return new DefaultResolvedArtifact(new DefaultArtifact(id, null, name, type, extension), file);
+        }
+    }
+}
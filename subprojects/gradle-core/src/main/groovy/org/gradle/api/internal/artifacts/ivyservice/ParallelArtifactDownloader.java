@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.IvyContext;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.util.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads the files of a set of resolved artifacts using a bounded pool of worker threads, so that the transfers for
+ * independent modules overlap. The artifacts of a single module are downloaded one after the other by the same
+ * thread, as Ivy records the origin of all the artifacts of a module in a single file in its cache. Each artifact
+ * keeps its own file, so the files are later returned in the same order regardless of the order in which the
+ * downloads complete. On the first failure, the downloads which are already in progress are allowed to complete, and
+ * the failure of the first module, in the order given, is rethrown.
+ */
+public class ParallelArtifactDownloader {
+    public static final int DEFAULT_MAX_THREADS = 4;
+
+    private final int maxThreads;
+
+    /**
+     * @param maxThreads The maximum number of modules to download concurrently.
+     */
+    public ParallelArtifactDownloader(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Downloads the files of the given artifacts which have not been downloaded yet.
+     *
+     * @param artifacts The artifacts to download.
+     * @param ivy The Ivy instance which resolved the artifacts.
+     */
+    public void download(Iterable<? extends ResolvedArtifact> artifacts, final Ivy ivy) {
+        Map<String, List<ResolvedArtifact>> artifactsByModule = new LinkedHashMap<String, List<ResolvedArtifact>>();
+        for (ResolvedArtifact artifact : artifacts) {
+            if (artifact instanceof DefaultResolvedArtifact && ((DefaultResolvedArtifact) artifact).isDownloaded()) {
+                continue;
+            }
+            String module = getModule(artifact);
+            List<ResolvedArtifact> moduleArtifacts = artifactsByModule.get(module);
+            if (moduleArtifacts == null) {
+                moduleArtifacts = new ArrayList<ResolvedArtifact>();
+                artifactsByModule.put(module, moduleArtifacts);
+            }
+            moduleArtifacts.add(artifact);
+        }
+
+        int threadCount = Math.min(maxThreads, artifactsByModule.size());
+        if (threadCount <= 1) {
+            for (List<ResolvedArtifact> moduleArtifacts : artifactsByModule.values()) {
+                downloadAll(moduleArtifacts);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (final List<ResolvedArtifact> moduleArtifacts : artifactsByModule.values()) {
+                results.add(executor.submit(new Runnable() {
+                    public void run() {
+                        // Ivy looks up its settings and cache through the context of the current thread
+                        IvyContext.pushNewContext().setIvy(ivy);
+                        try {
+                            downloadAll(moduleArtifacts);
+                        } finally {
+                            IvyContext.popContext();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                while (true) {
+                    try {
+                        result.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // Keep waiting - the downloads in progress must complete before we can return
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+        } finally {
+            ThreadUtils.shutdown(executor);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new GradleException(failure);
+        }
+    }
+
+    private static void downloadAll(List<ResolvedArtifact> artifacts) {
+        for (ResolvedArtifact artifact : artifacts) {
+            artifact.getFile();
+        }
+    }
+
+    private static String getModule(ResolvedArtifact artifact) {
+        ResolvedDependency dependency = artifact.getResolvedDependency();
+        if (dependency == null) {
+            return "";
+        }
+        return dependency.getModuleGroup() + ":" + dependency.getModuleName() + ":" + dependency.getModuleVersion();
+    }
+}
@@ -16,15 +16,15 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.FixedSizeSerializer;
 import org.gradle.cache.PersistentIndexedCache;
-import org.gradle.cache.Serializer;
 
 import java.io.*;
+import java.util.*;
 
 public class CachingHasher implements Hasher {
     private final PersistentIndexedCache<File, FileInfo> cache;
     private final Hasher hasher;
-    private long timestamp;
 
     public CachingHasher(Hasher hasher, CacheRepository cacheRepository) {
         this.hasher = hasher;
@@ -32,19 +32,56 @@ public class CachingHasher implements Hasher {
     }
 
     public byte[] hash(File file) {
-        FileInfo info = cache.get(file);
+        FileInfo info;
+        synchronized (cache) {
+            info = cache.get(file);
+        }
 
         long length = file.length();
-        timestamp = file.lastModified();
+        long timestamp = file.lastModified();
         if (info != null && length == info.length && timestamp == info.timestamp) {
             return info.hash;
         }
 
         byte[] hash = hasher.hash(file);
-        cache.put(file, new FileInfo(hash, length, timestamp));
+        synchronized (cache) {
+            cache.put(file, new FileInfo(hash, length, timestamp));
+        }
         return hash;
     }
 
+    public Map<File, byte[]> hash(Collection<File> files) {
+        Map<File, byte[]> hashes = new HashMap<File, byte[]>();
+        Map<File, FileInfo> stale = new LinkedHashMap<File, FileInfo>();
+        Map<File, FileInfo> infos;
+        synchronized (cache) {
+            infos = cache.getAll(files);
+        }
+        for (File file : files) {
+            FileInfo info = infos.get(file);
+            long length = file.length();
+            long timestamp = file.lastModified();
+            if (info != null && length == info.length && timestamp == info.timestamp) {
+                hashes.put(file, info.hash);
+            } else {
+                stale.put(file, new FileInfo(null, length, timestamp));
+            }
+        }
+        if (stale.isEmpty()) {
+            return hashes;
+        }
+
+        Map<File, byte[]> newHashes = hasher.hash(stale.keySet());
+        synchronized (cache) {
+            for (Map.Entry<File, FileInfo> entry : stale.entrySet()) {
+                byte[] hash = newHashes.get(entry.getKey());
+                cache.put(entry.getKey(), new FileInfo(hash, entry.getValue().length, entry.getValue().timestamp));
+                hashes.put(entry.getKey(), hash);
+            }
+        }
+        return hashes;
+    }
+
     public static class FileInfo implements Serializable {
         private final byte[] hash;
         private final long timestamp;
@@ -57,21 +94,32 @@ public class CachingHasher implements Hasher {
         }
     }
 
-    private static class FileInfoSerializer implements Serializer<FileInfo> {
+    private static class FileInfoSerializer implements FixedSizeSerializer<FileInfo> {
+        private static final int MAX_HASH_LENGTH = 16;
+
+        public int getSize() {
+            return 4 + MAX_HASH_LENGTH + 8 + 8;
+        }
+
         public FileInfo read(InputStream instr) throws Exception {
             DataInputStream input = new DataInputStream(instr);
             int hashLength = input.readInt();
             byte[] hash = new byte[hashLength];
             input.readFully(hash);
+            input.skipBytes(MAX_HASH_LENGTH - hashLength);
             long timestamp = input.readLong();
             long length = input.readLong();
             return new FileInfo(hash, length, timestamp);
         }
 
         public void write(OutputStream outstr, FileInfo value) throws Exception {
+            if (value.hash.length > MAX_HASH_LENGTH) {
+                throw new IllegalArgumentException(String.format("Cannot cache a hash of %d bytes.", value.hash.length));
+            }
             DataOutputStream output = new DataOutputStream(outstr);
             output.writeInt(value.hash.length);
             output.write(value.hash);
+            output.write(new byte[MAX_HASH_LENGTH - value.hash.length]);
             output.writeLong(value.timestamp);
             output.writeLong(value.length);
             output.flush();
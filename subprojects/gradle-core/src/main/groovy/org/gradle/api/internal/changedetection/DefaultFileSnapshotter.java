@@ -15,15 +15,16 @@
  */
 package org.gradle.api.internal.changedetection;
 
+import org.apache.commons.io.output.NullOutputStream;
 import org.gradle.api.file.FileCollection;
 import org.gradle.util.ChangeListener;
 
-import java.io.File;
-import java.io.Serializable;
+import java.io.*;
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 
 public class DefaultFileSnapshotter implements FileSnapshotter {
     private final Hasher hasher;
@@ -33,28 +34,205 @@ public class DefaultFileSnapshotter implements FileSnapshotter {
     }
 
     public FileCollectionSnapshot snapshot() {
-        return new FileCollectionSnapshotImpl(new HashMap<String, FileSnapshot>());
+        return new FileCollectionSnapshotImpl(new String[0], new FileSnapshot[0]);
     }
 
     public FileCollectionSnapshot snapshot(FileCollection sourceFiles) {
         Map<String, FileSnapshot> snapshots = new HashMap<String, FileSnapshot>();
+        Set<File> regularFiles = new LinkedHashSet<File>();
         for (File file : sourceFiles) {
             if (file.isFile()) {
-                snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(hasher.hash(file)));
+                regularFiles.add(file);
             } else if (file.isDirectory()) {
                 snapshots.put(file.getAbsolutePath(), new DirSnapshot());
             } else {
                 snapshots.put(file.getAbsolutePath(), new MissingFileSnapshot());
             }
         }
+        if (!regularFiles.isEmpty()) {
+            for (Map.Entry<File, byte[]> entry : hasher.hash(regularFiles).entrySet()) {
+                snapshots.put(entry.getKey().getAbsolutePath(), new FileHashSnapshot(entry.getValue()));
+            }
+        }
         return new FileCollectionSnapshotImpl(snapshots);
     }
 
+    public byte[] fingerprint(FileCollection files) {
+        // Digest the files in path order, so that the fingerprint does not depend on the order the files are iterated
+        SortedSet<String> paths = new TreeSet<String>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            DataOutputStream output = new DataOutputStream(new DigestOutputStream(new NullOutputStream(),
+                    messageDigest));
+            for (String path : paths) {
+                File file = new File(path);
+                output.writeUTF(path);
+                if (file.isFile()) {
+                    output.writeByte(SnapshotSerializer.FILE);
+                    output.writeLong(file.length());
+                    output.writeLong(file.lastModified());
+                } else if (file.isDirectory()) {
+                    output.writeByte(SnapshotSerializer.DIR);
+                } else {
+                    output.writeByte(SnapshotSerializer.MISSING);
+                }
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * Writes the snapshots created by a {@link DefaultFileSnapshotter} in a compact binary format. Each path is written
+     * as an index into a table of paths, which is written separately by the caller and can be shared by several
+     * snapshots. Entries are written in path order, so that each index can be written as the difference from the
+     * previous index. File hashes are written with a fixed width per snapshot.
+     */
+    static class SnapshotSerializer {
+        static final byte DIR = 1;
+        static final byte MISSING = 2;
+        static final byte FILE = 3;
+
+        /**
+         * Returns true if the given snapshot can be written by this serializer.
+         */
+        public boolean canWrite(FileCollectionSnapshot snapshot) {
+            if (!(snapshot instanceof FileCollectionSnapshotImpl)) {
+                return false;
+            }
+            int hashWidth = -1;
+            for (FileSnapshot fileSnapshot : ((FileCollectionSnapshotImpl) snapshot).snapshots) {
+                if (fileSnapshot instanceof FileHashSnapshot) {
+                    int length = ((FileHashSnapshot) fileSnapshot).hash.length;
+                    if (length > 255 || hashWidth >= 0 && length != hashWidth) {
+                        return false;
+                    }
+                    hashWidth = length;
+                }
+            }
+            return true;
+        }
+
+        public void collectPaths(FileCollectionSnapshot snapshot, Collection<String> paths) {
+            paths.addAll(Arrays.asList(((FileCollectionSnapshotImpl) snapshot).paths));
+        }
+
+        /**
+         * Writes the given snapshot. The path indexes must be in the same order as the paths they index, as is the
+         * case for a sorted path table.
+         */
+        public void write(FileCollectionSnapshot snapshot, DataOutput output, Map<String, Integer> pathIndexes)
+                throws IOException {
+            FileCollectionSnapshotImpl snapshotImpl = (FileCollectionSnapshotImpl) snapshot;
+            int hashWidth = 0;
+            for (FileSnapshot fileSnapshot : snapshotImpl.snapshots) {
+                if (fileSnapshot instanceof FileHashSnapshot) {
+                    hashWidth = ((FileHashSnapshot) fileSnapshot).hash.length;
+                }
+            }
+
+            writeVarInt(output, snapshotImpl.paths.length);
+            output.writeByte(hashWidth);
+            int previous = -1;
+            for (int i = 0; i < snapshotImpl.paths.length; i++) {
+                int index = pathIndexes.get(snapshotImpl.paths[i]);
+                if (index <= previous) {
+                    throw new IllegalArgumentException("Path indexes are not in path order.");
+                }
+                writeVarInt(output, i == 0 ? index : index - previous);
+                previous = index;
+                FileSnapshot fileSnapshot = snapshotImpl.snapshots[i];
+                if (fileSnapshot instanceof FileHashSnapshot) {
+                    output.writeByte(FILE);
+                    output.write(((FileHashSnapshot) fileSnapshot).hash);
+                } else if (fileSnapshot instanceof DirSnapshot) {
+                    output.writeByte(DIR);
+                } else {
+                    output.writeByte(MISSING);
+                }
+            }
+        }
+
+        public FileCollectionSnapshot read(DataInput input, String[] paths) throws IOException {
+            int count = readVarInt(input);
+            int hashWidth = input.readUnsignedByte();
+            // Entries are written in path order, so can be read straight into a sorted snapshot
+            String[] snapshotPaths = new String[count];
+            FileSnapshot[] snapshots = new FileSnapshot[count];
+            int index = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = readVarInt(input);
+                if (i > 0 && delta == 0) {
+                    throw new IOException("Unexpected duplicate path in file snapshot.");
+                }
+                index += delta;
+                snapshotPaths[i] = paths[index];
+                byte type = input.readByte();
+                switch (type) {
+                    case FILE:
+                        byte[] hash = new byte[hashWidth];
+                        input.readFully(hash);
+                        snapshots[i] = new FileHashSnapshot(hash);
+                        break;
+                    case DIR:
+                        snapshots[i] = new DirSnapshot();
+                        break;
+                    case MISSING:
+                        snapshots[i] = new MissingFileSnapshot();
+                        break;
+                    default:
+                        throw new IOException(String.format("Unexpected file snapshot type %d.", type));
+                }
+            }
+            return new FileCollectionSnapshotImpl(snapshotPaths, snapshots);
+        }
+
+        /**
+         * Writes a non-negative int using 1 byte for values less than 128, 2 bytes for values less than 16384, and so
+         * on.
+         */
+        static void writeVarInt(DataOutput output, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                output.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            output.writeByte(value);
+        }
+
+        static int readVarInt(DataInput input) throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = input.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                if (shift >= 28) {
+                    throw new IOException("Malformed variable length int.");
+                }
+            }
+        }
+    }
+
     private interface FileSnapshot extends Serializable {
         boolean isUpToDate(FileSnapshot snapshot);
     }
 
     private static class FileHashSnapshot implements FileSnapshot {
+        // Pinned to the value calculated for earlier versions of this class, so that snapshots persisted using Java
+        // serialization can still be read
+        private static final long serialVersionUID = -5057319852402795324L;
         private final byte[] hash;
 
         public FileHashSnapshot(byte[] hash) {
@@ -77,55 +255,180 @@ public class DefaultFileSnapshotter implements FileSnapshotter {
     }
 
     private static class DirSnapshot implements FileSnapshot {
+        private static final long serialVersionUID = -3298493903091009693L;
+
         public boolean isUpToDate(FileSnapshot snapshot) {
             return snapshot instanceof DirSnapshot;
         }
     }
 
     private static class MissingFileSnapshot implements FileSnapshot {
+        private static final long serialVersionUID = 2303558025416088959L;
+
         public boolean isUpToDate(FileSnapshot snapshot) {
             return snapshot instanceof MissingFileSnapshot;
         }
     }
 
+    /**
+     * A snapshot which holds its entries in a pair of arrays sorted by path. Two snapshots are compared with a single
+     * merge pass over both arrays, and applying a diff copies the runs of entries between the changes in bulk.
+     */
     private static class FileCollectionSnapshotImpl implements FileCollectionSnapshot {
-        private final Map<String, FileSnapshot> snapshots;
+        private static final long serialVersionUID = 4952782120074417320L;
+        // Serialized as a map from path to file snapshot, as earlier versions of this class were, so that snapshots
+        // persisted using Java serialization can still be read
+        private static final ObjectStreamField[] serialPersistentFields = {
+                new ObjectStreamField("snapshots", Map.class)
+        };
+        // Not final, so that they can be assigned by readObject()
+        private String[] paths;
+        private FileSnapshot[] snapshots;
 
         public FileCollectionSnapshotImpl(Map<String, FileSnapshot> snapshots) {
+            init(snapshots);
+        }
+
+        /**
+         * Creates a snapshot from the given entries, which must be sorted by path and contain no duplicates.
+         */
+        public FileCollectionSnapshotImpl(String[] paths, FileSnapshot[] snapshots) {
+            this.paths = paths;
             this.snapshots = snapshots;
         }
 
+        private void init(Map<String, FileSnapshot> snapshots) {
+            paths = snapshots.keySet().toArray(new String[snapshots.size()]);
+            Arrays.sort(paths);
+            this.snapshots = new FileSnapshot[paths.length];
+            for (int i = 0; i < paths.length; i++) {
+                this.snapshots[i] = snapshots.get(paths[i]);
+            }
+        }
+
+        private void writeObject(ObjectOutputStream output) throws IOException {
+            Map<String, FileSnapshot> map = new HashMap<String, FileSnapshot>(paths.length * 4 / 3 + 1);
+            for (int i = 0; i < paths.length; i++) {
+                map.put(paths[i], snapshots[i]);
+            }
+            ObjectOutputStream.PutField fields = output.putFields();
+            fields.put("snapshots", map);
+            output.writeFields();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField fields = input.readFields();
+            init((Map<String, FileSnapshot>) fields.get("snapshots", null));
+        }
+
         public void changesSince(FileCollectionSnapshot oldSnapshot, final ChangeListener<File> listener) {
-            FileCollectionSnapshotImpl other = (FileCollectionSnapshotImpl) oldSnapshot;
-            diff(snapshots, other.snapshots, new ChangeListener<Map.Entry<String, FileSnapshot>>() {
-                public void added(Map.Entry<String, FileSnapshot> element) {
-                    listener.added(new File(element.getKey()));
+            diff((FileCollectionSnapshotImpl) oldSnapshot, new ChangeListener<Entry>() {
+                public void added(Entry element) {
+                    listener.added(new File(element.path));
                 }
 
-                public void removed(Map.Entry<String, FileSnapshot> element) {
-                    listener.removed(new File(element.getKey()));
+                public void removed(Entry element) {
+                    listener.removed(new File(element.path));
                 }
 
-                public void changed(Map.Entry<String, FileSnapshot> element) {
-                    listener.changed(new File(element.getKey()));
+                public void changed(Entry element) {
+                    listener.changed(new File(element.path));
                 }
             });
         }
 
-        private void diff(Map<String, FileSnapshot> snapshots, Map<String, FileSnapshot> oldSnapshots,
-                          ChangeListener<Map.Entry<String, FileSnapshot>> listener) {
-            Map<String, FileSnapshot> otherSnapshots = new HashMap<String, FileSnapshot>(oldSnapshots);
-            for (Map.Entry<String, FileSnapshot> entry : snapshots.entrySet()) {
-                FileSnapshot otherFile = otherSnapshots.remove(entry.getKey());
-                if (otherFile == null) {
-                    listener.added(entry);
-                } else if (!entry.getValue().isUpToDate(otherFile)) {
-                    listener.changed(entry);
+        /**
+         * Notifies the listener of each difference between this snapshot and the given snapshot, in path order.
+         */
+        private void diff(FileCollectionSnapshotImpl oldSnapshot, ChangeListener<Entry> listener) {
+            String[] oldPaths = oldSnapshot.paths;
+            int i = 0;
+            int j = 0;
+            while (i < paths.length || j < oldPaths.length) {
+                int comparison;
+                if (i == paths.length) {
+                    comparison = 1;
+                } else if (j == oldPaths.length) {
+                    comparison = -1;
+                } else {
+                    comparison = paths[i].compareTo(oldPaths[j]);
+                }
+                if (comparison < 0) {
+                    listener.added(new Entry(paths[i], snapshots[i]));
+                    i++;
+                } else if (comparison > 0) {
+                    listener.removed(new Entry(oldPaths[j], oldSnapshot.snapshots[j]));
+                    j++;
+                } else {
+                    if (!snapshots[i].isUpToDate(oldSnapshot.snapshots[j])) {
+                        listener.changed(new Entry(paths[i], snapshots[i]));
+                    }
+                    i++;
+                    j++;
                 }
             }
-            for (Map.Entry<String, FileSnapshot> entry : otherSnapshots.entrySet()) {
-                listener.removed(entry);
+        }
+
+        /**
+         * Returns a copy of this snapshot with the given changes applied. The changes must be sorted by path. A change
+         * with a null file snapshot removes the path.
+         */
+        private FileCollectionSnapshotImpl apply(List<Entry> changes) {
+            if (changes.isEmpty()) {
+                return this;
+            }
+            String[] newPaths = new String[paths.length + changes.size()];
+            FileSnapshot[] newSnapshots = new FileSnapshot[newPaths.length];
+            int count = 0;
+            int start = 0;
+            for (Entry change : changes) {
+                int index = search(change.path, start);
+                int end = index >= 0 ? index : -index - 1;
+                System.arraycopy(paths, start, newPaths, count, end - start);
+                System.arraycopy(snapshots, start, newSnapshots, count, end - start);
+                count += end - start;
+                start = index >= 0 ? index + 1 : end;
+                if (change.snapshot != null) {
+                    newPaths[count] = change.path;
+                    newSnapshots[count] = change.snapshot;
+                    count++;
+                }
+            }
+            System.arraycopy(paths, start, newPaths, count, paths.length - start);
+            System.arraycopy(snapshots, start, newSnapshots, count, paths.length - start);
+            count += paths.length - start;
+
+            if (count < newPaths.length) {
+                String[] trimmedPaths = new String[count];
+                FileSnapshot[] trimmedSnapshots = new FileSnapshot[count];
+                System.arraycopy(newPaths, 0, trimmedPaths, 0, count);
+                System.arraycopy(newSnapshots, 0, trimmedSnapshots, 0, count);
+                newPaths = trimmedPaths;
+                newSnapshots = trimmedSnapshots;
             }
+            return new FileCollectionSnapshotImpl(newPaths, newSnapshots);
+        }
+
+        /**
+         * Searches for the given path, starting at the given index. Returns the index of the path if found, otherwise
+         * (-(insertion point) - 1).
+         */
+        private int search(String path, int start) {
+            int low = start;
+            int high = paths.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int comparison = paths[mid].compareTo(path);
+                if (comparison < 0) {
+                    low = mid + 1;
+                } else if (comparison > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
         }
 
         public Diff changesSince(final FileCollectionSnapshot oldSnapshot) {
@@ -146,37 +449,47 @@ public class DefaultFileSnapshotter implements FileSnapshotter {
 
                 public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot, final ChangeListener<Merge> listener) {
                     FileCollectionSnapshotImpl target = (FileCollectionSnapshotImpl) snapshot;
-                    final Map<String, FileSnapshot> newSnapshots = new HashMap<String, FileSnapshot>(target.snapshots);
-                    diff(snapshots, other.snapshots, new ChangeListener<Map.Entry<String, FileSnapshot>>() {
-                        public void added(Map.Entry<String, FileSnapshot> element) {
+                    final List<Entry> changes = new ArrayList<Entry>();
+                    diff(other, new ChangeListener<Entry>() {
+                        public void added(Entry element) {
                             DefaultMerge merge = new DefaultMerge();
                             listener.added(merge);
                             if (!merge.ignore) {
-                                newSnapshots.put(element.getKey(), element.getValue());
+                                changes.add(element);
                             }
                         }
 
-                        public void removed(Map.Entry<String, FileSnapshot> element) {
+                        public void removed(Entry element) {
                             DefaultMerge merge = new DefaultMerge();
                             listener.removed(merge);
                             if (!merge.ignore) {
-                                newSnapshots.remove(element.getKey());
+                                changes.add(new Entry(element.path, null));
                             }
                         }
 
-                        public void changed(Map.Entry<String, FileSnapshot> element) {
+                        public void changed(Entry element) {
                             DefaultMerge merge = new DefaultMerge();
                             listener.changed(merge);
                             if (!merge.ignore) {
-                                newSnapshots.put(element.getKey(), element.getValue());
+                                changes.add(element);
                             }
                         }
                     });
-                    return new FileCollectionSnapshotImpl(newSnapshots);
+                    return target.apply(changes);
                 }
             };
         }
 
+        private static class Entry {
+            private final String path;
+            private final FileSnapshot snapshot;
+
+            private Entry(String path, FileSnapshot snapshot) {
+                this.path = path;
+                this.snapshot = snapshot;
+            }
+        }
+
         private static class DefaultMerge implements Merge {
             private boolean ignore;
 
@@ -22,11 +22,11 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
 import org.gradle.util.ChangeListener;
 import org.gradle.util.DiffUtil;
 
-import java.io.File;
-import java.io.Serializable;
+import java.io.*;
 import java.util.*;
 
 import static java.util.Collections.*;
@@ -44,15 +44,16 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
     }
 
     public TaskArtifactState getStateFor(final TaskInternal task) {
-        if (cache == null) {
-            loadTasks(task);
-        }
-
+        loadTasks(task);
         return new TaskArtifactStateImpl(task);
     }
 
-    private void loadTasks(TaskInternal task) {
-        cache = repository.cache("taskArtifacts").forObject(task.getProject().getGradle()).open().openIndexedCache();
+    // Synchronized, as tasks may be executed in parallel
+    private synchronized void loadTasks(TaskInternal task) {
+        if (cache == null) {
+            cache = repository.cache("taskArtifacts").forObject(task.getProject().getGradle()).open()
+                    .openIndexedCache(new TaskHistorySerializer());
+        }
     }
 
     private static Set<String> outputFiles(TaskInternal task) {
@@ -66,10 +67,18 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
     private interface TaskExecution {
         List<String> isUpToDate();
 
+        /**
+         * Returns true if the history was updated by {@link #isUpToDate()}, and so needs to be persisted.
+         */
+        boolean isHistoryChanged();
+
         boolean snapshot();
     }
 
     private static class TaskHistory implements Serializable {
+        // Pinned to the value calculated for earlier versions of this class, so that TaskHistorySerializer can still
+        // read histories persisted using Java serialization
+        private static final long serialVersionUID = -7883511847967374896L;
         private final List<TaskConfiguration> configurations = new ArrayList<TaskConfiguration>();
 
         public void addConfiguration(TaskConfiguration configuration) {
@@ -92,6 +101,10 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             return messages;
         }
 
+        public boolean isHistoryChanged() {
+            return false;
+        }
+
         public boolean snapshot() {
             return false;
         }
@@ -103,6 +116,9 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         private final TaskConfiguration lastExecution;
         private final FileSnapshotter snapshotter;
         private boolean upToDate;
+        private boolean historyChanged;
+        private byte[] inputFilesFingerprint;
+        private byte[] outputFilesFingerprint;
         private TaskConfiguration thisExecution;
         private FileCollectionSnapshot outputFilesBefore;
 
@@ -119,11 +135,44 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             }
 
             // Calculate current state - note this is potentially expensive
+            if (inputFilesFingerprint == null) {
+                inputFilesFingerprint = snapshotter.fingerprint(task.getInputs().getFiles());
+            }
             thisExecution = new TaskConfiguration(task, snapshotter);
+            thisExecution.inputFilesFingerprint = inputFilesFingerprint;
+            outputFilesFingerprint = snapshotter.fingerprint(task.getOutputs().getCandidateFiles());
             outputFilesBefore = snapshotter.snapshot(task.getOutputs().getCandidateFiles());
         }
 
+        /**
+         * Determines whether the task is up-to-date without looking at the contents of its input and output files. This
+         * is the case when the fingerprints of the input and output files match those of the last execution, which
+         * means that no file has been added, removed, or has changed length or last modified time since then.
+         */
+        private boolean isUpToDateByFingerprint() {
+            if (lastExecution == null || lastExecution.inputFilesFingerprint == null
+                    || lastExecution.outputFilesFingerprint == null) {
+                return false;
+            }
+            if (!task.getClass().getName().equals(lastExecution.taskClass)
+                    || !outputFiles(task).equals(lastExecution.outputFiles)
+                    || !task.getInputs().getProperties().equals(lastExecution.inputProperties)) {
+                return false;
+            }
+            inputFilesFingerprint = snapshotter.fingerprint(task.getInputs().getFiles());
+            if (!Arrays.equals(inputFilesFingerprint, lastExecution.inputFilesFingerprint)) {
+                return false;
+            }
+            return Arrays.equals(snapshotter.fingerprint(task.getOutputs().getCandidateFiles()),
+                    lastExecution.outputFilesFingerprint);
+        }
+
         public List<String> isUpToDate() {
+            if (isUpToDateByFingerprint()) {
+                upToDate = true;
+                return emptyList();
+            }
+
             calcCurrentState();
 
             // Now determine if we're out of date
@@ -157,10 +206,24 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
                 return messages;
             }
 
+            // The contents of the files have not changed, but their fingerprints may have. Record the current
+            // fingerprints, so that the next check does not need to look at the contents again. These were calculated
+            // before the snapshots, so any change made since the snapshots were taken is still detected
+            if (!Arrays.equals(inputFilesFingerprint, lastExecution.inputFilesFingerprint)
+                    || !Arrays.equals(outputFilesFingerprint, lastExecution.outputFilesFingerprint)) {
+                lastExecution.inputFilesFingerprint = inputFilesFingerprint;
+                lastExecution.outputFilesFingerprint = outputFilesFingerprint;
+                historyChanged = true;
+            }
+
             upToDate = true;
             return emptyList();
         }
 
+        public boolean isHistoryChanged() {
+            return historyChanged;
+        }
+
         private void checkOutputs(final Collection<String> messages) {
             outputFilesBefore.changesSince(lastExecution.outputFilesSnapshot, new ChangeListener<File>() {
                 public void added(File element) {
@@ -226,12 +289,12 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         }
 
         public boolean snapshot() {
-            calcCurrentState();
-            
             if (upToDate) {
                 return false;
             }
 
+            calcCurrentState();
+
             FileCollectionSnapshot lastExecutionOutputFiles = lastExecution == null ? snapshotter.snapshot()
                     : lastExecution.outputFilesSnapshot;
             FileCollectionSnapshot newOutputFiles = outputFilesBefore.changesSince(lastExecutionOutputFiles).applyTo(
@@ -249,6 +312,7 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
                             // Update any files which were change since the task was last executed
                         }
                     });
+            thisExecution.outputFilesFingerprint = snapshotter.fingerprint(task.getOutputs().getCandidateFiles());
             FileCollectionSnapshot outputFilesAfter = snapshotter.snapshot(task.getOutputs().getCandidateFiles());
             thisExecution.outputFilesSnapshot = outputFilesAfter.changesSince(outputFilesBefore).applyTo(
                     newOutputFiles);
@@ -258,11 +322,14 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
     }
 
     private static class TaskConfiguration implements Serializable {
+        private static final long serialVersionUID = -496820035929671926L;
         private final String taskClass;
         private Set<String> outputFiles;
         private Map<String, Object> inputProperties;
         private FileCollectionSnapshot inputFilesSnapshot;
         private FileCollectionSnapshot outputFilesSnapshot;
+        private byte[] inputFilesFingerprint;
+        private byte[] outputFilesFingerprint;
 
         private TaskConfiguration(TaskInternal task, FileSnapshotter fileSnapshotter) {
             this.taskClass = task.getClass().getName();
@@ -270,6 +337,202 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             this.inputProperties = new HashMap<String, Object>(task.getInputs().getProperties());
             this.inputFilesSnapshot = fileSnapshotter.snapshot(task.getInputs().getFiles());
         }
+
+        private TaskConfiguration(String taskClass, Set<String> outputFiles, Map<String, Object> inputProperties,
+                                  FileCollectionSnapshot inputFilesSnapshot, FileCollectionSnapshot outputFilesSnapshot) {
+            this.taskClass = taskClass;
+            this.outputFiles = outputFiles;
+            this.inputProperties = inputProperties;
+            this.inputFilesSnapshot = inputFilesSnapshot;
+            this.outputFilesSnapshot = outputFilesSnapshot;
+        }
+    }
+
+    /**
+     * Writes task history in a versioned binary format. All paths in a history are written once, in sorted order, with
+     * each path sharing a prefix with the previous path written as the length of that prefix. The configurations of
+     * the history then refer to paths by their index. Input properties are written using Java serialization, as they
+     * can be of any type. Version 2 of the format adds the fingerprints of the input and output files.
+     *
+     * <p>Can also read histories written using Java serialization, which is the format used by earlier versions. These
+     * are rewritten in the binary format the next time the task executes.</p>
+     */
+    static class TaskHistorySerializer implements Serializer<TaskHistory> {
+        // Java serialization streams start with 0xACED, so the version can never be mistaken for a legacy history
+        private static final int FORMAT_VERSION = 2;
+        private static final int JAVA_SERIALIZATION_MAGIC = 0xAC;
+        private static final byte NULL_SNAPSHOT = 0;
+        private static final byte BINARY_SNAPSHOT = 1;
+        private static final byte SERIALIZED_SNAPSHOT = 2;
+        private final DefaultFileSnapshotter.SnapshotSerializer snapshotSerializer
+                = new DefaultFileSnapshotter.SnapshotSerializer();
+
+        public TaskHistory read(InputStream instr) throws Exception {
+            int version = instr.read();
+            if (version == JAVA_SERIALIZATION_MAGIC) {
+                return readJavaSerializedHistory(new SequenceInputStream(new ByteArrayInputStream(new byte[]{(byte) version}),
+                        instr));
+            }
+            if (version != 1 && version != FORMAT_VERSION) {
+                // Unknown format - discard the history
+                return null;
+            }
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(instr));
+            String[] paths = new String[DefaultFileSnapshotter.SnapshotSerializer.readVarInt(input)];
+            String previous = "";
+            for (int i = 0; i < paths.length; i++) {
+                int prefixLength = DefaultFileSnapshotter.SnapshotSerializer.readVarInt(input);
+                previous = previous.substring(0, prefixLength) + input.readUTF();
+                paths[i] = previous;
+            }
+
+            TaskHistory history = new TaskHistory();
+            int configurations = DefaultFileSnapshotter.SnapshotSerializer.readVarInt(input);
+            for (int i = 0; i < configurations; i++) {
+                String taskClass = input.readUTF();
+                int outputFileCount = DefaultFileSnapshotter.SnapshotSerializer.readVarInt(input);
+                Set<String> outputFiles = new HashSet<String>(outputFileCount * 4 / 3 + 1);
+                for (int j = 0; j < outputFileCount; j++) {
+                    outputFiles.add(paths[DefaultFileSnapshotter.SnapshotSerializer.readVarInt(input)]);
+                }
+                Map<String, Object> inputProperties = readSerialized(input);
+                FileCollectionSnapshot inputFilesSnapshot = readSnapshot(input, paths);
+                FileCollectionSnapshot outputFilesSnapshot = readSnapshot(input, paths);
+                TaskConfiguration configuration = new TaskConfiguration(taskClass, outputFiles, inputProperties,
+                        inputFilesSnapshot, outputFilesSnapshot);
+                if (version >= 2) {
+                    configuration.inputFilesFingerprint = readFingerprint(input);
+                    configuration.outputFilesFingerprint = readFingerprint(input);
+                }
+                history.configurations.add(configuration);
+            }
+            return history;
+        }
+
+        public void write(OutputStream outstr, TaskHistory value) throws Exception {
+            Set<FileCollectionSnapshot> binarySnapshots = new HashSet<FileCollectionSnapshot>();
+            Set<String> paths = new HashSet<String>();
+            for (TaskConfiguration configuration : value.configurations) {
+                paths.addAll(configuration.outputFiles);
+                collectPaths(configuration.inputFilesSnapshot, paths, binarySnapshots);
+                collectPaths(configuration.outputFilesSnapshot, paths, binarySnapshots);
+            }
+            String[] sortedPaths = paths.toArray(new String[paths.size()]);
+            Arrays.sort(sortedPaths);
+
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outstr));
+            output.writeByte(FORMAT_VERSION);
+            DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, sortedPaths.length);
+            Map<String, Integer> pathIndexes = new HashMap<String, Integer>(sortedPaths.length * 4 / 3 + 1);
+            String previous = "";
+            for (String path : sortedPaths) {
+                int prefixLength = 0;
+                int maxPrefixLength = Math.min(previous.length(), path.length());
+                while (prefixLength < maxPrefixLength && previous.charAt(prefixLength) == path.charAt(prefixLength)) {
+                    prefixLength++;
+                }
+                DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, prefixLength);
+                output.writeUTF(path.substring(prefixLength));
+                pathIndexes.put(path, pathIndexes.size());
+                previous = path;
+            }
+
+            DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, value.configurations.size());
+            for (TaskConfiguration configuration : value.configurations) {
+                output.writeUTF(configuration.taskClass);
+                DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, configuration.outputFiles.size());
+                for (String outputFile : configuration.outputFiles) {
+                    DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, pathIndexes.get(outputFile));
+                }
+                writeSerialized(output, configuration.inputProperties);
+                writeSnapshot(output, configuration.inputFilesSnapshot, pathIndexes, binarySnapshots);
+                writeSnapshot(output, configuration.outputFilesSnapshot, pathIndexes, binarySnapshots);
+                writeFingerprint(output, configuration.inputFilesFingerprint);
+                writeFingerprint(output, configuration.outputFilesFingerprint);
+            }
+            output.flush();
+        }
+
+        private void collectPaths(FileCollectionSnapshot snapshot, Collection<String> paths,
+                                  Set<FileCollectionSnapshot> binarySnapshots) {
+            if (snapshot != null && snapshotSerializer.canWrite(snapshot)) {
+                snapshotSerializer.collectPaths(snapshot, paths);
+                binarySnapshots.add(snapshot);
+            }
+        }
+
+        private void writeSnapshot(DataOutputStream output, FileCollectionSnapshot snapshot,
+                                   Map<String, Integer> pathIndexes, Set<FileCollectionSnapshot> binarySnapshots)
+                throws IOException {
+            if (snapshot == null) {
+                output.writeByte(NULL_SNAPSHOT);
+            } else if (binarySnapshots.contains(snapshot)) {
+                output.writeByte(BINARY_SNAPSHOT);
+                snapshotSerializer.write(snapshot, output, pathIndexes);
+            } else {
+                output.writeByte(SERIALIZED_SNAPSHOT);
+                writeSerialized(output, snapshot);
+            }
+        }
+
+        private FileCollectionSnapshot readSnapshot(DataInputStream input, String[] paths) throws Exception {
+            byte type = input.readByte();
+            switch (type) {
+                case NULL_SNAPSHOT:
+                    return null;
+                case BINARY_SNAPSHOT:
+                    return snapshotSerializer.read(input, paths);
+                case SERIALIZED_SNAPSHOT:
+                    return readSerialized(input);
+                default:
+                    throw new IOException(String.format("Unexpected snapshot type %d.", type));
+            }
+        }
+
+        private void writeFingerprint(DataOutputStream output, byte[] fingerprint) throws IOException {
+            if (fingerprint == null) {
+                output.writeByte(0);
+            } else {
+                output.writeByte(fingerprint.length);
+                output.write(fingerprint);
+            }
+        }
+
+        private byte[] readFingerprint(DataInputStream input) throws IOException {
+            int length = input.readUnsignedByte();
+            if (length == 0) {
+                return null;
+            }
+            byte[] fingerprint = new byte[length];
+            input.readFully(fingerprint);
+            return fingerprint;
+        }
+
+        private void writeSerialized(DataOutputStream output, Object value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectStr = new ObjectOutputStream(bytes);
+            objectStr.writeObject(value);
+            objectStr.close();
+            DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, bytes.size());
+            bytes.writeTo(output);
+        }
+
+        private <T> T readSerialized(DataInputStream input) throws Exception {
+            byte[] bytes = new byte[DefaultFileSnapshotter.SnapshotSerializer.readVarInt(input)];
+            input.readFully(bytes);
+            return (T) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        }
+
+        private TaskHistory readJavaSerializedHistory(InputStream instr) throws Exception {
+            try {
+                return (TaskHistory) new ObjectInputStream(instr).readObject();
+            } catch (StreamCorruptedException e) {
+                return null;
+            } catch (InvalidClassException e) {
+                return null;
+            }
+        }
     }
 
     private class TaskArtifactStateImpl implements TaskArtifactState {
@@ -287,6 +550,9 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             List<String> messages = execution.isUpToDate();
             if (messages == null || messages.isEmpty()) {
                 LOGGER.info("Skipping {} as it is up-to-date.", task);
+                if (execution.isHistoryChanged()) {
+                    cache.put(task.getPath(), history);
+                }
                 return true;
             }
             if (LOGGER.isInfoEnabled()) {
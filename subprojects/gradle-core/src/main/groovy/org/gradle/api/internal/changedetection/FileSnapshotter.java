@@ -32,4 +32,14 @@ public interface FileSnapshotter {
      * @return The snapshot.
      */
     FileCollectionSnapshot snapshot(FileCollection files);
+
+    /**
+     * Calculates a fingerprint of the given collection, from the path, type, length and last modified time of each
+     * file in the collection, in iteration order. This is much cheaper to calculate than a snapshot, as it does not
+     * use the contents of the files.
+     *
+     * @param files The files to fingerprint
+     * @return The fingerprint.
+     */
+    byte[] fingerprint(FileCollection files);
 }
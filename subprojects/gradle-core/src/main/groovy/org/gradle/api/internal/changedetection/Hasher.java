@@ -16,7 +16,17 @@
 package org.gradle.api.internal.changedetection;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 
 public interface Hasher {
     byte[] hash(File file);
+
+    /**
+     * Hashes each of the given files.
+     *
+     * @param files The files to hash. Each must be a regular file.
+     * @return A map from file to hash, containing an entry for each of the given files.
+     */
+    Map<File, byte[]> hash(Collection<File> files);
 }
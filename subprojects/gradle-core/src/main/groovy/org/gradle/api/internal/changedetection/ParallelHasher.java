@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.messaging.dispatch.Stoppable;
+import org.gradle.util.ThreadUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link Hasher} which calculates the MD5 hash of files using NIO channels, and which hashes a batch of files
+ * concurrently using a pool of worker threads. The pool is started on demand, and stopped using {@link #stop()}.
+ */
+public class ParallelHasher implements Hasher, Stoppable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final int threadCount;
+    private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+    private ExecutorService executor;
+
+    public ParallelHasher(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(String.format("Cannot hash files using %d threads.", threadCount));
+        }
+        this.threadCount = threadCount;
+    }
+
+    public byte[] hash(File file) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        ByteBuffer buffer = buffers.get();
+        try {
+            FileInputStream instr = new FileInputStream(file);
+            try {
+                FileChannel channel = instr.getChannel();
+                while (true) {
+                    buffer.clear();
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    messageDigest.update(buffer);
+                }
+            } finally {
+                instr.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not hash file '%s'.", file), e);
+        }
+        return messageDigest.digest();
+    }
+
+    public Map<File, byte[]> hash(Collection<File> files) {
+        Map<File, byte[]> hashes = new HashMap<File, byte[]>();
+        if (files.size() < 2 || threadCount == 1) {
+            for (File file : files) {
+                hashes.put(file, hash(file));
+            }
+            return hashes;
+        }
+
+        ExecutorService executor = getExecutor();
+        Map<File, Future<byte[]>> results = new LinkedHashMap<File, Future<byte[]>>();
+        for (final File file : files) {
+            results.put(file, executor.submit(new Callable<byte[]>() {
+                public byte[] call() {
+                    return hash(file);
+                }
+            }));
+        }
+
+        RuntimeException failure = null;
+        for (Map.Entry<File, Future<byte[]>> entry : results.entrySet()) {
+            try {
+                hashes.put(entry.getKey(), get(entry.getValue()));
+            } catch (RuntimeException e) {
+                // Keep waiting, so that no hashing is still in progress when we return
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return hashes;
+    }
+
+    private byte[] get(Future<byte[]> future) {
+        while (true) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                // Ignore - the hashing must complete before we can return
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new UncheckedIOException(cause);
+            }
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threadCount);
+        }
+        return executor;
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            ThreadUtils.shutdown(executor);
+            executor = null;
+        }
+    }
+}
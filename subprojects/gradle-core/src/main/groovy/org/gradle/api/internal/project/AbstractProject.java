@@ -503,6 +503,16 @@ public abstract class AbstractProject implements ProjectInternal, DynamicObjectA
         return this;
     }
 
+    public AbstractProject evaluateWithParents() {
+        if (state.getExecuting()) {
+            return this;
+        }
+        if (parent != null) {
+            parent.evaluateWithParents();
+        }
+        return evaluate();
+    }
+
     public Project usePlugin(String pluginId) {
         warnUsePluginDeprecated();
         pluginContainer.apply(pluginId);
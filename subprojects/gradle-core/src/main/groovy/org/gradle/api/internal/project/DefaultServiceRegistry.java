@@ -19,8 +19,11 @@ import org.gradle.api.GradleException;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A hierarchical {@link ServiceRegistry} implementation. Subclasses can register services by:
@@ -38,12 +41,19 @@ import java.util.ArrayList;
  *  </ul>
  *
  * <p>Service instances are created on demand. If a service of a given type cannot be located, the registry uses its
- * parent registry, if any, to locate the service.</p>
+ * parent registry, if any, to locate the service. Services may be located concurrently by multiple threads, and each
+ * service instance is created once.</p>
+ *
+ * <p>The factory and decorator methods of each registry class are located once, and shared by all instances of that
+ * class. Each registry indexes the services it has located by the requested type, including those located in its
+ * parent registry, so a service type is searched for only once per registry.</p>
  */
 public class DefaultServiceRegistry implements ServiceRegistry {
+    private static final Map<Class<?>, ServiceMethods> SERVICE_METHODS = new HashMap<Class<?>, ServiceMethods>();
     private final List<Service> services = new ArrayList<Service>();
+    private final Map<Class<?>, Service> servicesByType = new ConcurrentHashMap<Class<?>, Service>();
     private final ServiceRegistry parent;
-    private boolean closed;
+    private volatile boolean closed;
 
     public DefaultServiceRegistry() {
         this(null);
@@ -51,8 +61,13 @@ public class DefaultServiceRegistry implements ServiceRegistry {
 
     public DefaultServiceRegistry(ServiceRegistry parent) {
         this.parent = parent;
-        findFactoryMethods();
-        findDecoratorMethods();
+        ServiceMethods serviceMethods = getServiceMethods(getClass());
+        for (Method method : serviceMethods.factoryMethods) {
+            add(new FactoryMethodService(method));
+        }
+        for (Method method : serviceMethods.decoratorMethods) {
+            add(new DecoratorMethodService(method));
+        }
     }
 
     @Override
@@ -60,29 +75,21 @@ public class DefaultServiceRegistry implements ServiceRegistry {
         return getClass().getSimpleName();
     }
 
-    private void findFactoryMethods() {
-        for (Method method : getClass().getDeclaredMethods()) {
-            if (method.getName().startsWith("create")
-                    && method.getParameterTypes().length == 0
-                    && method.getReturnType() != Void.class) {
-                add(new FactoryMethodService(method));
-            }
-        }
-    }
-
-    private void findDecoratorMethods() {
-        for (Method method : getClass().getDeclaredMethods()) {
-            if (method.getName().startsWith("create")
-                    && method.getParameterTypes().length == 1
-                    && method.getReturnType() != Void.class
-                    && method.getParameterTypes()[0].equals(method.getReturnType())) {
-                add(new DecoratorMethodService(method));
+    private static ServiceMethods getServiceMethods(Class<?> type) {
+        synchronized (SERVICE_METHODS) {
+            ServiceMethods serviceMethods = SERVICE_METHODS.get(type);
+            if (serviceMethods == null) {
+                serviceMethods = new ServiceMethods(type);
+                SERVICE_METHODS.put(type, serviceMethods);
             }
+            return serviceMethods;
         }
     }
 
     protected void add(Service service) {
         services.add(0, service);
+        // The new service may take precedence over a service already located for some type
+        servicesByType.clear();
     }
 
     public <T> void add(Class<T> serviceType, final T serviceInstance) {
@@ -101,6 +108,7 @@ public class DefaultServiceRegistry implements ServiceRegistry {
         } finally {
             closed = true;
             services.clear();
+            servicesByType.clear();
         }
     }
 
@@ -110,16 +118,25 @@ public class DefaultServiceRegistry implements ServiceRegistry {
                     serviceType.getSimpleName(), this));
         }
 
+        Service indexed = servicesByType.get(serviceType);
+        if (indexed != null) {
+            return indexed.getService(serviceType);
+        }
+
         for (Service service : services) {
             T t = service.getService(serviceType);
             if (t != null) {
+                servicesByType.put(serviceType, service);
                 return t;
             }
         }
 
         if (parent != null) {
             try {
-                return parent.get(serviceType);
+                T t = parent.get(serviceType);
+                // Not added to the services of this registry, so that it is closed only by the parent
+                servicesByType.put(serviceType, new FixedInstanceService<T>(serviceType, t));
+                return t;
             } catch (UnknownServiceException e) {
                 if (!e.type.equals(serviceType)) {
                     throw e;
@@ -145,6 +162,28 @@ public class DefaultServiceRegistry implements ServiceRegistry {
         }
     }
 
+    /**
+     * The factory and decorator methods declared by a registry class.
+     */
+    private static class ServiceMethods {
+        private final List<Method> factoryMethods = new ArrayList<Method>();
+        private final List<Method> decoratorMethods = new ArrayList<Method>();
+
+        private ServiceMethods(Class<?> type) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (!method.getName().startsWith("create") || method.getReturnType() == Void.class) {
+                    continue;
+                }
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                if (parameterTypes.length == 0) {
+                    factoryMethods.add(method);
+                } else if (parameterTypes.length == 1 && parameterTypes[0].equals(method.getReturnType())) {
+                    decoratorMethods.add(method);
+                }
+            }
+        }
+    }
+
     protected static abstract class Service {
         final Class<?> serviceType;
         Object service;
@@ -157,7 +196,7 @@ public class DefaultServiceRegistry implements ServiceRegistry {
             return serviceType.isAssignableFrom(this.serviceType);
         }
         
-        <T> T getService(Class<T> serviceType) {
+        synchronized <T> T getService(Class<T> serviceType) {
             if (!serviceType.isAssignableFrom(this.serviceType)) {
                 return null;
             }
@@ -170,7 +209,7 @@ public class DefaultServiceRegistry implements ServiceRegistry {
 
         protected abstract Object create();
 
-        public void close() {
+        public synchronized void close() {
             try {
                 if (service != null) {
                     try {
@@ -51,7 +51,8 @@ public class GradleInternalServiceRegistry extends DefaultServiceRegistry implem
     }
 
     protected TaskGraphExecuter createTaskGraphExecuter() {
-        return new DefaultTaskGraphExecuter(get(ListenerManager.class));
+        return new DefaultTaskGraphExecuter(get(ListenerManager.class),
+                gradle.getStartParameter().getParallelThreadCount());
     }
 
     protected PluginRegistry createPluginRegistry() {
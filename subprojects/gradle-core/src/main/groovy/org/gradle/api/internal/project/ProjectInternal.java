@@ -33,6 +33,12 @@ public interface ProjectInternal extends Project, ProjectIdentifier, ScriptAware
 
     Project evaluate();
 
+    /**
+     * Evaluates the ancestors of this project, starting at the root project, and then evaluates this project. Any
+     * project which is already being evaluated is skipped, along with its ancestors.
+     */
+    Project evaluateWithParents();
+
     TaskContainerInternal getTasks();
 
     ScriptSource getBuildScriptSource();
@@ -56,7 +56,7 @@ import org.gradle.listener.DefaultListenerManager;
 import org.gradle.listener.ListenerManager;
 import org.gradle.messaging.MessagingServer;
 import org.gradle.messaging.TcpMessagingServer;
-import org.gradle.process.DefaultWorkerProcessFactory;
+import org.gradle.process.PooledWorkerProcessFactory;
 import org.gradle.process.WorkerProcessFactory;
 import org.gradle.util.*;
 
@@ -85,7 +85,7 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
     }
 
     protected CacheFactory createCacheFactory(CacheFactory parentFactory) {
-        return new AutoCloseCacheFactory(parentFactory);
+        return new AutoCloseCacheFactory(parentFactory, startParameter.isCompactCaches());
     }
 
     protected TaskExecuter createTaskExecuter() {
@@ -187,7 +187,10 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
                 new DefaultIvyFactory(),
                 new SelfResolvingDependencyResolver(
                         new DefaultIvyDependencyResolver(
-                                new DefaultIvyReportConverter(dependencyDescriptorFactoryDelegate))),
+                                new DefaultIvyReportConverter(dependencyDescriptorFactoryDelegate),
+                                new IvyConversionResultCache(get(CacheRepository.class),
+                                        IvyConversionResultCache.DEFAULT_DYNAMIC_REVISION_TTL),
+                                new ParallelArtifactDownloader(ParallelArtifactDownloader.DEFAULT_MAX_THREADS))),
                 new DefaultIvyDependencyPublisher(new DefaultPublishOptionsFactory()),
                 get(ClassGenerator.class));
     }
@@ -231,16 +234,23 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
                         get(CacheRepository.class),
                         new DefaultFileSnapshotter(
                                 new CachingHasher(
-                                    new DefaultHasher(),
+                                    get(Hasher.class),
                                     get(CacheRepository.class)))));
     }
 
+    protected Hasher createHasher() {
+        return new ParallelHasher(Runtime.getRuntime().availableProcessors());
+    }
+
     protected ScriptCompilerFactory createScriptCompileFactory() {
         ScriptExecutionListener scriptExecutionListener = get(ListenerManager.class).getBroadcaster(ScriptExecutionListener.class);
         return new DefaultScriptCompilerFactory(
                 new DefaultScriptCompilationHandler(), new DefaultScriptRunnerFactory(
                         scriptExecutionListener),
-                get(CacheRepository.class));
+                get(CacheRepository.class),
+                new CachingHasher(
+                        new DefaultHasher(),
+                        get(CacheRepository.class)));
     }
 
     protected ScriptPluginFactory createScriptObjectConfigurerFactory() {
@@ -290,7 +300,7 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
 
     protected WorkerProcessFactory createWorkerProcessFactory() {
         ClassPathRegistry classPathRegistry = get(ClassPathRegistry.class);
-        return new DefaultWorkerProcessFactory(startParameter.getLogLevel(), get(MessagingServer.class), classPathRegistry, null, new LongIdGenerator());
+        return new PooledWorkerProcessFactory(startParameter.getLogLevel(), get(MessagingServer.class), classPathRegistry, null, new LongIdGenerator());
     }
     
     protected MessagingServer createMessagingServer() {
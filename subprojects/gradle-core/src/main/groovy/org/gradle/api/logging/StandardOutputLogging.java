@@ -17,6 +17,7 @@ package org.gradle.api.logging;
 
 import org.gradle.logging.StandardOutputLoggingAdapter;
 
+import java.io.OutputStream;
 import java.io.PrintStream;
 
 /**
@@ -67,6 +68,47 @@ public class StandardOutputLogging {
     public static final PrintStream DEFAULT_OUT = System.out;
     public static final PrintStream DEFAULT_ERR = System.err;
 
+    private static final Object LOCK = new Object();
+    private static int perThreadCount;
+    private static volatile PerThreadPrintStream perThreadOut;
+    private static volatile PerThreadPrintStream perThreadErr;
+
+    /**
+     * Starts redirecting System.out and System.err separately for each thread, so that threads which capture their
+     * output concurrently do not interfere with each other. Each thread starts with the values System.out and
+     * System.err had when this method was called. Calls to this method may be nested, and each call must be matched by
+     * a call to {@link #stopPerThreadRedirection()}.
+     */
+    public static void startPerThreadRedirection() {
+        synchronized (LOCK) {
+            if (perThreadCount++ > 0) {
+                return;
+            }
+            perThreadOut = new PerThreadPrintStream(System.out);
+            perThreadErr = new PerThreadPrintStream(System.err);
+            System.setOut(perThreadOut);
+            System.setErr(perThreadErr);
+        }
+    }
+
+    /**
+     * Stops redirecting System.out and System.err separately for each thread. System.out and System.err are set to the
+     * values they have for the calling thread.
+     */
+    public static void stopPerThreadRedirection() {
+        synchronized (LOCK) {
+            if (perThreadCount == 0 || --perThreadCount > 0) {
+                return;
+            }
+            PrintStream outStream = perThreadOut.getTarget();
+            PrintStream errStream = perThreadErr.getTarget();
+            perThreadOut = null;
+            perThreadErr = null;
+            System.setOut(outStream);
+            System.setErr(errStream);
+        }
+    }
+
     /**
      * Redirects the standard out to the Gradle logging.  The System.out is redirected to specified level.
      * System.err is always redirected to the ERROR level.
@@ -86,7 +128,7 @@ public class StandardOutputLogging {
      */
     public static void onOut(LogLevel outLogLevel) {
         getOutAdapter().setLevel(outLogLevel);
-        System.setOut(OUT_LOGGING_STREAM.get());
+        setOut(OUT_LOGGING_STREAM.get());
     }
 
     /**
@@ -96,7 +138,7 @@ public class StandardOutputLogging {
      */
     public static void onErr(LogLevel errLogLevel) {
         getErrAdapter().setLevel(errLogLevel);
-        System.setErr(ERR_LOGGING_STREAM.get());
+        setErr(ERR_LOGGING_STREAM.get());
     }
 
     public static void flush() {
@@ -115,20 +157,25 @@ public class StandardOutputLogging {
      * Sets System.out to the values it had before Gradle has been started.
      */
     public static void offOut() {
-        System.setOut(DEFAULT_OUT);
+        setOut(DEFAULT_OUT);
     }
 
     /**
      * Sets System.err to the values it had before Gradle has been started.
      */
     public static void offErr() {
-        System.setErr(DEFAULT_ERR);
+        setErr(DEFAULT_ERR);
     }
 
     /**
      * Returns the current values for System.out and Sytem.err.
      */
     public static StandardOutputState getStateSnapshot() {
+        PerThreadPrintStream outStream = perThreadOut;
+        PerThreadPrintStream errStream = perThreadErr;
+        if (outStream != null && errStream != null) {
+            return new StandardOutputState(outStream.getTarget(), errStream.getTarget());
+        }
         return new StandardOutputState(System.out, System.err);
     }
 
@@ -140,7 +187,95 @@ public class StandardOutputLogging {
     }
 
     private static void redirect(PrintStream outStream, PrintStream errStream) {
-        System.setOut(outStream);
-        System.setErr(errStream);
+        setOut(outStream);
+        setErr(errStream);
+    }
+
+    private static void setOut(PrintStream outStream) {
+        PerThreadPrintStream stream = perThreadOut;
+        if (stream != null) {
+            stream.setTarget(outStream);
+        } else {
+            System.setOut(outStream);
+        }
+    }
+
+    private static void setErr(PrintStream errStream) {
+        PerThreadPrintStream stream = perThreadErr;
+        if (stream != null) {
+            stream.setTarget(errStream);
+        } else {
+            System.setErr(errStream);
+        }
+    }
+
+    /**
+     * A PrintStream which forwards to a separate target stream for each thread.
+     */
+    private static class PerThreadPrintStream extends PrintStream {
+        private final ThreadLocal<PrintStream> target;
+
+        private PerThreadPrintStream(final PrintStream initialTarget) {
+            this(new ThreadLocal<PrintStream>() {
+                @Override
+                protected PrintStream initialValue() {
+                    return initialTarget;
+                }
+            });
+        }
+
+        private PerThreadPrintStream(final ThreadLocal<PrintStream> target) {
+            // Any write which is not overridden below still goes to the current thread's target
+            super(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    target.get().write(b);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) {
+                    target.get().write(buffer, offset, length);
+                }
+
+                @Override
+                public void flush() {
+                    target.get().flush();
+                }
+            });
+            this.target = target;
+        }
+
+        PrintStream getTarget() {
+            return target.get();
+        }
+
+        void setTarget(PrintStream stream) {
+            target.set(stream);
+        }
+
+        @Override
+        public void write(int b) {
+            target.get().write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            target.get().write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+            target.get().flush();
+        }
+
+        @Override
+        public void close() {
+            target.get().close();
+        }
+
+        @Override
+        public boolean checkError() {
+            return target.get().checkError();
+        }
     }
 }
@@ -16,6 +16,8 @@
 package org.gradle.cache;
 
 import org.gradle.CacheUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.HashSet;
@@ -23,11 +25,21 @@ import java.util.Map;
 import java.util.Set;
 
 public class AutoCloseCacheFactory implements CacheFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutoCloseCacheFactory.class);
     private final CacheFactory cacheFactory;
     private final Set<PersistentCache> openCaches = new HashSet<PersistentCache>();
+    private final boolean compactOnClose;
 
     public AutoCloseCacheFactory(CacheFactory cacheFactory) {
+        this(cacheFactory, false);
+    }
+
+    /**
+     * Creates a factory which optionally compacts each cache before closing it.
+     */
+    public AutoCloseCacheFactory(CacheFactory cacheFactory, boolean compactOnClose) {
         this.cacheFactory = cacheFactory;
+        this.compactOnClose = compactOnClose;
     }
 
     public PersistentCache open(File cacheDir, CacheUsage usage, Map<String, ?> properties) {
@@ -43,6 +55,14 @@ public class AutoCloseCacheFactory implements CacheFactory {
     public void close() {
         try {
             for (PersistentCache cache : openCaches) {
+                if (compactOnClose) {
+                    // A failure to compact a cache must not prevent it, or any other cache, from being closed
+                    try {
+                        cache.compact();
+                    } catch (Exception e) {
+                        LOGGER.warn(String.format("Could not compact %s.", cache), e);
+                    }
+                }
                 cacheFactory.close(cache);
             }
         } finally {
@@ -26,7 +26,7 @@ public class DefaultCacheFactory implements CacheFactory {
     private final Map<File, DefaultPersistentDirectoryCache> openCaches
             = new HashMap<File, DefaultPersistentDirectoryCache>();
     
-    public PersistentCache open(File cacheDir, CacheUsage usage, Map<String, ?> properties) {
+    public synchronized PersistentCache open(File cacheDir, CacheUsage usage, Map<String, ?> properties) {
         File canonicalDir = GFileUtils.canonicalise(cacheDir);
         DefaultPersistentDirectoryCache cache = openCaches.get(canonicalDir);
         if (cache == null) {
@@ -42,7 +42,7 @@ public class DefaultCacheFactory implements CacheFactory {
         return cache;
     }
 
-    public void close(PersistentCache cache) {
+    public synchronized void close(PersistentCache cache) {
         openCaches.values().remove(cache);
         ((DefaultPersistentDirectoryCache) cache).close();
     }
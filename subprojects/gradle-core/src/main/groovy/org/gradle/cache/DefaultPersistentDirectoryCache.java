@@ -75,8 +75,12 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
     }
 
     public <K, V> BTreePersistentIndexedCache<K, V> openIndexedCache(Serializer<V> serializer) {
+        return openIndexedCache(serializer, false);
+    }
+
+    public synchronized <K, V> BTreePersistentIndexedCache<K, V> openIndexedCache(Serializer<V> serializer, boolean memoryMapped) {
         if (indexedCache == null) {
-            indexedCache = new BTreePersistentIndexedCache<K,V>(this, serializer);
+            indexedCache = new BTreePersistentIndexedCache<K,V>(this, serializer, memoryMapped);
         }
         return indexedCache;
     }
@@ -85,7 +89,7 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
         return openIndexedCache(new DefaultSerializer<V>());
     }
 
-    public <T> SimpleStateCache<T> openStateCache() {
+    public synchronized <T> SimpleStateCache<T> openStateCache() {
         if (stateCache == null) {
             stateCache = new SimpleStateCache<T>(this, new DefaultSerializer<T>());
         }
@@ -109,7 +113,13 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
         valid = true;
     }
 
-    public void close() {
+    public synchronized void compact() {
+        if (indexedCache != null) {
+            indexedCache.compact();
+        }
+    }
+
+    public synchronized void close() {
         if (indexedCache != null) {
             indexedCache.close();
         }
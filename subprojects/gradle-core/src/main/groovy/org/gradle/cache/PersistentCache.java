@@ -46,6 +46,17 @@ public interface PersistentCache {
      */
     <K, V> PersistentIndexedCache<K, V> openIndexedCache(Serializer<V> serializer);
 
+    /**
+     * Opens an indexed cache backed by this cache. A cache which is accessed frequently can use a memory-mapped file,
+     * which avoids a system call for each read. Only the first call to open the indexed cache for this cache decides
+     * how the file is accessed.
+     *
+     * @param serializer The serializer to use to serialise the cache entries.
+     * @param memoryMapped true to use a memory-mapped file.
+     * @return The cache.
+     */
+    <K, V> PersistentIndexedCache<K, V> openIndexedCache(Serializer<V> serializer, boolean memoryMapped);
+
     /**
      * Opens an indexed cache backed by this cache.
      *
@@ -59,4 +70,9 @@ public interface PersistentCache {
      * @return The cache.
      */
     <T> PersistentStateCache<T> openStateCache();
+
+    /**
+     * Compacts the files used by this cache, discarding any unused space.
+     */
+    void compact();
 }
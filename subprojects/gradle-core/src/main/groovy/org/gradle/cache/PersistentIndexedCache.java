@@ -15,12 +15,24 @@
  */
 package org.gradle.cache;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * A persistent store of objects of type V indexed by a key of type K.
  */
 public interface PersistentIndexedCache<K, V> {
     V get(K key);
 
+    /**
+     * Returns the values of the given keys. This has the same result as calling {@link #get(Object)} for each key, but
+     * allows the implementation to look up the keys as a batch.
+     *
+     * @param keys The keys to look up.
+     * @return A map from key to value, containing an entry for each key which has a value.
+     */
+    Map<K, V> getAll(Collection<? extends K> keys);
+
     void put(K key, V value);
 
     void remove(K key);
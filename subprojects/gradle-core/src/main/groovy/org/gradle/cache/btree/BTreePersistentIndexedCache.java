@@ -16,6 +16,7 @@
 package org.gradle.cache.btree;
 
 import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.FixedSizeSerializer;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
@@ -23,43 +24,114 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 // todo - stream serialised value to file
-// todo - handle hash collisions
 // todo - don't store null links to child blocks in leaf index blocks
-// todo - align block boundaries
-// todo - concurrency control
 // todo - remove the check-sum from each block
 // todo - merge small values into a single data block
 // todo - discard when file corrupt
-// todo - include data directly in index entry when serializer can guarantee small fixed sized data
-// todo - free list leaks disk space
-// todo - merge adjacent free blocks
-// todo - use more efficient lookup for free block with nearest size
+
+/**
+ * A persistent indexed cache backed by a b-tree in a single file.
+ *
+ * <p>This cache can be used by multiple threads, and by multiple processes. Lookups do not modify the shared index
+ * blocks, so any number of threads may look up entries at the same time, while updates are applied one at a time.
+ * Note that blocks are read from the file one at a time, so lookups which miss the block cache are serialized.
+ * Updates are held in memory and are written to the file in batches, either when {@link #flush()} or {@link #close()}
+ * is called or when enough updates have accumulated. A file lock is used to coordinate access to the file with other
+ * processes. Entries are read while holding a shared lock, and updates are written while holding an exclusive lock.
+ * Use {@link #getAll(Collection)} to look up many entries while acquiring the shared lock only once.</p>
+ *
+ * <p>Entries are indexed by the MD5 digest of the string representation of their key. Each value is stored in a data
+ * block along with its key, and values whose keys have the same digest are chained together. When the serializer is
+ * a {@link FixedSizeSerializer}, values are instead stored directly in the index, and the key is not stored.</p>
+ *
+ * <p>The cache file can be compacted using {@link #compact()}, which rewrites the live blocks contiguously into a new
+ * file. The cache is compacted automatically when it is closed, if at least half of a large cache file is free
+ * space.</p>
+ */
 public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
+    private static final int MAX_PENDING_UPDATES = 500;
+    private static final long MIN_COMPACT_FILE_SIZE = 1024 * 1024;
     private final File cacheFile;
     private final PersistentCache backingCache;
     private final Serializer<V> serializer;
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
+    private final int inlineValueSize;
+    private final int maxFreeListEntries;
+    private final FreeListBlockStore freeListStore;
     private final StateCheckBlockStore store;
+    private final CacheLockFile lockFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<String, PendingUpdate>();
+    private final Runnable reopenAction = new Runnable() {
+        public void run() {
+            // Another process has changed the file, discard everything cached in memory
+            store.close();
+            try {
+                try {
+                    doOpen();
+                } catch (CorruptedCacheException e) {
+                    rebuild();
+                }
+            } catch (Exception e) {
+                throw new UncheckedIOException(String.format("Could not reopen %s.", BTreePersistentIndexedCache.this), e);
+            }
+        }
+    };
+    private final BlockStore.Factory blockFactory = new BlockStore.Factory() {
+        public Object create(Class<? extends BlockPayload> type) {
+            if (type == HeaderBlock.class) {
+                return new HeaderBlock();
+            }
+            if (type == IndexBlock.class) {
+                return new IndexBlock();
+            }
+            if (type == DataBlock.class) {
+                return new DataBlock();
+            }
+            throw new UnsupportedOperationException();
+        }
+    };
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer) {
-        this(backingCache, serializer, (short) 512, 512);
+        this(backingCache, serializer, false);
+    }
+
+    /**
+     * Creates a cache, optionally using a {@link MemoryMappedBlockStore} to access the cache file.
+     */
+    public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer, boolean memoryMapped) {
+        this(backingCache, serializer, (short) 512, 512, memoryMapped);
     }
 
     public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(backingCache, serializer, maxChildIndexEntries, maxFreeListEntries, false);
+    }
+
+    public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, boolean memoryMapped) {
         this.backingCache = backingCache;
         this.serializer = serializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
+        this.maxFreeListEntries = maxFreeListEntries;
+        this.inlineValueSize = serializer instanceof FixedSizeSerializer ? ((FixedSizeSerializer<V>) serializer).getSize() : -1;
         cacheFile = new File(backingCache.getBaseDir(), "cache.bin");
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), IndexBlock.class, FreeListBlockStore.FreeListBlock.class);
-        store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
+        lockFile = new CacheLockFile(new File(backingCache.getBaseDir(), "cache.bin.lock"));
+        FileBackedBlockStore fileStore = memoryMapped ? new MemoryMappedBlockStore(cacheFile)
+                : new FileBackedBlockStore(cacheFile);
+        BlockStore cachingStore = new CachingBlockStore(fileStore, IndexBlock.class, FreeListBlockStore.FreeListBlock.class);
+        freeListStore = new FreeListBlockStore(cachingStore, maxFreeListEntries);
+        store = new StateCheckBlockStore(freeListStore);
         try {
             open();
         } catch (Exception e) {
@@ -73,28 +145,28 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     private void open() throws Exception {
+        lockFile.open();
+        lockFile.lockExclusive(new Runnable() {
+            public void run() {
+            }
+        });
         try {
-            doOpen();
-        } catch (CorruptedCacheException e) {
-            rebuild();
+            try {
+                doOpen();
+            } catch (CorruptedCacheException e) {
+                rebuild();
+            }
+        } finally {
+            lockFile.unlockExclusive();
         }
     }
 
     private void doOpen() throws Exception {
-        BlockStore.Factory factory = new BlockStore.Factory() {
-            public Object create(Class<? extends BlockPayload> type) {
-                if (type == HeaderBlock.class) {
-                    return new HeaderBlock();
-                }
-                if (type == IndexBlock.class) {
-                    return new IndexBlock();
-                }
-                if (type == DataBlock.class) {
-                    return new DataBlock();
-                }
-                throw new UnsupportedOperationException();
-            }
-        };
+        File backupFile = getBackupFile();
+        if (!cacheFile.exists() && backupFile.exists() && !backupFile.renameTo(cacheFile)) {
+            throw new IOException(String.format("Could not restore %s from '%s'.", this, backupFile));
+        }
+
         Runnable initAction = new Runnable() {
             public void run() {
                 header = new HeaderBlock();
@@ -105,64 +177,354 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             }
         };
 
-        store.open(initAction, factory);
+        store.open(initAction, blockFactory);
         header = store.readFirst(HeaderBlock.class);
     }
 
     public V get(K key) {
+        String keyString = key.toString();
+        lock.readLock().lock();
         try {
+            PendingUpdate update = pendingUpdates.get(keyString);
+            if (update != null) {
+                return update.getValue();
+            }
+            lockFile.lockShared(reopenAction);
             try {
-                DataBlock block = header.getRoot().get(key);
-                if (block != null) {
-                    return block.getValue();
-                }
-                return null;
-            } catch (CorruptedCacheException e) {
-                rebuild();
-                return null;
+                return lookup(keyString);
+            } finally {
+                lockFile.unlockShared();
             }
+        } catch (CorruptedCacheException e) {
+            // Fall through to discard the cache
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            discardCorruptCache();
+            return null;
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
         }
     }
 
-    public void put(K key, V value) {
+    /**
+     * Returns the values of the given keys, holding the shared lock on the cache file while all of the keys are looked
+     * up, rather than acquiring it for each key.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<K, V>();
+        lock.readLock().lock();
         try {
-            String keyString = key.toString();
-            long hashCode = keyString.hashCode();
-            Lookup lookup = header.getRoot().find(hashCode);
-            boolean needNewBlock = true;
-            if (lookup.entry != null) {
-                DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-                needNewBlock = !block.useNewValue(value);
-                if (needNewBlock) {
-                    store.remove(block);
+            boolean locked = false;
+            try {
+                for (K key : keys) {
+                    String keyString = key.toString();
+                    PendingUpdate update = pendingUpdates.get(keyString);
+                    V value;
+                    if (update != null) {
+                        value = update.getValue();
+                    } else {
+                        if (!locked) {
+                            lockFile.lockShared(reopenAction);
+                            locked = true;
+                        }
+                        value = lookup(keyString);
+                    }
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                }
+                return values;
+            } finally {
+                if (locked) {
+                    lockFile.unlockShared();
                 }
             }
-            if (needNewBlock) {
-                DataBlock block = new DataBlock(keyString, value);
-                store.write(block);
-                lookup.indexBlock.put(hashCode, block.getPos());
+        } catch (CorruptedCacheException e) {
+            // Fall through to discard the cache
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entries from %s.", this), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            discardCorruptCache();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entries from %s.", this), e);
+        }
+        // Only the pending updates survive
+        values.clear();
+        lock.readLock().lock();
+        try {
+            for (K key : keys) {
+                PendingUpdate update = pendingUpdates.get(key.toString());
+                if (update != null && !update.removed) {
+                    values.put(key, update.getValue());
+                }
             }
-            store.flush();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entries from %s.", this), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return values;
+    }
+
+    private void discardCorruptCache() throws Exception {
+        lock.writeLock().lock();
+        try {
+            lockFile.lockExclusive(reopenAction);
+            try {
+                rebuild();
+            } finally {
+                lockFile.unlockExclusive();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up the given key in the file. Unlike the update methods, this does not attach the index blocks it visits to
+     * their parents, as the blocks are shared with other threads looking up entries at the same time.
+     */
+    private V lookup(String keyString) throws Exception {
+        IndexEntry key = entryFor(keyString);
+        IndexBlock block = store.read(header.index.rootPos, IndexBlock.class);
+        IndexEntry entry;
+        while (true) {
+            int index = Collections.binarySearch(block.entries, key);
+            if (index >= 0) {
+                entry = block.entries.get(index);
+                break;
+            }
+            index = -index - 1;
+            BlockPointer childBlockPos = index == block.entries.size() ? block.tailPos
+                    : block.entries.get(index).childIndexBlock;
+            if (childBlockPos.isNull()) {
+                return null;
+            }
+            block = store.read(childBlockPos, IndexBlock.class);
+        }
+
+        if (isInline()) {
+            return serializer.read(new ByteArrayInputStream(entry.value));
+        }
+        BlockPointer pos = entry.dataBlock;
+        while (!pos.isNull()) {
+            DataBlock dataBlock = store.read(pos, DataBlock.class);
+            if (dataBlock.key.equals(keyString)) {
+                return dataBlock.getValue();
+            }
+            pos = dataBlock.nextBlock;
+        }
+        return null;
+    }
+
+    public void put(K key, V value) {
+        lock.writeLock().lock();
+        try {
+            // Serialize the value now, so that later changes to the value made by the caller are not written
+            byte[] serialisedValue = isInline() ? serializeInline(value) : serialize(value);
+            pendingUpdates.put(key.toString(), new PendingUpdate(serialisedValue, false));
+            maybeFlush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void remove(K key) {
+        lock.writeLock().lock();
         try {
-            Lookup lookup = header.getRoot().find(key.toString());
-            if (lookup.entry == null) {
+            pendingUpdates.put(key.toString(), new PendingUpdate(null, true));
+            maybeFlush();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes any pending updates to the file.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            doFlush();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not flush %s.", this), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void maybeFlush() throws Exception {
+        if (pendingUpdates.size() >= MAX_PENDING_UPDATES) {
+            doFlush();
+        }
+    }
+
+    private void doFlush() throws Exception {
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        lockFile.lockExclusive(reopenAction);
+        try {
+            try {
+                applyPendingUpdates();
+            } catch (CorruptedCacheException e) {
+                rebuild();
+                applyPendingUpdates();
+            }
+            store.flush();
+            // Keep the updates if they could not be written, so that they are written by the next flush
+            pendingUpdates.clear();
+        } finally {
+            lockFile.unlockExclusive();
+        }
+    }
+
+    private void applyPendingUpdates() throws Exception {
+        for (Map.Entry<String, PendingUpdate> entry : pendingUpdates.entrySet()) {
+            if (entry.getValue().removed) {
+                doRemove(entry.getKey());
+            } else {
+                doPut(entry.getKey(), entry.getValue().serialisedValue);
+            }
+        }
+    }
+
+    private void doPut(String keyString, byte[] serialisedValue) throws Exception {
+        IndexEntry newEntry = entryFor(keyString);
+        Lookup lookup = header.getRoot().find(newEntry);
+        if (isInline()) {
+            if (lookup.entry != null) {
+                lookup.entry.value = serialisedValue;
+                store.write(lookup.indexBlock);
+            } else {
+                newEntry.value = serialisedValue;
+                lookup.indexBlock.put(newEntry);
+            }
+            return;
+        }
+
+        if (lookup.entry == null) {
+            DataBlock block = new DataBlock(keyString, serialisedValue, new BlockPointer());
+            store.write(block);
+            newEntry.dataBlock = block.getPos();
+            lookup.indexBlock.put(newEntry);
+            return;
+        }
+
+        DataBlock previous = null;
+        BlockPointer pos = lookup.entry.dataBlock;
+        while (!pos.isNull()) {
+            DataBlock block = store.read(pos, DataBlock.class);
+            if (block.key.equals(keyString)) {
+                if (!block.useNewValue(serialisedValue)) {
+                    store.remove(block);
+                    DataBlock newBlock = new DataBlock(keyString, serialisedValue, block.nextBlock);
+                    store.write(newBlock);
+                    link(lookup, previous, newBlock.getPos());
+                }
                 return;
             }
+            previous = block;
+            pos = block.nextBlock;
+        }
+
+        // A different key with the same digest, add to the start of the chain
+        DataBlock block = new DataBlock(keyString, serialisedValue, lookup.entry.dataBlock);
+        store.write(block);
+        link(lookup, null, block.getPos());
+    }
+
+    private void doRemove(String keyString) throws Exception {
+        Lookup lookup = header.getRoot().find(entryFor(keyString));
+        if (lookup.entry == null) {
+            return;
+        }
+        if (isInline()) {
             lookup.indexBlock.remove(lookup.entry);
-            DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-            store.remove(block);
-            store.flush();
-        } catch (Exception e) {
-            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+            return;
+        }
+
+        DataBlock previous = null;
+        BlockPointer pos = lookup.entry.dataBlock;
+        while (!pos.isNull()) {
+            DataBlock block = store.read(pos, DataBlock.class);
+            if (block.key.equals(keyString)) {
+                if (previous == null && block.nextBlock.isNull()) {
+                    lookup.indexBlock.remove(lookup.entry);
+                } else {
+                    link(lookup, previous, block.nextBlock);
+                }
+                store.remove(block);
+                return;
+            }
+            previous = block;
+            pos = block.nextBlock;
+        }
+    }
+
+    private void link(Lookup lookup, DataBlock previous, BlockPointer pos) {
+        if (previous == null) {
+            lookup.entry.dataBlock = pos;
+            store.write(lookup.indexBlock);
+        } else {
+            previous.nextBlock = pos;
+            store.write(previous);
+        }
+    }
+
+    /**
+     * Creates an index entry for the given key, with no value.
+     */
+    private IndexEntry entryFor(String keyString) throws Exception {
+        byte[] digest = digest(keyString);
+        IndexEntry entry = new IndexEntry();
+        for (int i = 0; i < 8; i++) {
+            entry.digestHigh = (entry.digestHigh << 8) | (digest[i] & 0xFF);
+            entry.digestLow = (entry.digestLow << 8) | (digest[i + 8] & 0xFF);
+        }
+        return entry;
+    }
+
+    /**
+     * Calculates the 16 byte digest used to index the given key.
+     */
+    byte[] digest(String keyString) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(keyString.getBytes("UTF-8"));
+    }
+
+    private boolean isInline() {
+        return inlineValueSize >= 0;
+    }
+
+    private byte[] serialize(V value) throws Exception {
+        ByteArrayOutputStream outStr = new ByteArrayOutputStream();
+        serializer.write(outStr, value);
+        return outStr.toByteArray();
+    }
+
+    private byte[] serializeInline(V value) throws Exception {
+        ByteArrayOutputStream outStr = new ByteArrayOutputStream(inlineValueSize);
+        serializer.write(outStr, value);
+        byte[] serialisedValue = outStr.toByteArray();
+        if (serialisedValue.length != inlineValueSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Serializer %s wrote %d bytes for value '%s', expected %d bytes.", serializer,
+                    serialisedValue.length, value, inlineValueSize));
         }
+        return serialisedValue;
     }
 
     private IndexBlock load(BlockPointer pos, IndexRoot root, IndexBlock parent, int index) {
@@ -175,18 +537,29 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public void reset() {
         close();
+        lock.writeLock().lock();
         try {
             open();
         } catch (Exception e) {
             throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void close() {
+        lock.writeLock().lock();
         try {
+            if (store.isOpen()) {
+                doFlush();
+                maybeCompact();
+            }
             store.close();
         } catch (Exception e) {
             throw new UncheckedIOException(e);
+        } finally {
+            lockFile.close();
+            lock.writeLock().unlock();
         }
     }
 
@@ -194,19 +567,108 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         return store.isOpen();
     }
 
+    /**
+     * Rewrites the cache file so that it contains only the live blocks, with no free space between them.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            doFlush();
+            lockFile.lockExclusive(reopenAction);
+            try {
+                doCompact();
+            } finally {
+                lockFile.unlockExclusive();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not compact %s.", this), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void maybeCompact() {
+        long length = cacheFile.length();
+        if (length < MIN_COMPACT_FILE_SIZE || freeListStore.getFreeSpace() * 2 < length) {
+            return;
+        }
+        try {
+            lockFile.lockExclusive(reopenAction);
+            try {
+                doCompact();
+            } finally {
+                lockFile.unlockExclusive();
+            }
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not compact %s.", this), e);
+        }
+    }
+
+    private void doCompact() throws Exception {
+        long originalLength = cacheFile.length();
+        File compactFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compact");
+        compactFile.delete();
+        new File(compactFile.getParentFile(), compactFile.getName() + ".journal").delete();
+
+        try {
+            new Compactor(compactFile).run();
+        } catch (Exception e) {
+            compactFile.delete();
+            throw e;
+        }
+
+        store.close();
+        try {
+            replaceCacheFile(compactFile);
+        } finally {
+            doOpen();
+        }
+        LOGGER.info(String.format("Compacted %s from %d to %d bytes.", this, originalLength, cacheFile.length()));
+    }
+
+    /**
+     * Replaces the cache file with the given file. The cache file is kept as a backup until the new file is in place,
+     * and is restored if the new file cannot be moved into place. A backup left behind by a crash is restored when the
+     * cache is opened.
+     */
+    private void replaceCacheFile(File newFile) throws IOException {
+        File backupFile = getBackupFile();
+        backupFile.delete();
+        if (!cacheFile.renameTo(backupFile)) {
+            newFile.delete();
+            throw new IOException(String.format("Could not replace %s with compacted file '%s'.", this, newFile));
+        }
+        if (!newFile.renameTo(cacheFile)) {
+            newFile.delete();
+            if (!backupFile.renameTo(cacheFile)) {
+                throw new IOException(String.format("Could not restore %s from '%s'.", this, backupFile));
+            }
+            throw new IOException(String.format("Could not replace %s with compacted file '%s'.", this, newFile));
+        }
+        backupFile.delete();
+    }
+
+    private File getBackupFile() {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".backup");
+    }
+
     private void rebuild() throws Exception {
         LOGGER.warn(String.format("%s is corrupt. Discarding.", this));
         store.clear();
-        close();
+        store.close();
         doOpen();
     }
 
     public void verify() {
+        lock.writeLock().lock();
         try {
+            doFlush();
             doVerify();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Some problems were found when checking the integrity of %s.",
                     this), e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -215,7 +677,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
         HeaderBlock header = store.readFirst(HeaderBlock.class);
         blocks.add(header);
-        verifyTree(header.getRoot(), "", blocks, Long.MAX_VALUE, true);
+        verifyTree(header.getRoot(), "", blocks, null, true);
 
         Collections.sort(blocks, new Comparator<BlockPayload>() {
             public int compare(BlockPayload block, BlockPayload block1) {
@@ -232,7 +694,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
-    private void verifyTree(IndexBlock current, String prefix, Collection<BlockPayload> blocks, long maxValue,
+    private void verifyTree(IndexBlock current, String prefix, Collection<BlockPayload> blocks, IndexEntry maxValue,
                             boolean loadData) throws Exception {
         blocks.add(current);
 
@@ -248,22 +710,29 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             throw new IOException(String.format("Mismatched leaf/tail-node in %s", current));
         }
 
-        long min = Long.MIN_VALUE;
+        IndexEntry min = null;
         for (IndexEntry entry : current.entries) {
             if (isLeaf ^ entry.childIndexBlock.isNull()) {
                 throw new IOException(String.format("Mismatched leaf/non-leaf entry in %s", current));
             }
-            if (entry.hashCode >= maxValue || entry.hashCode <= min) {
+            if ((maxValue != null && entry.compareTo(maxValue) >= 0) || (min != null && entry.compareTo(min) <= 0)) {
                 throw new IOException(String.format("Out-of-order key in %s", current));
             }
-            min = entry.hashCode;
+            min = entry;
             if (!entry.childIndexBlock.isNull()) {
                 IndexBlock child = store.read(entry.childIndexBlock, IndexBlock.class);
-                verifyTree(child, "   " + prefix, blocks, entry.hashCode, loadData);
+                verifyTree(child, "   " + prefix, blocks, entry, loadData);
             }
-            if (loadData) {
-                DataBlock block = store.read(entry.dataBlock, DataBlock.class);
-                blocks.add(block);
+            if (loadData && !isInline()) {
+                BlockPointer pos = entry.dataBlock;
+                while (!pos.isNull()) {
+                    DataBlock block = store.read(pos, DataBlock.class);
+                    if (entryFor(block.key).compareTo(entry) != 0) {
+                        throw new IOException(String.format("Mismatched key in %s", block));
+                    }
+                    blocks.add(block);
+                    pos = block.nextBlock;
+                }
             }
         }
         if (!current.tailPos.isNull()) {
@@ -306,12 +775,12 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
         @Override
         protected int getType() {
-            return 0x55;
+            return 0x56;
         }
 
         @Override
         protected int getSize() {
-            return Block.LONG_SIZE + Block.SHORT_SIZE;
+            return Block.LONG_SIZE + Block.SHORT_SIZE + Block.INT_SIZE;
         }
 
         @Override
@@ -322,12 +791,17 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             if (actualChildIndexEntries != maxChildIndexEntries) {
                 throw blockCorruptedException();
             }
+            int actualInlineValueSize = instr.readInt();
+            if (actualInlineValueSize != inlineValueSize) {
+                throw blockCorruptedException();
+            }
         }
 
         @Override
         protected void write(DataOutputStream outstr) throws Exception {
             outstr.writeLong(index.rootPos.getPos());
             outstr.writeShort(maxChildIndexEntries);
+            outstr.writeInt(inlineValueSize);
         }
 
         public IndexBlock getRoot() throws Exception {
@@ -345,12 +819,13 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
         @Override
         protected int getType() {
-            return 0x77;
+            return 0x78;
         }
 
         @Override
         protected int getSize() {
-            return Block.INT_SIZE + Block.LONG_SIZE + (3 * Block.LONG_SIZE) * maxChildIndexEntries;
+            int valueSize = isInline() ? inlineValueSize : Block.LONG_SIZE;
+            return Block.INT_SIZE + Block.LONG_SIZE + (3 * Block.LONG_SIZE + valueSize) * maxChildIndexEntries;
         }
 
         public void read(DataInputStream instr) throws IOException {
@@ -358,8 +833,14 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             entries.clear();
             for (int i = 0; i < count; i++) {
                 IndexEntry entry = new IndexEntry();
-                entry.hashCode = instr.readLong();
-                entry.dataBlock = new BlockPointer(instr.readLong());
+                entry.digestHigh = instr.readLong();
+                entry.digestLow = instr.readLong();
+                if (isInline()) {
+                    entry.value = new byte[inlineValueSize];
+                    instr.readFully(entry.value);
+                } else {
+                    entry.dataBlock = new BlockPointer(instr.readLong());
+                }
                 entry.childIndexBlock = new BlockPointer(instr.readLong());
                 entries.add(entry);
             }
@@ -369,28 +850,23 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         public void write(DataOutputStream outstr) throws IOException {
             outstr.writeInt(entries.size());
             for (IndexEntry entry : entries) {
-                outstr.writeLong(entry.hashCode);
-                outstr.writeLong(entry.dataBlock.getPos());
+                outstr.writeLong(entry.digestHigh);
+                outstr.writeLong(entry.digestLow);
+                if (isInline()) {
+                    outstr.write(entry.value);
+                } else {
+                    outstr.writeLong(entry.dataBlock.getPos());
+                }
                 outstr.writeLong(entry.childIndexBlock.getPos());
             }
             outstr.writeLong(tailPos.getPos());
         }
 
-        public void put(long hashCode, BlockPointer pos) throws Exception {
-            int index = Collections.binarySearch(entries, new IndexEntry(hashCode));
-            IndexEntry entry;
-            if (index >= 0) {
-                entry = entries.get(index);
-            } else {
-                assert tailPos.isNull();
-                entry = new IndexEntry();
-                entry.hashCode = hashCode;
-                entry.childIndexBlock = new BlockPointer();
-                index = -index - 1;
-                entries.add(index, entry);
-            }
-
-            entry.dataBlock = pos;
+        public void put(IndexEntry entry) throws Exception {
+            int index = Collections.binarySearch(entries, entry);
+            assert index < 0 && tailPos.isNull();
+            entry.childIndexBlock = new BlockPointer();
+            entries.add(-index - 1, entry);
             store.write(this);
 
             maybeSplit();
@@ -432,21 +908,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             maybeSplit();
         }
 
-        public DataBlock get(K key) throws Exception {
-            Lookup lookup = find(key.toString());
-            if (lookup.entry == null) {
-                return null;
-            }
-
-            return store.read(lookup.entry.dataBlock, DataBlock.class);
-        }
-
-        public Lookup find(String keyString) throws Exception {
-            return find((long) keyString.hashCode());
-        }
-
-        private Lookup find(long hashCode) throws Exception {
-            int index = Collections.binarySearch(entries, new IndexEntry(hashCode));
+        public Lookup find(IndexEntry key) throws Exception {
+            int index = Collections.binarySearch(entries, key);
             if (index >= 0) {
                 return new Lookup(this, entries.get(index));
             }
@@ -463,7 +926,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             }
 
             IndexBlock childBlock = load(childBlockPos, root, this, index);
-            return childBlock.find(hashCode);
+            return childBlock.find(key);
         }
 
         public void remove(IndexEntry entry) throws Exception {
@@ -502,6 +965,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
                         // Redistribute entries with lhs block
                         left.mergeFrom(this);
                         left.maybeSplit();
+                        return;
                     } else if (left.entries.size() + entries.size() <= maxChildIndexEntries) {
                         // Merge with the lhs block
                         left.mergeFrom(this);
@@ -574,28 +1038,123 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     private static class IndexEntry implements Comparable<IndexEntry> {
-        long hashCode;
-        BlockPointer dataBlock;
+        long digestHigh;
+        long digestLow;
+        BlockPointer dataBlock = new BlockPointer();
+        byte[] value;
         BlockPointer childIndexBlock;
 
         private IndexEntry() {
         }
 
-        private IndexEntry(long hashCode) {
-            this.hashCode = hashCode;
-        }
-
         public int compareTo(IndexEntry indexEntry) {
-            if (hashCode > indexEntry.hashCode) {
-                return 1;
+            if (digestHigh != indexEntry.digestHigh) {
+                return digestHigh > indexEntry.digestHigh ? 1 : -1;
             }
-            if (hashCode < indexEntry.hashCode) {
-                return -1;
+            if (digestLow != indexEntry.digestLow) {
+                return digestLow > indexEntry.digestLow ? 1 : -1;
             }
             return 0;
         }
     }
 
+    /**
+     * Copies the live blocks of this cache into a new file, in depth-first order.
+     */
+    private class Compactor {
+        private static final int FLUSH_INTERVAL = 1000;
+        private final BlockStore target;
+        private int unflushedBlocks;
+
+        private Compactor(File targetFile) {
+            target = new FreeListBlockStore(new FileBackedBlockStore(targetFile), maxFreeListEntries);
+        }
+
+        public void run() {
+            target.open(new Runnable() {
+                public void run() {
+                    try {
+                        HeaderBlock newHeader = new HeaderBlock();
+                        target.attach(newHeader);
+                        // Allocate the header first, so that it is the first block in the file
+                        newHeader.getPos();
+                        newHeader.index.rootPos = copyIndexBlock(header.index.rootPos);
+                        write(newHeader);
+                    } catch (Exception e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }, blockFactory);
+            target.close();
+        }
+
+        private BlockPointer copyIndexBlock(BlockPointer pos) throws Exception {
+            IndexBlock source = store.read(pos, IndexBlock.class);
+            IndexBlock copy = new IndexBlock();
+            target.attach(copy);
+            BlockPointer copyPos = copy.getPos();
+            for (IndexEntry entry : source.entries) {
+                IndexEntry newEntry = new IndexEntry();
+                newEntry.digestHigh = entry.digestHigh;
+                newEntry.digestLow = entry.digestLow;
+                newEntry.value = entry.value;
+                newEntry.dataBlock = copyDataBlocks(entry.dataBlock);
+                newEntry.childIndexBlock = entry.childIndexBlock.isNull() ? entry.childIndexBlock : copyIndexBlock(
+                        entry.childIndexBlock);
+                copy.entries.add(newEntry);
+            }
+            copy.tailPos = source.tailPos.isNull() ? source.tailPos : copyIndexBlock(source.tailPos);
+            write(copy);
+            return copyPos;
+        }
+
+        private BlockPointer copyDataBlocks(BlockPointer pos) throws Exception {
+            if (pos.isNull()) {
+                return pos;
+            }
+            DataBlock source = store.read(pos, DataBlock.class);
+            DataBlock copy = new DataBlock();
+            copy.key = source.key;
+            copy.serialisedKey = source.serialisedKey;
+            copy.serialisedValue = source.serialisedValue;
+            copy.size = source.serialisedValue.length;
+            target.attach(copy);
+            BlockPointer copyPos = copy.getPos();
+            copy.nextBlock = copyDataBlocks(source.nextBlock);
+            write(copy);
+            return copyPos;
+        }
+
+        private void write(BlockPayload block) {
+            target.write(block);
+            unflushedBlocks++;
+            if (unflushedBlocks >= FLUSH_INTERVAL) {
+                target.flush();
+                unflushedBlocks = 0;
+            }
+        }
+    }
+
+    private class PendingUpdate {
+        final byte[] serialisedValue;
+        final boolean removed;
+
+        private PendingUpdate(byte[] serialisedValue, boolean removed) {
+            this.serialisedValue = serialisedValue;
+            this.removed = removed;
+        }
+
+        /**
+         * Returns a new copy of the value, or null if the entry has been removed.
+         */
+        V getValue() throws Exception {
+            if (removed) {
+                return null;
+            }
+            return serializer.read(new ByteArrayInputStream(serialisedValue));
+        }
+    }
+
     private class Lookup {
         final IndexBlock indexBlock;
         final IndexEntry entry;
@@ -607,43 +1166,42 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     private class DataBlock extends BlockPayload {
+        private String key;
+        private byte[] serialisedKey;
+        private BlockPointer nextBlock;
         private int size;
         private byte[] serialisedValue;
-        private V value;
 
         private DataBlock() {
         }
 
-        public DataBlock(String key, V value) throws Exception {
-            this.value = value;
-            setValue(value);
+        public DataBlock(String key, byte[] serialisedValue, BlockPointer nextBlock) throws Exception {
+            this.key = key;
+            this.serialisedKey = key.getBytes("UTF-8");
+            this.nextBlock = nextBlock;
+            this.serialisedValue = serialisedValue;
             size = serialisedValue.length;
         }
 
-        public void setValue(V value) throws Exception {
-            ByteArrayOutputStream outStr = new ByteArrayOutputStream();
-            serializer.write(outStr, value);
-            this.serialisedValue = outStr.toByteArray();
-        }
-
         public V getValue() throws Exception {
-            if (value == null) {
-                value = serializer.read(new ByteArrayInputStream(serialisedValue));
-            }
-            return value;
+            return serializer.read(new ByteArrayInputStream(serialisedValue));
         }
 
         @Override
         protected int getType() {
-            return 0x33;
+            return 0x34;
         }
 
         @Override
         protected int getSize() {
-            return 2 * Block.INT_SIZE + size;
+            return Block.LONG_SIZE + 3 * Block.INT_SIZE + serialisedKey.length + size;
         }
 
         public void read(DataInputStream instr) throws Exception {
+            nextBlock = new BlockPointer(instr.readLong());
+            serialisedKey = new byte[instr.readInt()];
+            instr.readFully(serialisedKey);
+            key = new String(serialisedKey, "UTF-8");
             size = instr.readInt();
             int bytes = instr.readInt();
             serialisedValue = new byte[bytes];
@@ -651,13 +1209,16 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
 
         public void write(DataOutputStream outstr) throws Exception {
+            outstr.writeLong(nextBlock.getPos());
+            outstr.writeInt(serialisedKey.length);
+            outstr.write(serialisedKey);
             outstr.writeInt(size);
             outstr.writeInt(serialisedValue.length);
             outstr.write(serialisedValue);
         }
 
-        public boolean useNewValue(V value) throws Exception {
-            setValue(value);
+        public boolean useNewValue(byte[] serialisedValue) throws Exception {
+            this.serialisedValue = serialisedValue;
             boolean ok = serialisedValue.length <= size;
             if (ok) {
                 store.write(this);
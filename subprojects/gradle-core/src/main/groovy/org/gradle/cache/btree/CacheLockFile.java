@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+
+/**
+ * Coordinates access to a cache file between processes, using a file lock on a separate lock file. The lock file also
+ * holds a generation number, which is incremented each time a process modifies the cache. This allows a process to
+ * detect that the cache has been modified by another process, and to discard any state it has cached in memory.
+ *
+ * <p>Any number of threads in this process may hold the shared lock at the same time. The exclusive lock must only be
+ * acquired when no thread in this process holds the shared lock.</p>
+ */
+class CacheLockFile {
+    private final File lockFile;
+    private RandomAccessFile file;
+    private FileLock lock;
+    private int sharedHolders;
+    private long generation;
+
+    public CacheLockFile(File lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lock file '%s'", lockFile);
+    }
+
+    public synchronized void open() {
+        try {
+            file = new RandomAccessFile(lockFile, "rw");
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    public synchronized void close() {
+        if (file == null) {
+            return;
+        }
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not close %s.", this), e);
+        } finally {
+            lock = null;
+            sharedHolders = 0;
+            file = null;
+        }
+    }
+
+    /**
+     * Acquires the shared lock, blocking until no other process holds the exclusive lock. Runs the given action while
+     * holding the lock if the cache has been modified by another process since this process last held the lock.
+     */
+    public synchronized void lockShared(Runnable onModified) {
+        if (sharedHolders > 0) {
+            sharedHolders++;
+            return;
+        }
+        assert lock == null;
+        lock = acquire(true);
+        try {
+            runIfModified(onModified);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        sharedHolders = 1;
+    }
+
+    public synchronized void unlockShared() {
+        assert sharedHolders > 0;
+        sharedHolders--;
+        if (sharedHolders == 0) {
+            release();
+        }
+    }
+
+    /**
+     * Acquires the exclusive lock, blocking until no other process holds a lock. Runs the given action while holding
+     * the lock if the cache has been modified by another process since this process last held the lock.
+     */
+    public synchronized void lockExclusive(Runnable onModified) {
+        assert sharedHolders == 0 && lock == null;
+        lock = acquire(false);
+        try {
+            runIfModified(onModified);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the exclusive lock, recording that this process has modified the cache.
+     */
+    public synchronized void unlockExclusive() {
+        assert sharedHolders == 0 && lock != null;
+        try {
+            generation++;
+            file.seek(0);
+            file.writeLong(generation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not update %s.", this), e);
+        } finally {
+            release();
+        }
+    }
+
+    private FileLock acquire(boolean shared) {
+        try {
+            return file.getChannel().lock(0, Long.MAX_VALUE, shared);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not lock %s.", this), e);
+        }
+    }
+
+    private void release() {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not unlock %s.", this), e);
+        } finally {
+            lock = null;
+        }
+    }
+
+    private void runIfModified(Runnable onModified) {
+        long current;
+        try {
+            if (file.length() < Block.LONG_SIZE) {
+                current = 0;
+            } else {
+                file.seek(0);
+                current = file.readLong();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read %s.", this), e);
+        }
+        if (current != generation) {
+            generation = current;
+            onModified.run();
+        }
+    }
+}
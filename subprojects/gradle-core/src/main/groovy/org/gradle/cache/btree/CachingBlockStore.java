@@ -30,23 +30,23 @@ public class CachingBlockStore implements BlockStore {
         cachableTypes.addAll(Arrays.asList(cacheableBlockTypes));
     }
 
-    public void open(Runnable initAction, Factory factory) {
+    public synchronized void open(Runnable initAction, Factory factory) {
         store.open(initAction, factory);
     }
 
-    public void close() {
+    public synchronized void close() {
         flush();
         indexBlockCache.clear();
         store.close();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         dirty.clear();
         indexBlockCache.clear();
         store.clear();
     }
 
-    public void flush() {
+    public synchronized void flush() {
         Iterator<BlockPayload> iterator = dirty.values().iterator();
         while (iterator.hasNext()) {
             BlockPayload block = iterator.next();
@@ -56,23 +56,23 @@ public class CachingBlockStore implements BlockStore {
         store.flush();
     }
 
-    public void attach(BlockPayload block) {
+    public synchronized void attach(BlockPayload block) {
         store.attach(block);
     }
 
-    public void remove(BlockPayload block) {
+    public synchronized void remove(BlockPayload block) {
         dirty.remove(block.getPos());
         indexBlockCache.remove(block.getPos());
         store.remove(block);
     }
 
-    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+    public synchronized <T extends BlockPayload> T readFirst(Class<T> payloadType) {
         T block = store.readFirst(payloadType);
         maybeCache(block);
         return block;
     }
 
-    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+    public synchronized <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
         T block = payloadType.cast(dirty.get(pos));
         if (block != null) {
             return block;
@@ -86,7 +86,7 @@ public class CachingBlockStore implements BlockStore {
         return block;
     }
 
-    public void write(BlockPayload block) {
+    public synchronized void write(BlockPayload block) {
         store.attach(block);
         maybeCache(block);
         dirty.put(block.getPos(), block);
@@ -1,33 +1,40 @@
-/*
- * Copyright 2009 the original author or authors.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
 package org.gradle.cache.btree;
 
 import org.gradle.api.UncheckedIOException;
 
 import java.io.*;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.zip.CRC32;
 
+/**
+ * A {@link BlockStore} backed by a single file. Writes are buffered in memory until {@link #flush()} is called. The
+ * buffered blocks are first written to a journal file, which is then applied to the cache file. If the process
+ * crashes while the journal is being applied, the journal is replayed the next time the store is opened. An
+ * incomplete journal is discarded, leaving the cache file unchanged.
+ */
 public class FileBackedBlockStore implements BlockStore {
     private RandomAccessFile file;
     private final File cacheFile;
+    private final File journalFile;
+    private final int blockAlignment;
+    private final Map<Long, PendingWrite> pendingWrites = new LinkedHashMap<Long, PendingWrite>();
     private long nextBlock;
     private Factory factory;
 
     public FileBackedBlockStore(File cacheFile) {
+        this(cacheFile, 1);
+    }
+
+    /**
+     * Creates a store which pads each new block so that its size is a multiple of the given alignment. Blocks written
+     * with any alignment can be read by any store.
+     */
+    protected FileBackedBlockStore(File cacheFile, int blockAlignment) {
         this.cacheFile = cacheFile;
+        this.journalFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".journal");
+        this.blockAlignment = blockAlignment;
     }
 
     @Override
@@ -35,10 +42,14 @@ public class FileBackedBlockStore implements BlockStore {
         return String.format("cache '%s'", cacheFile);
     }
 
-    public void open(Runnable runnable, Factory factory) {
+    public synchronized void open(Runnable runnable, Factory factory) {
         this.factory = factory;
         try {
             file = new RandomAccessFile(cacheFile, "rw");
+            fileOpened(file);
+            if (journalFile.exists()) {
+                replayJournal();
+            }
             nextBlock = file.length();
             if (file.length() == 0) {
                 runnable.run();
@@ -48,42 +59,64 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    public void close() {
+    public synchronized void close() {
         try {
-            file.close();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            flush();
+        } finally {
+            try {
+                fileClosed();
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 
-    public void clear() {
+    public synchronized void clear() {
+        pendingWrites.clear();
+        journalFile.delete();
         try {
+            fileClosed();
             file.setLength(0);
+            fileOpened(file);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
         nextBlock = 0;
     }
 
-    public void attach(BlockPayload block) {
+    public synchronized void attach(BlockPayload block) {
         if (block.getBlock() == null) {
             block.setBlock(new BlockImpl(block));
         }
     }
 
-    public void remove(BlockPayload block) {
+    public synchronized void remove(BlockPayload block) {
         BlockImpl blockImpl = (BlockImpl) block.getBlock();
         blockImpl.detach();
     }
 
-    public void flush() {
+    public synchronized void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        try {
+            writeJournal();
+            apply(pendingWrites.values());
+            pendingWrites.clear();
+            if (!journalFile.delete()) {
+                throw new IOException(String.format("Could not delete journal file '%s'.", journalFile));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not flush %s.", this), e);
+        }
     }
 
-    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+    public synchronized <T extends BlockPayload> T readFirst(Class<T> payloadType) {
         return read(new BlockPointer(0), payloadType);
     }
 
-    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+    public synchronized <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
         assert !pos.isNull();
         try {
             T payload = payloadType.cast(factory.create(payloadType));
@@ -97,7 +130,8 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    public void write(BlockPayload block) {
+    public synchronized void write(BlockPayload block) {
+        attach(block);
         BlockImpl blockImpl = (BlockImpl) block.getBlock();
         try {
             blockImpl.write();
@@ -108,6 +142,123 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
+    private void writeJournal() throws IOException {
+        FileOutputStream fileOutputStream = new FileOutputStream(journalFile);
+        try {
+            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(new BufferedOutputStream(
+                    fileOutputStream));
+            DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
+            outputStream.writeInt(pendingWrites.size());
+            for (PendingWrite write : pendingWrites.values()) {
+                outputStream.writeLong(write.pos);
+                outputStream.writeInt(write.size);
+                outputStream.writeInt(write.content.length);
+                outputStream.write(write.content);
+            }
+            outputStream.writeLong(checkSumOutputStream.checksum.getValue());
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            fileOutputStream.close();
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        Map<Long, PendingWrite> writes = new LinkedHashMap<Long, PendingWrite>();
+        boolean complete = false;
+        DataInputStream inputStream = null;
+        try {
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(new BufferedInputStream(new FileInputStream(
+                    journalFile)));
+            inputStream = new DataInputStream(checkSumInputStream);
+            long journalLength = journalFile.length();
+            int count = inputStream.readInt();
+            for (int i = 0; i < count; i++) {
+                long pos = inputStream.readLong();
+                int size = inputStream.readInt();
+                int length = inputStream.readInt();
+                if (length < 0 || length > journalLength) {
+                    throw new EOFException();
+                }
+                byte[] content = new byte[length];
+                inputStream.readFully(content);
+                writes.put(pos, new PendingWrite(pos, size, content));
+            }
+            long actualChecksum = checkSumInputStream.checksum.getValue();
+            complete = inputStream.readLong() == actualChecksum;
+        } catch (EOFException e) {
+            // The journal was not completely written, so the cache file has not been changed
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+
+        if (complete) {
+            apply(writes.values());
+        }
+        if (!journalFile.delete()) {
+            throw new IOException(String.format("Could not delete journal file '%s'.", journalFile));
+        }
+    }
+
+    private void apply(Collection<PendingWrite> writes) throws IOException {
+        long length = file.length();
+        for (PendingWrite write : writes) {
+            length = Math.max(length, write.pos + write.size);
+        }
+        if (length > file.length()) {
+            file.setLength(length);
+        }
+        for (PendingWrite write : writes) {
+            writeToFile(write.pos, write.content);
+        }
+        syncFile();
+    }
+
+    /**
+     * Called when the cache file has been opened, and after it has been truncated.
+     */
+    protected void fileOpened(RandomAccessFile file) throws IOException {
+    }
+
+    /**
+     * Called before the cache file is closed or truncated.
+     */
+    protected void fileClosed() {
+    }
+
+    /**
+     * Returns the current length of the cache file.
+     */
+    protected long getFileLength() throws IOException {
+        return file.length();
+    }
+
+    /**
+     * Returns a stream which reads the cache file from the given position.
+     */
+    protected InputStream readFromFile(long pos) throws IOException {
+        file.seek(pos);
+        return new BufferedInputStream(new RandomAccessFileInputStream(file));
+    }
+
+    /**
+     * Writes the given content to the cache file at the given position. The file has already been extended to
+     * include the content.
+     */
+    protected void writeToFile(long pos, byte[] content) throws IOException {
+        file.seek(pos);
+        file.write(content);
+    }
+
+    /**
+     * Forces the content written to the cache file out to the storage device.
+     */
+    protected void syncFile() throws IOException {
+        file.getFD().sync();
+    }
+
     private long alloc(long length) {
         long pos = nextBlock;
         nextBlock += length;
@@ -154,7 +305,12 @@ public class FileBackedBlockStore implements BlockStore {
 
         public int getSize() {
             if (payloadSize < 0) {
-                payloadSize = getPayload().getSize();
+                int size = getPayload().getSize() + HEADER_SIZE + TAIL_SIZE;
+                int remainder = size % blockAlignment;
+                if (remainder != 0) {
+                    size += blockAlignment - remainder;
+                }
+                payloadSize = size - HEADER_SIZE - TAIL_SIZE;
             }
             return payloadSize + HEADER_SIZE + TAIL_SIZE;
         }
@@ -168,10 +324,9 @@ public class FileBackedBlockStore implements BlockStore {
 
         public void write() throws Exception {
             long pos = getPos().getPos();
-            file.seek(pos);
 
-            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(new BufferedOutputStream(
-                    new RandomAccessFileOutputStream(file)));
+            ByteArrayOutputStream content = new ByteArrayOutputStream(payloadSize + HEADER_SIZE + TAIL_SIZE);
+            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(content);
             DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
 
             BlockPayload payload = getPayload();
@@ -180,7 +335,6 @@ public class FileBackedBlockStore implements BlockStore {
             outputStream.writeByte(BLOCK_MARKER);
             outputStream.writeByte(payload.getType());
             outputStream.writeInt(payloadSize);
-            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
 
             // Write body
             payload.write(outputStream);
@@ -189,22 +343,28 @@ public class FileBackedBlockStore implements BlockStore {
             outputStream.writeLong(checkSumOutputStream.checksum.getValue());
             outputStream.close();
 
-            // Pad
-            if (file.length() < finalSize) {
-                file.setLength(finalSize);
-            }
+            pendingWrites.put(pos, new PendingWrite(pos, getSize(), content.toByteArray()));
         }
 
         public void read() throws Exception {
             long pos = getPos().getPos();
             assert pos >= 0;
-            if (pos + HEADER_SIZE >= file.length()) {
-                throw blockCorruptedException();
+
+            InputStream blockInputStream;
+            long available;
+            PendingWrite pendingWrite = pendingWrites.get(pos);
+            if (pendingWrite != null) {
+                blockInputStream = new ByteArrayInputStream(pendingWrite.content);
+                available = pendingWrite.size;
+            } else {
+                available = getFileLength() - pos;
+                if (HEADER_SIZE >= available) {
+                    throw blockCorruptedException();
+                }
+                blockInputStream = readFromFile(pos);
             }
-            file.seek(pos);
 
-            Crc32InputStream checkSumInputStream = new Crc32InputStream(new BufferedInputStream(
-                    new RandomAccessFileInputStream(file)));
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(blockInputStream);
             DataInputStream inputStream = new DataInputStream(checkSumInputStream);
 
             BlockPayload payload = getPayload();
@@ -221,7 +381,7 @@ public class FileBackedBlockStore implements BlockStore {
 
             // Read body
             payloadSize = inputStream.readInt();
-            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > file.length()) {
+            if (HEADER_SIZE + TAIL_SIZE + payloadSize > available) {
                 throw blockCorruptedException();
             }
             payload.read(inputStream);
@@ -241,6 +401,18 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
+    private static class PendingWrite {
+        private final long pos;
+        private final int size;
+        private final byte[] content;
+
+        private PendingWrite(long pos, int size, byte[] content) {
+            this.pos = pos;
+            this.size = size;
+            this.content = content;
+        }
+    }
+
     private static class RandomAccessFileInputStream extends InputStream {
         private final RandomAccessFile file;
 
@@ -264,29 +436,6 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    private static class RandomAccessFileOutputStream extends OutputStream {
-        private final RandomAccessFile file;
-
-        private RandomAccessFileOutputStream(RandomAccessFile file) {
-            this.file = file;
-        }
-
-        @Override
-        public void write(int i) throws IOException {
-            file.write(i);
-        }
-
-        @Override
-        public void write(byte[] bytes) throws IOException {
-            file.write(bytes);
-        }
-
-        @Override
-        public void write(byte[] bytes, int offset, int length) throws IOException {
-            file.write(bytes, offset, length);
-        }
-    }
-
     private static class Crc32InputStream extends FilterInputStream {
         private final CRC32 checksum;
 
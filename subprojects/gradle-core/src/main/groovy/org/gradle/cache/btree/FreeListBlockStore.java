@@ -17,26 +17,35 @@ package org.gradle.cache.btree;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
+/**
+ * A {@link BlockStore} which keeps track of the space freed when blocks are removed, and reuses it for new blocks.
+ *
+ * <p>The free regions are held in memory, and written to a chain of free list blocks when this store is flushed. The
+ * first free list block is always the first block in the store. Adjacent free regions are merged. A new block is
+ * placed in the smallest free region which it fits in, and any remaining space large enough for another block is
+ * kept as a free region.</p>
+ */
 public class FreeListBlockStore implements BlockStore {
+    static final int MIN_FREE_REGION_SIZE = 64;
     private final BlockStore store;
-    private final BlockStore freeListStore;
     private final int maxBlockEntries;
-    private FreeListBlock freeListBlock;
+    private final SortedMap<Long, FreeRegion> regionsByPos = new TreeMap<Long, FreeRegion>();
+    private final SortedSet<FreeRegion> regionsBySize = new TreeSet<FreeRegion>();
+    private final List<FreeListBlock> freeListBlocks = new ArrayList<FreeListBlock>();
+    private long freeSpace;
+    private boolean dirty;
 
     public FreeListBlockStore(BlockStore store, int maxBlockEntries) {
         this.store = store;
-        freeListStore = this;
         this.maxBlockEntries = maxBlockEntries;
     }
 
     public void open(final Runnable initAction, final Factory factory) {
         Runnable freeListInitAction = new Runnable() {
             public void run() {
-                freeListBlock = new FreeListBlock();
+                FreeListBlock freeListBlock = new FreeListBlock();
                 store.write(freeListBlock);
                 store.flush();
                 initAction.run();
@@ -51,27 +60,53 @@ public class FreeListBlockStore implements BlockStore {
             }
         };
 
+        reset();
         store.open(freeListInitAction, freeListFactory);
-        freeListBlock = store.readFirst(FreeListBlock.class);
+        FreeListBlock block = store.readFirst(FreeListBlock.class);
+        while (true) {
+            freeListBlocks.add(block);
+            for (FreeRegion region : block.regions) {
+                addRegion(region);
+            }
+            if (block.nextBlock.isNull()) {
+                break;
+            }
+            block = store.read(block.nextBlock, FreeListBlock.class);
+        }
+        dirty = false;
     }
 
     public void close() {
-        freeListBlock = null;
+        if (dirty) {
+            writeFreeList();
+        }
+        reset();
         store.close();
     }
 
     public void clear() {
+        reset();
         store.clear();
     }
 
+    private void reset() {
+        regionsByPos.clear();
+        regionsBySize.clear();
+        freeListBlocks.clear();
+        freeSpace = 0;
+        dirty = false;
+    }
+
     public void remove(BlockPayload block) {
         Block container = block.getBlock();
+        BlockPointer pos = container.getPos();
+        int size = container.getSize();
         store.remove(block);
-        freeListBlock.add(container.getPos(), container.getSize());
+        free(pos.getPos(), size);
     }
 
     public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
-        return store.read(freeListBlock.getNextPos(), payloadType);
+        return store.read(freeListBlocks.get(0).getNextPos(), payloadType);
     }
 
     public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
@@ -85,185 +120,161 @@ public class FreeListBlockStore implements BlockStore {
 
     public void attach(BlockPayload block) {
         store.attach(block);
-        freeListBlock.alloc(block.getBlock());
+        alloc(block.getBlock());
     }
 
     public void flush() {
+        if (dirty) {
+            writeFreeList();
+        }
         store.flush();
     }
 
-    private void verify() {
-        FreeListBlock block = store.readFirst(FreeListBlock.class);
-        verify(block, Integer.MAX_VALUE);
+    /**
+     * Returns the total size of the free regions in this store.
+     */
+    public long getFreeSpace() {
+        return freeSpace;
     }
 
-    private void verify(FreeListBlock block, int maxValue) {
-        if (block.largestInNextBlock > maxValue) {
-            throw new RuntimeException("corrupt free list");
+    private void alloc(Block block) {
+        if (block.hasPos()) {
+            return;
         }
-        int current = 0;
-        for (FreeListEntry entry : block.entries) {
-            if (entry.size > maxValue) {
-                throw new RuntimeException("corrupt free list");
-            }
-            if (entry.size < block.largestInNextBlock) {
-                throw new RuntimeException("corrupt free list");
-            }
-            if (entry.size < current) {
-                throw new RuntimeException("corrupt free list");
+
+        int requiredSize = block.getSize();
+        if (regionsBySize.isEmpty() || regionsBySize.last().size < requiredSize) {
+            // No free region is large enough, the block will be added at the end of the store
+            return;
+        }
+        FreeRegion region = regionsBySize.tailSet(new FreeRegion(-1, requiredSize)).first();
+        removeRegion(region);
+        block.setPos(new BlockPointer(region.pos));
+        if (region.size - requiredSize >= MIN_FREE_REGION_SIZE) {
+            free(region.pos + requiredSize, region.size - requiredSize);
+        } else {
+            block.setSize(region.size);
+        }
+        dirty = true;
+    }
+
+    private void free(long pos, int size) {
+        assert pos >= 0 && size >= 0;
+        if (size == 0) {
+            return;
+        }
+
+        // Merge with the adjacent free regions
+        SortedMap<Long, FreeRegion> before = regionsByPos.headMap(pos);
+        if (!before.isEmpty()) {
+            FreeRegion previous = before.get(before.lastKey());
+            assert previous.pos + previous.size <= pos;
+            if (previous.pos + previous.size == pos && (long) previous.size + size <= Integer.MAX_VALUE) {
+                removeRegion(previous);
+                pos = previous.pos;
+                size += previous.size;
             }
-            current = entry.size;
         }
-        if (!block.nextBlock.isNull()) {
-            verify(store.read(block.nextBlock, FreeListBlock.class), block.largestInNextBlock);
+        FreeRegion next = regionsByPos.get(pos + size);
+        if (next != null && (long) next.size + size <= Integer.MAX_VALUE) {
+            removeRegion(next);
+            size += next.size;
+        }
+
+        addRegion(new FreeRegion(pos, size));
+        dirty = true;
+    }
+
+    private void addRegion(FreeRegion region) {
+        regionsByPos.put(region.pos, region);
+        regionsBySize.add(region);
+        freeSpace += region.size;
+    }
+
+    private void removeRegion(FreeRegion region) {
+        regionsByPos.remove(region.pos);
+        regionsBySize.remove(region);
+        freeSpace -= region.size;
+    }
+
+    private void writeFreeList() {
+        List<FreeRegion> regions = new ArrayList<FreeRegion>(regionsByPos.values());
+        int requiredBlocks = Math.max(1, (regions.size() + maxBlockEntries - 1) / maxBlockEntries);
+
+        // New free list blocks are added at the end of the store, rather than allocated from the free list. Blocks
+        // which are no longer needed are kept, so that they can be used when the free list grows again.
+        while (freeListBlocks.size() < requiredBlocks) {
+            FreeListBlock block = new FreeListBlock();
+            store.attach(block);
+            block.getPos();
+            freeListBlocks.add(block);
+        }
+
+        for (int i = 0; i < freeListBlocks.size(); i++) {
+            FreeListBlock block = freeListBlocks.get(i);
+            int start = Math.min(i * maxBlockEntries, regions.size());
+            int end = Math.min(start + maxBlockEntries, regions.size());
+            block.regions = new ArrayList<FreeRegion>(regions.subList(start, end));
+            block.nextBlock = i + 1 < freeListBlocks.size() ? freeListBlocks.get(i + 1).getPos() : new BlockPointer();
+            store.write(block);
         }
+        dirty = false;
     }
 
     public class FreeListBlock extends BlockPayload {
-        private List<FreeListEntry> entries = new ArrayList<FreeListEntry>();
-        private int largestInNextBlock;
+        private List<FreeRegion> regions = new ArrayList<FreeRegion>();
         private BlockPointer nextBlock = new BlockPointer();
-        // Transient fields
-        private FreeListBlock prev;
-        private FreeListBlock next;
 
         @Override
         protected int getSize() {
-            return Block.LONG_SIZE + Block.INT_SIZE + Block.INT_SIZE + maxBlockEntries * (Block.LONG_SIZE
-                    + Block.INT_SIZE);
+            return Block.LONG_SIZE + Block.INT_SIZE + maxBlockEntries * (Block.LONG_SIZE + Block.INT_SIZE);
         }
 
         @Override
         protected int getType() {
-            return 0x44;
+            return 0x45;
         }
 
         @Override
         protected void read(DataInputStream inputStream) throws Exception {
             nextBlock = new BlockPointer(inputStream.readLong());
-            largestInNextBlock = inputStream.readInt();
             int count = inputStream.readInt();
+            if (count < 0 || count > maxBlockEntries) {
+                throw blockCorruptedException();
+            }
             for (int i = 0; i < count; i++) {
-                BlockPointer pos = new BlockPointer(inputStream.readLong());
+                long pos = inputStream.readLong();
                 int size = inputStream.readInt();
-                entries.add(new FreeListEntry(pos, size));
+                regions.add(new FreeRegion(pos, size));
             }
         }
 
         @Override
         protected void write(DataOutputStream outputStream) throws Exception {
             outputStream.writeLong(nextBlock.getPos());
-            outputStream.writeInt(largestInNextBlock);
-            outputStream.writeInt(entries.size());
-            for (FreeListEntry entry : entries) {
-                outputStream.writeLong(entry.pos.getPos());
-                outputStream.writeInt(entry.size);
-            }
-        }
-
-        public void add(BlockPointer pos, int size) {
-            assert !pos.isNull() && size >= 0;
-            if (size == 0) {
-                return;
-            }
-
-            if (size < largestInNextBlock) {
-                FreeListBlock next = getNextBlock();
-                next.add(pos, size);
-                return;
-            }
-
-            FreeListEntry entry = new FreeListEntry(pos, size);
-            int index = Collections.binarySearch(entries, entry);
-            if (index < 0) {
-                index = -index - 1;
-            }
-            entries.add(index, entry);
-
-            if (entries.size() > maxBlockEntries) {
-                FreeListBlock newBlock = new FreeListBlock();
-                newBlock.largestInNextBlock = largestInNextBlock;
-                newBlock.nextBlock = nextBlock;
-                newBlock.prev = this;
-                newBlock.next = next;
-                next = newBlock;
-
-                List<FreeListEntry> newBlockEntries = entries.subList(0, entries.size() / 2);
-                newBlock.entries.addAll(newBlockEntries);
-                newBlockEntries.clear();
-                largestInNextBlock = newBlock.entries.get(newBlock.entries.size() - 1).size;
-                freeListStore.write(newBlock);
-                nextBlock = newBlock.getPos();
-            }
-
-            freeListStore.write(this);
-        }
-
-        private FreeListBlock getNextBlock() {
-            if (next == null) {
-                next = freeListStore.read(nextBlock, FreeListBlock.class);
-                next.prev = this;
-            }
-            return next;
-        }
-
-        public void alloc(Block block) {
-            if (block.hasPos()) {
-                return;
-            }
-
-            int requiredSize = block.getSize();
-
-            if (entries.isEmpty() || requiredSize <= largestInNextBlock) {
-                if (nextBlock.isNull()) {
-                    return;
-                }
-                getNextBlock().alloc(block);
-                return;
-            }
-
-            int index = Collections.binarySearch(entries, new FreeListEntry(null, requiredSize));
-            if (index < 0) {
-                index = -index - 1;
-            }
-            if (index == entries.size()) {
-                // Largest free block is too small
-                return;
-            }
-
-            FreeListEntry entry = entries.remove(index);
-            block.setPos(entry.pos);
-            block.setSize(entry.size);
-            freeListStore.write(this);
-
-            if (entries.size() == 0 && prev != null) {
-                prev.nextBlock = nextBlock;
-                prev.largestInNextBlock = largestInNextBlock;
-                prev.next = next;
-                if (next != null) {
-                    next.prev = prev;
-                }
-                freeListStore.write(prev);
-                freeListStore.remove(this);
+            outputStream.writeInt(regions.size());
+            for (FreeRegion region : regions) {
+                outputStream.writeLong(region.pos);
+                outputStream.writeInt(region.size);
             }
         }
     }
 
-    private static class FreeListEntry implements Comparable<FreeListEntry> {
-        final BlockPointer pos;
+    private static class FreeRegion implements Comparable<FreeRegion> {
+        final long pos;
         final int size;
 
-        private FreeListEntry(BlockPointer pos, int size) {
+        private FreeRegion(long pos, int size) {
             this.pos = pos;
             this.size = size;
         }
 
-        public int compareTo(FreeListEntry o) {
-            if (size > o.size) {
-                return 1;
+        public int compareTo(FreeRegion o) {
+            if (size != o.size) {
+                return size > o.size ? 1 : -1;
             }
-            if (size < o.size) {
-                return -1;
+            if (pos != o.pos) {
+                return pos > o.pos ? 1 : -1;
             }
             return 0;
         }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link FileBackedBlockStore} which maps the cache file into memory, so that blocks are read and written without
+ * a system call per block. The file is remapped whenever a flush extends it. New blocks are padded to a multiple of
+ * {@link #BLOCK_ALIGNMENT} bytes. The file format is otherwise the same as for {@link FileBackedBlockStore}, and
+ * files can be shared between the two implementations.
+ *
+ * <p>Files larger than 2GB cannot be mapped in one piece, so for these this store falls back to reading and writing
+ * through the file.</p>
+ */
+public class MemoryMappedBlockStore extends FileBackedBlockStore {
+    static final int BLOCK_ALIGNMENT = 16;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    public MemoryMappedBlockStore(File cacheFile) {
+        super(cacheFile, BLOCK_ALIGNMENT);
+    }
+
+    @Override
+    protected void fileOpened(RandomAccessFile file) throws IOException {
+        channel = file.getChannel();
+        map();
+    }
+
+    @Override
+    protected void fileClosed() {
+        if (buffer != null) {
+            unmap(buffer);
+        }
+        channel = null;
+        buffer = null;
+    }
+
+    /**
+     * Releases the mapping of the given buffer, so that the file can be deleted or renamed straight away on platforms
+     * which do not allow this for a mapped file, such as Windows. There is no public API for this, so the buffer's
+     * cleaner is used where available. Otherwise, the mapping is released when the buffer is garbage collected.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Ignore - leave the buffer to be garbage collected
+        }
+    }
+
+    @Override
+    protected long getFileLength() throws IOException {
+        if (buffer != null) {
+            return buffer.capacity();
+        }
+        return super.getFileLength();
+    }
+
+    @Override
+    protected InputStream readFromFile(long pos) throws IOException {
+        if (buffer == null) {
+            return super.readFromFile(pos);
+        }
+        ByteBuffer content = buffer.duplicate();
+        content.position((int) pos);
+        return new ByteBufferInputStream(content);
+    }
+
+    @Override
+    protected void writeToFile(long pos, byte[] content) throws IOException {
+        if (buffer == null || pos + content.length > buffer.capacity()) {
+            map();
+        }
+        if (buffer == null) {
+            super.writeToFile(pos, content);
+            return;
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.position((int) pos);
+        target.put(content);
+    }
+
+    @Override
+    protected void syncFile() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        } else {
+            super.syncFile();
+        }
+    }
+
+    private void map() throws IOException {
+        long length = channel.size();
+        if (length > Integer.MAX_VALUE) {
+            buffer = null;
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+    }
+}
@@ -17,11 +17,13 @@
 package org.gradle.configuration
 
 import org.gradle.api.Project
+import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.util.Clock
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import org.gradle.api.Action
+import org.gradle.api.logging.StandardOutputLogging
 
 /**
  * @author Hans Dockter
@@ -49,4 +51,34 @@ class BuildConfigurer {
         projectDependencies2TasksResolver.resolve(rootProject)
         logger.debug("Timing: Configuring projects took " + clock.time)
     }
+
+    /**
+     * Evaluates the root project only. Each other project is evaluated when it is needed, that is, when a task is
+     * selected from it, or when an evaluated project depends on it.
+     */
+    void processOnDemand(GradleInternal gradle) {
+        logger.debug('Configuring root Project object')
+        Clock clock = new Clock()
+        gradle.addProjectEvaluationListener(new ProjectDependenciesEvaluator(projectDependencies2TasksResolver))
+        projectEvaluateAction.execute(gradle.rootProject)
+        logger.debug("Timing: Configuring root project took " + clock.time)
+    }
+
+    /**
+     * Evaluates all projects using the given number of threads. Each project is evaluated after its parent project.
+     * Projects which may reach into other projects are evaluated one at a time.
+     */
+    void processInParallel(Project rootProject, int threadCount) {
+        logger.debug("Configuring Project objects using $threadCount threads")
+        Clock clock = new Clock()
+        // Each project captures its standard output while it is evaluated, so redirect standard output per thread
+        StandardOutputLogging.startPerThreadRedirection()
+        try {
+            new ParallelProjectConfigurer(threadCount, new IsolatedProjectSpec()).configure(rootProject, projectEvaluateAction)
+        } finally {
+            StandardOutputLogging.stopPerThreadRedirection()
+        }
+        projectDependencies2TasksResolver.resolve(rootProject)
+        logger.debug("Timing: Configuring projects took " + clock.time)
+    }
 }
\ No newline at end of file
@@ -19,7 +19,12 @@ import org.gradle.api.ProjectEvaluationListener;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.project.ProjectStateInternal;
 
+/**
+ * Evaluates a project, notifying the project's evaluation listeners before and after evaluation. Projects may be
+ * evaluated concurrently, so the listeners are notified by one thread at a time.
+ */
 public class DefaultProjectEvaluator implements ProjectEvaluator {
+    private final Object notificationLock = new Object();
     private final ProjectEvaluator evaluator;
 
     public DefaultProjectEvaluator(ProjectEvaluator evaluator) {
@@ -32,14 +37,18 @@ public class DefaultProjectEvaluator implements ProjectEvaluator {
         }
 
         ProjectEvaluationListener listener = project.getProjectEvaluationBroadcaster();
-        listener.beforeEvaluate(project);
+        synchronized (notificationLock) {
+            listener.beforeEvaluate(project);
+        }
         state.setExecuting(true);
         try {
             evaluator.evaluate(project, state);
         } finally {
             state.setExecuting(false);
             state.executed();
-            listener.afterEvaluate(project, state);
+            synchronized (notificationLock) {
+                listener.afterEvaluate(project, state);
+            }
         }
     }
 }
@@ -37,6 +37,13 @@ public class ImportsScriptSource extends DelegatingScriptSource {
         return new ImportsResource(super.getResource());
     }
 
+    /**
+     * Returns the imports which are appended to the text of the script.
+     */
+    public String getImports() {
+        return importsReader.getImports(rootDir);
+    }
+
     private class ImportsResource extends DelegatingResource {
         private ImportsResource(Resource resource) {
             super(resource);
@@ -49,7 +56,7 @@ public class ImportsScriptSource extends DelegatingScriptSource {
 
             String imports;
             if (text.length() > 0) {
-                imports = '\n' + importsReader.getImports(rootDir);
+                imports = '\n' + getImports();
             } else {
                 imports = "";
             }
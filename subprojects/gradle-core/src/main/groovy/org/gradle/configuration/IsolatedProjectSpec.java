@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration;
+
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.resource.Resource;
+import org.gradle.api.specs.Spec;
+
+import java.util.regex.Pattern;
+
+/**
+ * Selects the projects whose build script does not appear to reach into other projects, and which can therefore be
+ * evaluated concurrently with their sibling projects. The build script is not compiled, so this is a conservative
+ * check of its text for the methods and properties which configure, evaluate or read other projects, such as {@code
+ * allprojects}, {@code subprojects}, {@code evaluationDependsOn} or {@code project(':other').someProperty}. A
+ * reference to another project which is only used as a dependency, such as {@code compile project(':other')}, is
+ * allowed. A project without a build script is always isolated.
+ */
+class IsolatedProjectSpec implements Spec<Project> {
+    private static final Pattern CROSS_PROJECT_ACCESS = Pattern.compile(
+            "\\b(allprojects|subprojects|getAllprojects|getSubprojects|evaluationDependsOn\\w*|dependsOnChildren"
+                    + "|childrenDependOnMe|rootProject|getRootProject|parent|getParent|configure|findProject"
+                    + "|getByPath|findByPath)\\b"
+                    + "|\\bproject\\s*\\([^)]*\\)\\s*[.{]"
+                    + "|(?<![.\\w])dependsOn\\s*\\(?\\s*['\"]"
+                    + "|\\bapply\\s*\\(?\\s*from\\b");
+
+    public boolean isSatisfiedBy(Project project) {
+        Resource buildScript = ((ProjectInternal) project).getBuildScriptSource().getResource();
+        if (!buildScript.getExists()) {
+            return true;
+        }
+        return !CROSS_PROJECT_ACCESS.matcher(buildScript.getText()).find();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.specs.Spec;
+import org.gradle.util.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates the projects of a build using a bounded pool of worker threads. Projects are evaluated one depth at a
+ * time, so that each project is evaluated after its parent. At each depth, the projects which are not isolated are
+ * evaluated one at a time by the calling thread, then the isolated projects are evaluated concurrently. On the first
+ * failure, the projects which are already being evaluated are allowed to complete, no further projects are evaluated,
+ * and the failure is rethrown.
+ */
+class ParallelProjectConfigurer {
+    private final int threadCount;
+    private final Spec<? super Project> isolatedProjects;
+
+    /**
+     * @param threadCount The number of threads to use to evaluate projects.
+     * @param isolatedProjects Selects the projects which may be evaluated concurrently with their sibling projects.
+     */
+    public ParallelProjectConfigurer(int threadCount, Spec<? super Project> isolatedProjects) {
+        this.threadCount = threadCount;
+        this.isolatedProjects = isolatedProjects;
+    }
+
+    public void configure(Project rootProject, final Action<? super Project> evaluateAction) {
+        SortedMap<Integer, List<Project>> projectsByDepth = new TreeMap<Integer, List<Project>>();
+        for (Project project : rootProject.getAllprojects()) {
+            List<Project> projects = projectsByDepth.get(project.getDepth());
+            if (projects == null) {
+                projects = new ArrayList<Project>();
+                projectsByDepth.put(project.getDepth(), projects);
+            }
+            projects.add(project);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            for (List<Project> projects : projectsByDepth.values()) {
+                List<Project> isolated = new ArrayList<Project>();
+                for (Project project : projects) {
+                    if (isolatedProjects.isSatisfiedBy(project)) {
+                        isolated.add(project);
+                    } else {
+                        evaluateAction.execute(project);
+                    }
+                }
+
+                List<Future<?>> results = new ArrayList<Future<?>>();
+                for (final Project project : isolated) {
+                    results.add(executor.submit(new Runnable() {
+                        public void run() {
+                            evaluateAction.execute(project);
+                        }
+                    }));
+                }
+                for (Future<?> result : results) {
+                    while (true) {
+                        try {
+                            result.get();
+                            break;
+                        } catch (InterruptedException e) {
+                            // Keep waiting - the projects being evaluated must complete before we can return
+                            interrupted = true;
+                        } catch (ExecutionException e) {
+                            if (failure == null) {
+                                failure = e.getCause();
+                            }
+                            break;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    break;
+                }
+            }
+        } finally {
+            ThreadUtils.shutdown(executor);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new GradleException(failure);
+        }
+    }
+}
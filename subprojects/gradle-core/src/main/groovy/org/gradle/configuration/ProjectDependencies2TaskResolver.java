@@ -31,19 +31,27 @@ public class ProjectDependencies2TaskResolver {
     public void resolve(Project rootProject) {
         Action<Project> projectAction = new Action<Project>() {
             public void execute(Project project) {
-                for (Project dependsOnProject : project.getDependsOnProjects()) {
-                    logger.debug("Checking task dependencies for project: {} dependsOn: {}", project, dependsOnProject);
-                    for (Task task : project.getTasks()) {
-                        String taskName = task.getName();
-                        Task dependentTask = dependsOnProject.getTasks().findByName(taskName);
-                        if (dependentTask != null) {
-                            logger.debug("Setting task dependencies for task: {}", taskName);
-                            task.dependsOn(dependentTask);
-                        }
-                    }
-                }
+                resolveProject(project);
             }
         };
         rootProject.allprojects(projectAction);
     }
+
+    /**
+     * Makes each task of the given project depend on the task with the same name in each project the given project
+     * depends on.
+     */
+    public void resolveProject(Project project) {
+        for (Project dependsOnProject : project.getDependsOnProjects()) {
+            logger.debug("Checking task dependencies for project: {} dependsOn: {}", project, dependsOnProject);
+            for (Task task : project.getTasks()) {
+                String taskName = task.getName();
+                Task dependentTask = dependsOnProject.getTasks().findByName(taskName);
+                if (dependentTask != null) {
+                    logger.debug("Setting task dependencies for task: {}", taskName);
+                    task.dependsOn(dependentTask);
+                }
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.configuration;
+
+import org.gradle.api.Project;
+import org.gradle.api.ProjectEvaluationListener;
+import org.gradle.api.ProjectState;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.internal.project.ProjectInternal;
+
+/**
+ * A {@link ProjectEvaluationListener} used to evaluate projects on demand. When a project has been evaluated, evaluates
+ * the projects which it depends on, either using {@link Project#dependsOn(String)} or through a project dependency in
+ * one of its configurations, along with their parent projects, and then adds the task dependencies on the projects it
+ * depends on.
+ */
+public class ProjectDependenciesEvaluator implements ProjectEvaluationListener {
+    private final ProjectDependencies2TaskResolver projectDependencies2TaskResolver;
+
+    public ProjectDependenciesEvaluator(ProjectDependencies2TaskResolver projectDependencies2TaskResolver) {
+        this.projectDependencies2TaskResolver = projectDependencies2TaskResolver;
+    }
+
+    public void beforeEvaluate(Project project) {
+    }
+
+    public void afterEvaluate(Project project, ProjectState state) {
+        if (state.getFailure() != null) {
+            return;
+        }
+        for (Project dependsOnProject : project.getDependsOnProjects()) {
+            ((ProjectInternal) dependsOnProject).evaluateWithParents();
+        }
+        for (Configuration configuration : project.getConfigurations()) {
+            for (ProjectDependency dependency : configuration.getDependencies(ProjectDependency.class)) {
+                ((ProjectInternal) dependency.getDependencyProject()).evaluateWithParents();
+            }
+        }
+        projectDependencies2TaskResolver.resolveProject(project);
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.execution;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.project.taskfactory.ITaskFactory;
 import org.gradle.api.tasks.diagnostics.AbstractReportTask;
 import org.gradle.api.tasks.diagnostics.DependencyReportTask;
@@ -89,7 +90,13 @@ public class BuiltInTasksBuildExecuter implements BuildExecuter {
         args.put(Task.TASK_NAME, "report");
         args.put(Task.TASK_TYPE, options.getTaskType());
         task = (AbstractReportTask) taskFactory.createTask(gradle.getDefaultProject(), args);
-        task.setProjects(getProjectsForReport(path));
+        Set<Project> projects = getProjectsForReport(path);
+        if (gradle.getStartParameter().isConfigureOnDemand()) {
+            for (Project project : projects) {
+                ((ProjectInternal) project).evaluateWithParents();
+            }
+        }
+        task.setProjects(projects);
     }
 
     private Set<Project> getProjectsForReport(String path) {
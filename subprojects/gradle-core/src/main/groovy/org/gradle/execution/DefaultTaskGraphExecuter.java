@@ -17,11 +17,13 @@
 package org.gradle.execution;
 
 import groovy.lang.Closure;
+import org.gradle.api.Action;
 import org.gradle.api.CircularReferenceException;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionGraphListener;
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.logging.StandardOutputLogging;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.listener.ListenerBroadcast;
@@ -41,10 +43,22 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final ListenerBroadcast<TaskExecutionGraphListener> graphListeners;
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
     private final Set<Task> executionPlan = new LinkedHashSet<Task>();
+    // The tasks added to the plan by each call to addTasks(), in the order they were added
+    private final List<Set<Task>> executionGroups = new ArrayList<Set<Task>>();
+    private final int parallelThreadCount;
     private boolean populated;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager) {
+        this(listenerManager, 0);
+    }
+
+    /**
+     * @param parallelThreadCount The number of threads to use to execute tasks. Tasks are executed one at a time on
+     * the calling thread when this is less than 2.
+     */
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, int parallelThreadCount) {
+        this.parallelThreadCount = parallelThreadCount;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
     }
@@ -62,7 +76,11 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         for (Task task : tasks) {
             sortedTasks.add(task);
         }
-        fillDag(sortedTasks);
+        Set<Task> group = new LinkedHashSet<Task>();
+        fillDag(sortedTasks, group);
+        if (!group.isEmpty()) {
+            executionGroups.add(group);
+        }
         populated = true;
 
         logger.debug("Timing: Creating the DAG took " + clock.getTime());
@@ -74,10 +92,11 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         graphListeners.getSource().graphPopulated(this);
 
         try {
-            doExecute(executionPlan);
+            doExecute();
             logger.debug("Timing: Executing the DAG took " + clock.getTime());
         } finally {
             executionPlan.clear();
+            executionGroups.clear();
         }
     }
 
@@ -86,7 +105,7 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         execute();
     }
 
-    private void fillDag(Collection<? extends Task> tasks) {
+    private void fillDag(Collection<? extends Task> tasks, Set<Task> group) {
         Set<Task> visiting = new HashSet<Task>();
         List<Task> queue = new ArrayList<Task>();
         queue.addAll(tasks);
@@ -121,6 +140,7 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                 queue.remove(0);
                 visiting.remove(task);
                 executionPlan.add(task);
+                group.add(task);
             }
         }
     }
@@ -153,18 +173,42 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         taskListeners.add("afterExecute", closure);
     }
 
-    private void doExecute(Iterable<? extends Task> tasks) {
-        for (Task task : tasks) {
+    private void doExecute() {
+        if (parallelThreadCount > 1) {
+            // Each task captures its standard output while it executes, so redirect standard output per thread
+            StandardOutputLogging.startPerThreadRedirection();
+            try {
+                // The groups are executed one after the other, so that tasks added separately, such as 'clean' and
+                // 'build', do not execute at the same time
+                ParallelTaskPlanExecuter planExecuter = new ParallelTaskPlanExecuter(parallelThreadCount);
+                for (Set<Task> group : executionGroups) {
+                    planExecuter.execute(group, new Action<Task>() {
+                        public void execute(Task task) {
+                            executeTask(task);
+                        }
+                    });
+                }
+            } finally {
+                StandardOutputLogging.stopPerThreadRedirection();
+            }
+            return;
+        }
+        for (Task task : executionPlan) {
             executeTask(task);
         }
     }
 
     private void executeTask(Task task) {
-        taskListeners.getSource().beforeExecute(task);
+        // Listeners are not required to be thread-safe, so notify them one task at a time
+        synchronized (taskListeners) {
+            taskListeners.getSource().beforeExecute(task);
+        }
         try {
             ((TaskInternal) task).execute();
         } finally {
-            taskListeners.getSource().afterExecute(task, task.getState());
+            synchronized (taskListeners) {
+                taskListeners.getSource().afterExecute(task, task.getState());
+            }
         }
     }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.util.ThreadUtils;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Executes the tasks of an execution plan using a bounded pool of worker threads. A task is handed to the pool once
+ * all of its dependencies which are part of the plan have completed. Ready tasks are started in plan order. On the
+ * first failure no further tasks are started, the tasks which are already running are allowed to complete and then
+ * the failure is rethrown.
+ */
+class ParallelTaskPlanExecuter {
+    private final int threadCount;
+
+    public ParallelTaskPlanExecuter(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void execute(Collection<? extends Task> plan, final Action<Task> taskAction) {
+        Map<Task, Set<Task>> waitingFor = new HashMap<Task, Set<Task>>();
+        Map<Task, List<Task>> dependents = new HashMap<Task, List<Task>>();
+        for (Task task : plan) {
+            Set<Task> dependencies = new HashSet<Task>();
+            for (Task dependency : task.getTaskDependencies().getDependencies(task)) {
+                if (plan.contains(dependency)) {
+                    dependencies.add(dependency);
+                    List<Task> tasks = dependents.get(dependency);
+                    if (tasks == null) {
+                        tasks = new ArrayList<Task>();
+                        dependents.put(dependency, tasks);
+                    }
+                    tasks.add(task);
+                }
+            }
+            waitingFor.put(task, dependencies);
+        }
+
+        List<Task> pending = new LinkedList<Task>(plan);
+        final BlockingQueue<TaskResult> completed = new LinkedBlockingQueue<TaskResult>();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Throwable failure = null;
+        boolean interrupted = false;
+        int running = 0;
+        try {
+            while (true) {
+                if (failure == null) {
+                    for (Iterator<Task> iterator = pending.iterator(); iterator.hasNext();) {
+                        final Task task = iterator.next();
+                        if (!waitingFor.get(task).isEmpty()) {
+                            continue;
+                        }
+                        iterator.remove();
+                        running++;
+                        executor.execute(new Runnable() {
+                            public void run() {
+                                Throwable taskFailure = null;
+                                try {
+                                    taskAction.execute(task);
+                                } catch (Throwable throwable) {
+                                    taskFailure = throwable;
+                                }
+                                completed.add(new TaskResult(task, taskFailure));
+                            }
+                        });
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                TaskResult result;
+                try {
+                    result = completed.take();
+                } catch (InterruptedException e) {
+                    // Keep waiting - the running tasks must complete before we can return
+                    interrupted = true;
+                    continue;
+                }
+                running--;
+                if (result.failure != null) {
+                    if (failure == null) {
+                        failure = result.failure;
+                    }
+                    continue;
+                }
+                List<Task> tasks = dependents.get(result.task);
+                if (tasks != null) {
+                    for (Task dependent : tasks) {
+                        waitingFor.get(dependent).remove(result.task);
+                    }
+                }
+            }
+        } finally {
+            ThreadUtils.shutdown(executor);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure == null && !pending.isEmpty()) {
+            throw new IllegalStateException(String.format("Could not schedule tasks %s.", pending));
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new GradleException(failure);
+        }
+    }
+
+    private static class TaskResult {
+        private final Task task;
+        private final Throwable failure;
+
+        private TaskResult(Task task, Throwable failure) {
+            this.task = task;
+            this.failure = failure;
+        }
+    }
+}
@@ -31,6 +31,9 @@ public class ProjectDefaultsBuildExecuter extends DelegatingBuildExecuter {
         if (getDelegate() == null) {
             // Gather the default tasks from this first group project
             ProjectInternal project = gradle.getDefaultProject();
+            if (gradle.getStartParameter().isConfigureOnDemand()) {
+                project.evaluateWithParents();
+            }
             defaultTasks = project.getDefaultTasks();
             if (defaultTasks.size() == 0) {
                 throw new TaskSelectionException(String.format(
@@ -19,6 +19,7 @@ import org.apache.commons.lang.StringUtils;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.util.GUtil;
 import org.gradle.util.NameMatcher;
 
@@ -26,7 +27,8 @@ import java.util.*;
 
 /**
  * A {@link BuildExecuter} which selects tasks which match the provided names. For each name, selects all tasks in all
- * projects whose name is the given name.
+ * projects whose name is the given name. When projects are evaluated on demand, evaluates the projects which it
+ * selects tasks from, along with their parent projects.
  */
 public class TaskNameResolvingBuildExecuter implements BuildExecuter {
     private final List<String> names;
@@ -56,6 +58,7 @@ public class TaskNameResolvingBuildExecuter implements BuildExecuter {
     }
 
     private static Map<String, Collection<Task>> doSelect(GradleInternal gradle, Iterable<String> paths) {
+        boolean evaluate = gradle.getStartParameter().isConfigureOnDemand();
 
         Map<String, Collection<Task>> allProjectsTasksByName = null;
 
@@ -71,6 +74,9 @@ public class TaskNameResolvingBuildExecuter implements BuildExecuter {
                 String projectPath = StringUtils.substringBeforeLast(path, Project.PATH_SEPARATOR);
                 projectPath = projectPath.length() == 0 ? Project.PATH_SEPARATOR : projectPath;
                 project = findProject(project, projectPath);
+                if (evaluate) {
+                    ((ProjectInternal) project).evaluateWithParents();
+                }
                 baseName = StringUtils.substringAfterLast(path, Project.PATH_SEPARATOR);
                 Task match = project.getTasks().findByName(baseName);
                 if (match != null) {
@@ -86,6 +92,11 @@ public class TaskNameResolvingBuildExecuter implements BuildExecuter {
                 prefix = project.getPath() + Project.PATH_SEPARATOR;
             }
             else {
+                if (evaluate) {
+                    for (Project candidate : project.getAllprojects()) {
+                        ((ProjectInternal) candidate).evaluateWithParents();
+                    }
+                }
                 Set<Task> tasks = project.getTasksByName(path, true);
                 if (!tasks.isEmpty()) {
                     matches.put(path, tasks);
@@ -29,6 +29,7 @@ import org.gradle.api.GradleException;
 import org.gradle.api.ScriptCompilationException;
 import org.gradle.util.Clock;
 import org.gradle.util.GFileUtils;
+import org.gradle.util.ObservableUrlClassLoader;
 import org.gradle.util.WrapUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,16 +37,22 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.net.URLClassLoader;
 import java.security.CodeSource;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Hans Dockter
  */
 public class DefaultScriptCompilationHandler implements ScriptCompilationHandler {
     private Logger logger = LoggerFactory.getLogger(DefaultScriptCompilationHandler.class);
+    private final Map<File, Map<ClassLoader, Class<?>>> loadedClasses = new HashMap<File, Map<ClassLoader, Class<?>>>();
 
     public void compileToDir(ScriptSource source, ClassLoader classLoader, File scriptCacheDir,
                              Transformer transformer, Class<? extends Script> scriptBaseClass) {
         Clock clock = new Clock();
+        synchronized (loadedClasses) {
+            loadedClasses.remove(scriptCacheDir);
+        }
         GFileUtils.deleteDirectory(scriptCacheDir);
         scriptCacheDir.mkdirs();
         CompilerConfiguration configuration = createBaseCompilerConfiguration(scriptBaseClass);
@@ -127,14 +134,46 @@ public class DefaultScriptCompilationHandler implements ScriptCompilationHandler
         return configuration;
     }
 
+    /**
+     * Loads the script class from the given directory. A class which has already been loaded from the directory is
+     * reused where this is not visible to the script, so that the same script applied to many projects is only loaded
+     * once.
+     */
     public <T extends Script> Class<? extends T> loadFromDir(ScriptSource source, ClassLoader classLoader, File scriptCacheDir,
                                               Class<T> scriptBaseClass) {
+        ClassLoader parent = getEffectiveParent(classLoader);
         try {
-            URLClassLoader urlClassLoader = new URLClassLoader(WrapUtil.toArray(scriptCacheDir.toURI().toURL()),
-                    classLoader);
-            return urlClassLoader.loadClass(source.getClassName()).asSubclass(scriptBaseClass);
+            synchronized (loadedClasses) {
+                Map<ClassLoader, Class<?>> classes = loadedClasses.get(scriptCacheDir);
+                if (classes == null) {
+                    classes = new HashMap<ClassLoader, Class<?>>();
+                    loadedClasses.put(scriptCacheDir, classes);
+                }
+                Class<?> scriptClass = classes.get(parent);
+                if (scriptClass == null) {
+                    URLClassLoader urlClassLoader = new URLClassLoader(WrapUtil.toArray(scriptCacheDir.toURI().toURL()),
+                            parent);
+                    scriptClass = urlClassLoader.loadClass(source.getClassName());
+                    classes.put(parent, scriptClass);
+                }
+                return scriptClass.asSubclass(scriptBaseClass);
+            }
         } catch (Exception e) {
             throw new GradleException(String.format("Could not load compiled classes for %s from cache.", source.getDisplayName()), e);
         }
     }
+
+    /**
+     * Returns the ClassLoader to use as the parent of the script class. A script ClassLoader which has an empty
+     * classpath defines no classes of its own, so the script class can be loaded from its parent instead, and shared
+     * with other scripts which have the same parent.
+     */
+    private ClassLoader getEffectiveParent(ClassLoader classLoader) {
+        ClassLoader parent = classLoader;
+        while (parent instanceof ObservableUrlClassLoader && ((ObservableUrlClassLoader) parent).getURLs().length == 0
+                && parent.getParent() != null) {
+            parent = parent.getParent();
+        }
+        return parent;
+    }
 }
@@ -15,12 +15,15 @@
  */
 package org.gradle.groovy.scripts;
 
+import org.gradle.api.internal.changedetection.Hasher;
 import org.gradle.cache.CacheRepository;
+import org.gradle.configuration.ImportsScriptSource;
 import org.gradle.cache.PersistentCache;
 import org.gradle.util.HashUtil;
 import org.gradle.util.ReflectionUtil;
 
 import java.io.File;
+import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,12 +34,19 @@ public class DefaultScriptCompilerFactory implements ScriptCompilerFactory {
     private final ScriptCompilationHandler scriptCompilationHandler;
     private final CacheRepository cacheRepository;
     private final ScriptRunnerFactory scriptRunnerFactory;
+    private final Hasher hasher;
 
+    /**
+     * Creates a factory which uses the given hasher to calculate the hash of a script which has a source file. This
+     * hasher should be backed by a cache, so that the text of an unchanged script is not read.
+     */
     public DefaultScriptCompilerFactory(ScriptCompilationHandler scriptCompilationHandler,
-                                        ScriptRunnerFactory scriptRunnerFactory, CacheRepository cacheRepository) {
+                                        ScriptRunnerFactory scriptRunnerFactory, CacheRepository cacheRepository,
+                                        Hasher hasher) {
         this.scriptCompilationHandler = scriptCompilationHandler;
         this.cacheRepository = cacheRepository;
         this.scriptRunnerFactory = scriptRunnerFactory;
+        this.hasher = hasher;
     }
 
     public ScriptCompiler createCompiler(ScriptSource source) {
@@ -75,7 +85,7 @@ public class DefaultScriptCompilerFactory implements ScriptCompilerFactory {
         private <T extends Script> T loadViaCache(ClassLoader classLoader, Class<T> scriptBaseClass) {
             Map<String, Object> properties = new HashMap<String, Object>();
             properties.put("source.filename", source.getFileName());
-            properties.put("source.hash", HashUtil.createHash(source.getResource().getText()));
+            properties.put("source.hash", getHash());
 
             PersistentCache cache = cacheRepository.cache(String.format("scripts/%s", source.getClassName())).withProperties(properties).open();
             File classesDir;
@@ -94,5 +104,32 @@ public class DefaultScriptCompilerFactory implements ScriptCompilerFactory {
                     scriptBaseClass);
             return scriptBaseClass.cast(ReflectionUtil.newInstance(scriptClass, new Object[0]));
         }
+
+        private String getHash() {
+            File sourceFile = source.getResource().getFile();
+            if (sourceFile != null && sourceFile.isFile()) {
+                String hash = new BigInteger(1, hasher.hash(sourceFile)).toString(16);
+                String imports = getImports();
+                if (imports == null) {
+                    return hash;
+                }
+                return HashUtil.createHash(hash + '\n' + imports);
+            }
+            return HashUtil.createHash(source.getResource().getText());
+        }
+
+        /**
+         * Returns the imports which are appended to the text of the source file, or null if there are none.
+         */
+        private String getImports() {
+            ScriptSource current = source;
+            while (current instanceof DelegatingScriptSource) {
+                if (current instanceof ImportsScriptSource) {
+                    return ((ImportsScriptSource) current).getImports();
+                }
+                current = ((DelegatingScriptSource) current).getSource();
+            }
+            return null;
+        }
     }
 }
@@ -71,6 +71,10 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
     private static final String CACHE = "C";
     private static final String DRY_RUN = "m";
     private static final String NO_OPT = "no-opt";
+    private static final String PARALLEL_THREADS = "parallel-threads";
+    private static final String COMPACT_CACHES = "compact-caches";
+    private static final String CONFIGURE_ON_DEMAND = "configure-on-demand";
+    private static final String PARALLEL_CONFIGURE_THREADS = "parallel-configure-threads";
     private static final String EXCLUDE_TASK = "x";
     private static final String HELP = "h";
     private static final String GUI = "gui";
@@ -125,6 +129,15 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
             acceptsAll(WrapUtil.toList(NO_PROJECT_DEPENDENCY_REBUILD, "no-rebuild"),
                     "Do not rebuild project dependencies.");
             acceptsAll(WrapUtil.toList(NO_OPT), "Ignore any task optimization.");
+            acceptsAll(WrapUtil.toList(PARALLEL_THREADS),
+                    "Execute independent tasks in parallel using the given number of threads.").withRequiredArg()
+                    .ofType(Integer.class);
+            acceptsAll(WrapUtil.toList(COMPACT_CACHES), "Compact the persistent caches at the end of the build.");
+            acceptsAll(WrapUtil.toList(CONFIGURE_ON_DEMAND),
+                    "Only evaluate the projects required by the selected tasks.");
+            acceptsAll(WrapUtil.toList(PARALLEL_CONFIGURE_THREADS),
+                    "Evaluate independent projects in parallel using the given number of threads.").withRequiredArg()
+                    .ofType(Integer.class);
             acceptsAll(WrapUtil.toList(EXCLUDE_TASK, "exclude-task"), "Specify a task to be excluded from execution.")
                     .withRequiredArg().ofType(String.class);
             acceptsAll(WrapUtil.toList(HELP, "?", "help"), "Shows this help message");
@@ -300,6 +313,32 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
             startParameter.setNoOpt(true);
         }
 
+        if (options.has(PARALLEL_THREADS)) {
+            int threads = (Integer) options.valueOf(PARALLEL_THREADS);
+            if (threads < 1) {
+                throw new CommandLineArgumentException(String.format(
+                        "Error: The --%s option requires a positive number of threads.", PARALLEL_THREADS));
+            }
+            startParameter.setParallelThreadCount(threads);
+        }
+
+        if (options.has(COMPACT_CACHES)) {
+            startParameter.setCompactCaches(true);
+        }
+
+        if (options.has(CONFIGURE_ON_DEMAND)) {
+            startParameter.setConfigureOnDemand(true);
+        }
+
+        if (options.has(PARALLEL_CONFIGURE_THREADS)) {
+            int threads = (Integer) options.valueOf(PARALLEL_CONFIGURE_THREADS);
+            if (threads < 1) {
+                throw new CommandLineArgumentException(String.format(
+                        "Error: The --%s option requires a positive number of threads.", PARALLEL_CONFIGURE_THREADS));
+            }
+            startParameter.setParallelConfigureThreadCount(threads);
+        }
+
         if (options.has(EXCLUDE_TASK)) {
             startParameter.setExcludedTaskNames((List<String>) options.valuesOf(EXCLUDE_TASK));
         }
@@ -156,8 +156,15 @@ public class DefaultGradleLauncher extends GradleLauncher {
         buildLoader.load(settings.getRootProject(), gradle, gradlePropertiesLoader.getGradleProperties());
         buildListener.projectsLoaded(gradle);
 
-        // Configure build
-        buildConfigurer.process(gradle.getRootProject());
+        // Configure build. The build analysis needs all projects, so these are always evaluated
+        int configureThreads = gradle.getStartParameter().getParallelConfigureThreadCount();
+        if (upTo != Stage.Configure && gradle.getStartParameter().isConfigureOnDemand()) {
+            buildConfigurer.processOnDemand(gradle);
+        } else if (configureThreads > 1) {
+            buildConfigurer.processInParallel(gradle.getRootProject(), configureThreads);
+        } else {
+            buildConfigurer.process(gradle.getRootProject());
+        }
         buildListener.projectsEvaluated(gradle);
 
         if (upTo == Stage.Configure) {
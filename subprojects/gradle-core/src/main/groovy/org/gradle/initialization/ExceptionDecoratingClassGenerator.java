@@ -46,12 +46,14 @@ public class ExceptionDecoratingClassGenerator implements ClassGenerator {
     }
 
     public <T> Class<? extends T> generate(Class<T> type) {
-        Class generated = GENERATED_CLASSES.get(type);
-        if (generated == null) {
-            generated = doGenerate(type);
-            GENERATED_CLASSES.put(type, generated);
+        synchronized (GENERATED_CLASSES) {
+            Class generated = GENERATED_CLASSES.get(type);
+            if (generated == null) {
+                generated = doGenerate(type);
+                GENERATED_CLASSES.put(type, generated);
+            }
+            return generated;
         }
-        return generated;
     }
 
     private <T> Class<? extends T> doGenerate(Class<T> type) {
@@ -20,6 +20,7 @@ import groovy.lang.Closure;
 import org.gradle.api.Action;
 import org.gradle.api.Transformer;
 import org.gradle.messaging.dispatch.BroadcastDispatch;
+import org.gradle.messaging.dispatch.DirectBroadcastAdapter;
 import org.gradle.messaging.dispatch.StoppableDispatch;
 import org.gradle.messaging.dispatch.MethodInvocation;
 import org.gradle.messaging.dispatch.ProxyDispatchAdapter;
@@ -31,10 +32,13 @@ import org.gradle.messaging.dispatch.ProxyDispatchAdapter;
  * <p>Ordering is maintained for events, so that events are delivered to listeners in the order they are generated.
  * Events are delivered to listeners in the order that listeners are added to this broadcaster.</p>
  *
+ * <p>Where possible, the broadcaster is a generated class which calls the listeners directly. Otherwise, it is a
+ * {@link java.lang.reflect.Proxy} which dispatches a {@link MethodInvocation} to the listeners.</p>
+ *
  * @param <T> The listener type.
  */
 public class ListenerBroadcast<T> implements StoppableDispatch<MethodInvocation> {
-    private final ProxyDispatchAdapter<T> source;
+    private final T source;
     private final BroadcastDispatch<T> broadcast;
     private final Class<T> type;
     private final StoppableDispatch<MethodInvocation> dispatch;
@@ -51,7 +55,12 @@ public class ListenerBroadcast<T> implements StoppableDispatch<MethodInvocation>
         this.type = type;
         broadcast = new BroadcastDispatch<T>(type);
         dispatch = transformer.transform(broadcast);
-        source = new ProxyDispatchAdapter<T>(type, dispatch);
+        T proxy = new ProxyDispatchAdapter<T>(type, dispatch).getSource();
+        if (dispatch == broadcast && DirectBroadcastAdapter.isSupported(type)) {
+            source = new DirectBroadcastAdapter<T>(type, broadcast, proxy).getSource();
+        } else {
+            source = proxy;
+        }
     }
 
     /**
@@ -60,7 +69,7 @@ public class ListenerBroadcast<T> implements StoppableDispatch<MethodInvocation>
      * @return The broadcaster.
      */
     public T getSource() {
-        return source.getSource();
+        return source;
     }
 
     /**
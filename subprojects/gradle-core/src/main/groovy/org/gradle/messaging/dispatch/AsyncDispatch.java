@@ -17,8 +17,9 @@ package org.gradle.messaging.dispatch;
 
 import org.gradle.api.GradleException;
 
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -29,6 +30,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * {@link #dispatch} queue the message. Worker threads delivers the messages in the order they have been received to one
  * of a pool of delegate {@link org.gradle.messaging.dispatch.Dispatch} instances.</p>
  *
+ * <p>The queue holds at most a fixed number of messages. When the queue is full, calls to {@link #dispatch} block until
+ * there is space. Each worker thread takes all queued messages at once, and delivers them as a batch when the delegate is
+ * a {@link org.gradle.messaging.dispatch.BatchDispatch}.</p>
+ *
  * <p>One or more {@link org.gradle.messaging.dispatch.Receive} instances can use used as a source of messages.</p>
  */
 public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
@@ -39,10 +44,10 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
     private static final int MAX_QUEUE_SIZE = 200;
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
-    private final LinkedList<T> queue = new LinkedList<T>();
+    private final MessageQueue<T> queue;
     private final Executor executor;
-    private final int maxQueueSize;
     private int dispatchers;
+    private int delivering;
     private int receivers;
     private State state;
 
@@ -56,7 +61,7 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
 
     public AsyncDispatch(Executor executor, final Dispatch<? super T> dispatch, int maxQueueSize) {
         this.executor = executor;
-        this.maxQueueSize = maxQueueSize;
+        queue = new MessageQueue<T>(maxQueueSize);
         state = State.Init;
         if (dispatch != null) {
             dispatchTo(dispatch);
@@ -142,7 +147,7 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
 
             lock.lock();
             try {
-                while (state != State.Stopped && queue.size() >= maxQueueSize) {
+                while (state != State.Stopped && queue.isFull()) {
                     try {
                         condition.await();
                     } catch (InterruptedException e) {
@@ -150,8 +155,7 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
                     }
                 }
                 assert state != State.Stopped;
-                queue.add(message);
-                condition.signalAll();
+                add(message);
                 if (state != State.Init) {
                     return;
                 }
@@ -166,39 +170,83 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
         condition.signalAll();
     }
 
+    /**
+     * Adds a message to the queue. Must be called while holding the lock.
+     */
+    private void add(T message) {
+        if (queue.isEmpty()) {
+            // Dispatch threads only wait when the queue is empty
+            condition.signalAll();
+        }
+        queue.add(message);
+    }
+
+    @SuppressWarnings("unchecked")
     private void dispatchMessages(Dispatch<? super T> dispatch) {
+        List<T> batch = new ArrayList<T>();
         while (true) {
-            T message = null;
             lock.lock();
             try {
-                while (state != State.Stopped && queue.isEmpty()) {
+                // Keep waiting while another dispatch thread is delivering, as it may put back messages on failure
+                while (queue.isEmpty() && (state != State.Stopped || delivering > 0)) {
                     try {
                         condition.await();
                     } catch (InterruptedException e) {
                         throw new GradleException(e);
                     }
                 }
-                if (!queue.isEmpty()) {
-                    message = queue.remove();
+                if (queue.isFull()) {
+                    // Senders only wait when the queue is full
                     condition.signalAll();
                 }
+                queue.drainTo(batch);
+                if (batch.isEmpty()) {
+                    // Have been stopped and nothing to deliver
+                    return;
+                }
+                delivering++;
             } finally {
                 lock.unlock();
             }
 
-            if (message == null) {
-                // Have been stopped and nothing to deliver
-                return;
+            int delivered = 0;
+            try {
+                if (dispatch instanceof BatchDispatch) {
+                    delivered = batch.size();
+                    ((BatchDispatch<? super T>) dispatch).dispatchBatch(batch);
+                } else {
+                    for (T message : batch) {
+                        delivered++;
+                        dispatch.dispatch(message);
+                    }
+                }
+            } finally {
+                onBatchDelivered(batch.subList(delivered, batch.size()));
             }
+            batch.clear();
+        }
+    }
 
-            dispatch.dispatch(message);
+    /**
+     * Called when a dispatch thread has finished delivering a batch. Puts back the messages which it did not deliver
+     * because the delegate failed, so that the other dispatch threads can deliver them. A failed batch of a {@link
+     * BatchDispatch} is discarded, as it is not known which of its messages were delivered.
+     */
+    private void onBatchDelivered(List<T> undelivered) {
+        lock.lock();
+        try {
+            delivering--;
+            queue.addFirst(undelivered);
+            condition.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
     public void dispatch(final T message) {
         lock.lock();
         try {
-            while (state != State.Stopped && queue.size() >= maxQueueSize) {
+            while (state != State.Stopped && queue.isFull()) {
                 try {
                     condition.await();
                 } catch (InterruptedException e) {
@@ -208,8 +256,7 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
             if (state == State.Stopped) {
                 throw new IllegalStateException("This message dispatch has been stopped.");
             }
-            queue.add(message);
-            condition.signalAll();
+            add(message);
         } finally {
             lock.unlock();
         }
@@ -266,4 +313,64 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
             lock.unlock();
         }
     }
+
+    /**
+     * A bounded queue of messages, held in a ring buffer. Not thread-safe.
+     */
+    private static class MessageQueue<T> {
+        private final int maxSize;
+        private Object[] messages;
+        private int head;
+        private int size;
+
+        private MessageQueue(int maxSize) {
+            this.maxSize = maxSize;
+            messages = new Object[maxSize];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean isFull() {
+            return size >= maxSize;
+        }
+
+        void add(T message) {
+            messages[(head + size) % messages.length] = message;
+            size++;
+        }
+
+        /**
+         * Adds the given messages to the head of this queue, ignoring the maximum size.
+         */
+        void addFirst(List<T> requeued) {
+            if (size + requeued.size() > messages.length) {
+                Object[] newMessages = new Object[size + requeued.size()];
+                for (int i = 0; i < size; i++) {
+                    newMessages[i] = messages[(head + i) % messages.length];
+                }
+                messages = newMessages;
+                head = 0;
+            }
+            for (int i = requeued.size() - 1; i >= 0; i--) {
+                head = (head + messages.length - 1) % messages.length;
+                messages[head] = requeued.get(i);
+                size++;
+            }
+        }
+
+        /**
+         * Removes all messages from this queue, and adds them to the given list in the order they were added.
+         */
+        @SuppressWarnings("unchecked")
+        void drainTo(List<T> dest) {
+            for (; size > 0; size--) {
+                dest.add((T) messages[head]);
+                messages[head] = null;
+                head = (head + 1) % messages.length;
+            }
+            head = 0;
+        }
+    }
 }
@@ -21,16 +21,23 @@ import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.logging.DefaultStandardOutputCapture;
 import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.StandardOutputCapture;
 import org.gradle.api.logging.StandardOutputListener;
 import org.gradle.listener.ListenerNotificationException;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Dispatches each invocation to the logger and then to each of the listeners. The listeners may be added, removed and
+ * notified concurrently by multiple threads. Each notification uses the listeners which were registered when it started.
+ */
 public class BroadcastDispatch<T> implements StoppableDispatch<MethodInvocation> {
     private final Class<T> type;
     private final Map<Object, InvocationHandler> handlers = new LinkedHashMap<Object, InvocationHandler>();
@@ -45,23 +52,27 @@ public class BroadcastDispatch<T> implements StoppableDispatch<MethodInvocation>
         }
     };
     private DelegatingInvocationHandler logger = noOpLogger;
+    private volatile Snapshot snapshot = new Snapshot(noOpLogger, new InvocationHandler[0], new Object[0]);
 
     public BroadcastDispatch(Class<T> type) {
         this.type = type;
     }
 
-    public void add(T listener) {
+    public synchronized void add(T listener) {
         handlers.put(listener, new ListenerInvocationHandler(listener));
+        updateSnapshot();
     }
 
-    public void add(String methodName, Closure closure) {
+    public synchronized void add(String methodName, Closure closure) {
         assertIsMethod(methodName);
         handlers.put(closure, new ClosureInvocationHandler(methodName, closure));
+        updateSnapshot();
     }
 
-    public void add(String methodName, Action<?> action) {
+    public synchronized void add(String methodName, Action<?> action) {
         assertIsMethod(methodName);
         handlers.put(action, new ActionInvocationHandler(methodName, action));
+        updateSnapshot();
     }
 
     private void assertIsMethod(String methodName) {
@@ -74,19 +85,65 @@ public class BroadcastDispatch<T> implements StoppableDispatch<MethodInvocation>
                 type.getSimpleName()));
     }
 
-    public void remove(Object listener) {
+    public synchronized void remove(Object listener) {
         if (listener.equals(logger.getDelegate())) {
             logger = noOpLogger;
         }
         handlers.remove(listener);
+        updateSnapshot();
     }
 
-    public T setLogger(T logger) {
+    public synchronized T setLogger(T logger) {
         T oldLogger = this.logger.getDelegate();
         this.logger = new ListenerInvocationHandler(logger);
+        updateSnapshot();
         return oldLogger;
     }
 
+    private void updateSnapshot() {
+        snapshot = new Snapshot(logger, handlers.values().toArray(new InvocationHandler[handlers.size()]),
+                collectListeners());
+    }
+
+    /**
+     * Returns the logger and listeners to notify, in order, or null when some of the listeners are closures or actions.
+     * Used by {@link DirectBroadcastAdapter} to call the listeners directly.
+     */
+    Object[] getListeners() {
+        return snapshot.listeners;
+    }
+
+    private Object[] collectListeners() {
+        List<Object> result = new ArrayList<Object>(handlers.size() + 1);
+        if (logger.getDelegate() != null) {
+            result.add(logger.getDelegate());
+        }
+        for (InvocationHandler handler : handlers.values()) {
+            if (!(handler instanceof BroadcastDispatch.ListenerInvocationHandler)) {
+                return null;
+            }
+            result.add(((ListenerInvocationHandler) handler).getDelegate());
+        }
+        return result.toArray();
+    }
+
+    StandardOutputCapture startNotification() {
+        if (type == StandardOutputListener.class) {
+            return null;
+        }
+        return new DefaultStandardOutputCapture(true, LogLevel.QUIET).start();
+    }
+
+    void endNotification(StandardOutputCapture capture) {
+        if (capture != null) {
+            capture.stop();
+        }
+    }
+
+    RuntimeException notificationFailed(Throwable failure) {
+        return new ListenerNotificationException(getErrorMessage(), failure);
+    }
+
     private String getErrorMessage() {
         String typeDescription = type.getSimpleName().replaceAll("(\\p{Upper})", " $1").trim().toLowerCase();
         return String.format("Failed to notify %s.", typeDescription);
@@ -104,23 +161,30 @@ public class BroadcastDispatch<T> implements StoppableDispatch<MethodInvocation>
     }
 
     private void dispatch(Method method, Object[] parameters) throws Throwable {
-        DefaultStandardOutputCapture standardOutputCapture = null;
-        if (type != StandardOutputListener.class) {
-            standardOutputCapture = new DefaultStandardOutputCapture(true, LogLevel.QUIET);
-            standardOutputCapture.start();
-        }
-        logger.invoke(null, method, parameters);
-        for (InvocationHandler handler : handlers.values()) {
+        Snapshot snapshot = this.snapshot;
+        StandardOutputCapture standardOutputCapture = startNotification();
+        snapshot.logger.invoke(null, method, parameters);
+        for (InvocationHandler handler : snapshot.handlers) {
             handler.invoke(null, method, parameters);
         }
-        if (standardOutputCapture != null) {
-            standardOutputCapture.stop();
-        }
+        endNotification(standardOutputCapture);
     }
 
     public void stop() {
     }
 
+    private static class Snapshot {
+        private final InvocationHandler logger;
+        private final InvocationHandler[] handlers;
+        private final Object[] listeners;
+
+        private Snapshot(InvocationHandler logger, InvocationHandler[] handlers, Object[] listeners) {
+            this.logger = logger;
+            this.handlers = handlers;
+            this.listeners = listeners;
+        }
+    }
+
     private abstract class DelegatingInvocationHandler implements InvocationHandler {
         abstract T getDelegate();
     }
@@ -141,7 +205,7 @@ public class BroadcastDispatch<T> implements StoppableDispatch<MethodInvocation>
             try {
                 method.invoke(listener, parameters);
             } catch (InvocationTargetException e) {
-                throw new ListenerNotificationException(getErrorMessage(), e.getCause());
+                throw notificationFailed(e.getCause());
             }
             return null;
         }
@@ -24,7 +24,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class DeferredConnection implements Dispatch<Message>, Receive<Message> {
+public class DeferredConnection implements BatchDispatch<Message>, Receive<Message> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeferredConnection.class);
 
     private enum State {
@@ -174,24 +174,72 @@ public class DeferredConnection implements Dispatch<Message>, Receive<Message> {
         try {
             dispatch.dispatch(message);
         } catch (Throwable throwable) {
-            LOGGER.error(String.format("Could not send message using %s. Discarding connection.", dispatch), throwable);
-            lock.lock();
-            try {
-                switch (dispatchState) {
-                    case Connected:
-                        setState(receiveState.onDispatchEndOfStream(), State.Stopped);
-                        break;
-                    default:
-                        throw new IllegalStateException(String.format("Connection is in unexpected dispatch state %s.", dispatchState));
-                }
-            } finally {
-                lock.unlock();
+            discardConnection(dispatch, throwable);
+        }
+
+        cleanup();
+    }
+
+    /**
+     * Dispatches the given messages. When connected, and none of the messages is an end-of-stream message, the messages
+     * are passed to the connection as a single batch if the connection supports this. Otherwise, each message is
+     * dispatched in turn.
+     */
+    @SuppressWarnings("unchecked")
+    public void dispatchBatch(List<? extends Message> messages) {
+        BatchDispatch<Message> dispatch = null;
+
+        lock.lock();
+        try {
+            if (dispatchState == State.Connected && connection instanceof BatchDispatch && !containsEndOfStream(
+                    messages)) {
+                dispatch = (BatchDispatch<Message>) connection;
             }
+        } finally {
+            lock.unlock();
+        }
+
+        if (dispatch == null) {
+            for (Message message : messages) {
+                dispatch(message);
+            }
+            return;
+        }
+
+        try {
+            dispatch.dispatchBatch(messages);
+        } catch (Throwable throwable) {
+            discardConnection(dispatch, throwable);
         }
 
         cleanup();
     }
 
+    private static boolean containsEndOfStream(List<? extends Message> messages) {
+        for (Message message : messages) {
+            if (message instanceof EndOfStream) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void discardConnection(Dispatch<Message> dispatch, Throwable throwable) {
+        LOGGER.error(String.format("Could not send message using %s. Discarding connection.", dispatch), throwable);
+        lock.lock();
+        try {
+            switch (dispatchState) {
+                case Connected:
+                    setState(receiveState.onDispatchEndOfStream(), State.Stopped);
+                    break;
+                default:
+                    throw new IllegalStateException(String.format("Connection is in unexpected dispatch state %s.", dispatchState));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void cleanup() {
         Stoppable stoppable;
 
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.dispatch;
+
+import org.gradle.api.logging.StandardOutputCapture;
+import org.gradle.util.ReflectionUtil;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>Adapts from interface T to a {@link BroadcastDispatch}, using a generated implementation of T which calls each
+ * listener directly, rather than through a {@link java.lang.reflect.Proxy} and a {@link MethodInvocation}.</p>
+ *
+ * <p>The generated implementation delegates to the given fallback implementation when the broadcast has listeners which
+ * are not instances of T, such as closures and actions. Use {@link #isSupported(Class)} to check whether an
+ * implementation can be generated for a given type.</p>
+ *
+ * @param <T>
+ */
+public class DirectBroadcastAdapter<T> {
+    // Each generated class is defined in the ClassLoader of its type, and so references the type. Both the type and the
+    // generated class are referenced weakly, so that the ClassLoader can be collected
+    private static final Map<Class<?>, WeakReference<Class<?>>> GENERATED_CLASSES
+            = new WeakHashMap<Class<?>, WeakReference<Class<?>>>();
+    private final Class<T> type;
+    private final T source;
+
+    public DirectBroadcastAdapter(Class<T> type, BroadcastDispatch<T> broadcast, T fallback) {
+        Constructor<?> constructor = getConstructor(type);
+        if (constructor == null) {
+            throw new IllegalArgumentException(String.format("Cannot generate a broadcast implementation for type %s.",
+                    type.getName()));
+        }
+        this.type = type;
+        try {
+            source = type.cast(constructor.newInstance(broadcast, fallback));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public T getSource() {
+        return source;
+    }
+
+    /**
+     * Returns true if an implementation can be generated for the given type. This is the case for public interfaces
+     * whose methods all return void, and whose ClassLoader can see this class.
+     */
+    public static boolean isSupported(Class<?> type) {
+        return getConstructor(type) != null;
+    }
+
+    private static Constructor<?> getConstructor(Class<?> type) {
+        Class<?> generatedClass = null;
+        synchronized (GENERATED_CLASSES) {
+            if (GENERATED_CLASSES.containsKey(type)) {
+                WeakReference<Class<?>> reference = GENERATED_CLASSES.get(type);
+                generatedClass = reference == null ? null : reference.get();
+            } else {
+                if (canGenerate(type)) {
+                    try {
+                        generatedClass = generate(type);
+                        generatedClass.getConstructor(BroadcastDispatch.class, Object.class);
+                    } catch (Exception e) {
+                        // Use the fallback
+                        generatedClass = null;
+                    } catch (LinkageError e) {
+                        // Use the fallback
+                        generatedClass = null;
+                    }
+                }
+                GENERATED_CLASSES.put(type, generatedClass == null ? null : new WeakReference<Class<?>>(
+                        generatedClass));
+            }
+        }
+        if (generatedClass == null) {
+            return null;
+        }
+        try {
+            return generatedClass.getConstructor(BroadcastDispatch.class, Object.class);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean canGenerate(Class<?> type) {
+        if (!type.isInterface() || !Modifier.isPublic(type.getModifiers()) || type.getClassLoader() == null) {
+            return false;
+        }
+        for (Method method : type.getMethods()) {
+            if (method.getReturnType() != Void.TYPE || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return type.getClassLoader().loadClass(GeneratedSource.class.getName()) == GeneratedSource.class;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> generate(Class<?> type) throws Exception {
+        ClassWriter visitor = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        String typeName = type.getName() + "_Broadcast";
+        Type generatedType = Type.getType("L" + typeName.replaceAll("\\.", "/") + ";");
+        Type superclassType = Type.getType(GeneratedSource.class);
+        Type listenerType = Type.getType(type);
+        Type objectType = Type.getType(Object.class);
+
+        visitor.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, generatedType.getInternalName(), null,
+                superclassType.getInternalName(), new String[]{listenerType.getInternalName()});
+
+        // GENERATE public <init>(BroadcastDispatch broadcast, Object fallback) { super(broadcast, fallback); }
+
+        String constructorDescriptor = Type.getMethodDescriptor(Type.VOID_TYPE, new Type[]{Type.getType(
+                BroadcastDispatch.class), objectType});
+        MethodVisitor methodVisitor = visitor.visitMethod(Opcodes.ACC_PUBLIC, "<init>", constructorDescriptor, null,
+                new String[0]);
+        methodVisitor.visitCode();
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+        methodVisitor.visitVarInsn(Opcodes.ALOAD, 2);
+        methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, superclassType.getInternalName(), "<init>",
+                constructorDescriptor);
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+
+        String getListenersDescriptor = Type.getMethodDescriptor(GeneratedSource.class.getDeclaredMethod(
+                "getListeners"));
+        String startDescriptor = Type.getMethodDescriptor(GeneratedSource.class.getDeclaredMethod(
+                "startNotification"));
+        String endDescriptor = Type.getMethodDescriptor(GeneratedSource.class.getDeclaredMethod("endNotification",
+                StandardOutputCapture.class));
+        String failedDescriptor = Type.getMethodDescriptor(GeneratedSource.class.getDeclaredMethod(
+                "notificationFailed", Throwable.class));
+
+        for (Method method : type.getMethods()) {
+            // GENERATE public void <method>(<params>) {
+            //     Object[] listeners = getListeners();
+            //     if (listeners == null) { ((<type>) fallback).<method>(<params>); return; }
+            //     StandardOutputCapture capture = startNotification();
+            //     try {
+            //         for (int i = 0; i < listeners.length; i++) { ((<type>) listeners[i]).<method>(<params>); }
+            //     } catch (Throwable t) { throw notificationFailed(t); }
+            //     endNotification(capture);
+            // }
+
+            Type[] paramTypes = Type.getArgumentTypes(method);
+            String methodDescriptor = Type.getMethodDescriptor(method);
+            methodVisitor = visitor.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), methodDescriptor, null,
+                    new String[0]);
+            methodVisitor.visitCode();
+
+            int listenersVar = 1;
+            for (Type paramType : paramTypes) {
+                listenersVar += paramType.getSize();
+            }
+            int captureVar = listenersVar + 1;
+            int indexVar = listenersVar + 2;
+
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, superclassType.getInternalName(), "getListeners",
+                    getListenersDescriptor);
+            methodVisitor.visitVarInsn(Opcodes.ASTORE, listenersVar);
+
+            Label notify = new Label();
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, listenersVar);
+            methodVisitor.visitJumpInsn(Opcodes.IFNONNULL, notify);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitFieldInsn(Opcodes.GETFIELD, superclassType.getInternalName(), "fallback",
+                    objectType.getDescriptor());
+            methodVisitor.visitTypeInsn(Opcodes.CHECKCAST, listenerType.getInternalName());
+            loadParameters(methodVisitor, paramTypes);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEINTERFACE, listenerType.getInternalName(), method.getName(),
+                    methodDescriptor);
+            methodVisitor.visitInsn(Opcodes.RETURN);
+
+            methodVisitor.visitLabel(notify);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, superclassType.getInternalName(),
+                    "startNotification", startDescriptor);
+            methodVisitor.visitVarInsn(Opcodes.ASTORE, captureVar);
+
+            Label tryStart = new Label();
+            Label loopCondition = new Label();
+            Label tryEnd = new Label();
+            Label handler = new Label();
+            methodVisitor.visitTryCatchBlock(tryStart, tryEnd, handler, Type.getInternalName(Throwable.class));
+
+            methodVisitor.visitLabel(tryStart);
+            methodVisitor.visitInsn(Opcodes.ICONST_0);
+            methodVisitor.visitVarInsn(Opcodes.ISTORE, indexVar);
+            methodVisitor.visitLabel(loopCondition);
+            methodVisitor.visitVarInsn(Opcodes.ILOAD, indexVar);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, listenersVar);
+            methodVisitor.visitInsn(Opcodes.ARRAYLENGTH);
+            methodVisitor.visitJumpInsn(Opcodes.IF_ICMPGE, tryEnd);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, listenersVar);
+            methodVisitor.visitVarInsn(Opcodes.ILOAD, indexVar);
+            methodVisitor.visitInsn(Opcodes.AALOAD);
+            methodVisitor.visitTypeInsn(Opcodes.CHECKCAST, listenerType.getInternalName());
+            loadParameters(methodVisitor, paramTypes);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEINTERFACE, listenerType.getInternalName(), method.getName(),
+                    methodDescriptor);
+            methodVisitor.visitIincInsn(indexVar, 1);
+            methodVisitor.visitJumpInsn(Opcodes.GOTO, loopCondition);
+            methodVisitor.visitLabel(tryEnd);
+
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, captureVar);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, superclassType.getInternalName(), "endNotification",
+                    endDescriptor);
+            methodVisitor.visitInsn(Opcodes.RETURN);
+
+            methodVisitor.visitLabel(handler);
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitInsn(Opcodes.SWAP);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, superclassType.getInternalName(),
+                    "notificationFailed", failedDescriptor);
+            methodVisitor.visitInsn(Opcodes.ATHROW);
+
+            methodVisitor.visitMaxs(0, 0);
+            methodVisitor.visitEnd();
+        }
+
+        visitor.visitEnd();
+
+        byte[] bytecode = visitor.toByteArray();
+        return (Class<?>) ReflectionUtil.invoke(type.getClassLoader(), "defineClass", new Object[]{
+                typeName, bytecode, 0, bytecode.length
+        });
+    }
+
+    private static void loadParameters(MethodVisitor methodVisitor, Type[] paramTypes) {
+        int var = 1;
+        for (Type paramType : paramTypes) {
+            methodVisitor.visitVarInsn(paramType.getOpcode(Opcodes.ILOAD), var);
+            var += paramType.getSize();
+        }
+    }
+
+    /**
+     * The superclass of the generated implementations.
+     */
+    public abstract static class GeneratedSource {
+        private final BroadcastDispatch<?> broadcast;
+        protected final Object fallback;
+
+        protected GeneratedSource(BroadcastDispatch<?> broadcast, Object fallback) {
+            this.broadcast = broadcast;
+            this.fallback = fallback;
+        }
+
+        protected final Object[] getListeners() {
+            return broadcast.getListeners();
+        }
+
+        protected final StandardOutputCapture startNotification() {
+            return broadcast.startNotification();
+        }
+
+        protected final void endNotification(StandardOutputCapture capture) {
+            broadcast.endNotification(capture);
+        }
+
+        protected final RuntimeException notificationFailed(Throwable failure) {
+            return broadcast.notificationFailed(failure);
+        }
+
+        @Override
+        public String toString() {
+            return fallback.toString();
+        }
+    }
+}
@@ -17,7 +17,9 @@ package org.gradle.messaging.dispatch;
 
 import org.slf4j.Logger;
 
-public class DiscardOnFailureDispatch<T> implements Dispatch<T> {
+import java.util.List;
+
+public class DiscardOnFailureDispatch<T> implements BatchDispatch<T> {
     private final Dispatch<? super T> dispatch;
     private final Logger logger;
 
@@ -33,4 +35,19 @@ public class DiscardOnFailureDispatch<T> implements Dispatch<T> {
             logger.error(String.format("Could not dispatch message %s to %s. Discarding message.", message, dispatch), e);
         }
     }
+
+    @SuppressWarnings("unchecked")
+    public void dispatchBatch(List<? extends T> messages) {
+        if (!(dispatch instanceof BatchDispatch)) {
+            for (T message : messages) {
+                dispatch(message);
+            }
+            return;
+        }
+        try {
+            ((BatchDispatch<? super T>) dispatch).dispatchBatch(messages);
+        } catch (Throwable e) {
+            logger.error(String.format("Could not dispatch messages %s to %s. Discarding messages.", messages, dispatch), e);
+        }
+    }
 }
@@ -22,7 +22,7 @@ import java.io.*;
 
 public abstract class Message implements Serializable {
     public void send(OutputStream outputSteam) throws IOException {
-        ObjectOutputStream oos = new ExceptionReplacingObjectOutputStream(outputSteam);
+        ObjectOutputStream oos = createOutputStream(outputSteam);
         try {
             oos.writeObject(this);
         } finally {
@@ -32,10 +32,26 @@ public abstract class Message implements Serializable {
 
     public static Message receive(InputStream inputSteam, ClassLoader classLoader)
             throws IOException, ClassNotFoundException {
-        ObjectInputStream ois = new ExceptionReplacingObjectInputStream(inputSteam, classLoader);
+        ObjectInputStream ois = createInputStream(inputSteam, classLoader);
         return (Message) ois.readObject();
     }
 
+    /**
+     * Creates an object stream which can be used to send a sequence of messages to the given stream. The messages can
+     * be read using a single stream created by {@link #createInputStream(InputStream, ClassLoader)}.
+     */
+    public static ObjectOutputStream createOutputStream(OutputStream outputSteam) throws IOException {
+        return new ExceptionReplacingObjectOutputStream(outputSteam);
+    }
+
+    /**
+     * Creates an object stream which can be used to receive a sequence of messages from the given stream.
+     */
+    public static ObjectInputStream createInputStream(InputStream inputSteam, ClassLoader classLoader)
+            throws IOException {
+        return new ExceptionReplacingObjectInputStream(inputSteam, classLoader);
+    }
+
     private static class ExceptionPlaceholder implements Serializable {
         private byte[] serializedException;
         private String type;
@@ -21,20 +21,35 @@ import org.gradle.api.UncheckedIOException;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-
-public class SocketConnection implements Connection<Message> {
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Connection} over a socket. All messages sent over the connection are written to a single object stream,
+ * so that the class descriptors and the objects shared by the messages are sent once. The stream is reset every {@value
+ * #RESET_INTERVAL} messages, to bound the number of objects retained by each end. This means that an object which is
+ * included in several messages must not be modified after it has been sent, as the peer may receive the object as it
+ * was when first sent.
+ */
+public class SocketConnection implements Connection<Message>, BatchDispatch<Message> {
+    private static final int RESET_INTERVAL = 1000;
     private final SocketChannel socket;
     private final URI localAddress;
     private final URI remoteAddress;
     private final ClassLoader classLoader;
     private final InputStream instr;
     private final OutputStream outstr;
+    private ObjectInputStream objectInput;
+    private ObjectOutputStream objectOutput;
+    private int messagesSinceReset;
 
     public SocketConnection(SocketChannel socket, URI localAddress, URI remoteAddress, ClassLoader classLoader) {
         this.socket = socket;
@@ -67,7 +82,10 @@ public class SocketConnection implements Connection<Message> {
 
     public Message receive() {
         try {
-            return Message.receive(instr, classLoader);
+            if (objectInput == null) {
+                objectInput = Message.createInputStream(instr, classLoader);
+            }
+            return (Message) objectInput.readObject();
         } catch (EOFException e) {
             return null;
         } catch (Exception e) {
@@ -76,9 +94,23 @@ public class SocketConnection implements Connection<Message> {
     }
 
     public void dispatch(Message message) {
+        dispatchBatch(Collections.singletonList(message));
+    }
+
+    public void dispatchBatch(List<? extends Message> messages) {
         try {
-            message.send(outstr);
-            outstr.flush();
+            if (objectOutput == null) {
+                objectOutput = Message.createOutputStream(outstr);
+            }
+            for (Message message : messages) {
+                objectOutput.writeObject(message);
+                if (++messagesSinceReset == RESET_INTERVAL) {
+                    // Discard the objects and class descriptors written so far, so they can be garbage collected
+                    objectOutput.reset();
+                    messagesSinceReset = 0;
+                }
+            }
+            objectOutput.flush();
         } catch (Exception e) {
             throw new GradleException(String.format("Could not write message to '%s'.", remoteAddress), e);
         }
@@ -122,7 +154,7 @@ public class SocketConnection implements Connection<Message> {
             if (nread <= 0) {
                 return nread;
             }
-            return readBuffer[0];
+            return readBuffer[0] & 0xff;
         }
 
         @Override
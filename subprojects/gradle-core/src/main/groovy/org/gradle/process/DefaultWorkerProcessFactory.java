@@ -86,17 +86,25 @@ public class DefaultWorkerProcessFactory implements WorkerProcessFactory {
             Callable<?> workerMain = workerFactory.create();
             getJavaCommand().classpath(workerFactory.getSystemClasspath());
 
-            // Build configuration for GradleWorkerMain
-            byte[] config = GUtil.serialize(workerMain);
-
             LOGGER.debug("Creating {}", displayName);
             LOGGER.debug("Using application classpath {}", getApplicationClasspath());
             LOGGER.debug("Using implementation classpath {}", implementationClassPath);
 
-            getJavaCommand().standardInput(new ByteArrayInputStream(config));
-            ExecHandle execHandle = getJavaCommand().build();
-
-            return new DefaultWorkerProcess(connection, execHandle);
+            return createWorkerProcess(this, connection, workerMain);
         }
     }
+
+    /**
+     * Creates the worker process which executes the given main action.
+     */
+    protected WorkerProcess createWorkerProcess(WorkerProcessBuilder builder, ObjectConnection connection,
+                                                Callable<?> workerMain) {
+        // Build configuration for GradleWorkerMain
+        byte[] config = GUtil.serialize(workerMain);
+
+        builder.getJavaCommand().standardInput(new ByteArrayInputStream(config));
+        ExecHandle execHandle = builder.getJavaCommand().build();
+
+        return new DefaultWorkerProcess(connection, execHandle);
+    }
 }
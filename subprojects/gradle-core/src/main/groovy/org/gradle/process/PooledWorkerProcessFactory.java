@@ -0,0 +1,352 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.ClassPathRegistry;
+import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.messaging.MessagingServer;
+import org.gradle.messaging.ObjectConnection;
+import org.gradle.process.child.CompletionNotifyingWorker;
+import org.gradle.process.child.WorkerCompletionListener;
+import org.gradle.util.IdGenerator;
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleListener;
+import org.gradle.util.exec.ExecHandleState;
+import org.gradle.util.exec.JavaExecHandleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A {@link WorkerProcessFactory} which reuses worker processes. When a worker which loads the application classes
+ * into an isolated ClassLoader has completed, its process is kept alive and is used for later workers with the same
+ * command-line, working directory and environment. Each worker still uses its own isolated application and
+ * implementation ClassLoaders. Test workers load the test classes this way, so a build which executes many test tasks,
+ * or restarts test processes using {@code forkEvery}, starts only as many processes as it executes concurrently.</p>
+ *
+ * <p>A worker which loads the application classes into the system ClassLoader changes the state of its process, and
+ * so is always executed in a new process.</p>
+ *
+ * <p>The processes are stopped when this factory is stopped.</p>
+ */
+public class PooledWorkerProcessFactory extends DefaultWorkerProcessFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledWorkerProcessFactory.class);
+    private final MessagingServer server;
+    private final Lock lock = new ReentrantLock();
+    private final Map<List<Object>, List<WorkerJvm>> idleProcesses = new HashMap<List<Object>, List<WorkerJvm>>();
+    private final Set<WorkerJvm> processes = new HashSet<WorkerJvm>();
+    private boolean stopped;
+
+    public PooledWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
+                                      ClassPathRegistry classPathRegistry, FileResolver resolver,
+                                      IdGenerator<?> idGenerator) {
+        super(workerLogLevel, server, classPathRegistry, resolver, idGenerator);
+        this.server = server;
+    }
+
+    @Override
+    protected WorkerProcess createWorkerProcess(WorkerProcessBuilder builder, ObjectConnection connection,
+                                                Callable<?> workerMain) {
+        if (builder.isLoadApplicationInSystemClassLoader()) {
+            return super.createWorkerProcess(builder, connection, workerMain);
+        }
+
+        ObjectConnection completionConnection = server.createUnicastConnection();
+        Callable<?> main = new CompletionNotifyingWorker(workerMain, completionConnection.getLocalAddress());
+        return new PooledWorkerProcess(builder.getJavaCommand(), connection, completionConnection, main);
+    }
+
+    /**
+     * Stops all worker processes. Blocks until the processes have completed their current worker, if any, and have
+     * exited.
+     */
+    public void stop() {
+        List<WorkerJvm> toStop;
+        lock.lock();
+        try {
+            stopped = true;
+            toStop = new ArrayList<WorkerJvm>(processes);
+            idleProcesses.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (WorkerJvm process : toStop) {
+            process.input.finish();
+        }
+        for (WorkerJvm process : toStop) {
+            process.execHandle.waitForFinish();
+        }
+    }
+
+    private WorkerJvm acquire(JavaExecHandleBuilder javaCommand) {
+        List<Object> key = Arrays.<Object>asList(javaCommand.getCommandLine(), javaCommand.getWorkingDir(),
+                javaCommand.getActualEnvironment());
+
+        WorkerJvm process;
+        lock.lock();
+        try {
+            if (stopped) {
+                throw new IllegalStateException("Cannot start worker process, as this factory has been stopped.");
+            }
+            List<WorkerJvm> idle = idleProcesses.get(key);
+            if (idle != null && !idle.isEmpty()) {
+                LOGGER.debug("Reusing idle worker process.");
+                return idle.remove(idle.size() - 1);
+            }
+            process = new WorkerJvm(key, javaCommand);
+            processes.add(process);
+        } finally {
+            lock.unlock();
+        }
+
+        process.execHandle.start();
+        return process;
+    }
+
+    /**
+     * A worker process JVM, which executes the workers written to its stdin one at a time.
+     */
+    private class WorkerJvm implements ExecHandleListener {
+        private final List<Object> key;
+        private final WorkerInput input = new WorkerInput();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final ObjectOutputStream output;
+        private final ExecHandle execHandle;
+        private PooledWorkerProcess current;
+        private boolean finished;
+
+        private WorkerJvm(List<Object> key, JavaExecHandleBuilder javaCommand) {
+            this.key = key;
+            try {
+                output = new ObjectOutputStream(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            javaCommand.standardInput(input);
+            javaCommand.listener(this);
+            execHandle = javaCommand.build();
+        }
+
+        /**
+         * Executes the given worker in this process. Must be called while holding the lock.
+         */
+        void execute(PooledWorkerProcess process, Callable<?> main) {
+            if (finished) {
+                process.processFinished();
+                return;
+            }
+            current = process;
+            try {
+                output.writeObject(main);
+                output.reset();
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            input.write(buffer.toByteArray());
+            buffer.reset();
+        }
+
+        /**
+         * Returns this process to the pool. Must be called while holding the lock.
+         */
+        void release() {
+            current = null;
+            if (finished || stopped) {
+                return;
+            }
+            List<WorkerJvm> idle = idleProcesses.get(key);
+            if (idle == null) {
+                idle = new ArrayList<WorkerJvm>();
+                idleProcesses.put(key, idle);
+            }
+            idle.add(this);
+        }
+
+        public void executionStarted(ExecHandle execHandle) {
+        }
+
+        public void executionFinished(ExecHandle execHandle) {
+            lock.lock();
+            try {
+                finished = true;
+                processes.remove(this);
+                List<WorkerJvm> idle = idleProcesses.get(key);
+                if (idle != null) {
+                    idle.remove(this);
+                }
+                if (current != null) {
+                    current.processFinished();
+                    current = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private class PooledWorkerProcess implements WorkerProcess, WorkerCompletionListener {
+        private final JavaExecHandleBuilder javaCommand;
+        private final ObjectConnection connection;
+        private final ObjectConnection completionConnection;
+        private final Callable<?> main;
+        private final Condition condition = lock.newCondition();
+        private ExecHandleState state = ExecHandleState.INIT;
+        private WorkerJvm process;
+
+        private PooledWorkerProcess(JavaExecHandleBuilder javaCommand, ObjectConnection connection,
+                                    ObjectConnection completionConnection, Callable<?> main) {
+            this.javaCommand = javaCommand;
+            this.connection = connection;
+            this.completionConnection = completionConnection;
+            this.main = main;
+        }
+
+        public ObjectConnection getConnection() {
+            return connection;
+        }
+
+        public void start() {
+            completionConnection.addIncoming(WorkerCompletionListener.class, this);
+            WorkerJvm process = acquire(javaCommand);
+            lock.lock();
+            try {
+                this.process = process;
+                state = ExecHandleState.STARTED;
+                process.execute(this, main);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void completed() {
+            lock.lock();
+            try {
+                if (state != ExecHandleState.STARTED) {
+                    return;
+                }
+                state = ExecHandleState.SUCCEEDED;
+                process.release();
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Called when the process exits while executing this worker. Must be called while holding the lock.
+         */
+        void processFinished() {
+            if (state == ExecHandleState.STARTED) {
+                state = ExecHandleState.FAILED;
+            }
+            condition.signalAll();
+        }
+
+        public void waitForStop() {
+            lock.lock();
+            try {
+                while (state == ExecHandleState.STARTED) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw new GradleException(e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            completionConnection.stop();
+            connection.stop();
+        }
+
+        public ExecHandleState getState() {
+            lock.lock();
+            try {
+                return state;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The stdin of a worker process. Blocks until more content is written, or the stream is finished.
+     */
+    private static class WorkerInput extends InputStream {
+        private final LinkedList<byte[]> queue = new LinkedList<byte[]>();
+        private byte[] current;
+        private int pos;
+        private boolean finished;
+
+        public synchronized void write(byte[] content) {
+            queue.add(content);
+            notifyAll();
+        }
+
+        public synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] content = new byte[1];
+            int nread = read(content, 0, 1);
+            return nread < 0 ? -1 : content[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (current == null || pos == current.length) {
+                if (!queue.isEmpty()) {
+                    current = queue.removeFirst();
+                    pos = 0;
+                } else if (finished) {
+                    return -1;
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+            int count = Math.min(length, current.length - pos);
+            System.arraycopy(current, pos, buffer, offset, count);
+            pos += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.child;
+
+import org.gradle.messaging.MessagingClient;
+import org.gradle.messaging.TcpMessagingClient;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.concurrent.Callable;
+
+/**
+ * A worker which executes another worker, then notifies the server process that it has completed, so that the worker
+ * process can be reused.
+ */
+public class CompletionNotifyingWorker implements Callable<Void>, Serializable {
+    private final Callable<?> worker;
+    private final URI completionAddress;
+
+    public CompletionNotifyingWorker(Callable<?> worker, URI completionAddress) {
+        this.worker = worker;
+        this.completionAddress = completionAddress;
+    }
+
+    public Void call() throws Exception {
+        worker.call();
+
+        MessagingClient client = createClient();
+        try {
+            client.getConnection().addOutgoing(WorkerCompletionListener.class).completed();
+        } finally {
+            client.stop();
+        }
+        return null;
+    }
+
+    MessagingClient createClient() {
+        return new TcpMessagingClient(getClass().getClassLoader(), completionAddress);
+    }
+}
@@ -14,21 +14,11 @@
  * limitations under the License.
  */
 
+package org.gradle.process.child;
 
-package org.gradle.api.internal.tasks.testing.junit
-
-import org.apache.tools.ant.taskdefs.optional.junit.XMLResultAggregator
 /**
- * @author Tom Eyckmans
+ * Receives notification that a worker has completed its action.
  */
-
-class AntJUnitReport {
-
-    void execute(File testResultsDir, File testReportDir, AntBuilder ant) {
-        ant.project.addTaskDefinition('junitreport2', XMLResultAggregator.class)
-        ant.junitreport2(todir: testResultsDir.absolutePath) {
-            fileset(dir: testResultsDir.absolutePath, includes: 'TEST-*.xml')
-            report(todir: testReportDir.absolutePath)
-        }
-    }
-}
\ No newline at end of file
+public interface WorkerCompletionListener {
+    void completed();
+}
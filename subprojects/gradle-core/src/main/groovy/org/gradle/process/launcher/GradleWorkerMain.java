@@ -16,18 +16,27 @@
 
 package org.gradle.process.launcher;
 
+import java.io.EOFException;
 import java.io.ObjectInputStream;
 import java.util.concurrent.Callable;
 
 /**
- * The main entry point for a worker process. Reads a serialized Callable from stdin, and executes it.
+ * The main entry point for a worker process. Reads serialized Callables from stdin, and executes each of them in turn,
+ * until the end of stdin is reached.
  */
 public class GradleWorkerMain {
     public void run() throws Exception {
-        // Read the main action from stdin and execute it
+        // Read each main action from stdin and execute it
         ObjectInputStream instr = new ObjectInputStream(System.in);
-        Callable<?> main = (Callable<?>) instr.readObject();
-        main.call();
+        while (true) {
+            Callable<?> main;
+            try {
+                main = (Callable<?>) instr.readObject();
+            } catch (EOFException e) {
+                break;
+            }
+            main.call();
+        }
     }
 
     public static void main(String[] args) {
@@ -70,7 +70,7 @@ public class ExecHandleRunner implements Runnable {
             ExecOutputHandleRunner errorOutputRunner = new ExecOutputHandleRunner("read process error output",
                     process.getErrorStream(), execHandle.getErrorOutput());
             ExecOutputHandleRunner standardInputRunner = new ExecOutputHandleRunner("write process standard input",
-                    execHandle.getStandardInput(), process.getOutputStream());
+                    execHandle.getStandardInput(), process.getOutputStream(), true);
 
             threadPool.execute(standardInputRunner);
             threadPool.execute(standardOutputRunner);
@@ -30,11 +30,22 @@ public class ExecOutputHandleRunner implements Runnable {
     private final String displayName;
     private final InputStream inputStream;
     private final OutputStream outputStream;
+    private final boolean flushOnWrite;
 
     public ExecOutputHandleRunner(String displayName, InputStream inputStream, OutputStream outputStream) {
+        this(displayName, inputStream, outputStream, false);
+    }
+
+    /**
+     * @param flushOnWrite true to flush the output stream after each write, so that the data is available to the
+     * reader as soon as it has been read from the input stream.
+     */
+    public ExecOutputHandleRunner(String displayName, InputStream inputStream, OutputStream outputStream,
+                                  boolean flushOnWrite) {
         this.displayName = displayName;
         this.inputStream = inputStream;
         this.outputStream = outputStream;
+        this.flushOnWrite = flushOnWrite;
     }
 
     public void run() {
@@ -46,6 +57,9 @@ public class ExecOutputHandleRunner implements Runnable {
                     break;
                 }
                 outputStream.write(buffer, 0, nread);
+                if (flushOnWrite) {
+                    outputStream.flush();
+                }
             }
             inputStream.close();
             outputStream.close();
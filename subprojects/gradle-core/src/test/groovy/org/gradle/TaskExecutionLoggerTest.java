@@ -120,4 +120,49 @@ public class TaskExecutionLoggerTest {
 
         executionLogger.afterExecute(task, state);
     }
+
+    @Test
+    public void logsTaskWhichStartsWhileAnotherTaskIsExecutingWhenItCompletes() {
+        final Task other = context.mock(Task.class, "other");
+        final TaskState otherState = context.mock(TaskState.class, "otherState");
+        final ProgressLogger otherProgressLogger = context.mock(ProgressLogger.class, "otherProgressLogger");
+
+        context.checking(new Expectations() {{
+            Project project = context.mock(Project.class, "otherProject");
+            allowing(other).getProject();
+            will(returnValue(project));
+            allowing(project).getGradle();
+            will(returnValue(gradle));
+            allowing(other).getPath();
+            will(returnValue(":other"));
+            allowing(gradle).getParent();
+            will(returnValue(null));
+            allowing(state).getSkipMessage();
+            will(returnValue(null));
+            allowing(otherState).getSkipMessage();
+            will(returnValue(null));
+
+            one(logger).createProgressLogger();
+            will(returnValue(progressLogger));
+            one(progressLogger).started(":path");
+        }});
+
+        executionLogger.beforeExecute(task);
+        executionLogger.beforeExecute(other);
+
+        context.checking(new Expectations() {{
+            one(progressLogger).completed();
+        }});
+
+        executionLogger.afterExecute(task, state);
+
+        context.checking(new Expectations() {{
+            one(logger).createProgressLogger();
+            will(returnValue(otherProgressLogger));
+            one(otherProgressLogger).started(":other");
+            one(otherProgressLogger).completed();
+        }});
+
+        executionLogger.afterExecute(other, otherState);
+    }
 }
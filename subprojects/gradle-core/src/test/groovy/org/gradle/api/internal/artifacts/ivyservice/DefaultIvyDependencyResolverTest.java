@@ -63,6 +63,7 @@ public class DefaultIvyDependencyResolverTest {
     private ResolveReport resolveReportMock = context.mock(ResolveReport.class);
 
     private DefaultIvyDependencyResolver ivyDependencyResolver = new DefaultIvyDependencyResolver(ivyReportConverterStub);
+    private ParallelArtifactDownloader artifactDownloaderMock = context.mock(ParallelArtifactDownloader.class);
 
     @Before
     public void setUp() {
@@ -226,6 +227,88 @@ public class DefaultIvyDependencyResolverTest {
         assertEquals(true, ivyDependencyResolver.resolve(configurationStub, ivyStub, moduleDescriptor).hasError());
     }
 
+    @Test
+    public void testResolveUsesCachedResult() throws IOException, ParseException {
+        final IvyConversionResultCache resultCacheMock = context.mock(IvyConversionResultCache.class);
+        final IvyConversionResult conversionResultStub = context.mock(IvyConversionResult.class);
+        final ResolvedArtifact resolvedArtifactDummy = context.mock(ResolvedArtifact.class);
+        final Set<ResolvedArtifact> resolvedArtifacts = WrapUtil.toSet(resolvedArtifactDummy);
+        final ModuleDescriptor moduleDescriptor = createAnonymousModuleDescriptor();
+        context.checking(new Expectations() {{
+            one(resultCacheMock).get(configurationStub, ivyStub, moduleDescriptor);
+            will(returnValue(conversionResultStub));
+            allowing(conversionResultStub).getResolvedArtifacts();
+            will(returnValue(resolvedArtifacts));
+        }});
+
+        ResolvedConfiguration configuration = new DefaultIvyDependencyResolver(ivyReportConverterStub, resultCacheMock,
+                artifactDownloaderMock).resolve(configurationStub, ivyStub, moduleDescriptor);
+        assertFalse(configuration.hasError());
+        assertThat(configuration.getResolvedArtifacts(), equalTo(resolvedArtifacts));
+    }
+
+    @Test
+    public void testResolveCachesResult() throws IOException, ParseException {
+        final IvyConversionResultCache resultCacheMock = context.mock(IvyConversionResultCache.class);
+        final IvyConversionResult conversionResultStub = context.mock(IvyConversionResult.class);
+        final Set<ResolvedArtifact> resolvedArtifacts = WrapUtil.toSet(context.mock(ResolvedArtifact.class));
+        final ModuleDescriptor moduleDescriptor = createAnonymousModuleDescriptor();
+        prepareTestsThatRetrieveDependencies(moduleDescriptor);
+        prepareResolveReport();
+        context.checking(new Expectations() {{
+            one(resultCacheMock).get(configurationStub, ivyStub, moduleDescriptor);
+            will(returnValue(null));
+            allowing(ivyReportConverterStub).convertReport(resolveReportMock, configurationStub);
+            will(returnValue(conversionResultStub));
+            allowing(conversionResultStub).getResolvedArtifacts();
+            will(returnValue(resolvedArtifacts));
+            one(artifactDownloaderMock).download(resolvedArtifacts, ivyStub);
+            one(resultCacheMock).put(configurationStub, ivyStub, moduleDescriptor, resolveReportMock, conversionResultStub);
+        }});
+
+        new DefaultIvyDependencyResolver(ivyReportConverterStub, resultCacheMock, artifactDownloaderMock).resolve(
+                configurationStub, ivyStub, moduleDescriptor);
+    }
+
+    @Test
+    public void testResolveDoesNotCacheResultWhenArtifactsCannotBeDownloaded() throws IOException, ParseException {
+        final IvyConversionResultCache resultCacheMock = context.mock(IvyConversionResultCache.class);
+        final IvyConversionResult conversionResultStub = context.mock(IvyConversionResult.class);
+        final Set<ResolvedArtifact> resolvedArtifacts = WrapUtil.toSet(context.mock(ResolvedArtifact.class));
+        final ModuleDescriptor moduleDescriptor = createAnonymousModuleDescriptor();
+        prepareTestsThatRetrieveDependencies(moduleDescriptor);
+        prepareResolveReport();
+        context.checking(new Expectations() {{
+            one(resultCacheMock).get(configurationStub, ivyStub, moduleDescriptor);
+            will(returnValue(null));
+            allowing(ivyReportConverterStub).convertReport(resolveReportMock, configurationStub);
+            will(returnValue(conversionResultStub));
+            allowing(conversionResultStub).getResolvedArtifacts();
+            will(returnValue(resolvedArtifacts));
+            one(artifactDownloaderMock).download(resolvedArtifacts, ivyStub);
+            will(throwException(new RuntimeException("broken")));
+        }});
+
+        ResolvedConfiguration configuration = new DefaultIvyDependencyResolver(ivyReportConverterStub, resultCacheMock,
+                artifactDownloaderMock).resolve(configurationStub, ivyStub, moduleDescriptor);
+        assertFalse(configuration.hasError());
+    }
+
+    @Test
+    public void testResolveDoesNotCacheFailedResult() throws IOException, ParseException {
+        final IvyConversionResultCache resultCacheMock = context.mock(IvyConversionResultCache.class);
+        final ModuleDescriptor moduleDescriptor = createAnonymousModuleDescriptor();
+        prepareTestsThatRetrieveDependencies(moduleDescriptor);
+        prepareResolveReportWithError();
+        context.checking(new Expectations() {{
+            one(resultCacheMock).get(configurationStub, ivyStub, moduleDescriptor);
+            will(returnValue(null));
+        }});
+
+        assertTrue(new DefaultIvyDependencyResolver(ivyReportConverterStub, resultCacheMock, artifactDownloaderMock)
+                .resolve(configurationStub, ivyStub, moduleDescriptor).hasError());
+    }
+
     private ModuleDescriptor createAnonymousModuleDescriptor() {
         return DefaultModuleDescriptor.newDefaultInstance(
                 ModuleRevisionId.newInstance("org", "name", "1.0", new HashMap()));
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.DefaultArtifact;
+import org.apache.ivy.core.module.descriptor.DefaultDependencyDescriptor;
+import org.apache.ivy.core.module.descriptor.DefaultModuleDescriptor;
+import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.report.ResolveReport;
+import org.apache.ivy.core.resolve.ResolveOptions;
+import org.apache.ivy.core.settings.IvySettings;
+import org.apache.ivy.plugins.resolver.FileSystemResolver;
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
+import org.gradle.cache.*;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.*;
+
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class IvyConversionResultCacheTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final CacheRepository cacheRepository = context.mock(CacheRepository.class);
+    private final Configuration configuration = context.mock(Configuration.class);
+    private final ModuleDependency declaredDependency = context.mock(ModuleDependency.class);
+    private final Set<ProjectDependency> projectDependencies = new HashSet<ProjectDependency>();
+    private final TestFile jarA = tmpDir.createFile("a.jar");
+    private final TestFile jarB = tmpDir.createFile("b.jar");
+    private final TestFile repoDir = tmpDir.createDir("repo");
+    private final Ivy ivy = createIvy();
+    private final DefaultModuleDescriptor moduleDescriptor = DefaultModuleDescriptor.newDefaultInstance(
+            ModuleRevisionId.newInstance("group", "project", "1.0"));
+
+    @Before
+    public void setUp() {
+        final PersistentCache persistentCache = context.mock(PersistentCache.class);
+        final CacheBuilder cacheBuilder = context.mock(CacheBuilder.class);
+        context.checking(new Expectations() {{
+            allowing(cacheRepository).cache("resolvedConfigurations");
+            will(returnValue(cacheBuilder));
+            allowing(cacheBuilder).open();
+            will(returnValue(persistentCache));
+            allowing(persistentCache).openIndexedCache();
+            will(returnValue(new InMemoryIndexedCache()));
+            allowing(configuration).getName();
+            will(returnValue("compile"));
+            allowing(configuration).getAllDependencies(ProjectDependency.class);
+            will(returnValue(projectDependencies));
+            allowing(configuration).getAllDependencies(ClientModule.class);
+            will(returnValue(Collections.emptySet()));
+            allowing(configuration).getAllDependencies(ModuleDependency.class);
+            will(returnValue(toSet(declaredDependency)));
+            allowing(declaredDependency).getGroup();
+            will(returnValue("org"));
+            allowing(declaredDependency).getName();
+            will(returnValue("a"));
+            allowing(declaredDependency).getVersion();
+            will(returnValue("1.0"));
+            allowing(declaredDependency).getConfiguration();
+            will(returnValue("default"));
+        }});
+        addDependency("1.0");
+        publish("a", "1.0", "<dependency org='org' name='b' rev='2.0'/>");
+        publish("b", "2.0", "");
+    }
+
+    @Test
+    public void returnsNullWhenResultIsNotCached() {
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 1000);
+
+        assertThat(cache.get(configuration, ivy, moduleDescriptor), nullValue());
+    }
+
+    @Test
+    public void restoresCachedResult() {
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 1000);
+
+        cache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+        IvyConversionResult result = cache.get(configuration, ivy, moduleDescriptor);
+
+        assertThat(result.getFirstLevelResolvedDependencies().keySet(), equalTo(toSet((Dependency) declaredDependency)));
+        ResolvedDependency a = result.getFirstLevelResolvedDependencies().get(declaredDependency).iterator().next();
+        assertThat(a.getName(), equalTo("org:a:1.0"));
+        assertThat(a.getConfiguration(), equalTo("default"));
+        assertThat(a.getParents(), equalTo(Collections.<ResolvedDependency>singleton(null)));
+        assertThat(a.getChildren().size(), equalTo(1));
+        ResolvedDependency b = a.getChildren().iterator().next();
+        assertThat(b.getName(), equalTo("org:b:2.0"));
+        assertThat(b.getParents(), equalTo(toSet(a)));
+        assertThat(b.getParentArtifacts(a).size(), equalTo(1));
+
+        ResolvedArtifact artifactA = a.getModuleArtifacts().iterator().next();
+        assertThat(artifactA.getName(), equalTo("a"));
+        assertThat(artifactA.getType(), equalTo("jar"));
+        assertThat(artifactA.getExtension(), equalTo("jar"));
+        assertThat(artifactA.getFile(), equalTo((File) jarA));
+        assertThat(artifactA.getResolvedDependency(), sameInstance(a));
+        assertThat(b.getModuleArtifacts().iterator().next().getFile(), equalTo((File) jarB));
+
+        Set<File> files = new LinkedHashSet<File>();
+        for (ResolvedArtifact artifact : result.getResolvedArtifacts()) {
+            files.add(artifact.getFile());
+        }
+        assertThat(files, equalTo(toLinkedSet((File) jarA, jarB)));
+        assertThat(a.getAllArtifacts(null), hasItem(b.getParentArtifacts(a).iterator().next()));
+    }
+
+    @Test
+    public void doesNotUseResultWhenDependenciesHaveChanged() {
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 1000);
+
+        cache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+        addDependency("2.0");
+
+        assertThat(cache.get(configuration, ivy, moduleDescriptor), nullValue());
+    }
+
+    @Test
+    public void doesNotUseResultWhenArtifactFileHasBeenRemoved() {
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 1000);
+
+        cache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+        assertTrue(jarB.delete());
+
+        assertThat(cache.get(configuration, ivy, moduleDescriptor), nullValue());
+    }
+
+    @Test
+    public void usesResultWithStaticRevisionsUntilDependenciesChange() {
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 0);
+
+        cache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+
+        assertThat(cache.get(configuration, ivy, moduleDescriptor), notNullValue());
+    }
+
+    @Test
+    public void doesNotUseResultWithDynamicRevisionsOnceExpired() {
+        DefaultModuleDescriptor dynamicModuleDescriptor = DefaultModuleDescriptor.newDefaultInstance(
+                ModuleRevisionId.newInstance("group", "project", "1.0"));
+        dynamicModuleDescriptor.addDependency(dependency("a", "1.+"));
+
+        assertDynamicResultExpires(dynamicModuleDescriptor);
+    }
+
+    @Test
+    public void doesNotUseResultWithTransitiveDynamicRevisionsOnceExpired() {
+        publish("a", "1.0", "<dependency org='org' name='b' rev='2.+'/>");
+
+        assertDynamicResultExpires(moduleDescriptor);
+    }
+
+    @Test
+    public void doesNotUseResultWithTransitiveChangingRevisionsOnceExpired() {
+        publish("a", "1.0", "<dependency org='org' name='b' rev='2.0' changing='true'/>");
+
+        assertDynamicResultExpires(moduleDescriptor);
+    }
+
+    @Test
+    public void doesNotCacheResultForConfigurationWithProjectDependencies() {
+        projectDependencies.add(context.mock(ProjectDependency.class));
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 1000);
+
+        cache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+
+        assertThat(cache.get(configuration, ivy, moduleDescriptor), nullValue());
+    }
+
+    private void assertDynamicResultExpires(ModuleDescriptor moduleDescriptor) {
+        IvyConversionResultCache cache = new IvyConversionResultCache(cacheRepository, 1000);
+        cache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+        assertThat(cache.get(configuration, ivy, moduleDescriptor), notNullValue());
+
+        IvyConversionResultCache expiringCache = new IvyConversionResultCache(cacheRepository, 0);
+        expiringCache.put(configuration, ivy, moduleDescriptor, resolve(moduleDescriptor), createResult());
+        assertThat(expiringCache.get(configuration, ivy, moduleDescriptor), nullValue());
+    }
+
+    private void addDependency(String version) {
+        moduleDescriptor.addDependency(dependency("a", version));
+    }
+
+    private DefaultDependencyDescriptor dependency(String name, String version) {
+        DefaultDependencyDescriptor dependency = new DefaultDependencyDescriptor(ModuleRevisionId.newInstance("org",
+                name, version), false);
+        dependency.addDependencyConfiguration("default", "default");
+        return dependency;
+    }
+
+    private void publish(String name, String version, String dependencies) {
+        repoDir.file(String.format("%s-%s.xml", name, version)).write(String.format(
+                "<ivy-module version='2.0'><info organisation='org' module='%s' revision='%s'/>"
+                        + "<configurations><conf name='default'/></configurations><publications/>"
+                        + "<dependencies defaultconfmapping='default->default'>%s</dependencies></ivy-module>",
+                name, version, dependencies));
+    }
+
+    private ResolveReport resolve(ModuleDescriptor moduleDescriptor) {
+        ResolveOptions options = new ResolveOptions();
+        options.setConfs(new String[]{"default"});
+        options.setDownload(false);
+        try {
+            ResolveReport report = ivy.resolve(moduleDescriptor, options);
+            assertFalse(report.getAllProblemMessages().toString(), report.hasError());
+            return report;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private IvyConversionResult createResult() {
+        DefaultResolvedArtifact artifactA = artifact("org", "a", "1.0", jarA);
+        DefaultResolvedArtifact artifactB = artifact("org", "b", "2.0", jarB);
+        DefaultResolvedArtifact parentArtifactB = artifact("org", "b", "2.0", jarB);
+        DefaultResolvedDependency a = new DefaultResolvedDependency("org", "a", "1.0", "default", toSet("default"),
+                toSet((ResolvedArtifact) artifactA));
+        DefaultResolvedDependency b = new DefaultResolvedDependency("org", "b", "2.0", "default", toSet("default"),
+                toSet((ResolvedArtifact) artifactB));
+        artifactA.setResolvedDependency(a);
+        artifactB.setResolvedDependency(b);
+        parentArtifactB.setResolvedDependency(b);
+        a.getParents().add(null);
+        a.addParentSpecificArtifacts(null, Collections.<ResolvedArtifact>emptySet());
+        a.getChildren().add(b);
+        b.getParents().add(a);
+        b.addParentSpecificArtifacts(a, toSet((ResolvedArtifact) parentArtifactB));
+
+        Map<Dependency, Set<ResolvedDependency>> firstLevel = new LinkedHashMap<Dependency, Set<ResolvedDependency>>();
+        firstLevel.put(declaredDependency, toSet((ResolvedDependency) a));
+        return new DefaultIvyConversionResult(firstLevel, toLinkedSet((ResolvedArtifact) artifactA, artifactB,
+                parentArtifactB));
+    }
+
+    private DefaultResolvedArtifact artifact(String group, String name, String version, File file) {
+        return new DefaultResolvedArtifact(new DefaultArtifact(ModuleRevisionId.newInstance(group, name, version), null,
+                name, "jar", "jar"), file);
+    }
+
+    private Ivy createIvy() {
+        IvySettings settings = new IvySettings();
+        FileSystemResolver resolver = new FileSystemResolver();
+        resolver.setName("resolver");
+        resolver.addIvyPattern(tmpDir.getDir().getAbsolutePath() + "/repo/[module]-[revision].xml");
+        resolver.addArtifactPattern(tmpDir.getDir().getAbsolutePath() + "/[artifact].[ext]");
+        settings.addResolver(resolver);
+        settings.setDefaultResolver("resolver");
+        settings.setDefaultCache(tmpDir.getDir().file("cache"));
+        return Ivy.newInstance(settings);
+    }
+
+    private static class InMemoryIndexedCache implements PersistentIndexedCache<Object, Object> {
+        private final Serializer<Object> serializer = new DefaultSerializer<Object>();
+        private final Map<Object, byte[]> entries = new HashMap<Object, byte[]>();
+
+        public Object get(Object key) {
+            byte[] bytes = entries.get(key);
+            if (bytes == null) {
+                return null;
+            }
+            try {
+                return serializer.read(new ByteArrayInputStream(bytes));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public Map<Object, Object> getAll(Collection<?> keys) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void put(Object key, Object value) {
+            ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+            try {
+                serializer.write(outstr, value);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            entries.put(key, outstr.toByteArray());
+        }
+
+        public void remove(Object key) {
+            entries.remove(key);
+        }
+    }
+}
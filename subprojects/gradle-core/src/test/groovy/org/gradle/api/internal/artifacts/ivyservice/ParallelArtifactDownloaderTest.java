@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.DefaultArtifact;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.settings.IvySettings;
+import org.apache.ivy.plugins.resolver.FileSystemResolver;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ParallelArtifactDownloaderTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final Ivy ivy = createIvy();
+
+    @Test
+    public void downloadsArtifactsFromRepository() {
+        List<DefaultResolvedArtifact> artifacts = new ArrayList<DefaultResolvedArtifact>();
+        for (int i = 0; i < 6; i++) {
+            artifacts.add(publish("org", "module" + i, "1.0", "content " + i));
+        }
+
+        new ParallelArtifactDownloader(4).download(artifacts, ivy);
+
+        for (int i = 0; i < artifacts.size(); i++) {
+            DefaultResolvedArtifact artifact = artifacts.get(i);
+            assertTrue(artifact.isDownloaded());
+            TestFile file = new TestFile(artifact.getFile());
+            assertTrue(file.getAbsolutePath().startsWith(tmpDir.getDir().file("cache").getAbsolutePath()));
+            file.assertContents(equalTo("content " + i));
+        }
+    }
+
+    @Test
+    public void downloadsModulesConcurrently() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        TestArtifact artifact1 = new TestArtifact(dependency("a"), latch);
+        TestArtifact artifact2 = new TestArtifact(dependency("b"), latch);
+
+        new ParallelArtifactDownloader(2).download(Arrays.asList(artifact1, artifact2), ivy);
+
+        assertTrue(artifact1.concurrent);
+        assertTrue(artifact2.concurrent);
+        assertThat(artifact1.thread, not(sameInstance(artifact2.thread)));
+    }
+
+    @Test
+    public void downloadsArtifactsOfAModuleUsingASingleThread() {
+        ResolvedDependency dependency = dependency("a");
+        TestArtifact artifact1 = new TestArtifact(dependency, null);
+        TestArtifact artifact2 = new TestArtifact(dependency, null);
+        TestArtifact artifact3 = new TestArtifact(dependency("b"), null);
+
+        new ParallelArtifactDownloader(4).download(Arrays.asList(artifact1, artifact2, artifact3), ivy);
+
+        assertThat(artifact1.thread, notNullValue());
+        assertThat(artifact2.thread, sameInstance(artifact1.thread));
+        assertThat(artifact3.thread, notNullValue());
+    }
+
+    @Test
+    public void downloadsUsingCallingThreadWhenOnlyOneModule() {
+        TestArtifact artifact = new TestArtifact(dependency("a"), null);
+
+        new ParallelArtifactDownloader(4).download(Collections.singleton(artifact), ivy);
+
+        assertThat(artifact.thread, sameInstance(Thread.currentThread()));
+    }
+
+    @Test
+    public void doesNotDownloadArtifactWhichIsAlreadyDownloaded() {
+        DefaultResolvedArtifact artifact = new DefaultResolvedArtifact(DefaultArtifact.newIvyArtifact(
+                ModuleRevisionId.newInstance("org", "a", "1.0"), new Date()), new File("a.jar"));
+
+        new ParallelArtifactDownloader(4).download(Collections.singleton(artifact), ivy);
+
+        assertThat(artifact.getFile(), equalTo(new File("a.jar")));
+    }
+
+    @Test
+    public void rethrowsFailureOfFirstModule() {
+        RuntimeException failure1 = new RuntimeException("broken 1");
+        RuntimeException failure2 = new RuntimeException("broken 2");
+        TestArtifact artifact1 = new TestArtifact(dependency("a"), null);
+        artifact1.failure = failure1;
+        TestArtifact artifact2 = new TestArtifact(dependency("b"), null);
+        artifact2.failure = failure2;
+        TestArtifact artifact3 = new TestArtifact(dependency("c"), null);
+
+        try {
+            new ParallelArtifactDownloader(4).download(Arrays.asList(artifact1, artifact2, artifact3), ivy);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(failure1));
+        }
+        assertThat(artifact3.thread, notNullValue());
+    }
+
+    private DefaultResolvedArtifact publish(String group, String module, String version, String content) {
+        tmpDir.getDir().file("repo", group, module, module + "-" + version + ".jar").write(content);
+        ModuleRevisionId id = ModuleRevisionId.newInstance(group, module, version);
+        DefaultResolvedArtifact artifact = new DefaultResolvedArtifact(new DefaultArtifact(id, new Date(), module, "jar",
+                "jar"), ivy.getResolveEngine());
+        artifact.setResolvedDependency(new DefaultResolvedDependency(group, module, version, "default",
+                Collections.<String>emptySet(), Collections.<ResolvedArtifact>singleton(artifact)));
+        return artifact;
+    }
+
+    private ResolvedDependency dependency(String module) {
+        return new DefaultResolvedDependency("org", module, "1.0", "default", Collections.<String>emptySet(),
+                Collections.<ResolvedArtifact>emptySet());
+    }
+
+    private Ivy createIvy() {
+        IvySettings settings = new IvySettings();
+        settings.setDefaultCache(tmpDir.getDir().file("cache"));
+        FileSystemResolver resolver = new FileSystemResolver();
+        resolver.setName("resolver");
+        resolver.addArtifactPattern(tmpDir.getDir().getAbsolutePath() + "/repo/[organisation]/[module]/[artifact]-[revision].[ext]");
+        settings.addResolver(resolver);
+        settings.setDefaultResolver("resolver");
+        return Ivy.newInstance(settings);
+    }
+
+    private static class TestArtifact implements ResolvedArtifact {
+        private final ResolvedDependency dependency;
+        private final CountDownLatch latch;
+        private RuntimeException failure;
+        private volatile Thread thread;
+        private volatile boolean concurrent;
+
+        private TestArtifact(ResolvedDependency dependency, CountDownLatch latch) {
+            this.dependency = dependency;
+            this.latch = latch;
+        }
+
+        public File getFile() {
+            thread = Thread.currentThread();
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    concurrent = latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new File("file");
+        }
+
+        public ResolvedDependency getResolvedDependency() {
+            return dependency;
+        }
+
+        public String getName() {
+            return "name";
+        }
+
+        public String getType() {
+            return "jar";
+        }
+
+        public String getExtension() {
+            return "jar";
+        }
+    }
+}
@@ -30,6 +30,10 @@ import org.junit.Before;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 @RunWith(JMock.class)
 public class CachingHasherTest {
@@ -113,4 +117,38 @@ public class CachingHasherTest {
 
         assertThat(hasher.hash(file), sameInstance(hash));
     }
+
+    @Test
+    public void hashesOnlyThoseFilesInBatchWhoseHashIsNotUpToDate() {
+        final File file2 = tmpDir.createFile("testfile2").write("content 2");
+        final byte[] hash2 = "hash2".getBytes();
+        context.checking(new Expectations() {{
+            Map<File, CachingHasher.FileInfo> infos = new HashMap<File, CachingHasher.FileInfo>();
+            infos.put(file, new CachingHasher.FileInfo(hash, file.length(), file.lastModified()));
+            infos.put(file2, new CachingHasher.FileInfo(hash, file2.length(), 12));
+            one(cache).getAll(Arrays.asList(file, file2));
+            will(returnValue(infos));
+            one(delegate).hash(Collections.singleton(file2));
+            will(returnValue(Collections.singletonMap(file2, hash2)));
+            one(cache).put(with(equalTo(file2)), with(reflectionEquals(new CachingHasher.FileInfo(hash2, file2.length(),
+                    file2.lastModified()))));
+        }});
+
+        Map<File, byte[]> hashes = hasher.hash(Arrays.asList(file, file2));
+        assertThat(hashes.size(), equalTo(2));
+        assertThat(hashes.get(file), sameInstance(hash));
+        assertThat(hashes.get(file2), sameInstance(hash2));
+    }
+
+    @Test
+    public void doesNotHashAnyFileInBatchWhenAllHashesAreUpToDate() {
+        context.checking(new Expectations() {{
+            one(cache).getAll(Collections.singletonList(file));
+            will(returnValue(Collections.singletonMap(file, new CachingHasher.FileInfo(hash, file.length(),
+                    file.lastModified()))));
+        }});
+
+        Map<File, byte[]> hashes = hasher.hash(Collections.singletonList(file));
+        assertThat(hashes.get(file), sameInstance(hash));
+    }
 }
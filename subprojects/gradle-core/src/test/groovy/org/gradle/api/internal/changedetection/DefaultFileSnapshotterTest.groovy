@@ -28,6 +28,7 @@ import org.gradle.util.TemporaryFolder
 import org.gradle.util.TestFile
 import org.gradle.api.file.FileCollection
 import org.gradle.util.ChangeListener
+import org.gradle.api.internal.changedetection.DefaultFileSnapshotter.SnapshotSerializer
 
 @RunWith(JMock.class)
 public class DefaultFileSnapshotterTest {
@@ -304,6 +305,144 @@ public class DefaultFileSnapshotterTest {
         target.changesSince(snapshotter.snapshot(), listener)
     }
 
+    @Test
+    public void diffKeepsUnchangedFilesInTargetSnapshot() {
+        List<TestFile> unchanged = (0..9).collect { tmpDir.createFile("unchanged$it") }
+        TestFile added = tmpDir.createFile('unchanged3a')
+        TestFile changed = tmpDir.createFile('unchanged5')
+        TestFile removed = tmpDir.createFile('unchanged7')
+
+        FileCollectionSnapshot original = snapshotter.snapshot(files(changed, removed))
+        changed.write('new content')
+        FileCollectionSnapshot modified = snapshotter.snapshot(files(added, changed))
+        FileCollectionSnapshot target = snapshotter.snapshot(files(unchanged as File[]))
+
+        target = modified.changesSince(original).applyTo(target)
+
+        List<File> expected = unchanged.findAll { it != removed } + [added]
+        snapshotter.snapshot(files(expected as File[])).changesSince(target, listener)
+    }
+
+    @Test
+    public void canSerializeSnapshotUsingJavaSerialization() {
+        TestFile file = tmpDir.createFile('file')
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile missing = tmpDir.file('missing')
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(file, dir, missing))
+
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream()
+        ObjectOutputStream objectOutput = new ObjectOutputStream(outstr)
+        objectOutput.writeObject(snapshot)
+        objectOutput.close()
+        FileCollectionSnapshot copy = new ObjectInputStream(new ByteArrayInputStream(outstr.toByteArray())).readObject()
+
+        copy.changesSince(snapshot, listener)
+        snapshot.changesSince(copy, listener)
+    }
+
+    @Test
+    public void fingerprintIsUnchangedWhenFilesHaveNotChanged() {
+        TestFile file = tmpDir.createFile('file')
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile missing = tmpDir.file('missing')
+
+        byte[] fingerprint = snapshotter.fingerprint(files(file, dir, missing))
+
+        assertTrue(Arrays.equals(snapshotter.fingerprint(files(file, dir, missing)), fingerprint))
+    }
+
+    @Test
+    public void fingerprintIsUnchangedWhenFilesAreIteratedInDifferentOrder() {
+        TestFile file = tmpDir.createFile('file')
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile missing = tmpDir.file('missing')
+
+        byte[] fingerprint = snapshotter.fingerprint(files(file, dir, missing))
+
+        assertTrue(Arrays.equals(snapshotter.fingerprint(files(missing, file, dir)), fingerprint))
+    }
+
+    @Test
+    public void fingerprintChangesWhenFileLengthOrTimestampChanges() {
+        TestFile file = tmpDir.createFile('file')
+
+        byte[] original = snapshotter.fingerprint(files(file))
+
+        file.write('content')
+        file.setLastModified(12000)
+        byte[] modified = snapshotter.fingerprint(files(file))
+        assertFalse(Arrays.equals(modified, original))
+
+        file.setLastModified(24000)
+        assertFalse(Arrays.equals(snapshotter.fingerprint(files(file)), modified))
+    }
+
+    @Test
+    public void fingerprintChangesWhenFileTypeChanges() {
+        TestFile file = tmpDir.file('file')
+
+        byte[] missing = snapshotter.fingerprint(files(file))
+
+        file.createDir()
+        byte[] dir = snapshotter.fingerprint(files(file))
+        assertFalse(Arrays.equals(dir, missing))
+
+        file.deleteDir()
+        file.createFile()
+        assertFalse(Arrays.equals(snapshotter.fingerprint(files(file)), dir))
+    }
+
+    @Test
+    public void fingerprintChangesWhenFileAddedOrRemoved() {
+        TestFile file1 = tmpDir.createFile('file1')
+        TestFile file2 = tmpDir.createFile('file2')
+
+        byte[] fingerprint = snapshotter.fingerprint(files(file1))
+
+        assertFalse(Arrays.equals(snapshotter.fingerprint(files(file1, file2)), fingerprint))
+        assertFalse(Arrays.equals(snapshotter.fingerprint(files()), fingerprint))
+    }
+
+    @Test
+    public void canWriteAndReadSnapshotUsingSnapshotSerializer() {
+        TestFile file = tmpDir.createFile('file')
+        file.write('content')
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile missing = tmpDir.file('missing')
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(file, dir, missing))
+        SnapshotSerializer serializer = new SnapshotSerializer()
+        assertTrue(serializer.canWrite(snapshot))
+
+        List<String> paths = []
+        serializer.collectPaths(snapshot, paths)
+        paths.sort()
+        assertThat(paths, equalTo([dir.absolutePath, file.absolutePath, missing.absolutePath]))
+        Map<String, Integer> pathIndexes = [:]
+        paths.each { pathIndexes[it] = pathIndexes.size() }
+
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream()
+        serializer.write(snapshot, new DataOutputStream(outstr), pathIndexes)
+        FileCollectionSnapshot copy = serializer.read(new DataInputStream(new ByteArrayInputStream(outstr.toByteArray())), paths as String[])
+
+        copy.changesSince(snapshot, listener)
+        snapshot.changesSince(copy, listener)
+
+        file.write('new content')
+        context.checking {
+            one(listener).changed(file)
+        }
+        snapshotter.snapshot(files(file, dir, missing)).changesSince(copy, listener)
+    }
+
+    @Test
+    public void canWriteAndReadVariableLengthInts() {
+        [0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE].each { value ->
+            ByteArrayOutputStream outstr = new ByteArrayOutputStream()
+            SnapshotSerializer.writeVarInt(new DataOutputStream(outstr), value)
+            assertThat(SnapshotSerializer.readVarInt(new DataInputStream(new ByteArrayInputStream(outstr.toByteArray()))), equalTo(value))
+        }
+    }
+
     private FileCollection files(File... files) {
         FileCollection collection = context.mock(FileCollection.class, "collection ${counter++}")
         context.checking {
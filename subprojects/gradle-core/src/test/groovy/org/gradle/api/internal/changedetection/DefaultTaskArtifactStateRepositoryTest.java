@@ -22,8 +22,10 @@ import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
 import org.gradle.util.HelperUtil;
 import org.gradle.util.JUnit4GroovyMockery;
 import org.gradle.util.TemporaryFolder;
@@ -35,10 +37,13 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.*;
 
 import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
 @RunWith(JMock.class)
@@ -61,8 +66,10 @@ public class DefaultTaskArtifactStateRepositoryTest {
     private final Set<TestFile> inputFiles = toSet(inputFile, inputDir, missingInputFile);
     private final Set<TestFile> outputFiles = toSet(outputFile, outputDir, emptyOutputDir, missingOutputFile);
     private final Set<TestFile> createFiles = toSet(outputFile, outputDirFile, outputDirFile2);
-    private final FileSnapshotter fileSnapshotter = new DefaultFileSnapshotter(new DefaultHasher());
+    private final CountingHasher hasher = new CountingHasher();
+    private final FileSnapshotter fileSnapshotter = new DefaultFileSnapshotter(hasher);
     private PersistentCache persistentCache;
+    private final TestIndexedCache indexedCache = new TestIndexedCache();
     private final DefaultTaskArtifactStateRepository repository = new DefaultTaskArtifactStateRepository(cacheRepository,
             fileSnapshotter);
 
@@ -300,6 +307,75 @@ public class DefaultTaskArtifactStateRepositoryTest {
         assertTrue(state.isUpToDate());
     }
 
+    @Test
+    public void doesNotHashFilesWhenNoFileHasChangedSinceLastExecution() {
+        execute();
+        hasher.hashed = 0;
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+        assertThat(hasher.hashed, equalTo(0));
+    }
+
+    @Test
+    public void hashesFilesWhenInputFileTimestampHasChangedSinceLastExecution() {
+        execute();
+        hasher.hashed = 0;
+
+        inputFile.setLastModified(inputFile.lastModified() - 10000);
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+        assertThat(hasher.hashed, greaterThan(0));
+    }
+
+    @Test
+    public void hashesFilesWhenOutputFileTimestampHasChangedSinceLastExecution() {
+        execute();
+        hasher.hashed = 0;
+
+        outputDirFile.setLastModified(outputDirFile.lastModified() - 10000);
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+        assertThat(hasher.hashed, greaterThan(0));
+    }
+
+    @Test
+    public void recordsNewFingerprintsWhenFilesHaveNotChangedSinceLastExecution() {
+        execute();
+
+        inputFile.setLastModified(inputFile.lastModified() - 10000);
+        outputDirFile.setLastModified(outputDirFile.lastModified() - 10000);
+        assertTrue(repository.getStateFor(task()).isUpToDate());
+        hasher.hashed = 0;
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+        assertThat(hasher.hashed, equalTo(0));
+    }
+
+    @Test
+    public void canReadHistoryPersistedUsingJavaSerialization() {
+        indexedCache.writeSerializer = new DefaultSerializer<Object>();
+        execute();
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+    }
+
+    @Test
+    public void artifactsAreNotUpToDateWhenHistoryHasUnknownFormat() {
+        execute();
+
+        for (Map.Entry<Object, byte[]> entry : indexedCache.entries.entrySet()) {
+            entry.getValue()[0] = 99;
+        }
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertFalse(state.isUpToDate());
+    }
+
     @Test
     public void artifactsAreUpToDateWhenOutputFileWhichDidNotExistNowExists() {
         execute();
@@ -494,8 +570,8 @@ public class DefaultTaskArtifactStateRepositoryTest {
             one(builder).open();
             will(returnValue(persistentCache));
             
-            one(persistentCache).openIndexedCache();
-            will(returnValue(new TestIndexedCache()));
+            one(persistentCache).openIndexedCache(with(notNullValue(Serializer.class)));
+            will(returnValue(indexedCache));
         }});
     }
 
@@ -582,15 +658,55 @@ public class DefaultTaskArtifactStateRepositoryTest {
     public static class TaskSubType extends DefaultTask {
     }
 
+    private static class CountingHasher extends DefaultHasher {
+        int hashed;
+
+        @Override
+        public byte[] hash(File file) {
+            hashed++;
+            return super.hash(file);
+        }
+    }
+
+    /**
+     * Stores each entry in serialized form, so that the history is read back using the serializer on each access.
+     */
     public static class TestIndexedCache implements PersistentIndexedCache<Object, Object> {
-        Map<Object, Object> entries = new HashMap<Object, Object>();
+        final Serializer<Object> readSerializer = (Serializer) new DefaultTaskArtifactStateRepository.TaskHistorySerializer();
+        Serializer<Object> writeSerializer = readSerializer;
+        Map<Object, byte[]> entries = new HashMap<Object, byte[]>();
 
         public Object get(Object key) {
-            return entries.get(key);
+            byte[] bytes = entries.get(key);
+            if (bytes == null) {
+                return null;
+            }
+            try {
+                return readSerializer.read(new ByteArrayInputStream(bytes));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public Map<Object, Object> getAll(Collection<?> keys) {
+            Map<Object, Object> values = new HashMap<Object, Object>();
+            for (Object key : keys) {
+                Object value = get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
         }
 
         public void put(Object key, Object value) {
-            entries.put(key, value);
+            ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+            try {
+                writeSerializer.write(outstr, value);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            entries.put(key, outstr.toByteArray());
         }
 
         public void remove(Object key) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.util.Benchmark;
+import org.gradle.util.ChangeListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+
+/**
+ * Measures diffing two {@link FileCollectionSnapshot} instances, and applying the diff to a third, where 1% of the files
+ * have changed. Usage: {@code FileCollectionSnapshotBenchmark [entries...]}.
+ */
+public class FileCollectionSnapshotBenchmark {
+    private static final int HASH_WIDTH = 16;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10000, 100000, 1000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) throws Exception {
+        String[] paths = new String[size];
+        for (int i = 0; i < size; i++) {
+            paths[i] = String.format("/project/build/classes/org/gradle/package%d/Class%07d.class", i % 100, i);
+        }
+        // The snapshot serializer expects the path table to be sorted
+        java.util.Arrays.sort(paths);
+        final FileCollectionSnapshot before = snapshot(paths, 0);
+        final FileCollectionSnapshot after = snapshot(paths, 1);
+
+        final int[] changes = new int[1];
+        final ChangeListener<File> listener = new ChangeListener<File>() {
+            public void added(File element) {
+                changes[0]++;
+            }
+
+            public void removed(File element) {
+                changes[0]++;
+            }
+
+            public void changed(File element) {
+                changes[0]++;
+            }
+        };
+
+        Benchmark.measure(String.format("%d entries: diff", size), new Benchmark.Operation() {
+            public void run() {
+                changes[0] = 0;
+                after.changesSince(before, listener);
+            }
+        });
+        Benchmark.measure(String.format("%d entries: diff and apply", size), new Benchmark.Operation() {
+            public void run() {
+                after.changesSince(before).applyTo(before);
+            }
+        });
+        if (changes[0] != size / 100) {
+            throw new AssertionError(String.format("Expected %d changes, found %d.", size / 100, changes[0]));
+        }
+    }
+
+    /**
+     * Creates a snapshot of the given files by reading it using a {@link DefaultFileSnapshotter.SnapshotSerializer}.
+     * Every 100th file is given a hash which depends on {@code version}.
+     */
+    private static FileCollectionSnapshot snapshot(String[] paths, int version) throws Exception {
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(outstr);
+        DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, paths.length);
+        output.writeByte(HASH_WIDTH);
+        for (int i = 0; i < paths.length; i++) {
+            DefaultFileSnapshotter.SnapshotSerializer.writeVarInt(output, i == 0 ? 0 : 1);
+            output.writeByte(DefaultFileSnapshotter.SnapshotSerializer.FILE);
+            byte[] hash = new byte[HASH_WIDTH];
+            hash[0] = (byte) i;
+            hash[1] = (byte) (i >> 8);
+            hash[2] = (byte) (i >> 16);
+            hash[3] = (byte) (i % 100 == 0 ? version : 0);
+            output.write(hash);
+        }
+        output.flush();
+        return new DefaultFileSnapshotter.SnapshotSerializer().read(new DataInputStream(new ByteArrayInputStream(
+                outstr.toByteArray())), paths);
+    }
+}
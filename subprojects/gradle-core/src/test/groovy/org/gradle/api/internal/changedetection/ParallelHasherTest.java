@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.apache.commons.lang.StringUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.util.HashUtil;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ParallelHasherTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final ParallelHasher hasher = new ParallelHasher(4);
+
+    @After
+    public void tearDown() {
+        hasher.stop();
+    }
+
+    @Test
+    public void calculatesMd5HashOfFile() {
+        TestFile file = tmpDir.createFile("file").write("content");
+
+        assertTrue(Arrays.equals(hasher.hash(file), HashUtil.createHash(file)));
+    }
+
+    @Test
+    public void calculatesMd5HashOfEmptyFile() {
+        TestFile file = tmpDir.createFile("file");
+
+        assertTrue(Arrays.equals(hasher.hash(file), HashUtil.createHash(file)));
+    }
+
+    @Test
+    public void calculatesMd5HashOfFileLargerThanBuffer() {
+        TestFile file = tmpDir.createFile("file").write(StringUtils.repeat("some content ", 20000));
+
+        assertTrue(Arrays.equals(hasher.hash(file), HashUtil.createHash(file)));
+    }
+
+    @Test
+    public void hashesEachFileInBatch() {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 50; i++) {
+            files.add(tmpDir.createFile(String.format("file%d", i)).write(StringUtils.repeat(String.valueOf(i), i * 1000)));
+        }
+
+        Map<File, byte[]> hashes = hasher.hash(files);
+
+        assertThat(hashes.size(), equalTo(50));
+        for (File file : files) {
+            assertTrue(Arrays.equals(hashes.get(file), HashUtil.createHash(file)));
+        }
+    }
+
+    @Test
+    public void hashesBatchUsingSingleThread() {
+        ParallelHasher hasher = new ParallelHasher(1);
+        TestFile file1 = tmpDir.createFile("file1").write("content 1");
+        TestFile file2 = tmpDir.createFile("file2").write("content 2");
+
+        Map<File, byte[]> hashes = hasher.hash(Arrays.<File>asList(file1, file2));
+
+        assertTrue(Arrays.equals(hashes.get(file1), HashUtil.createHash(file1)));
+        assertTrue(Arrays.equals(hashes.get(file2), HashUtil.createHash(file2)));
+    }
+
+    @Test
+    public void rethrowsFailureToHashFileInBatch() {
+        TestFile file1 = tmpDir.createFile("file1").write("content 1");
+        TestFile file2 = tmpDir.file("missing");
+
+        try {
+            hasher.hash(Arrays.<File>asList(file1, file2));
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getMessage(), equalTo(String.format("Could not hash file '%s'.", file2)));
+        }
+    }
+
+    @Test
+    public void canReuseAfterStop() {
+        TestFile file1 = tmpDir.createFile("file1").write("content 1");
+        TestFile file2 = tmpDir.createFile("file2").write("content 2");
+
+        hasher.hash(Arrays.<File>asList(file1, file2));
+        hasher.stop();
+        hasher.stop();
+
+        Map<File, byte[]> hashes = hasher.hash(Arrays.<File>asList(file1, file2));
+        assertTrue(Arrays.equals(hashes.get(file1), HashUtil.createHash(file1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotUseNonPositiveThreadCount() {
+        new ParallelHasher(0);
+    }
+}
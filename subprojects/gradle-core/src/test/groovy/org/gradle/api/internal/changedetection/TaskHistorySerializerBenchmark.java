@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.CacheUsage;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.project.DefaultProject;
+import org.gradle.cache.*;
+import org.gradle.util.Benchmark;
+import org.gradle.util.GFileUtils;
+import org.gradle.util.HelperUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+/**
+ * Compares {@link DefaultTaskArtifactStateRepository.TaskHistorySerializer} with Java serialization, for the history of
+ * a task with many input and output files. Usage: {@code TaskHistorySerializerBenchmark [input-files] [dir]}.
+ */
+public class TaskHistorySerializerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int inputFiles = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        File baseDir = args.length > 1 ? new File(args[1]) : new File(System.getProperty("java.io.tmpdir"),
+                "task-history-benchmark");
+        GFileUtils.deleteDirectory(baseDir);
+
+        File projectDir = new File(baseDir, "project");
+        for (int i = 0; i < inputFiles; i++) {
+            File file = new File(projectDir, String.format("src/main/java/org/gradle/package%d/Class%d.java", i % 100,
+                    i));
+            file.getParentFile().mkdirs();
+            GFileUtils.writeStringToFile(file, String.format("class Class%d {}", i));
+        }
+        File outputDir = new File(projectDir, "build/classes");
+        for (int i = 0; i < inputFiles; i++) {
+            File file = new File(outputDir, String.format("org/gradle/package%d/Class%d.class", i % 100, i));
+            file.getParentFile().mkdirs();
+            GFileUtils.writeStringToFile(file, String.format("Class%d", i));
+        }
+
+        DefaultProject project = HelperUtil.createRootProject(projectDir);
+        TaskInternal task = HelperUtil.createTask(DefaultTask.class, project, "compile");
+        task.getInputs().dir(new File(projectDir, "src"));
+        task.getOutputs().dir(outputDir);
+
+        CacheFactory cacheFactory = new DefaultCacheFactory();
+        CacheRepository cacheRepository = new DefaultCacheRepository(new File(baseDir, "home"), CacheUsage.ON,
+                cacheFactory);
+        DefaultTaskArtifactStateRepository repository = new DefaultTaskArtifactStateRepository(cacheRepository,
+                new DefaultFileSnapshotter(new DefaultHasher()));
+        TaskArtifactState state = repository.getStateFor(task);
+        state.isUpToDate();
+        state.update();
+
+        PersistentIndexedCache<String, Object> cache = cacheRepository.cache("taskArtifacts").forObject(
+                project.getGradle()).open().openIndexedCache();
+        Object history = cache.get(task.getPath());
+
+        Serializer<Object> binary = (Serializer) new DefaultTaskArtifactStateRepository.TaskHistorySerializer();
+        measure("java serialization", new DefaultSerializer<Object>(), history);
+        measure("binary", binary, history);
+
+        GFileUtils.deleteDirectory(baseDir);
+    }
+
+    private static void measure(String name, final Serializer<Object> serializer, final Object history)
+            throws Exception {
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+        serializer.write(outstr, history);
+        final byte[] bytes = outstr.toByteArray();
+        System.out.println(String.format("%s: size %dkB", name, bytes.length / 1024));
+
+        Benchmark.measure(name + ": write", new Benchmark.Operation() {
+            public void run() throws Exception {
+                serializer.write(new ByteArrayOutputStream(), history);
+            }
+        });
+        Benchmark.measure(name + ": read", new Benchmark.Operation() {
+            public void run() throws Exception {
+                if (serializer.read(new ByteArrayInputStream(bytes)) == null) {
+                    throw new AssertionError("Could not read history.");
+                }
+            }
+        });
+    }
+}
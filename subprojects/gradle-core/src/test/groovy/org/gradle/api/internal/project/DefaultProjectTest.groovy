@@ -348,6 +348,27 @@ class DefaultProjectTest {
         assertSame(project, project.evaluate())
     }
 
+    @Test void testEvaluateWithParentsEvaluatesParentsFromRootProjectFirst() {
+        List<Project> evaluated = []
+        [project, child1, childchild].each { DefaultProject p ->
+            p.projectEvaluator = [evaluate: {DefaultProject target, state -> evaluated << target}] as ProjectEvaluator
+        }
+        assertSame(childchild, childchild.evaluateWithParents())
+        assertThat(evaluated, equalTo([project, child1, childchild]))
+    }
+
+    @Test void testEvaluateWithParentsSkipsParentWhichIsBeingEvaluated() {
+        List<Project> evaluated = []
+        project.projectEvaluator = [evaluate: {DefaultProject target, state ->
+            state.executing = true
+            child1.evaluateWithParents()
+            evaluated << target
+        }] as ProjectEvaluator
+        child1.projectEvaluator = [evaluate: {DefaultProject target, state -> evaluated << target}] as ProjectEvaluator
+        project.evaluate()
+        assertThat(evaluated, equalTo([child1, project]))
+    }
+
     @Test void testUsePluginWithString() {
         context.checking {
             one(pluginContainerMock).apply('someplugin'); will(returnValue([:] as Plugin))
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.project;
+
+import org.gradle.util.Benchmark;
+
+/**
+ * Measures creating registries, and locating services in a registry, either from the registry itself or from its
+ * parent. Usage: {@code DefaultServiceRegistryBenchmark [registries] [lookups]}.
+ */
+public class DefaultServiceRegistryBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int registries = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+
+        final ParentRegistry parent = new ParentRegistry();
+        final ChildRegistry registry = new ChildRegistry(parent);
+
+        Benchmark.measure("create", registries, "registries", new Benchmark.Operation() {
+            public void run() {
+                for (int i = 0; i < registries; i++) {
+                    new ChildRegistry(parent).get(String.class);
+                }
+            }
+        });
+        Benchmark.measure("local lookup", lookups, "lookups", new Benchmark.Operation() {
+            public void run() {
+                for (int i = 0; i < lookups; i++) {
+                    registry.get(Integer.class);
+                }
+            }
+        });
+        Benchmark.measure("parent lookup", lookups, "lookups", new Benchmark.Operation() {
+            public void run() {
+                for (int i = 0; i < lookups; i++) {
+                    registry.get(Long.class);
+                }
+            }
+        });
+    }
+
+    private static class ParentRegistry extends DefaultServiceRegistry {
+        protected Long createLong() {
+            return 1L;
+        }
+
+        protected Short createShort() {
+            return 2;
+        }
+
+        protected Double createDouble() {
+            return 3.0;
+        }
+    }
+
+    private static class ChildRegistry extends DefaultServiceRegistry {
+        private ChildRegistry(ServiceRegistry parent) {
+            super(parent);
+        }
+
+        protected Integer createInteger() {
+            return 4;
+        }
+
+        protected String createString() {
+            return get(Integer.class).toString();
+        }
+
+        protected StringBuilder createStringBuilder() {
+            return new StringBuilder();
+        }
+
+        protected Float createFloat() {
+            return 5.0f;
+        }
+
+        protected Short createShort(Short value) {
+            return value;
+        }
+    }
+}
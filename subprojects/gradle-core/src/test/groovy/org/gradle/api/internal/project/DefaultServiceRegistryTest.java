@@ -56,6 +56,21 @@ public class DefaultServiceRegistryTest {
         assertThat(registry.get(BigDecimal.class), sameInstance(value));
     }
 
+    @Test
+    public void locatesParentServiceOnce() {
+        final BigDecimal value = BigDecimal.TEN;
+        final ServiceRegistry parent = context.mock(ServiceRegistry.class);
+        TestRegistry registry = new TestRegistry(parent);
+
+        context.checking(new Expectations(){{
+            one(parent).get(BigDecimal.class);
+            will(returnValue(value));
+        }});
+
+        assertThat(registry.get(BigDecimal.class), sameInstance(value));
+        assertThat(registry.get(BigDecimal.class), sameInstance(value));
+    }
+
     @Test
     public void throwsExceptionForUnknownParentService() {
         final ServiceRegistry parent = context.mock(ServiceRegistry.class);
@@ -95,6 +110,23 @@ public class DefaultServiceRegistryTest {
         assertThat(registry.get(Number.class), sameInstance((Object) value));
     }
 
+    @Test
+    public void addedServiceTakesPrecedenceOverPreviouslyLocatedService() {
+        registry.add(Number.class, 1);
+        assertThat(registry.get(Number.class), equalTo((Object) 1));
+
+        registry.add(Number.class, 2);
+        assertThat(registry.get(Number.class), equalTo((Object) 2));
+    }
+
+    @Test
+    public void factoryMethodsAreSharedByRegistriesOfTheSameType() {
+        TestRegistry other = new TestRegistry();
+        assertThat(registry.get(String.class), equalTo("12"));
+        assertThat(other.get(String.class), equalTo("12"));
+        assertThat(other.get(String.class), not(sameInstance(registry.get(String.class))));
+    }
+
     @Test
     public void usesFactoryMethodToCreateServiceInstance() {
         assertThat(registry.get(String.class), equalTo("12"));
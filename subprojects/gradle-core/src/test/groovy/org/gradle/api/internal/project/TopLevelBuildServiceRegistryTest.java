@@ -23,6 +23,8 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.artifacts.dsl.DefaultPublishArtifactFactory;
 import org.gradle.api.internal.artifacts.dsl.DefaultRepositoryHandlerFactory;
 import org.gradle.api.internal.artifacts.dsl.PublishArtifactFactory;
+import org.gradle.api.internal.changedetection.Hasher;
+import org.gradle.api.internal.changedetection.ParallelHasher;
 import org.gradle.api.internal.tasks.ExecuteAtMostOnceTaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.cache.CacheFactory;
@@ -35,7 +37,7 @@ import org.gradle.groovy.scripts.ScriptCompilerFactory;
 import org.gradle.initialization.*;
 import org.gradle.listener.DefaultListenerManager;
 import org.gradle.listener.ListenerManager;
-import org.gradle.process.DefaultWorkerProcessFactory;
+import org.gradle.process.PooledWorkerProcessFactory;
 import org.gradle.process.WorkerProcessFactory;
 import org.gradle.util.MultiParentClassLoader;
 import org.gradle.util.TemporaryFolder;
@@ -142,6 +144,7 @@ public class TopLevelBuildServiceRegistryTest {
 
     @Test
     public void providesAScriptCompilerFactory() {
+        expectFileHashCacheOpened();
         assertThat(factory.get(ScriptCompilerFactory.class), instanceOf(DefaultScriptCompilerFactory.class));
         assertThat(factory.get(ScriptCompilerFactory.class), sameInstance(factory.get(ScriptCompilerFactory.class)));
     }
@@ -155,6 +158,7 @@ public class TopLevelBuildServiceRegistryTest {
     @Test
     public void providesAnInitScriptHandler() {
         expectScriptClassLoaderCreated();
+        expectFileHashCacheOpened();
         assertThat(factory.get(InitScriptHandler.class), instanceOf(InitScriptHandler.class));
         assertThat(factory.get(InitScriptHandler.class), sameInstance(factory.get(InitScriptHandler.class)));
     }
@@ -162,6 +166,7 @@ public class TopLevelBuildServiceRegistryTest {
     @Test
     public void providesAScriptObjectConfigurerFactory() {
         expectScriptClassLoaderCreated();
+        expectFileHashCacheOpened();
         assertThat(factory.get(ScriptPluginFactory.class), instanceOf(DefaultScriptPluginFactory.class));
         assertThat(factory.get(ScriptPluginFactory.class), sameInstance(factory.get(ScriptPluginFactory.class)));
     }
@@ -169,6 +174,7 @@ public class TopLevelBuildServiceRegistryTest {
     @Test
     public void providesASettingsProcessor() {
         expectScriptClassLoaderCreated();
+        expectFileHashCacheOpened();
         assertThat(factory.get(SettingsProcessor.class), instanceOf(PropertiesLoadingSettingsProcessor.class));
         assertThat(factory.get(SettingsProcessor.class), sameInstance(factory.get(SettingsProcessor.class)));
     }
@@ -193,14 +199,26 @@ public class TopLevelBuildServiceRegistryTest {
             }));
         }});
         
-        assertThat(factory.get(WorkerProcessFactory.class), instanceOf(DefaultWorkerProcessFactory.class));
+        assertThat(factory.get(WorkerProcessFactory.class), instanceOf(PooledWorkerProcessFactory.class));
         assertThat(factory.get(WorkerProcessFactory.class), sameInstance(factory.get(WorkerProcessFactory.class)));
     }
 
+    @Test
+    public void providesAHasher() {
+        assertThat(factory.get(Hasher.class), instanceOf(ParallelHasher.class));
+        assertThat(factory.get(Hasher.class), sameInstance(factory.get(Hasher.class)));
+    }
+
     private void expectScriptClassLoaderCreated() {
         context.checking(new Expectations() {{
             one(classLoaderFactory).createScriptClassLoader();
             will(returnValue(new MultiParentClassLoader()));
         }});
     }
+
+    private void expectFileHashCacheOpened() {
+        context.checking(new Expectations() {{
+            one(cacheFactory).open(with(notNullValue(File.class)), with(equalTo(startParameter.getCacheUsage())), with(equalTo(Collections.EMPTY_MAP)));
+        }});
+    }
 }
@@ -20,6 +20,9 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
 /**
  * @author Hans Dockter
  */
@@ -121,6 +124,41 @@ public class StandardOutputLoggingTest {
         assertEquals(StandardOutputLogging.ERR_LOGGING_STREAM.get(), System.err);
     }
 
+    @Test
+    public void redirectsEachThreadSeparately() throws Exception {
+        final ByteArrayOutputStream mainOut = new ByteArrayOutputStream();
+        final ByteArrayOutputStream threadOut = new ByteArrayOutputStream();
+        final PrintStream[] initialThreadOut = new PrintStream[1];
+        StandardOutputState state = new StandardOutputState(new PrintStream(mainOut), StandardOutputLogging.DEFAULT_ERR);
+
+        StandardOutputLogging.startPerThreadRedirection();
+        try {
+            StandardOutputLogging.restoreState(state);
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    initialThreadOut[0] = StandardOutputLogging.getStateSnapshot().getOutStream();
+                    StandardOutputLogging.restoreState(new StandardOutputState(new PrintStream(threadOut),
+                            StandardOutputLogging.DEFAULT_ERR));
+                    System.out.print("thread");
+                    System.out.flush();
+                }
+            };
+            thread.start();
+            thread.join();
+            System.out.print("main");
+            System.out.flush();
+        } finally {
+            StandardOutputLogging.stopPerThreadRedirection();
+        }
+
+        assertSame(StandardOutputLogging.DEFAULT_OUT, initialThreadOut[0]);
+        assertEquals("main", mainOut.toString());
+        assertEquals("thread", threadOut.toString());
+        assertSame(state.getOutStream(), System.out);
+        assertSame(StandardOutputLogging.DEFAULT_ERR, System.err);
+    }
+
     private void checkOut(LogLevel expectedOut) {
         assertEquals(StandardOutputLogging.OUT_LOGGING_STREAM.get(), System.out);
         assertEquals(StandardOutputLogging.getOutAdapter().getLevel(), expectedOut);
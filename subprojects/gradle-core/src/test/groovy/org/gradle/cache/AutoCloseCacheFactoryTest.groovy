@@ -49,5 +49,48 @@ public class AutoCloseCacheFactoryTest {
 
         factory.close()
     }
-}
 
+    @Test
+    public void compactsEachCacheBeforeClosingWhenRequested() {
+        AutoCloseCacheFactory factory = new AutoCloseCacheFactory(backingFactory, true)
+        PersistentCache cache = context.mock(PersistentCache)
+        context.checking {
+            one(backingFactory).open(new File('dir1'), CacheUsage.ON, [:])
+            will(returnValue(cache))
+        }
+        factory.open(new File('dir1'), CacheUsage.ON, [:])
+
+        context.checking {
+            one(cache).compact()
+            one(backingFactory).close(cache)
+        }
+
+        factory.close()
+    }
+
+    @Test
+    public void closesEachCacheWhenCompactingFails() {
+        AutoCloseCacheFactory factory = new AutoCloseCacheFactory(backingFactory, true)
+        PersistentCache cache1 = context.mock(PersistentCache, '1')
+        PersistentCache cache2 = context.mock(PersistentCache, '2')
+        context.checking {
+            one(backingFactory).open(new File('dir1'), CacheUsage.ON, [:])
+            will(returnValue(cache1))
+            one(backingFactory).open(new File('dir2'), CacheUsage.ON, [:])
+            will(returnValue(cache2))
+        }
+        factory.open(new File('dir1'), CacheUsage.ON, [:])
+        factory.open(new File('dir2'), CacheUsage.ON, [:])
+
+        context.checking {
+            one(cache1).compact()
+            will(throwException(new RuntimeException('broken')))
+            one(cache2).compact()
+            will(throwException(new RuntimeException('broken')))
+            one(backingFactory).close(cache1)
+            one(backingFactory).close(cache2)
+        }
+
+        factory.close()
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public abstract class AbstractBlockStoreTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final BlockStore.Factory factory = new BlockStore.Factory() {
+        public Object create(Class<? extends BlockPayload> type) {
+            assertThat(type, equalTo((Object) TestBlock.class));
+            return new TestBlock();
+        }
+    };
+    private final Runnable noInitAction = new Runnable() {
+        public void run() {
+        }
+    };
+    protected TestFile cacheFile;
+    protected BlockStore store;
+
+    @Before
+    public void setUp() {
+        cacheFile = tmpDir.getDir().file("cache.bin");
+        store = createStore(cacheFile);
+    }
+
+    protected abstract BlockStore createStore(TestFile cacheFile);
+
+    @Test
+    public void callsInitActionWhenStoreIsEmpty() {
+        final TestBlock first = new TestBlock("first");
+        store.open(new Runnable() {
+            public void run() {
+                store.write(first);
+            }
+        }, factory);
+
+        assertThat(first.getPos(), equalTo(new BlockPointer(0)));
+        assertThat(store.readFirst(TestBlock.class).value, equalTo("first"));
+        store.close();
+    }
+
+    @Test
+    public void doesNotCallInitActionWhenStoreIsNotEmpty() {
+        store.open(noInitAction, factory);
+        store.write(new TestBlock("first"));
+        store.close();
+
+        store = createStore(cacheFile);
+        store.open(new Runnable() {
+            public void run() {
+                fail();
+            }
+        }, factory);
+        assertThat(store.readFirst(TestBlock.class).value, equalTo("first"));
+        store.close();
+    }
+
+    @Test
+    public void canReadBlocksBeforeTheyAreFlushed() {
+        store.open(noInitAction, factory);
+        TestBlock block1 = new TestBlock("block 1");
+        TestBlock block2 = new TestBlock("block 2");
+        store.write(block1);
+        store.write(block2);
+
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("block 1"));
+        assertThat(store.read(block2.getPos(), TestBlock.class).value, equalTo("block 2"));
+        store.close();
+    }
+
+    @Test
+    public void canReadBlocksAfterTheyAreFlushed() {
+        store.open(noInitAction, factory);
+        TestBlock block1 = new TestBlock("block 1");
+        TestBlock block2 = new TestBlock("block 2");
+        store.write(block1);
+        store.write(block2);
+        store.flush();
+
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("block 1"));
+        assertThat(store.read(block2.getPos(), TestBlock.class).value, equalTo("block 2"));
+
+        TestBlock block3 = new TestBlock("block 3");
+        store.write(block3);
+        store.flush();
+
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("block 1"));
+        assertThat(store.read(block3.getPos(), TestBlock.class).value, equalTo("block 3"));
+        store.close();
+    }
+
+    @Test
+    public void canReadBlocksAfterStoreIsReopened() {
+        store.open(noInitAction, factory);
+        TestBlock block1 = new TestBlock("block 1");
+        TestBlock block2 = new TestBlock("block 2");
+        store.write(block1);
+        store.write(block2);
+        store.close();
+
+        store = createStore(cacheFile);
+        store.open(noInitAction, factory);
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("block 1"));
+        assertThat(store.read(block2.getPos(), TestBlock.class).value, equalTo("block 2"));
+        store.close();
+    }
+
+    @Test
+    public void allocatesBlocksWhichDoNotOverlap() {
+        store.open(noInitAction, factory);
+        TestBlock block1 = new TestBlock("a");
+        TestBlock block2 = new TestBlock("some longer value");
+        TestBlock block3 = new TestBlock("b");
+        store.write(block1);
+        store.write(block2);
+        store.write(block3);
+
+        assertThat(block2.getPos(), equalTo(block1.getNextPos()));
+        assertThat(block3.getPos(), equalTo(block2.getNextPos()));
+        store.close();
+    }
+
+    @Test
+    public void canUpdateBlockInPlace() {
+        store.open(noInitAction, factory);
+        TestBlock block1 = new TestBlock("value 1");
+        TestBlock block2 = new TestBlock("block 2");
+        store.write(block1);
+        store.write(block2);
+        store.flush();
+
+        block1.value = "value 2";
+        store.write(block1);
+        store.flush();
+
+        assertThat(block1.getPos(), equalTo(new BlockPointer(0)));
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("value 2"));
+        assertThat(store.read(block2.getPos(), TestBlock.class).value, equalTo("block 2"));
+        store.close();
+    }
+
+    @Test
+    public void clearDiscardsAllBlocks() {
+        store.open(noInitAction, factory);
+        store.write(new TestBlock("block 1"));
+        store.flush();
+        store.write(new TestBlock("block 2"));
+
+        store.clear();
+        assertThat(cacheFile.length(), equalTo(0L));
+
+        TestBlock block = new TestBlock("new block");
+        store.write(block);
+        store.flush();
+        assertThat(block.getPos(), equalTo(new BlockPointer(0)));
+        assertThat(store.readFirst(TestBlock.class).value, equalTo("new block"));
+        store.close();
+    }
+
+    @Test
+    public void detectsCorruptedBlock() throws Exception {
+        store.open(noInitAction, factory);
+        TestBlock block = new TestBlock("some value");
+        store.write(block);
+        store.close();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        try {
+            file.seek(1);
+            file.writeByte(~file.readByte());
+        } finally {
+            file.close();
+        }
+
+        store = createStore(cacheFile);
+        store.open(noInitAction, factory);
+        try {
+            store.read(block.getPos(), TestBlock.class);
+            fail();
+        } catch (CorruptedCacheException e) {
+            // Expected
+        }
+        store.close();
+    }
+
+    @Test
+    public void detectsTruncatedBlock() throws Exception {
+        store.open(noInitAction, factory);
+        TestBlock block = new TestBlock("some value");
+        store.write(block);
+        store.close();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        try {
+            file.setLength(file.length() - 10);
+        } finally {
+            file.close();
+        }
+
+        store = createStore(cacheFile);
+        store.open(noInitAction, factory);
+        try {
+            store.read(block.getPos(), TestBlock.class);
+            fail();
+        } catch (CorruptedCacheException e) {
+            // Expected
+        }
+        store.close();
+    }
+
+    protected void open(BlockStore store) {
+        this.store = store;
+        store.open(noInitAction, factory);
+    }
+
+    public static class TestBlock extends BlockPayload {
+        String value;
+
+        public TestBlock() {
+        }
+
+        public TestBlock(String value) {
+            this.value = value;
+        }
+
+        @Override
+        protected int getSize() {
+            return Block.INT_SIZE + value.length() * 2 + 20;
+        }
+
+        @Override
+        protected int getType() {
+            return 0x77;
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            value = inputStream.readUTF();
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeUTF(value);
+        }
+    }
+}
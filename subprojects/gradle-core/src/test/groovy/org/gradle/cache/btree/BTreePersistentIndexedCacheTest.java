@@ -15,7 +15,10 @@
  */
 package org.gradle.cache.btree;
 
+import org.apache.commons.lang.StringUtils;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.DefaultSerializer;
+import org.gradle.cache.FixedSizeSerializer;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.Serializer;
 import org.gradle.util.TestFile;
@@ -28,10 +31,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.*;
 import java.util.*;
+import java.util.zip.CRC32;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -130,25 +132,202 @@ public class BTreePersistentIndexedCacheTest {
         cache.put("key_3", "abcd");
         cache.put("key_4", "abcd");
         cache.put("key_5", "abcd");
+        cache.flush();
 
         long len = cacheFile.length();
         assertThat(len, greaterThan(0L));
 
         cache.put("key_1", "1234");
+        cache.flush();
         assertThat(cacheFile.length(), equalTo(len));
 
         cache.remove("key_1");
-        cache.put("key_new", "a1b2");
+        cache.flush();
+        cache.put("key_n", "a1b2");
+        cache.flush();
         assertThat(cacheFile.length(), equalTo(len));
 
-        cache.put("key_new", "longer value");
+        cache.put("key_n", "longer value");
+        cache.flush();
         assertThat(cacheFile.length(), greaterThan(len));
         len = cacheFile.length();
 
         cache.put("key_1", "1234");
+        cache.flush();
         assertThat(cacheFile.length(), equalTo(len));
     }
+
+    @Test
+    public void doesNotWriteUpdatesToFileUntilFlushed() {
+        TestFile cacheFile = tmpDir.getDir().file("cache.bin");
+        long len = cacheFile.length();
+
+        cache.put("key_1", 1);
+        cache.put("key_2", 2);
+        cache.remove("key_1");
+
+        assertThat(cacheFile.length(), equalTo(len));
+        assertThat(cache.get("key_1"), nullValue());
+        assertThat(cache.get("key_2"), equalTo(2));
+
+        cache.flush();
+
+        assertThat(cacheFile.length(), greaterThan(len));
+        assertThat(cache.get("key_1"), nullValue());
+        assertThat(cache.get("key_2"), equalTo(2));
+        cache.verify();
+    }
+
+    @Test
+    public void changesToValueAfterItIsAddedAreNotWritten() {
+        cache.close();
+        BTreePersistentIndexedCache<String, ArrayList<String>> listCache
+                = new BTreePersistentIndexedCache<String, ArrayList<String>>(backingCache,
+                new DefaultSerializer<ArrayList<String>>(), (short) 4, 100);
+
+        ArrayList<String> value = new ArrayList<String>(Arrays.asList("a"));
+        listCache.put("key_1", value);
+        value.add("b");
+
+        ArrayList<String> pending = listCache.get("key_1");
+        assertThat(pending, equalTo(Arrays.asList("a")));
+        pending.add("c");
+        assertThat(listCache.get("key_1"), equalTo(Arrays.asList("a")));
+
+        listCache.flush();
+        assertThat(listCache.get("key_1"), equalTo(Arrays.asList("a")));
+        listCache.close();
+    }
+
+    @Test
+    public void seesUpdatesFlushedByAnotherCacheInstance() {
+        BTreePersistentIndexedCache<String, Integer> other = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, serializer, (short) 4, 100);
+
+        checkAdds(1, 2, 3, 4, 5);
+        assertThat(other.get("key_1"), equalTo(1));
+
+        other.put("key_1", 10);
+        other.remove("key_2");
+        assertThat(cache.get("key_1"), equalTo(1));
+
+        other.flush();
+        assertThat(cache.get("key_1"), equalTo(10));
+        assertThat(cache.get("key_2"), nullValue());
+        assertThat(cache.get("key_3"), equalTo(3));
+
+        cache.put("key_6", 6);
+        cache.flush();
+        assertThat(other.get("key_6"), equalTo(6));
+
+        other.close();
+        cache.verify();
+    }
+
+    @Test
+    public void replaysCompletedJournalOnOpen() throws IOException {
+        checkAdds(1, 2, 3);
+        cache.close();
+
+        TestFile cacheFile = tmpDir.getDir().file("cache.bin");
+        TestFile journalFile = tmpDir.getDir().file("cache.bin.journal");
+        byte[] original = readBytes(cacheFile);
+
+        cache.reset();
+        cache.put("key_4", 4);
+        cache.put("key_1", 10);
+        cache.close();
+        byte[] updated = readBytes(cacheFile);
+
+        // Simulate a crash after the journal was written but before it was applied
+        writeBytes(cacheFile, original);
+        writeJournal(journalFile, updated);
+
+        cache.reset();
+
+        journalFile.assertDoesNotExist();
+        assertThat(cache.get("key_1"), equalTo(10));
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertThat(cache.get("key_4"), equalTo(4));
+        cache.verify();
+    }
+
+    @Test
+    public void discardsIncompleteJournalOnOpen() throws IOException {
+        checkAdds(1, 2, 3);
+        cache.close();
+
+        TestFile journalFile = tmpDir.getDir().file("cache.bin.journal");
+        journalFile.write("some junk");
+
+        cache.reset();
+
+        journalFile.assertDoesNotExist();
+        assertThat(cache.get("key_1"), equalTo(1));
+        assertThat(cache.get("key_3"), equalTo(3));
+        cache.verify();
+    }
+
+    @Test
+    public void canReadFromMultipleThreadsConcurrently() throws Exception {
+        final int count = 200;
+        for (int i = 0; i < count; i++) {
+            cache.put(String.format("key_%d", i), i);
+        }
+        cache.flush();
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            int value = (i + offset * 37) % count;
+                            assertThat(cache.get(String.format("key_%d", value)), equalTo(value));
+                            if (value % 50 == offset) {
+                                cache.put(String.format("key_%d", value), value);
+                            }
+                        }
+                    } catch (Throwable throwable) {
+                        failures.add(throwable);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        cache.verify();
+    }
     
+    @Test
+    public void canGetMultipleEntriesInBatch() {
+        for (int i = 1; i <= 10; i++) {
+            cache.put(String.format("key_%d", i), i);
+        }
+        cache.flush();
+        cache.put("key_3", 30);
+        cache.remove("key_4");
+        cache.put("key_11", 11);
+
+        Map<String, Integer> values = cache.getAll(Arrays.asList("key_1", "key_3", "key_4", "key_10", "key_11",
+                "unknown"));
+
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("key_1", 1);
+        expected.put("key_3", 30);
+        expected.put("key_10", 10);
+        expected.put("key_11", 11);
+        assertThat(values, equalTo(expected));
+    }
+
     @Test
     public void canHandleLargeNumberOfEntries() {
 
@@ -203,6 +382,7 @@ public class BTreePersistentIndexedCacheTest {
 
         assertNull(cache.get("key_1"));
         cache.put("key_1", 99);
+        cache.flush();
 
         RandomAccessFile file = new RandomAccessFile(testFile, "rw");
         file.setLength(file.length() - 10);
@@ -227,6 +407,316 @@ public class BTreePersistentIndexedCacheTest {
         assertThat(cache.get(new File("File")), equalTo(3));
     }
 
+    @Test
+    public void canHandleKeysWithTheSameDigest() {
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100) {
+            @Override
+            byte[] digest(String keyString) throws Exception {
+                // Keys with the same length have the same digest
+                return super.digest(String.valueOf(keyString.length()));
+            }
+        };
+
+        checkAdds(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        cache.verify();
+
+        // Replace values at the start, middle and end of a chain, with values which need a new block
+        cache.put("key_1", 1000000);
+        cache.put("key_5", 5000000);
+        cache.put("key_9", 9000000);
+        cache.verify();
+        assertThat(cache.get("key_1"), equalTo(1000000));
+        assertThat(cache.get("key_5"), equalTo(5000000));
+        assertThat(cache.get("key_9"), equalTo(9000000));
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertThat(cache.get("key_0"), nullValue());
+
+        cache.remove("key_9");
+        cache.remove("key_5");
+        cache.remove("key_1");
+        cache.remove("key_0");
+        cache.verify();
+        assertThat(cache.get("key_1"), nullValue());
+        assertThat(cache.get("key_5"), nullValue());
+        assertThat(cache.get("key_9"), nullValue());
+        for (int i : Arrays.asList(2, 3, 4, 6, 7, 8, 10, 11, 12)) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+
+        cache.reset();
+        checkAddsAndRemoves(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+    }
+
+    @Test
+    public void storesValuesInIndexWhenSerializerHasFixedSize() {
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, new FixedSizeIntegerSerializer(), (short) 4, 100);
+
+        checkAddsAndRemoves(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        checkAdds(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        cache.put("key_1", 100);
+        cache.reset();
+
+        assertThat(cache.get("key_1"), equalTo(100));
+        assertThat(cache.get("key_12"), equalTo(12));
+        cache.verify();
+    }
+
+    @Test
+    public void discardsCacheWhenReopenedWithSerializerOfDifferentSize() {
+        checkAdds(1, 2, 3);
+        cache.close();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, new FixedSizeIntegerSerializer(), (short) 4, 100);
+        assertThat(cache.get("key_1"), nullValue());
+        checkAdds(1, 2, 3);
+    }
+
+    @Test
+    public void failsWhenFixedSizeSerializerWritesWrongNumberOfBytes() {
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, new FixedSizeIntegerSerializer() {
+            @Override
+            public int getSize() {
+                return 6;
+            }
+        }, (short) 4, 100);
+
+        try {
+            cache.put("key_1", 1);
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    public void mergesAdjacentFreeBlocks() {
+        BTreePersistentIndexedCache<String, String> cache = new BTreePersistentIndexedCache<String, String>(
+                backingCache, new DefaultSerializer<String>(), (short) 4, 100);
+        TestFile cacheFile = tmpDir.getDir().file("cache.bin");
+
+        for (int i = 0; i < 4; i++) {
+            cache.put(String.format("key_%d", i), "abcdefghij");
+        }
+        cache.flush();
+        long len = cacheFile.length();
+
+        for (int i = 0; i < 4; i++) {
+            cache.remove(String.format("key_%d", i));
+        }
+        cache.flush();
+
+        // Needs the space of two or more of the removed blocks
+        cache.put("key_4", "abcdefghijabcdefghijabcdefghijabcdefghij");
+        cache.flush();
+        assertThat(cacheFile.length(), equalTo(len));
+        assertThat(cache.get("key_4"), equalTo("abcdefghijabcdefghijabcdefghijabcdefghij"));
+
+        cache.reset();
+        assertThat(cache.get("key_4"), equalTo("abcdefghijabcdefghijabcdefghijabcdefghij"));
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void compactRemovesFreeSpaceFromFile() {
+        TestFile cacheFile = tmpDir.getDir().file("cache.bin");
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 500; i++) {
+            values.add(i);
+        }
+        checkAdds(values);
+        for (int i = 0; i < 500; i += 5) {
+            cache.remove(String.format("key_%d", i));
+        }
+        for (int i = 1; i < 500; i += 5) {
+            cache.remove(String.format("key_%d", i));
+        }
+        cache.flush();
+        long len = cacheFile.length();
+
+        cache.compact();
+
+        assertThat(cacheFile.length(), lessThan(len));
+        tmpDir.getDir().file("cache.bin.compact").assertDoesNotExist();
+        for (int i = 0; i < 500; i++) {
+            if (i % 5 < 2) {
+                assertNull(cache.get(String.format("key_%d", i)));
+            } else {
+                assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+            }
+        }
+        cache.verify();
+
+        cache.put("key_0", 0);
+        cache.reset();
+        assertThat(cache.get("key_0"), equalTo(0));
+        assertThat(cache.get("key_2"), equalTo(2));
+        cache.verify();
+    }
+
+    @Test
+    public void keepsCacheFileWhenItCannotBeReplacedByCompactedFile() {
+        checkAdds(1, 2, 3, 4, 5);
+        cache.flush();
+        // A non-empty directory in place of the backup file prevents the cache file from being moved aside
+        tmpDir.getDir().file("cache.bin.backup").createDir().file("file").createFile();
+
+        try {
+            cache.compact();
+            fail();
+        } catch (UncheckedIOException e) {
+            // Expected
+        }
+
+        tmpDir.getDir().file("cache.bin.compact").assertDoesNotExist();
+        for (int i = 1; i <= 5; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        cache.verify();
+    }
+
+    @Test
+    public void restoresBackupFileLeftByInterruptedCompaction() {
+        checkAdds(1, 2, 3, 4, 5);
+        cache.close();
+        TestFile cacheFile = tmpDir.getDir().file("cache.bin");
+        assertTrue(cacheFile.renameTo(tmpDir.getDir().file("cache.bin.backup")));
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100);
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        tmpDir.getDir().file("cache.bin.backup").assertDoesNotExist();
+        cache.verify();
+    }
+
+    @Test
+    public void compactsOnCloseWhenFileIsMostlyFreeSpace() {
+        BTreePersistentIndexedCache<String, String> cache = new BTreePersistentIndexedCache<String, String>(
+                backingCache, new DefaultSerializer<String>(), (short) 4, 100);
+        TestFile cacheFile = tmpDir.getDir().file("cache.bin");
+        String value = StringUtils.repeat("a", 10000);
+
+        for (int i = 0; i < 200; i++) {
+            cache.put(String.format("key_%d", i), value);
+        }
+        cache.flush();
+        for (int i = 0; i < 150; i++) {
+            cache.remove(String.format("key_%d", i));
+        }
+        cache.flush();
+        long len = cacheFile.length();
+        assertThat(len, greaterThan(1024L * 1024));
+
+        cache.close();
+        assertThat(cacheFile.length(), lessThan(len / 2));
+
+        cache.reset();
+        assertThat(cache.get("key_0"), nullValue());
+        assertThat(cache.get("key_199"), equalTo(value));
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void canUseMemoryMappedFile() {
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100, true);
+
+        int count = 500;
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            values.add(i);
+        }
+        checkAddsAndRemoves(null, values);
+        checkAdds(values);
+        cache.close();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100);
+        for (Integer value : values) {
+            assertThat(cache.get(String.format("key_%d", value)), equalTo(value));
+        }
+        cache.verify();
+    }
+
+    @Test
+    public void canCompactMemoryMappedFile() {
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100, true);
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 200; i++) {
+            values.add(i);
+        }
+        checkAdds(values);
+        for (int i = 0; i < 200; i += 2) {
+            cache.remove(String.format("key_%d", i));
+        }
+
+        cache.compact();
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i % 2 == 0 ? null : i));
+        }
+        cache.verify();
+    }
+
+    private void writeJournal(File journalFile, byte[] content) throws IOException {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(entries);
+        outputStream.writeInt(1);
+        outputStream.writeLong(0);
+        outputStream.writeInt(content.length);
+        outputStream.writeInt(content.length);
+        outputStream.write(content);
+        outputStream.flush();
+        CRC32 checksum = new CRC32();
+        checksum.update(entries.toByteArray());
+        outputStream.writeLong(checksum.getValue());
+        outputStream.flush();
+        writeBytes(journalFile, entries.toByteArray());
+    }
+
+    private byte[] readBytes(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] content = new byte[(int) randomAccessFile.length()];
+            randomAccessFile.readFully(content);
+            return content;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void writeBytes(File file, byte[] content) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            randomAccessFile.write(content);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static class FixedSizeIntegerSerializer implements FixedSizeSerializer<Integer> {
+        public int getSize() {
+            return 4;
+        }
+
+        public Integer read(InputStream instr) throws Exception {
+            return new DataInputStream(instr).readInt();
+        }
+
+        public void write(OutputStream outstr, Integer value) throws Exception {
+            DataOutputStream outputStream = new DataOutputStream(outstr);
+            outputStream.writeInt(value);
+            outputStream.flush();
+        }
+    }
+
     private void checkAdds(Integer... values) {
         checkAdds(Arrays.asList(values));
     }
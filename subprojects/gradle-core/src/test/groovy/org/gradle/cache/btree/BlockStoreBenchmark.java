@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.CacheUsage;
+import org.gradle.cache.DefaultPersistentDirectoryCache;
+import org.gradle.cache.FixedSizeSerializer;
+import org.gradle.util.Benchmark;
+import org.gradle.util.GFileUtils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares {@link FileBackedBlockStore} and {@link MemoryMappedBlockStore}, using an indexed cache with the same shape as
+ * the file hash cache: file keys, and fixed-size values made up of an MD5 hash, a length and a timestamp. Usage: {@code
+ * BlockStoreBenchmark [entries] [dir]}.
+ */
+public class BlockStoreBenchmark {
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        File baseDir = args.length > 1 ? new File(args[1]) : new File(System.getProperty("java.io.tmpdir"),
+                "block-store-benchmark");
+
+        List<File> keys = new ArrayList<File>(entries);
+        for (int i = 0; i < entries; i++) {
+            keys.add(new File(String.format("/project/module%d/src/main/java/org/gradle/Class%d.java", i % 100, i)));
+        }
+        List<File> lookupOrder = new ArrayList<File>(keys);
+        Collections.shuffle(lookupOrder, new Random(0));
+
+        measure("file-backed", new File(baseDir, "file-backed"), false, keys, lookupOrder);
+        measure("memory-mapped", new File(baseDir, "memory-mapped"), true, keys, lookupOrder);
+    }
+
+    private static void measure(String name, final File dir, final boolean memoryMapped, final List<File> keys,
+                                final List<File> lookupOrder) throws Exception {
+        Benchmark.measure(name + ": write", keys.size(), "entries", new Benchmark.Operation() {
+            public void run() {
+                GFileUtils.deleteDirectory(dir);
+                DefaultPersistentDirectoryCache backingCache = open(dir);
+                BTreePersistentIndexedCache<File, FileInfo> cache = backingCache.openIndexedCache(
+                        new FileInfoSerializer(), memoryMapped);
+                byte[] hash = new byte[16];
+                for (int i = 0; i < keys.size(); i++) {
+                    hash[0] = (byte) i;
+                    cache.put(keys.get(i), new FileInfo(hash, i, i));
+                }
+                backingCache.close();
+            }
+        });
+        System.out.println(String.format("%s: file size %dkB", name, new File(dir, "cache.bin").length() / 1024));
+
+        Benchmark.measure(name + ": cold read", keys.size(), "entries", new Benchmark.Operation() {
+            public void run() {
+                DefaultPersistentDirectoryCache backingCache = open(dir);
+                BTreePersistentIndexedCache<File, FileInfo> cache = backingCache.openIndexedCache(
+                        new FileInfoSerializer(), memoryMapped);
+                readAll(cache, lookupOrder);
+                backingCache.close();
+            }
+        });
+
+        DefaultPersistentDirectoryCache backingCache = open(dir);
+        final BTreePersistentIndexedCache<File, FileInfo> cache = backingCache.openIndexedCache(
+                new FileInfoSerializer(), memoryMapped);
+        Benchmark.measure(name + ": warm read", keys.size(), "entries", new Benchmark.Operation() {
+            public void run() {
+                readAll(cache, lookupOrder);
+            }
+        });
+        backingCache.close();
+        GFileUtils.deleteDirectory(dir);
+    }
+
+    private static DefaultPersistentDirectoryCache open(File dir) {
+        return new DefaultPersistentDirectoryCache(dir, CacheUsage.ON, Collections.<String, Object>emptyMap());
+    }
+
+    private static void readAll(BTreePersistentIndexedCache<File, FileInfo> cache, List<File> keys) {
+        for (File key : keys) {
+            if (cache.get(key) == null) {
+                throw new AssertionError(String.format("Missing entry for %s.", key));
+            }
+        }
+    }
+
+    private static class FileInfo {
+        private final byte[] hash;
+        private final long length;
+        private final long timestamp;
+
+        private FileInfo(byte[] hash, long length, long timestamp) {
+            this.hash = hash;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Uses the same fixed-size layout as the file hash cache, so that values are stored inline in the index.
+     */
+    private static class FileInfoSerializer implements FixedSizeSerializer<FileInfo> {
+        private static final int MAX_HASH_LENGTH = 16;
+
+        public int getSize() {
+            return 4 + MAX_HASH_LENGTH + 8 + 8;
+        }
+
+        public FileInfo read(InputStream instr) throws Exception {
+            DataInputStream input = new DataInputStream(instr);
+            int hashLength = input.readInt();
+            byte[] hash = new byte[hashLength];
+            input.readFully(hash);
+            input.skipBytes(MAX_HASH_LENGTH - hashLength);
+            long timestamp = input.readLong();
+            long length = input.readLong();
+            return new FileInfo(hash, length, timestamp);
+        }
+
+        public void write(OutputStream outstr, FileInfo value) throws Exception {
+            DataOutputStream output = new DataOutputStream(outstr);
+            output.writeInt(value.hash.length);
+            output.write(value.hash);
+            output.write(new byte[MAX_HASH_LENGTH - value.hash.length]);
+            output.writeLong(value.timestamp);
+            output.writeLong(value.length);
+            output.flush();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.util.TestFile;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MemoryMappedBlockStoreTest extends AbstractBlockStoreTest {
+    @Override
+    protected BlockStore createStore(TestFile cacheFile) {
+        return new MemoryMappedBlockStore(cacheFile);
+    }
+
+    @Test
+    public void padsBlocksToAlignedBoundaries() {
+        open(store);
+        TestBlock block1 = new TestBlock("a");
+        TestBlock block2 = new TestBlock("bc");
+        store.write(block1);
+        store.write(block2);
+        store.flush();
+
+        assertThat(block2.getPos().getPos() % MemoryMappedBlockStore.BLOCK_ALIGNMENT, equalTo(0L));
+        assertThat(cacheFile.length() % MemoryMappedBlockStore.BLOCK_ALIGNMENT, equalTo(0L));
+        store.close();
+    }
+
+    @Test
+    public void canShareFileWithFileBackedStore() {
+        open(store);
+        TestBlock block1 = new TestBlock("mapped");
+        store.write(block1);
+        store.close();
+
+        open(new FileBackedBlockStore(cacheFile));
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("mapped"));
+        TestBlock block2 = new TestBlock("file");
+        store.write(block2);
+        assertThat(block2.getPos(), equalTo(block1.getNextPos()));
+        store.close();
+
+        open(new MemoryMappedBlockStore(cacheFile));
+        assertThat(store.read(block1.getPos(), TestBlock.class).value, equalTo("mapped"));
+        assertThat(store.read(block2.getPos(), TestBlock.class).value, equalTo("file"));
+        store.close();
+    }
+}
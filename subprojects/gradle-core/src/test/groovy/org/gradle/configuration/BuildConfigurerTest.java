@@ -18,8 +18,11 @@ package org.gradle.configuration;
 
 import org.gradle.api.Action;
 import org.gradle.api.Project;
+import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.groovy.scripts.StringScriptSource;
 import org.gradle.util.HelperUtil;
+import org.gradle.util.WrapUtil;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -81,4 +84,31 @@ public class BuildConfigurerTest {
         createExpectations();
         buildConfigurer.process(rootProject);
     }
+
+    @Test
+    public void testProcessOnDemandEvaluatesRootProjectOnly() {
+        final GradleInternal gradle = context.mock(GradleInternal.class);
+        final Action<Project> testEvaluateAction = context.mock(Action.class);
+        buildConfigurer.setProjectEvaluateAction(testEvaluateAction);
+        context.checking(new Expectations() {{
+            allowing(gradle).getRootProject(); will(returnValue(rootProject));
+            one(gradle).addProjectEvaluationListener(with(any(ProjectDependenciesEvaluator.class)));
+            one(testEvaluateAction).execute(rootProject);
+        }});
+        buildConfigurer.processOnDemand(gradle);
+    }
+
+    @Test
+    public void testProcessInParallel() {
+        final Action<Project> testEvaluateAction = context.mock(Action.class);
+        buildConfigurer.setProjectEvaluateAction(testEvaluateAction);
+        context.checking(new Expectations() {{
+            allowing(rootProject).getAllprojects(); will(returnValue(WrapUtil.toSet(rootProject)));
+            allowing(rootProject).getDepth(); will(returnValue(0));
+            allowing(rootProject).getBuildScriptSource(); will(returnValue(new StringScriptSource("build file", "")));
+            one(testEvaluateAction).execute(rootProject);
+            one(projectDependencies2TasksResolver).resolve(with(same(rootProject)));
+        }});
+        buildConfigurer.processInParallel(rootProject, 2);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration;
+
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.groovy.scripts.StringScriptSource;
+import org.gradle.groovy.scripts.UriScriptSource;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class IsolatedProjectSpecTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final IsolatedProjectSpec spec = new IsolatedProjectSpec();
+    private int projectCount;
+
+    @Test
+    public void projectWithoutBuildScriptIsIsolated() {
+        assertTrue(spec.isSatisfiedBy(project(new UriScriptSource("build file", new File("does-not-exist.gradle")))));
+    }
+
+    @Test
+    public void projectWhichOnlyConfiguresItselfIsIsolated() {
+        assertTrue(isIsolated("apply plugin: 'java'\n"
+                + "dependencies {\n"
+                + "    compile project(':shared')\n"
+                + "    compile project(path: ':api', configuration: 'archives')\n"
+                + "}\n"
+                + "compileJava.dependsOn processResources\n"
+                + "task parentDir << { println project.projectDir.parentFile }"));
+    }
+
+    @Test
+    public void projectWhichReachesIntoOtherProjectsIsNotIsolated() {
+        assertFalse(isIsolated("allprojects { version = '1.0' }"));
+        assertFalse(isIsolated("subprojects { apply plugin: 'java' }"));
+        assertFalse(isIsolated("evaluationDependsOn(':shared')"));
+        assertFalse(isIsolated("evaluationDependsOnChildren()"));
+        assertFalse(isIsolated("dependsOn ':shared'"));
+        assertFalse(isIsolated("dependsOn(':shared')"));
+        assertFalse(isIsolated("dependsOnChildren()"));
+        assertFalse(isIsolated("version = rootProject.version"));
+        assertFalse(isIsolated("version = parent.version"));
+        assertFalse(isIsolated("project(':shared') { apply plugin: 'java' }"));
+        assertFalse(isIsolated("compile project(':shared').sourceSets.main.classes"));
+        assertFalse(isIsolated("configure(subprojects) { }"));
+        assertFalse(isIsolated("apply from: 'common.gradle'"));
+        assertFalse(isIsolated("compileJava.dependsOn tasks.getByPath(':shared:jar')"));
+    }
+
+    private boolean isIsolated(String buildScript) {
+        return spec.isSatisfiedBy(project(new StringScriptSource("build file", buildScript)));
+    }
+
+    private ProjectInternal project(final ScriptSource buildScriptSource) {
+        final ProjectInternal project = context.mock(ProjectInternal.class, "project" + projectCount++);
+        context.checking(new Expectations() {{
+            allowing(project).getBuildScriptSource();
+            will(returnValue(buildScriptSource));
+        }});
+        return project;
+    }
+}
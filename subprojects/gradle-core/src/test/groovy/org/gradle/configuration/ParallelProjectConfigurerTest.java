@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration;
+
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.specs.Spec;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class ParallelProjectConfigurerTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final Project root = context.mock(Project.class, "root");
+    private final Project child1 = context.mock(Project.class, "child1");
+    private final Project child2 = context.mock(Project.class, "child2");
+    private final Project grandchild = context.mock(Project.class, "grandchild");
+    private final List<Project> nonIsolated = new ArrayList<Project>();
+    private final List<Project> evaluated = Collections.synchronizedList(new ArrayList<Project>());
+    private final ParallelProjectConfigurer configurer = new ParallelProjectConfigurer(4, new Spec<Project>() {
+        public boolean isSatisfiedBy(Project element) {
+            return !nonIsolated.contains(element);
+        }
+    });
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(root).getAllprojects();
+            will(returnValue(toLinkedSet(root, grandchild, child1, child2)));
+            allowing(root).getDepth();
+            will(returnValue(0));
+            allowing(child1).getDepth();
+            will(returnValue(1));
+            allowing(child2).getDepth();
+            will(returnValue(1));
+            allowing(grandchild).getDepth();
+            will(returnValue(2));
+        }});
+    }
+
+    @Test
+    public void evaluatesEachProjectAfterItsParent() {
+        configurer.configure(root, new Action<Project>() {
+            public void execute(Project project) {
+                evaluated.add(project);
+            }
+        });
+
+        assertThat(evaluated.size(), equalTo(4));
+        assertThat(evaluated.get(0), sameInstance(root));
+        assertThat(evaluated.subList(1, 3), hasItems(child1, child2));
+        assertThat(evaluated.get(3), sameInstance(grandchild));
+    }
+
+    @Test
+    public void evaluatesIsolatedSiblingsConcurrently() {
+        final CountDownLatch latch = new CountDownLatch(2);
+        configurer.configure(root, new Action<Project>() {
+            public void execute(Project project) {
+                if (project == child1 || project == child2) {
+                    latch.countDown();
+                    try {
+                        assertTrue(latch.await(20, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        });
+
+        assertThat(latch.getCount(), equalTo(0L));
+    }
+
+    @Test
+    public void evaluatesProjectsWhichAreNotIsolatedBeforeTheirSiblings() {
+        nonIsolated.add(child2);
+
+        configurer.configure(root, new Action<Project>() {
+            public void execute(Project project) {
+                evaluated.add(project);
+            }
+        });
+
+        assertThat(evaluated, equalTo(toList(root, child2, child1, grandchild)));
+    }
+
+    @Test
+    public void rethrowsFailureOnceSiblingsHaveBeenEvaluated() {
+        final RuntimeException failure = new RuntimeException();
+
+        try {
+            configurer.configure(root, new Action<Project>() {
+                public void execute(Project project) {
+                    evaluated.add(project);
+                    if (project == child1) {
+                        throw failure;
+                    }
+                }
+            });
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(failure));
+        }
+
+        assertThat(evaluated.size(), equalTo(3));
+        assertThat(evaluated, not(hasItem(grandchild)));
+    }
+}
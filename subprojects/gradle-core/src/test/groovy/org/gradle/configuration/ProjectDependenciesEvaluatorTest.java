@@ -0,0 +1,77 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.configuration;
+
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ConfigurationContainer;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.project.ProjectStateInternal;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.gradle.util.WrapUtil.*;
+
+@RunWith(JMock.class)
+public class ProjectDependenciesEvaluatorTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final ProjectDependencies2TaskResolver resolver = context.mock(ProjectDependencies2TaskResolver.class);
+    private final ProjectInternal project = context.mock(ProjectInternal.class, "project");
+    private final ProjectInternal dependsOnProject = context.mock(ProjectInternal.class, "dependsOnProject");
+    private final ProjectInternal dependencyProject = context.mock(ProjectInternal.class, "dependencyProject");
+    private final ConfigurationContainer configurations = context.mock(ConfigurationContainer.class);
+    private final Configuration configuration = context.mock(Configuration.class);
+    private final ProjectDependency dependency = context.mock(ProjectDependency.class);
+    private final ProjectStateInternal state = new ProjectStateInternal();
+    private final ProjectDependenciesEvaluator evaluator = new ProjectDependenciesEvaluator(resolver);
+
+    @Test
+    public void evaluatesProjectsWhichProjectDependsOnAndResolvesTaskDependencies() {
+        state.executed();
+
+        context.checking(new Expectations() {{
+            allowing(project).getDependsOnProjects();
+            will(returnValue(toSet(dependsOnProject)));
+            allowing(project).getConfigurations();
+            will(returnValue(configurations));
+            allowing(configurations).iterator();
+            will(returnIterator(configuration));
+            allowing(configuration).getDependencies(ProjectDependency.class);
+            will(returnValue(toSet(dependency)));
+            allowing(dependency).getDependencyProject();
+            will(returnValue(dependencyProject));
+
+            one(dependsOnProject).evaluateWithParents();
+            one(dependencyProject).evaluateWithParents();
+            one(resolver).resolveProject(project);
+        }});
+
+        evaluator.afterEvaluate(project, state);
+    }
+
+    @Test
+    public void doesNothingWhenProjectFailed() {
+        state.executed(new RuntimeException());
+
+        evaluator.afterEvaluate(project, state);
+    }
+}
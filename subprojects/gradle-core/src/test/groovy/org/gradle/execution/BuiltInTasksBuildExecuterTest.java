@@ -15,6 +15,7 @@
  */
 package org.gradle.execution;
 
+import org.gradle.StartParameter;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.internal.GradleInternal;
@@ -49,6 +50,7 @@ public class BuiltInTasksBuildExecuterTest {
     private final ITaskFactory taskFactory = context.mock(ITaskFactory.class);
     private final BuiltInTasksBuildExecuter executer = new BuiltInTasksBuildExecuter(BuiltInTasksBuildExecuter.Options.TASKS, null);
     private final ServiceRegistryFactory serviceRegistryFactory = context.mock(ServiceRegistryFactory.class);
+    private final StartParameter startParameter = new StartParameter();
 
     @Before
     public void setUp() {
@@ -57,6 +59,8 @@ public class BuiltInTasksBuildExecuterTest {
             will(returnValue(project));
             allowing(gradle).getTaskGraph();
             will(returnValue(taskExecuter));
+            allowing(gradle).getStartParameter();
+            will(returnValue(startParameter));
         }});
     }
 
@@ -135,6 +139,25 @@ public class BuiltInTasksBuildExecuterTest {
         assertThat(executer.getTask().getProjects(), equalTo(toSet((Project) someProject)));
     }
 
+    @Test
+    public void evaluatesSelectedProjectAndItsParentsWhenConfiguringOnDemand() {
+        final ProjectInternal rootProject = context.mock(ProjectInternal.class, "rootProject");
+        final ProjectInternal someProject = context.mock(ProjectInternal.class, "someProject");
+        startParameter.setConfigureOnDemand(true);
+
+        context.checking(new Expectations() {{
+            allowing(gradle).getRootProject();
+            will(returnValue(rootProject));
+            allowing(rootProject).project(":SomePath");
+            will(returnValue(someProject));
+            one(someProject).evaluateWithParents();
+        }});
+
+        BuiltInTasksBuildExecuter executer = new BuiltInTasksBuildExecuter(BuiltInTasksBuildExecuter.Options.TASKS, ":SomePath");
+        expectTaskCreated(TaskReportTask.class);
+        executer.select(gradle);
+    }
+
     @Test
     public void executesAgainstAllProjectWhenWildcardIsUsed() {
         final ProjectInternal rootProject = context.mock(ProjectInternal.class, "rootProject");
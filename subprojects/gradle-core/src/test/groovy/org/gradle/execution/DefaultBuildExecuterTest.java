@@ -15,6 +15,7 @@
  */
 package org.gradle.execution;
 
+import org.gradle.StartParameter;
 import org.gradle.api.Task;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.project.ProjectInternal;
@@ -47,6 +48,8 @@ public class DefaultBuildExecuterTest {
             will(returnValue(taskExecuter));
             allowing(gradle).getDefaultProject();
             will(returnValue(project));
+            allowing(gradle).getStartParameter();
+            will(returnValue(new StartParameter()));
         }});
     }
     
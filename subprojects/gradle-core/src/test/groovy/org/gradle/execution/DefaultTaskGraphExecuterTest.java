@@ -16,6 +16,7 @@
 
 package org.gradle.execution;
 
+import org.gradle.TaskExecutionLogger;
 import org.gradle.api.Action;
 import org.gradle.api.CircularReferenceException;
 import org.gradle.api.DefaultTask;
@@ -25,6 +26,8 @@ import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.internal.AbstractTask;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.ProgressLogger;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.TaskExecutionException;
 import org.gradle.api.tasks.TaskState;
@@ -32,16 +35,23 @@ import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
 import org.gradle.util.TestClosure;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.LinkedList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import static org.gradle.util.HelperUtil.*;
 import static org.gradle.util.WrapUtil.*;
@@ -58,7 +68,7 @@ public class DefaultTaskGraphExecuterTest {
     private final ListenerManager listenerManager = context.mock(ListenerManager.class);
     TaskGraphExecuter taskExecuter;
     ProjectInternal root;
-    List<Task> executedTasks = new ArrayList<Task>();
+    List<Task> executedTasks = Collections.synchronizedList(new ArrayList<Task>());
 
     @Before
     public void setUp() {
@@ -386,6 +396,158 @@ public class DefaultTaskGraphExecuterTest {
         assertThat(taskExecuter.getAllTasks(), equalTo(toList(b, c)));
     }
 
+    @Test
+    public void testExecutesTasksInParallelInDependencyOrder() {
+        taskExecuter = createParallelTaskExecuter();
+        Task a = createTask("a");
+        Task b = createTask("b", a);
+        Task c = createTask("c", a);
+        Task d = createTask("d", b, c);
+
+        taskExecuter.execute(toList(d));
+
+        assertThat(executedTasks.size(), equalTo(4));
+        assertThat(executedTasks.get(0), sameInstance(a));
+        assertThat(new HashSet<Task>(executedTasks.subList(1, 3)), equalTo(toSet(b, c)));
+        assertThat(executedTasks.get(3), sameInstance(d));
+    }
+
+    @Test
+    public void testExecutesTasksAddedSeparatelyInOrderWhenExecutingInParallel() {
+        taskExecuter = createParallelTaskExecuter();
+        Task clean = createTask("clean");
+        clean.doFirst(new Action<Task>() {
+            public void execute(Task task) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        Task build = createTask("build");
+
+        taskExecuter.addTasks(toList(clean));
+        taskExecuter.addTasks(toList(build));
+        taskExecuter.execute();
+
+        assertThat(executedTasks, equalTo(toList(clean, build)));
+    }
+
+    @Test
+    public void testNotifiesTaskListenerAsTasksAreExecutedInParallel() {
+        taskExecuter = createParallelTaskExecuter();
+        final TaskExecutionListener listener = context.mock(TaskExecutionListener.class);
+        final Task a = createTask("a");
+        final Task b = createTask("b");
+
+        taskExecuter.addTaskExecutionListener(listener);
+        taskExecuter.addTasks(toList(a, b));
+
+        context.checking(new Expectations() {{
+            one(listener).beforeExecute(a);
+            one(listener).afterExecute(with(equalTo(a)), with(notNullValue(TaskState.class)));
+            one(listener).beforeExecute(b);
+            one(listener).afterExecute(with(equalTo(b)), with(notNullValue(TaskState.class)));
+        }});
+
+        taskExecuter.execute();
+    }
+
+    @Test
+    public void testStopsExecutingTasksInParallelOnFirstFailure() {
+        taskExecuter = createParallelTaskExecuter();
+        final RuntimeException failure = new RuntimeException();
+        final Task a = createTask("a");
+        a.doLast(new Action<Task>() {
+            public void execute(Task task) {
+                throw failure;
+            }
+        });
+        Task b = createTask("b", a);
+
+        try {
+            taskExecuter.execute(toList(b));
+            fail();
+        } catch (TaskExecutionException e) {
+            assertThat(e.getCause(), sameInstance((Throwable) failure));
+        }
+
+        assertThat(executedTasks, equalTo(toList(a)));
+    }
+
+    @Test
+    public void testLogsTasksWhichAreExecutedConcurrently() {
+        taskExecuter = createParallelTaskExecuter();
+        final Logger logger = context.mock(Logger.class);
+        final LinkedList<String> operations = new LinkedList<String>();
+        final List<String> completed = new ArrayList<String>();
+        context.checking(new Expectations() {{
+            allowing(logger).createProgressLogger();
+            will(new CustomAction("create progress logger") {
+                public Object invoke(Invocation invocation) {
+                    return new StackProgressLogger(operations, completed);
+                }
+            });
+        }});
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        Action<Task> waitForOtherTask = new Action<Task>() {
+            public void execute(Task task) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        Task a = createTask("a");
+        a.doFirst(waitForOtherTask);
+        Task b = createTask("b");
+        b.doFirst(waitForOtherTask);
+
+        taskExecuter.addTaskExecutionListener(new TaskExecutionLogger(logger));
+        taskExecuter.execute(toList(a, b));
+
+        assertThat(new HashSet<String>(completed), equalTo(toSet(":a", ":b")));
+        assertTrue(operations.isEmpty());
+    }
+
+    @Test
+    public void testCompletesTasksAndPreservesInterruptWhenInterruptedWhileExecutingTasksInParallel() {
+        taskExecuter = createParallelTaskExecuter();
+        final Thread mainThread = Thread.currentThread();
+        Task a = createTask("a");
+        a.doFirst(new Action<Task>() {
+            public void execute(Task task) {
+                mainThread.interrupt();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        Task b = createTask("b", a);
+
+        try {
+            taskExecuter.execute(toList(b));
+            assertThat(executedTasks, equalTo(toList(a, b)));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private TaskGraphExecuter createParallelTaskExecuter() {
+        context.checking(new Expectations(){{
+            one(listenerManager).createAnonymousBroadcaster(TaskExecutionGraphListener.class);
+            will(returnValue(new ListenerBroadcast<TaskExecutionGraphListener>(TaskExecutionGraphListener.class)));
+            one(listenerManager).createAnonymousBroadcaster(TaskExecutionListener.class);
+            will(returnValue(new ListenerBroadcast<TaskExecutionListener>(TaskExecutionListener.class)));
+        }});
+        return new DefaultTaskGraphExecuter(listenerManager, 4);
+    }
+
     private Task createTask(String name, final Task... dependsOn) {
         final TaskInternal task = AbstractTask.injectIntoNewInstance(root, name, new Callable<TaskInternal>() {
             public TaskInternal call() throws Exception {
@@ -400,4 +562,36 @@ public class DefaultTaskGraphExecuterTest {
         });
         return task;
     }
+
+    /**
+     * A progress logger which checks that operations are completed in the reverse order they were started, as the
+     * console expects.
+     */
+    private static class StackProgressLogger implements ProgressLogger {
+        private final LinkedList<String> operations;
+        private final List<String> completed;
+        private String description;
+
+        private StackProgressLogger(LinkedList<String> operations, List<String> completed) {
+            this.operations = operations;
+            this.completed = completed;
+        }
+
+        public void started(String description) {
+            this.description = description;
+            operations.addFirst(description);
+        }
+
+        public void progress(String progressMessage) {
+        }
+
+        public void completed() {
+            completed(null);
+        }
+
+        public void completed(String status) {
+            assertThat(operations.removeFirst(), equalTo(description));
+            completed.add(description);
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.gradle.execution;
 
+import org.gradle.StartParameter;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.util.Matchers;
@@ -32,12 +33,15 @@ public class ProjectDefaultsBuildExecuterTest {
     private final JUnit4Mockery context = new JUnit4Mockery();
     private final ProjectInternal project = context.mock(ProjectInternal.class, "[project]");
     private final GradleInternal gradle = context.mock(GradleInternal.class);
+    private final StartParameter startParameter = new StartParameter();
 
     @Before
     public void setUp() {
         context.checking(new Expectations(){{
             allowing(gradle).getDefaultProject();
             will(returnValue(project));
+            allowing(gradle).getStartParameter();
+            will(returnValue(startParameter));
         }});
     }
     
@@ -52,6 +56,19 @@ public class ProjectDefaultsBuildExecuterTest {
         assertThat(executer.actualDelegate, Matchers.reflectionEquals((Object) new TaskNameResolvingBuildExecuter(toList("a", "b"))));
     }
 
+    @Test public void evaluatesProjectWhenConfiguringOnDemand() {
+        startParameter.setConfigureOnDemand(true);
+
+        context.checking(new Expectations() {{
+            one(project).evaluateWithParents();
+            one(project).getDefaultTasks();
+            will(returnValue(toList("a", "b")));
+        }});
+
+        TestProjectDefaultsBuildExecuter executer = new TestProjectDefaultsBuildExecuter();
+        executer.select(gradle);
+    }
+
     @Test public void createsDescription() {
         context.checking(new Expectations() {{
             one(project).getDefaultTasks();
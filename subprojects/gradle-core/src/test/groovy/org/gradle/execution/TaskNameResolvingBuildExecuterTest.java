@@ -15,13 +15,19 @@
  */
 package org.gradle.execution;
 
+import org.gradle.StartParameter;
 import org.gradle.api.Task;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.project.DefaultProject;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.project.ProjectStateInternal;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
+import org.gradle.configuration.DefaultProjectEvaluator;
+import org.gradle.configuration.ProjectEvaluator;
 import static org.gradle.util.WrapUtil.*;
 import static org.hamcrest.Matchers.*;
 import org.gradle.util.GUtil;
+import org.gradle.util.HelperUtil;
 import org.jmock.Expectations;
 import org.jmock.Sequence;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -30,7 +36,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @RunWith (org.jmock.integration.junit4.JMock.class)
@@ -42,6 +50,7 @@ public class TaskNameResolvingBuildExecuterTest {
     private final TaskContainerInternal taskContainer = context.mock(TaskContainerInternal.class, "[projectTasks]");
     private final TaskContainerInternal otherProjectTaskContainer = context.mock(TaskContainerInternal.class, "[otherProjectTasks]");
     private final TaskGraphExecuter taskExecuter = context.mock(TaskGraphExecuter.class);
+    private final StartParameter startParameter = new StartParameter();
     private int counter;
 
     @Before
@@ -51,6 +60,8 @@ public class TaskNameResolvingBuildExecuterTest {
             will(returnValue(project));
             allowing(gradle).getTaskGraph();
             will(returnValue(taskExecuter));
+            allowing(gradle).getStartParameter();
+            will(returnValue(startParameter));
             allowing(project).getTasks();
             will(returnValue(taskContainer));
             allowing(project).getAllprojects();
@@ -76,6 +87,61 @@ public class TaskNameResolvingBuildExecuterTest {
         assertThat(executer.getDisplayName(), equalTo("primary task 'name'"));
     }
 
+    @Test
+    public void evaluatesCurrentProjectAndSubprojectsWhenConfiguringOnDemand() {
+        final Task task1 = task("name");
+        startParameter.setConfigureOnDemand(true);
+
+        context.checking(new Expectations() {{
+            one(project).evaluateWithParents();
+            one(otherProject).evaluateWithParents();
+            one(project).getTasksByName("name", true);
+            will(returnValue(toSet(task1)));
+            one(taskExecuter).addTasks(toSet(task1));
+        }});
+
+        TaskNameResolvingBuildExecuter executer = new TaskNameResolvingBuildExecuter(toList("name"));
+        executer.select(gradle);
+    }
+
+    @Test
+    public void evaluatesParentProjectsOfProjectInPathBeforeProjectWhenConfiguringOnDemand() {
+        final DefaultProject rootProject = HelperUtil.createRootProject();
+        final DefaultProject parentProject = HelperUtil.createChildProject(rootProject, "parent");
+        final DefaultProject childProject = HelperUtil.createChildProject(parentProject, "child");
+        rootProject.setProjectEvaluator(new DefaultProjectEvaluator(new ProjectEvaluator() {
+            public void evaluate(ProjectInternal project, ProjectStateInternal state) {
+            }
+        }));
+        parentProject.setProjectEvaluator(new DefaultProjectEvaluator(new ProjectEvaluator() {
+            public void evaluate(ProjectInternal project, ProjectStateInternal state) {
+                childProject.getTasks().add("compile");
+            }
+        }));
+        childProject.setProjectEvaluator(new DefaultProjectEvaluator(new ProjectEvaluator() {
+            public void evaluate(ProjectInternal project, ProjectStateInternal state) {
+                assertThat(project.getTasks().findByName("compile"), notNullValue());
+            }
+        }));
+        startParameter.setConfigureOnDemand(true);
+
+        final GradleInternal build = context.mock(GradleInternal.class, "build");
+        context.checking(new Expectations() {{
+            allowing(build).getDefaultProject();
+            will(returnValue(rootProject));
+            allowing(build).getStartParameter();
+            will(returnValue(startParameter));
+        }});
+
+        List<Collection<Task>> tasks = TaskNameResolvingBuildExecuter.select(build, toList(":parent:child:compile"));
+
+        assertThat(tasks.size(), equalTo(1));
+        assertThat(tasks.get(0), equalTo((Collection<Task>) toSet(childProject.getTasks().getByName("compile"))));
+        assertTrue(rootProject.getState().getExecuted());
+        assertTrue(parentProject.getState().getExecuted());
+        assertTrue(childProject.getState().getExecuted());
+    }
+
     @Test
     public void usesCamelCaseAbbreviationToSelectTasksWhenNoExactMatch() {
         assertMatches("soTaWN", "someTaskWithName", "saTaWN");
@@ -30,6 +30,7 @@ import org.gradle.api.GradleException;
 import org.gradle.api.ScriptCompilationException;
 import org.gradle.api.internal.artifacts.dsl.AbstractScriptTransformer;
 import org.gradle.api.internal.resource.Resource;
+import org.gradle.util.ObservableUrlClassLoader;
 import org.gradle.util.TemporaryFolder;
 import static org.hamcrest.Matchers.*;
 import org.jmock.Expectations;
@@ -44,6 +45,7 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 
 /**
  * @author Hans Dockter
@@ -176,6 +178,41 @@ public class DefaultScriptCompilationHandlerTest {
         }
     }
 
+    @Test
+    public void testSharesScriptClassBetweenClassLoadersWithEmptyClasspathAndSameParent() throws Exception {
+        scriptCompilationHandler.compileToDir(scriptSource, classLoader, scriptCacheDir, null, expectedScriptClass);
+
+        Class<? extends Script> scriptClass = scriptCompilationHandler.loadFromDir(scriptSource,
+                new ObservableUrlClassLoader(classLoader), scriptCacheDir, expectedScriptClass);
+        assertThat(scriptCompilationHandler.loadFromDir(scriptSource, new ObservableUrlClassLoader(classLoader),
+                scriptCacheDir, expectedScriptClass), sameInstance((Object) scriptClass));
+        assertThat(scriptClass.getClassLoader().getParent(), sameInstance(classLoader));
+    }
+
+    @Test
+    public void testDoesNotShareScriptClassBetweenClassLoadersWithClasspath() throws Exception {
+        scriptCompilationHandler.compileToDir(scriptSource, classLoader, scriptCacheDir, null, expectedScriptClass);
+        URL url = tmpDir.createDir("classes").toURI().toURL();
+        ClassLoader scriptClassLoader = new ObservableUrlClassLoader(classLoader, url);
+
+        Class<? extends Script> scriptClass = scriptCompilationHandler.loadFromDir(scriptSource, scriptClassLoader,
+                scriptCacheDir, expectedScriptClass);
+        assertThat(scriptClass.getClassLoader().getParent(), sameInstance(scriptClassLoader));
+        assertThat(scriptCompilationHandler.loadFromDir(scriptSource, new ObservableUrlClassLoader(classLoader, url),
+                scriptCacheDir, expectedScriptClass), not(sameInstance((Object) scriptClass)));
+    }
+
+    @Test
+    public void testReloadsScriptClassWhenScriptIsRecompiled() throws Exception {
+        scriptCompilationHandler.compileToDir(scriptSource, classLoader, scriptCacheDir, null, expectedScriptClass);
+        Class<? extends Script> scriptClass = scriptCompilationHandler.loadFromDir(scriptSource, classLoader,
+                scriptCacheDir, expectedScriptClass);
+
+        scriptCompilationHandler.compileToDir(scriptSource, classLoader, scriptCacheDir, null, expectedScriptClass);
+        assertThat(scriptCompilationHandler.loadFromDir(scriptSource, classLoader, scriptCacheDir,
+                expectedScriptClass), not(sameInstance((Object) scriptClass)));
+    }
+
     @Test
     public void testCompileToDirWithException() {
         ScriptSource source = new StringScriptSource("script", "\n\nnew HHHHJSJSJ jsj");
@@ -16,12 +16,15 @@
 
 package org.gradle.groovy.scripts;
 
+import org.gradle.api.internal.changedetection.Hasher;
 import org.gradle.api.internal.project.ServiceRegistry;
 import org.gradle.api.internal.project.StandardOutputRedirector;
 import org.gradle.api.internal.resource.Resource;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
+import org.gradle.configuration.ImportsReader;
+import org.gradle.configuration.ImportsScriptSource;
 import org.gradle.util.GUtil;
 import org.gradle.util.HashUtil;
 import org.gradle.util.TemporaryFolder;
@@ -66,6 +69,7 @@ public class DefaultScriptCompilerFactoryTest {
     ScriptRunnerFactory scriptRunnerFactoryMock;
     CacheRepository cacheRepositoryMock;
     PersistentCache cacheMock;
+    Hasher hasherMock;
 
     Mockery context = new JUnit4Mockery();
 
@@ -87,12 +91,14 @@ public class DefaultScriptCompilerFactoryTest {
         scriptRunnerFactoryMock = context.mock(ScriptRunnerFactory.class);
         cacheRepositoryMock = context.mock(CacheRepository.class);
         cacheMock = context.mock(PersistentCache.class);
+        hasherMock = context.mock(Hasher.class);
         testClassLoader = new URLClassLoader(new URL[0]);
         testScriptFile = new File(tmpDir.getDir(), "script/mybuild.craidle");
         cacheDir = new File(tmpDir.getDir(), "cache");
         expectedScriptCacheDir = new TestFile(cacheDir, "Script").createDir();
         expectedScriptRunner = context.mock(ScriptRunner.class);
-        scriptProcessor = new DefaultScriptCompilerFactory(scriptCompilationHandlerMock, scriptRunnerFactoryMock, cacheRepositoryMock);
+        scriptProcessor = new DefaultScriptCompilerFactory(scriptCompilationHandlerMock, scriptRunnerFactoryMock, cacheRepositoryMock,
+                hasherMock);
         source = context.mock(ScriptSource.class);
         cacheBuilder = context.mock(CacheBuilder.class);
 
@@ -109,6 +115,8 @@ public class DefaultScriptCompilerFactoryTest {
             will(returnValue(resource));
             allowing(resource).getText();
             will(returnValue(TEST_SCRIPT_TEXT));
+            allowing(resource).getFile();
+            will(returnValue(null));
 
             allowing(cacheMock).getBaseDir();
             will(returnValue(cacheDir));
@@ -254,6 +262,99 @@ public class DefaultScriptCompilerFactoryTest {
         assertSame(expectedScriptRunner, scriptProcessor.createCompiler(source).setTransformer(transformer).compile(expectedScriptBaseClass));
     }
 
+    @Test
+    public void testUsesHashOfSourceFileWhenScriptHasASourceFile() {
+        final ScriptSource fileSource = context.mock(ScriptSource.class, "fileSource");
+        final Resource fileResource = context.mock(Resource.class, "fileResource");
+        final File sourceFile = new TestFile(testScriptFile).write(TEST_SCRIPT_TEXT);
+        final Map<String, Object> expectedProperties = GUtil.map("source.filename", "file-name", "source.hash", "a0b");
+
+        context.checking(new Expectations(){{
+            allowing(fileSource).getClassName();
+            will(returnValue("class-name"));
+            allowing(fileSource).getFileName();
+            will(returnValue("file-name"));
+            allowing(fileSource).getResource();
+            will(returnValue(fileResource));
+            allowing(fileResource).getFile();
+            will(returnValue(sourceFile));
+
+            one(hasherMock).hash(sourceFile);
+            will(returnValue(new byte[]{0x0a, 0x0b}));
+
+            one(cacheRepositoryMock).cache("scripts/class-name");
+            will(returnValue(cacheBuilder));
+
+            one(cacheBuilder).withProperties(expectedProperties);
+            will(returnValue(cacheBuilder));
+
+            one(cacheBuilder).open();
+            will(returnValue(cacheMock));
+
+            allowing(cacheMock).isValid();
+            will(returnValue(true));
+
+            one(scriptCompilationHandlerMock).loadFromDir(with(notNullValue(ScriptSource.class)), with(sameInstance(
+                    testClassLoader)), with(equalTo(expectedScriptCacheDir)), with(equalTo(expectedScriptBaseClass)));
+            will(returnValue(TestScript.class));
+
+            one(scriptRunnerFactoryMock).create(with(notNullValue(TestScript.class)));
+            will(returnValue(expectedScriptRunner));
+        }});
+
+        assertSame(expectedScriptRunner, scriptProcessor.createCompiler(fileSource).compile(expectedScriptBaseClass));
+    }
+
+    @Test
+    public void testIncludesImportsInHashWhenScriptHasASourceFileAndImports() {
+        final ScriptSource fileSource = context.mock(ScriptSource.class, "fileSource");
+        final Resource fileResource = context.mock(Resource.class, "fileResource");
+        final ImportsReader importsReader = context.mock(ImportsReader.class);
+        final File rootDir = tmpDir.getDir();
+        final File sourceFile = new TestFile(testScriptFile).write(TEST_SCRIPT_TEXT);
+        final Map<String, Object> expectedProperties = GUtil.map("source.filename", "file-name", "source.hash",
+                HashUtil.createHash("a0b\nimport some.Type"));
+
+        context.checking(new Expectations(){{
+            allowing(fileSource).getClassName();
+            will(returnValue("class-name"));
+            allowing(fileSource).getFileName();
+            will(returnValue("file-name"));
+            allowing(fileSource).getResource();
+            will(returnValue(fileResource));
+            allowing(fileResource).getFile();
+            will(returnValue(sourceFile));
+
+            one(hasherMock).hash(sourceFile);
+            will(returnValue(new byte[]{0x0a, 0x0b}));
+
+            one(importsReader).getImports(rootDir);
+            will(returnValue("import some.Type"));
+
+            one(cacheRepositoryMock).cache("scripts/class-name");
+            will(returnValue(cacheBuilder));
+
+            one(cacheBuilder).withProperties(expectedProperties);
+            will(returnValue(cacheBuilder));
+
+            one(cacheBuilder).open();
+            will(returnValue(cacheMock));
+
+            allowing(cacheMock).isValid();
+            will(returnValue(true));
+
+            one(scriptCompilationHandlerMock).loadFromDir(with(notNullValue(ScriptSource.class)), with(sameInstance(
+                    testClassLoader)), with(equalTo(expectedScriptCacheDir)), with(equalTo(expectedScriptBaseClass)));
+            will(returnValue(TestScript.class));
+
+            one(scriptRunnerFactoryMock).create(with(notNullValue(TestScript.class)));
+            will(returnValue(expectedScriptRunner));
+        }});
+
+        ScriptSource importsSource = new ImportsScriptSource(fileSource, importsReader, rootDir);
+        assertSame(expectedScriptRunner, scriptProcessor.createCompiler(importsSource).compile(expectedScriptBaseClass));
+    }
+
     public static class TestScript extends Script {
         @Override
         public StandardOutputRedirector getStandardOutputRedirector() {
@@ -65,6 +65,10 @@ public class DefaultCommandLine2StartParameterConverterTest {
     private CacheUsage expectedCacheUsage = CacheUsage.ON;
     private boolean expectedSearchUpwards = true;
     private boolean expectedDryRun;
+    private int expectedParallelThreadCount;
+    private boolean expectedCompactCaches;
+    private boolean expectedConfigureOnDemand;
+    private int expectedParallelConfigureThreadCount;
     private boolean expectedShowHelp;
     private boolean expectedShowVersion;
     private StartParameter.ShowStacktrace expectedShowStackTrace = StartParameter.ShowStacktrace.INTERNAL_EXCEPTIONS;
@@ -117,6 +121,10 @@ public class DefaultCommandLine2StartParameterConverterTest {
         assertEquals(expectedGradleUserHome.getAbsoluteFile(), startParameter.getGradleUserHomeDir().getAbsoluteFile());
         assertEquals(expectedLogLevel, startParameter.getLogLevel());
         assertEquals(expectedDryRun, startParameter.isDryRun());
+        assertEquals(expectedParallelThreadCount, startParameter.getParallelThreadCount());
+        assertEquals(expectedCompactCaches, startParameter.isCompactCaches());
+        assertEquals(expectedConfigureOnDemand, startParameter.isConfigureOnDemand());
+        assertEquals(expectedParallelConfigureThreadCount, startParameter.getParallelConfigureThreadCount());
         assertEquals(expectedShowHelp, startParameter.isShowHelp());
         assertEquals(expectedShowVersion, startParameter.isShowVersion());
         assertEquals(expectedShowStackTrace, startParameter.getShowStacktrace());
@@ -247,6 +255,40 @@ public class DefaultCommandLine2StartParameterConverterTest {
         checkConversion("-m");
     }
 
+    @Test
+    public void withParallelThreads() {
+        expectedParallelThreadCount = 4;
+        checkConversion("--parallel-threads", "4");
+    }
+
+    @Test(expected = CommandLineArgumentException.class)
+    public void withNonPositiveParallelThreads() {
+        checkConversion("--parallel-threads", "0");
+    }
+
+    @Test
+    public void withCompactCaches() {
+        expectedCompactCaches = true;
+        checkConversion("--compact-caches");
+    }
+
+    @Test
+    public void withConfigureOnDemand() {
+        expectedConfigureOnDemand = true;
+        checkConversion("--configure-on-demand");
+    }
+
+    @Test
+    public void withParallelConfigureThreads() {
+        expectedParallelConfigureThreadCount = 4;
+        checkConversion("--parallel-configure-threads", "4");
+    }
+
+    @Test(expected = CommandLineArgumentException.class)
+    public void withNonPositiveParallelConfigureThreads() {
+        checkConversion("--parallel-configure-threads", "0");
+    }
+
     @Test
     public void withExcludeTask() {
         expectedExcludedTasks.add("excluded");
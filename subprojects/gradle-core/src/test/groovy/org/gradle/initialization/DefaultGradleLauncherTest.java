@@ -201,6 +201,55 @@ public class DefaultGradleLauncherTest {
         assertThat(buildResult.getGradle(), sameInstance((Object) gradleMock));
     }
 
+    @Test
+    public void testRunConfiguresProjectsOnDemand() {
+        expectedStartParams.setConfigureOnDemand(true);
+        expectedCurrentProject.getState().executed();
+        expectInitScripts();
+        expectSettingsBuilt();
+        expectTasksRun();
+        expectBuildListenerCallbacks();
+        context.checking(new Expectations() {{
+            one(buildLoaderMock).load(expectedRootProjectDescriptor, gradleMock, testGradleProperties);
+            one(buildConfigurerMock).processOnDemand(gradleMock);
+            one(taskExecuterMock).addTasks(expectedTasks.get(0));
+            one(taskExecuterMock).addTasks(expectedTasks.get(1));
+        }});
+        BuildResult buildResult = gradleLauncher.run();
+        assertThat(buildResult.getFailure(), nullValue());
+    }
+
+    @Test
+    public void testRunConfiguresProjectsInParallel() {
+        expectedStartParams.setParallelConfigureThreadCount(4);
+        expectInitScripts();
+        expectSettingsBuilt();
+        expectTasksRun();
+        expectBuildListenerCallbacks();
+        context.checking(new Expectations() {{
+            one(buildLoaderMock).load(expectedRootProjectDescriptor, gradleMock, testGradleProperties);
+            one(buildConfigurerMock).processInParallel(expectedRootProject, 4);
+            one(taskExecuterMock).addTasks(expectedTasks.get(0));
+            one(taskExecuterMock).addTasks(expectedTasks.get(1));
+        }});
+        BuildResult buildResult = gradleLauncher.run();
+        assertThat(buildResult.getFailure(), nullValue());
+    }
+
+    @Test
+    public void testGetBuildAnalysisConfiguresAllProjectsWhenConfiguringOnDemand() {
+        expectedStartParams.setConfigureOnDemand(true);
+        expectInitScripts();
+        expectSettingsBuilt();
+        expectBuildListenerCallbacks();
+        context.checking(new Expectations() {{
+            one(buildLoaderMock).load(expectedRootProjectDescriptor, gradleMock, testGradleProperties);
+            one(buildConfigurerMock).process(expectedRootProject);
+        }});
+        BuildResult buildResult = gradleLauncher.getBuildAnalysis();
+        assertThat(buildResult.getFailure(), nullValue());
+    }
+
     @Test
     public void testGetBuildAnalysisWithFailure() {
         final RuntimeException exception = new RuntimeException();
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.listener;
+
+import org.gradle.api.logging.StandardOutputListener;
+import org.gradle.messaging.dispatch.BroadcastDispatch;
+import org.gradle.messaging.dispatch.ProxyDispatchAdapter;
+import org.gradle.util.Benchmark;
+
+/**
+ * Measures delivering events to listeners through a {@link ListenerBroadcast}, compared to a {@link
+ * ProxyDispatchAdapter} over the same listeners. Usage: {@code ListenerBroadcastBenchmark [events]}.
+ */
+public class ListenerBroadcastBenchmark {
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+
+        ListenerBroadcast<StandardOutputListener> broadcast = new ListenerBroadcast<StandardOutputListener>(
+                StandardOutputListener.class);
+        BroadcastDispatch<StandardOutputListener> dispatch = new BroadcastDispatch<StandardOutputListener>(
+                StandardOutputListener.class);
+        for (int i = 0; i < 3; i++) {
+            CountingListener listener = new CountingListener();
+            broadcast.add(listener);
+            dispatch.add(listener);
+        }
+        StandardOutputListener proxy = new ProxyDispatchAdapter<StandardOutputListener>(StandardOutputListener.class,
+                dispatch).getSource();
+
+        measure("generated", broadcast.getSource(), events);
+        measure("proxy", proxy, events);
+    }
+
+    private static void measure(String name, final StandardOutputListener source, final int events) throws Exception {
+        Benchmark.measure(name, events, "events", new Benchmark.Operation() {
+            public void run() {
+                for (int i = 0; i < events; i++) {
+                    source.onOutput("output");
+                }
+            }
+        });
+    }
+
+    private static class CountingListener implements StandardOutputListener {
+        private long count;
+
+        public void onOutput(CharSequence output) {
+            count += output.length();
+        }
+    }
+}
@@ -25,6 +25,8 @@ import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.lang.reflect.Proxy;
+
 import static org.gradle.util.HelperUtil.*;
 import static org.gradle.util.Matchers.*;
 import static org.hamcrest.Matchers.*;
@@ -44,6 +46,33 @@ public class ListenerBroadcastTest {
         assertThat(broadcast.getSource().toString(), equalTo("TestListener broadcast"));
     }
 
+    @Test
+    public void sourceObjectCallsListenersDirectly() {
+        assertFalse(Proxy.isProxyClass(broadcast.getSource().getClass()));
+    }
+
+    @Test
+    public void sourceObjectPassesParametersOfAllTypesToListeners() {
+        ListenerBroadcast<PrimitiveListener> broadcast = new ListenerBroadcast<PrimitiveListener>(PrimitiveListener.class);
+        final PrimitiveListener listener = context.mock(PrimitiveListener.class);
+        final int[] values = {1, 2};
+
+        context.checking(new Expectations() {{
+            one(listener).event(12L, 1.5, true, 'c', values, "param");
+        }});
+
+        broadcast.add(listener);
+        broadcast.getSource().event(12L, 1.5, true, 'c', values, "param");
+    }
+
+    @Test
+    public void usesProxyForListenerTypeWithNonVoidMethods() {
+        ListenerBroadcast<NonVoidListener> broadcast = new ListenerBroadcast<NonVoidListener>(NonVoidListener.class);
+
+        assertTrue(Proxy.isProxyClass(broadcast.getSource().getClass()));
+        assertThat(broadcast.getSource().toString(), equalTo("NonVoidListener broadcast"));
+    }
+
     @Test
     public void getTypeIsCorrect() {
         assertThat(broadcast.getType(), equalTo(TestListener.class));
@@ -273,4 +302,12 @@ public class ListenerBroadcastTest {
 
         void event2(int value, String other);
     }
+
+    public interface PrimitiveListener {
+        void event(long l, double d, boolean b, char c, int[] values, String param);
+    }
+
+    public interface NonVoidListener {
+        String event();
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.messaging.dispatch;
+
+import org.gradle.api.Action;
+import org.gradle.util.Benchmark;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Measures delivering messages through an {@link AsyncDispatch}, both to a dispatch which discards the messages, and
+ * to a loopback {@link SocketConnection} as the outgoing queue of a connection does. Usage: {@code
+ * AsyncDispatchBenchmark [messages]}.
+ */
+public class AsyncDispatchBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        Benchmark.measure("discard", messages, "messages", new Benchmark.Operation() {
+            public void run() {
+                final int[] count = new int[1];
+                send(new AsyncDispatch<Message>(executor, new Dispatch<Message>() {
+                    public void dispatch(Message message) {
+                        count[0]++;
+                    }
+                }), messages);
+                if (count[0] != messages) {
+                    throw new AssertionError(String.format("Expected %d messages, received %d.", messages, count[0]));
+                }
+            }
+        });
+
+        ClassLoader classLoader = AsyncDispatchBenchmark.class.getClassLoader();
+        TcpIncomingConnector incomingConnector = new TcpIncomingConnector(classLoader);
+        final BlockingQueue<Connection<Message>> accepted = new LinkedBlockingQueue<Connection<Message>>();
+        incomingConnector.accept(new Action<Connection<Message>>() {
+            public void execute(Connection<Message> connection) {
+                accepted.add(connection);
+            }
+        });
+        final Connection<Message> outgoing = new TcpOutgoingConnector(classLoader).connect(
+                incomingConnector.getLocalAddress());
+        final Connection<Message> incoming = accepted.take();
+
+        final int socketMessages = messages / 5;
+        Benchmark.measure("socket", socketMessages, "messages", new Benchmark.Operation() {
+            public void run() throws Exception {
+                Thread receiver = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < socketMessages; i++) {
+                            incoming.receive();
+                        }
+                    }
+                };
+                receiver.start();
+                send(new AsyncDispatch<Message>(executor, new DiscardOnFailureDispatch<Message>(outgoing,
+                        LoggerFactory.getLogger(AsyncDispatchBenchmark.class))), socketMessages);
+                receiver.join();
+            }
+        });
+
+        outgoing.stop();
+        incoming.stop();
+        incomingConnector.stop();
+        executor.shutdown();
+    }
+
+    private static void send(AsyncDispatch<Message> dispatch, int messages) {
+        for (int i = 0; i < messages; i++) {
+            dispatch.dispatch(new ChannelMessage("results", new RemoteMethodInvocation(3, new Object[]{(long) i})));
+        }
+        dispatch.stop();
+    }
+}
@@ -47,6 +47,45 @@ public class AsyncDispatchTest extends MultithreadedTestCase {
         dispatch.stop()
     }
 
+    @Test
+    public void dispatchesQueuedMessagesAsABatchToABatchTarget() {
+        BatchDispatch<String> batchTarget = context.mock(BatchDispatch.class)
+
+        context.checking {
+            one(batchTarget).dispatchBatch(['message1', 'message2'])
+        }
+
+        dispatch.dispatch('message1')
+        dispatch.dispatch('message2')
+
+        dispatch.dispatchTo(batchTarget)
+
+        dispatch.stop()
+    }
+
+    @Test
+    public void deliversMessagesToAnotherTargetWhenTargetFails() {
+        context.checking {
+            one(target1).dispatch('message1')
+            will {
+                RuntimeException failure = new RuntimeException()
+                willFailWith(sameInstance(failure))
+                throw failure
+            }
+            one(target2).dispatch('message2')
+            one(target2).dispatch('message3')
+        }
+
+        dispatch.dispatch('message1')
+        dispatch.dispatch('message2')
+        dispatch.dispatch('message3')
+
+        dispatch.dispatchTo(target1)
+        dispatch.dispatchTo(target2)
+
+        dispatch.stop()
+    }
+
     @Test
     public void dispatchDoesNotBlockWhileNoIdleTargetAvailable() {
         context.checking {
@@ -52,6 +52,19 @@ public class DeferredConnectionTest extends MultithreadedTestCase {
         waitForAll()
     }
 
+    @Test
+    public void dispatchesBatchToConnectionWhenConnected() {
+        BatchConnection batchTarget = context.mock(BatchConnection.class)
+        Message message2 = new Message() {}
+
+        context.checking {
+            one(batchTarget).dispatchBatch([message, message2])
+        }
+
+        connection.connect(batchTarget)
+        connection.dispatchBatch([message, message2])
+    }
+
     @Test
     public void receiveBlocksUntilConnected() {
         context.checking {
@@ -234,3 +247,6 @@ public class DeferredConnectionTest extends MultithreadedTestCase {
         waitForAll()
     }
 }
+
+interface BatchConnection extends Connection<Message>, BatchDispatch<Message> {
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.dispatch;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+public class DirectBroadcastAdapterTest {
+    @Test
+    public void generatesImplementationForPublicInterfaceWithVoidMethods() {
+        assertTrue(DirectBroadcastAdapter.isSupported(TestListener.class));
+        assertFalse(DirectBroadcastAdapter.isSupported(Runnable.class));
+        assertFalse(DirectBroadcastAdapter.isSupported(Comparable.class));
+    }
+
+    @Test
+    public void doesNotPreventClassLoaderOfTypeFromBeingCollected() throws Exception {
+        WeakReference<ClassLoader> classLoader = generateForTypeInNewClassLoader();
+
+        for (int i = 0; i < 50 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertNull(classLoader.get());
+    }
+
+    private WeakReference<ClassLoader> generateForTypeInNewClassLoader() throws Exception {
+        ClassWriter visitor = new ClassWriter(0);
+        visitor.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE,
+                "org/gradle/messaging/dispatch/GeneratedListener", null, "java/lang/Object", null);
+        visitor.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "event", "(Ljava/lang/String;)V", null,
+                null).visitEnd();
+        visitor.visitEnd();
+        final byte[] bytecode = visitor.toByteArray();
+
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (name.equals("org.gradle.messaging.dispatch.GeneratedListener")) {
+                    return defineClass(name, bytecode, 0, bytecode.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        Class<?> type = classLoader.loadClass("org.gradle.messaging.dispatch.GeneratedListener");
+        assertTrue(DirectBroadcastAdapter.isSupported(type));
+        return new WeakReference<ClassLoader>(classLoader);
+    }
+
+    public interface TestListener {
+        void event(String value);
+    }
+}
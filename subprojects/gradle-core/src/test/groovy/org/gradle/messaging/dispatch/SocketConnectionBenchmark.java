@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.messaging.dispatch;
+
+import org.gradle.api.Action;
+import org.gradle.util.Benchmark;
+
+import java.io.Serializable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Measures sending messages over a loopback {@link SocketConnection}, connected using {@link TcpOutgoingConnector} and
+ * {@link TcpIncomingConnector}. Each message is a method invocation on a channel, similar to the test result messages
+ * sent by a test worker. Usage: {@code SocketConnectionBenchmark [messages]}.
+ */
+public class SocketConnectionBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        ClassLoader classLoader = SocketConnectionBenchmark.class.getClassLoader();
+
+        TcpIncomingConnector incomingConnector = new TcpIncomingConnector(classLoader);
+        final BlockingQueue<Connection<Message>> accepted = new LinkedBlockingQueue<Connection<Message>>();
+        incomingConnector.accept(new Action<Connection<Message>>() {
+            public void execute(Connection<Message> connection) {
+                accepted.add(connection);
+            }
+        });
+        final Connection<Message> outgoing = new TcpOutgoingConnector(classLoader).connect(
+                incomingConnector.getLocalAddress());
+        final Connection<Message> incoming = accepted.take();
+
+        Benchmark.measure("send", messages, "messages", new Benchmark.Operation() {
+            public void run() throws Exception {
+                send(outgoing, incoming, messages);
+            }
+        });
+
+        outgoing.dispatch(new EndOfStream());
+        if (!(incoming.receive() instanceof EndOfStream)) {
+            throw new AssertionError("Expected end of stream.");
+        }
+        outgoing.stop();
+        incoming.stop();
+        incomingConnector.stop();
+    }
+
+    private static void send(Connection<Message> outgoing, final Connection<Message> incoming, final int messages)
+            throws Exception {
+        final Throwable[] failure = new Throwable[1];
+        Thread receiver = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < messages; i++) {
+                        ChannelMessage message = (ChannelMessage) incoming.receive();
+                        RemoteMethodInvocation invocation = (RemoteMethodInvocation) message.getPayload();
+                        if (!invocation.getArguments()[0].equals((long) i)) {
+                            throw new AssertionError(String.format("Unexpected message %s.", invocation));
+                        }
+                    }
+                } catch (Throwable throwable) {
+                    failure[0] = throwable;
+                }
+            }
+        };
+
+        receiver.start();
+        for (int i = 0; i < messages; i++) {
+            outgoing.dispatch(new ChannelMessage("results", new RemoteMethodInvocation(3, new Object[]{(long) i,
+                    new TestEvent(i, "test " + i)})));
+        }
+        receiver.join();
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+    }
+
+    private static class TestEvent implements Serializable {
+        private final long time;
+        private final String name;
+
+        private TestEvent(long time, String name) {
+            this.time = time;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.messaging.dispatch;
+
+import org.gradle.api.Action;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class SocketConnectionTest {
+    private final TcpIncomingConnector incomingConnector = new TcpIncomingConnector(getClass().getClassLoader());
+    private Connection<Message> outgoing;
+    private Connection<Message> incoming;
+
+    @Before
+    public void setUp() throws Exception {
+        final BlockingQueue<Connection<Message>> accepted = new LinkedBlockingQueue<Connection<Message>>();
+        incomingConnector.accept(new Action<Connection<Message>>() {
+            public void execute(Connection<Message> connection) {
+                accepted.add(connection);
+            }
+        });
+        outgoing = new TcpOutgoingConnector(getClass().getClassLoader()).connect(incomingConnector.getLocalAddress());
+        incoming = accepted.take();
+    }
+
+    @After
+    public void tearDown() {
+        outgoing.stop();
+        incoming.stop();
+        incomingConnector.stop();
+    }
+
+    @Test
+    public void receivesMessagesInTheOrderTheyWereSent() {
+        final int count = 2500;
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    outgoing.dispatch(new ChannelMessage("channel", new RemoteMethodInvocation(i, new Object[]{"arg " + i})));
+                }
+                outgoing.dispatch(new EndOfStream());
+            }
+        };
+        sender.start();
+
+        for (int i = 0; i < count; i++) {
+            assertThat(incoming.receive(), equalTo((Message) new ChannelMessage("channel", new RemoteMethodInvocation(
+                    i, new Object[]{"arg " + i}))));
+        }
+        assertThat(incoming.receive(), instanceOf(EndOfStream.class));
+    }
+
+    @Test
+    public void receivesMessagesContainingAllByteValues() throws Exception {
+        final byte[] content = new byte[256];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        outgoing.dispatch(new RemoteMethodInvocation(1, new Object[]{content}));
+        outgoing.dispatch(new RemoteMethodInvocation(2, new Object[]{content.clone()}));
+
+        RemoteMethodInvocation first = (RemoteMethodInvocation) incoming.receive();
+        RemoteMethodInvocation second = (RemoteMethodInvocation) incoming.receive();
+        assertThat((byte[]) first.getArguments()[0], equalTo(content));
+        assertThat((byte[]) second.getArguments()[0], equalTo(content));
+    }
+
+    @Test
+    public void receiveReturnsNullWhenPeerClosesConnection() {
+        outgoing.stop();
+
+        assertThat(incoming.receive(), nullValue());
+    }
+}
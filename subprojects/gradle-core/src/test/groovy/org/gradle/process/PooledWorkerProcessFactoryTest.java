@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.ClassPathRegistry;
+import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.messaging.MessagingServer;
+import org.gradle.messaging.ObjectConnection;
+import org.gradle.util.IdGenerator;
+import org.gradle.util.exec.ExecHandleState;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class PooledWorkerProcessFactoryTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final MessagingServer messagingServer = context.mock(MessagingServer.class);
+    private final ClassPathRegistry classPathRegistry = context.mock(ClassPathRegistry.class);
+    private final FileResolver fileResolver = context.mock(FileResolver.class);
+    private final IdGenerator<Object> idGenerator = context.mock(IdGenerator.class);
+    private final ObjectConnection connection = context.mock(ObjectConnection.class, "connection");
+    private final PooledWorkerProcessFactory factory = new PooledWorkerProcessFactory(LogLevel.LIFECYCLE,
+            messagingServer, classPathRegistry, fileResolver, idGenerator);
+
+    @Before
+    public void setUp() throws Exception {
+        final Set<File> processClassPath = Collections.singleton(new File("something.jar"));
+        final URI serverAddress = new URI("test:something");
+
+        context.checking(new Expectations() {{
+            allowing(classPathRegistry).getClassPathFiles(with(any(String.class)));
+            will(returnValue(processClassPath));
+            allowing(classPathRegistry).getClassPath(with(any(String.class)));
+            will(returnValue(Collections.emptySet()));
+            ignoring(fileResolver);
+            one(messagingServer).createUnicastConnection();
+            will(returnValue(connection));
+            allowing(connection).getLocalAddress();
+            will(returnValue(serverAddress));
+            one(idGenerator).generateId();
+            will(returnValue("<id>"));
+        }});
+    }
+
+    @Test
+    public void createsANewProcessForWorkerWhichLoadsApplicationInSystemClassLoader() {
+        WorkerProcessBuilder builder = builder();
+        builder.setLoadApplicationInSystemClassLoader(true);
+
+        WorkerProcess process = builder.build();
+
+        assertThat(process, instanceOf(DefaultWorkerProcess.class));
+    }
+
+    @Test
+    public void createsAReusableProcessForWorkerWhichLoadsApplicationInIsolatedClassLoader() throws Exception {
+        final ObjectConnection completionConnection = context.mock(ObjectConnection.class, "completionConnection");
+
+        context.checking(new Expectations() {{
+            one(messagingServer).createUnicastConnection();
+            will(returnValue(completionConnection));
+            allowing(completionConnection).getLocalAddress();
+            will(returnValue(new URI("test:completion")));
+        }});
+
+        WorkerProcessBuilder builder = builder();
+
+        WorkerProcess process = builder.build();
+
+        assertThat(process, not(instanceOf(DefaultWorkerProcess.class)));
+        assertThat(process.getConnection(), sameInstance(connection));
+        assertThat(process.getState(), equalTo(ExecHandleState.INIT));
+    }
+
+    @Test
+    public void cannotStartAProcessAfterFactoryHasBeenStopped() throws Exception {
+        final ObjectConnection completionConnection = context.mock(ObjectConnection.class, "completionConnection");
+
+        context.checking(new Expectations() {{
+            one(messagingServer).createUnicastConnection();
+            will(returnValue(completionConnection));
+            allowing(completionConnection).getLocalAddress();
+            will(returnValue(new URI("test:completion")));
+            one(completionConnection).addIncoming(with(any(Class.class)), with(notNullValue(Object.class)));
+        }});
+
+        WorkerProcess process = builder().build();
+        factory.stop();
+
+        try {
+            process.start();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Cannot start worker process, as this factory has been stopped."));
+        }
+    }
+
+    private WorkerProcessBuilder builder() {
+        WorkerProcessBuilder builder = factory.newProcess();
+        builder.worker(new TestAction());
+        builder.applicationClasspath(Arrays.asList(new File("app.jar")));
+        return builder;
+    }
+
+    private static class TestAction implements Action<WorkerProcessContext>, Serializable {
+        public void execute(WorkerProcessContext workerProcessContext) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.child;
+
+import org.gradle.messaging.MessagingClient;
+import org.gradle.messaging.ObjectConnection;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class CompletionNotifyingWorkerTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final Callable<?> worker = context.mock(Callable.class);
+    private final MessagingClient client = context.mock(MessagingClient.class);
+    private final CompletionNotifyingWorker main = new CompletionNotifyingWorker(worker, null) {
+        @Override
+        MessagingClient createClient() {
+            return client;
+        }
+    };
+
+    @Test
+    public void executesWorkerAndThenNotifiesServer() throws Exception {
+        final ObjectConnection connection = context.mock(ObjectConnection.class);
+        final WorkerCompletionListener listener = context.mock(WorkerCompletionListener.class);
+        final Sequence sequence = context.sequence("seq");
+
+        context.checking(new Expectations() {{
+            one(worker).call();
+            inSequence(sequence);
+
+            allowing(client).getConnection();
+            will(returnValue(connection));
+
+            one(connection).addOutgoing(WorkerCompletionListener.class);
+            will(returnValue(listener));
+
+            one(listener).completed();
+            inSequence(sequence);
+
+            one(client).stop();
+            inSequence(sequence);
+        }});
+
+        main.call();
+    }
+
+    @Test
+    public void doesNotNotifyServerWhenWorkerThrowsException() throws Exception {
+        final RuntimeException failure = new RuntimeException();
+
+        context.checking(new Expectations() {{
+            one(worker).call();
+            will(throwException(failure));
+        }});
+
+        try {
+            main.call();
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(failure));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util;
+
+/**
+ * Runs the operations of a benchmark. Benchmarks are run by hand, using their {@code main()} method, rather than as part
+ * of the tests. Each operation is run repeatedly, for at least {@value #MIN_ITERATIONS} iterations and at least
+ * {@value #MIN_TIME}ms, first to warm up the JVM and then to measure it. The average time of an iteration is printed.
+ */
+public class Benchmark {
+    private static final int MIN_ITERATIONS = 5;
+    private static final long MIN_TIME = 2000;
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Measures the given operation, and prints its average time.
+     */
+    public static void measure(String name, Operation operation) throws Exception {
+        long time = measure(operation);
+        System.out.println(String.format("%s: %.2fms", name, time / 1000000.0));
+    }
+
+    /**
+     * Measures the given operation, which processes the given number of items, and prints its average time and the
+     * number of items processed per second.
+     */
+    public static void measure(String name, int count, String items, Operation operation) throws Exception {
+        long time = measure(operation);
+        System.out.println(String.format("%s: %d %s in %.2fms, %d %s/second", name, count, items, time / 1000000.0,
+                count * 1000000000L / Math.max(time, 1), items));
+    }
+
+    private static long measure(Operation operation) throws Exception {
+        run(operation);
+        return run(operation);
+    }
+
+    private static long run(Operation operation) throws Exception {
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            operation.run();
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (iterations < MIN_ITERATIONS || elapsed < MIN_TIME * 1000000L);
+        return elapsed / iterations;
+    }
+}
@@ -43,6 +43,10 @@ public class AttachParentTestResultProcessor implements TestResultProcessor {
         processor.addFailure(testId, result);
     }
 
+    public void output(Object testId, TestOutputEvent event) {
+        processor.output(testId, event);
+    }
+
     public void completed(Object testId, TestCompleteEvent event) {
         int pos = suiteStack.indexOf(testId);
         if (pos >= 0) {
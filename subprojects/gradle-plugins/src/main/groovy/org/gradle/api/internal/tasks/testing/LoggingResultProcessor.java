@@ -35,6 +35,12 @@ public class LoggingResultProcessor implements TestResultProcessor {
         processor.addFailure(testId, result);
     }
 
+    public void output(Object testId, TestOutputEvent event) {
+        System.out.println(String.format("%s OUTPUT %s %s %s", prefix, testId, event.getDestination(),
+                event.getMessage()));
+        processor.output(testId, event);
+    }
+
     public void completed(Object testId, TestCompleteEvent event) {
         System.out.println(String.format("%s COMPLETED %s %s", prefix, testId, event.getFailure()));
         processor.completed(testId, event);
@@ -72,6 +72,10 @@ public class TestListenerAdapter implements TestResultProcessor {
         testState.failure = result;
     }
 
+    public void output(Object testId, TestOutputEvent event) {
+        // Test listeners are not notified of output
+    }
+
     private class TestState {
         final TestDescriptorInternal test;
         final TestStartEvent startEvent;
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Redirects {@code System.out} and {@code System.err} to a {@link TestResultProcessor} while a test is executing. Each
+ * line of output is sent as a separate output event, so that at most one line of output is held in memory at any
+ * time.
+ */
+public class TestOutputRedirector {
+    static final int MAX_EVENT_SIZE = 8192;
+    private final TestResultProcessor resultProcessor;
+    private PrintStream originalStdOut;
+    private PrintStream originalStdErr;
+    private OutputEventStream stdOut;
+    private OutputEventStream stdErr;
+    private Object testId;
+
+    public TestOutputRedirector(TestResultProcessor resultProcessor) {
+        this.resultProcessor = resultProcessor;
+    }
+
+    /**
+     * Starts sending the output to the given test. Any output of a test previously started is flushed first.
+     */
+    public void startRedirecting(Object testId) {
+        if (this.testId == null) {
+            originalStdOut = System.out;
+            originalStdErr = System.err;
+            stdOut = new OutputEventStream(TestOutputEvent.Destination.StdOut);
+            stdErr = new OutputEventStream(TestOutputEvent.Destination.StdErr);
+            System.setOut(new PrintStream(stdOut, true));
+            System.setErr(new PrintStream(stdErr, true));
+        } else {
+            stdOut.sendOutput();
+            stdErr.sendOutput();
+        }
+        this.testId = testId;
+    }
+
+    /**
+     * Flushes any remaining output and restores the original streams.
+     */
+    public void stopRedirecting() {
+        if (testId == null) {
+            return;
+        }
+        stdOut.sendOutput();
+        stdErr.sendOutput();
+        System.setOut(originalStdOut);
+        System.setErr(originalStdErr);
+        testId = null;
+    }
+
+    private class OutputEventStream extends OutputStream {
+        private final TestOutputEvent.Destination destination;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private OutputEventStream(TestOutputEvent.Destination destination) {
+            this.destination = destination;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            buffer.write(b);
+            if (b == '\n' || buffer.size() >= MAX_EVENT_SIZE) {
+                sendOutput();
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int end = off + len;
+            int start = off;
+            for (int i = off; i < end; i++) {
+                if (b[i] == '\n' || buffer.size() + i + 1 - start >= MAX_EVENT_SIZE) {
+                    buffer.write(b, start, i + 1 - start);
+                    sendOutput();
+                    start = i + 1;
+                }
+            }
+            buffer.write(b, start, end - start);
+        }
+
+        /**
+         * Sends any buffered output. This is not done by {@link #flush()}, as {@link PrintStream} flushes after each
+         * write, which would split a line of output across several events.
+         */
+        synchronized void sendOutput() {
+            if (buffer.size() == 0) {
+                return;
+            }
+            String message = buffer.toString();
+            buffer.reset();
+            resultProcessor.output(testId, new TestOutputEvent(destination, message));
+        }
+    }
+}
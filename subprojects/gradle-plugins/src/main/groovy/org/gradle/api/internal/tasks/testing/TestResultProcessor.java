@@ -22,4 +22,6 @@ public interface TestResultProcessor {
     void completed(Object testId, TestCompleteEvent event);
 
     void addFailure(Object testId, Throwable result);
+
+    void output(Object testId, TestOutputEvent event);
 }
@@ -19,7 +19,6 @@ package org.gradle.api.internal.tasks.testing.junit;
 import org.apache.tools.ant.taskdefs.optional.junit.JUnitResultFormatter;
 import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
 import org.apache.tools.ant.taskdefs.optional.junit.JUnitTestRunner;
-import org.apache.tools.ant.taskdefs.optional.junit.XMLJUnitResultFormatter;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.testing.TestClassProcessor;
@@ -30,28 +29,14 @@ import org.gradle.util.TrueTimeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.lang.reflect.Field;
-
 public class AntJUnitTestClassProcessor implements TestClassProcessor {
     private static final Logger LOGGER = LoggerFactory.getLogger(AntJUnitTestClassProcessor.class);
-    private final File testResultsDir;
     private final IdGenerator<?> idGenerator;
     private final TimeProvider timeProvider = new TrueTimeProvider();
-    private final Field forkedField;
     private JUnitResultFormatter formatter;
 
-    public AntJUnitTestClassProcessor(File testResultsDir, IdGenerator<?> idGenerator) {
-        this.testResultsDir = testResultsDir;
+    public AntJUnitTestClassProcessor(IdGenerator<?> idGenerator) {
         this.idGenerator = idGenerator;
-        try {
-            forkedField = JUnitTestRunner.class.getDeclaredField("forked");
-            forkedField.setAccessible(true);
-        } catch (NoSuchFieldException e) {
-            throw new GradleException(e);
-        }
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
@@ -65,15 +50,10 @@ public class AntJUnitTestClassProcessor implements TestClassProcessor {
             JUnitTest test = new JUnitTest(testClass.getTestClassName());
 
             ClassLoader applicationClassLoader = Thread.currentThread().getContextClassLoader();
+            // The output of the test is sent to the result processor by the formatter, rather than being collected
+            // by the test runner
             JUnitTestRunner testRunner = new JUnitTestRunner(test, false, false, false, false, false,
                     applicationClassLoader);
-            // Pretend we have been forked - this enables stdout redirection
-            forkedField.set(testRunner, true);
-
-            File testResultFile = new File(testResultsDir, "TEST-" + test.getName() + ".xml");
-            XMLJUnitResultFormatter xmlFormatter = new XMLJUnitResultFormatter();
-            xmlFormatter.setOutput(new BufferedOutputStream(new FileOutputStream(testResultFile)));
-            testRunner.addFormatter(xmlFormatter);
             testRunner.addFormatter(formatter);
 
             testRunner.run();
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.TestOutputEvent;
+import org.gradle.api.internal.tasks.testing.results.TestClassResult;
+import org.gradle.api.internal.tasks.testing.results.TestResultStore;
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Renders the contents of a {@link TestResultStore} as a JUnit XML results file for each test class, in the format
+ * written by the Ant {@code XMLJUnitResultFormatter}. Each file is written as its class is read from the store, and the
+ * output of the class is copied from the output file of the store.
+ */
+public class JUnitXmlReport {
+    public void generateReport(final TestResultStore store, final File testResultsDir) {
+        testResultsDir.mkdirs();
+        store.forEachClass(new Action<TestClassResult>() {
+            public void execute(TestClassResult result) {
+                File resultsFile = new File(testResultsDir, "TEST-" + result.getClassName() + ".xml");
+                try {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(resultsFile),
+                            "UTF-8"));
+                    try {
+                        write(store, result, writer);
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(String.format("Could not write test results file '%s'.",
+                            resultsFile), e);
+                }
+            }
+        });
+    }
+
+    private void write(TestResultStore store, TestClassResult result, Writer writer) throws IOException {
+        SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+        writer.write("<testsuite name=\"");
+        writeEscaped(result.getClassName(), writer);
+        writer.write(String.format("\" tests=\"%d\" failures=\"%d\" errors=\"%d\" skipped=\"%d\" timestamp=\"%s\" time=\"%s\">\n",
+                result.getMethods().size(), result.getFailureCount(), result.getErrorCount(), result.getSkippedCount(),
+                timestampFormat.format(new Date(result.getStartTime())), formatDuration(result.getDuration())));
+        writer.write("  <properties />\n");
+
+        for (TestClassResult.TestMethodResult method : result.getMethods()) {
+            writer.write("  <testcase name=\"");
+            writeEscaped(method.getName(), writer);
+            writer.write("\" classname=\"");
+            writeEscaped(result.getClassName(), writer);
+            writer.write("\" time=\"" + formatDuration(method.getDuration()) + "\"");
+            if (method.getFailures().isEmpty() && method.getResultType() != TestResult.ResultType.SKIPPED) {
+                writer.write(" />\n");
+                continue;
+            }
+            writer.write(">\n");
+            if (method.getResultType() == TestResult.ResultType.SKIPPED) {
+                writer.write("    <skipped />\n");
+            }
+            for (TestClassResult.TestFailure failure : method.getFailures()) {
+                String element = failure.isAssertionFailure() ? "failure" : "error";
+                writer.write("    <" + element);
+                if (failure.getMessage() != null) {
+                    writer.write(" message=\"");
+                    writeEscaped(failure.getMessage(), writer);
+                    writer.write("\"");
+                }
+                writer.write(" type=\"");
+                writeEscaped(failure.getExceptionType(), writer);
+                writer.write("\">");
+                writeEscaped(failure.getStackTrace(), writer);
+                writer.write("</" + element + ">\n");
+            }
+            writer.write("  </testcase>\n");
+        }
+
+        Writer escapingWriter = new EscapingWriter(writer);
+        writer.write("  <system-out>");
+        store.writeOutput(result, TestOutputEvent.Destination.StdOut, escapingWriter);
+        writer.write("</system-out>\n");
+        writer.write("  <system-err>");
+        store.writeOutput(result, TestOutputEvent.Destination.StdErr, escapingWriter);
+        writer.write("</system-err>\n");
+        writer.write("</testsuite>\n");
+    }
+
+    private static String formatDuration(long millis) {
+        return String.valueOf(millis / 1000.0);
+    }
+
+    private static void writeEscaped(String value, Writer writer) throws IOException {
+        char[] chars = value.toCharArray();
+        writeEscaped(chars, 0, chars.length, writer);
+    }
+
+    private static void writeEscaped(char[] chars, int offset, int length, Writer writer) throws IOException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char ch = chars[i];
+            switch (ch) {
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                case '\n':
+                case '\r':
+                case '\t':
+                    writer.write(ch);
+                    break;
+                default:
+                    // Control characters cannot appear in an XML 1.0 document, even as character references
+                    writer.write(ch < 0x20 ? '?' : ch);
+            }
+        }
+    }
+
+    private static class EscapingWriter extends Writer {
+        private final Writer writer;
+
+        private EscapingWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            writeEscaped(cbuf, off, len, writer);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
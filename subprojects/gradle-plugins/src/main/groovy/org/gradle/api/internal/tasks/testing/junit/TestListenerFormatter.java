@@ -34,6 +34,7 @@ public class TestListenerFormatter implements JUnitResultFormatter {
     private final TestResultProcessor resultProcessor;
     private final TimeProvider timeProvider;
     private final IdGenerator<?> idGenerator;
+    private final TestOutputRedirector outputRedirector;
     private final Object lock = new Object();
     private final Map<Object, TestDescriptorInternal> executing = new IdentityHashMap<Object, TestDescriptorInternal>();
     private TestDescriptorInternal currentSuite;
@@ -43,6 +44,7 @@ public class TestListenerFormatter implements JUnitResultFormatter {
         this.resultProcessor = resultProcessor;
         this.timeProvider = timeProvider;
         this.idGenerator = idGenerator;
+        outputRedirector = new TestOutputRedirector(resultProcessor);
     }
 
     public void startTestSuite(JUnitTest jUnitTest) throws BuildException {
@@ -54,9 +56,11 @@ public class TestListenerFormatter implements JUnitResultFormatter {
         }
         long startTime = timeProvider.getCurrentTime();
         resultProcessor.started(testInternal, new TestStartEvent(startTime));
+        outputRedirector.startRedirecting(testInternal.getId());
     }
 
     public void endTestSuite(JUnitTest jUnitTest) throws BuildException {
+        outputRedirector.stopRedirecting();
         long endTime = timeProvider.getCurrentTime();
         TestDescriptorInternal testInternal;
         synchronized (lock) {
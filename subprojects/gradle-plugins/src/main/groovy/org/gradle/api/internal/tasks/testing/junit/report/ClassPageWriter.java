@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A SAX handler which writes the body of the page for a test class as the result file of the class is parsed. The
+ * failure details and captured output are written as they are read, rather than being collected first.
+ */
+class ClassPageWriter extends DefaultHandler {
+    private final Writer writer;
+    private boolean inTestTable;
+    private boolean testCaseWritten;
+    private String testName;
+    private String testTime;
+    private boolean writeCharacters;
+
+    ClassPageWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        try {
+            if (qName.equals("testcase")) {
+                if (!inTestTable) {
+                    writer.write("<h2>Tests</h2>\n<table>\n<tr><th>Test</th><th>Duration</th><th>Result</th></tr>\n");
+                    inTestTable = true;
+                }
+                testName = attributes.getValue("name");
+                testTime = DefaultTestReport.formatDuration(ClassSummary.parseTime(attributes.getValue("time")));
+                testCaseWritten = false;
+            } else if (qName.equals("failure") || qName.equals("error")) {
+                writeTestCase("failures", qName.equals("failure") ? "failed" : "error");
+                writer.write("<tr class=\"failures\"><td colspan=\"3\"><pre>");
+                writeCharacters = true;
+            } else if (qName.equals("skipped")) {
+                writeTestCase("skipped", "ignored");
+            } else if (qName.equals("system-out") || qName.equals("system-err")) {
+                closeTestTable();
+                writer.write(qName.equals("system-out") ? "<h2>Standard output</h2>\n<pre>"
+                        : "<h2>Standard error</h2>\n<pre>");
+                writeCharacters = true;
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        try {
+            if (qName.equals("testcase")) {
+                writeTestCase("success", "passed");
+            } else if (qName.equals("failure") || qName.equals("error")) {
+                writer.write("</pre></td></tr>\n");
+                writeCharacters = false;
+            } else if (qName.equals("system-out") || qName.equals("system-err")) {
+                writer.write("</pre>\n");
+                writeCharacters = false;
+            } else if (qName.equals("testsuite")) {
+                closeTestTable();
+            }
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (!writeCharacters) {
+            return;
+        }
+        try {
+            StringEscapeUtils.escapeHtml(writer, new String(ch, start, length));
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private void writeTestCase(String status, String result) throws IOException {
+        if (testCaseWritten) {
+            return;
+        }
+        writer.write("<tr class=\"" + status + "\"><td>");
+        StringEscapeUtils.escapeHtml(writer, testName);
+        writer.write("</td><td>" + testTime + "</td><td>" + result + "</td></tr>\n");
+        testCaseWritten = true;
+    }
+
+    private void closeTestTable() throws IOException {
+        if (inTestTable) {
+            writer.write("</table>\n");
+            inTestTable = false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import org.xml.sax.Attributes;
+
+import java.io.File;
+
+/**
+ * The results of a test class, as read from the attributes of the root element of its result file.
+ */
+class ClassSummary extends ResultCounts {
+    static final String DEFAULT_PACKAGE = "default-package";
+    private final File resultFile;
+    private final String className;
+
+    ClassSummary(File resultFile, Attributes attributes) {
+        super(parseInt(attributes.getValue("tests")), parseInt(attributes.getValue("failures")),
+                parseInt(attributes.getValue("errors")), parseTime(attributes.getValue("time")));
+        this.resultFile = resultFile;
+        this.className = attributes.getValue("name");
+    }
+
+    private static int parseInt(String value) {
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    static double parseTime(String value) {
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+
+    public File getResultFile() {
+        return resultFile;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getPackageName() {
+        int pos = className.lastIndexOf('.');
+        return pos < 0 ? DEFAULT_PACKAGE : className.substring(0, pos);
+    }
+
+    public String getSimpleName() {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+}
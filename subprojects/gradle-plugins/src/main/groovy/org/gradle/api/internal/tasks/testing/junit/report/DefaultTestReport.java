@@ -0,0 +1,370 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.gradle.api.GradleException;
+import org.gradle.util.ThreadUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates an HTML report from the XML result files written for each test class. The result files are parsed using
+ * SAX, and the page for each test class is written while its result file is being parsed, so the memory used does not
+ * depend on the number of tests or on the amount of output they captured. Only a summary of each test class is held
+ * in memory. The pages for different packages are generated concurrently.
+ *
+ * <p>The result files are also concatenated into a single {@code TESTS-TestSuites.xml} file in the results directory,
+ * as the Ant {@code junitreport} task does.</p>
+ */
+public class DefaultTestReport {
+    static final String ENCODING = "UTF-8";
+    private final int threadCount;
+
+    public DefaultTestReport() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threadCount The number of threads to use to generate the package and class pages.
+     */
+    public DefaultTestReport(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void generateReport(File testResultsDir, File testReportDir) {
+        File[] resultFiles = testResultsDir.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("TEST-") && name.endsWith(".xml");
+            }
+        });
+        if (resultFiles == null) {
+            resultFiles = new File[0];
+        }
+        Arrays.sort(resultFiles);
+
+        SortedMap<String, List<ClassSummary>> packages = new TreeMap<String, List<ClassSummary>>();
+        for (File resultFile : resultFiles) {
+            ClassSummary classSummary = readSummary(resultFile);
+            List<ClassSummary> classes = packages.get(classSummary.getPackageName());
+            if (classes == null) {
+                classes = new ArrayList<ClassSummary>();
+                packages.put(classSummary.getPackageName(), classes);
+            }
+            classes.add(classSummary);
+        }
+
+        writeAggregatedResults(resultFiles, new File(testResultsDir, "TESTS-TestSuites.xml"));
+
+        new File(testReportDir, "packages").mkdirs();
+        new File(testReportDir, "classes").mkdirs();
+        copyStyleSheet(new File(testReportDir, "style.css"));
+        writeIndexPage(packages, new File(testReportDir, "index.html"));
+        writePackagePages(packages, testReportDir);
+    }
+
+    private ClassSummary readSummary(final File resultFile) {
+        final ClassSummary[] summary = new ClassSummary[1];
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(resultFile, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes)
+                        throws SAXException {
+                    if (qName.equals("testsuite")) {
+                        summary[0] = new ClassSummary(resultFile, attributes);
+                        // The summary is in the attributes of the root element, so skip the rest of the file
+                        throw new StopParsingException();
+                    }
+                }
+            });
+        } catch (StopParsingException e) {
+            // Expected
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not read test results file '%s'.", resultFile), e);
+        }
+        if (summary[0] == null) {
+            throw new GradleException(String.format("Could not find a test suite in test results file '%s'.",
+                    resultFile));
+        }
+        return summary[0];
+    }
+
+    private void writeAggregatedResults(File[] resultFiles, File aggregateFile) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(aggregateFile), ENCODING));
+            try {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<testsuites>\n");
+                char[] buffer = new char[8192];
+                for (File resultFile : resultFiles) {
+                    Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(resultFile), ENCODING));
+                    try {
+                        skipXmlDeclaration(reader);
+                        int nread;
+                        while ((nread = reader.read(buffer)) > 0) {
+                            writer.write(buffer, 0, nread);
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                    writer.write("\n");
+                }
+                writer.write("</testsuites>\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test results file '%s'.", aggregateFile), e);
+        }
+    }
+
+    private static void skipXmlDeclaration(Reader reader) throws IOException {
+        reader.mark(2);
+        if (reader.read() == '<' && reader.read() == '?') {
+            int previous = 0;
+            int current;
+            while ((current = reader.read()) >= 0 && !(previous == '?' && current == '>')) {
+                previous = current;
+            }
+        } else {
+            reader.reset();
+        }
+
+        // Skip the whitespace following the declaration
+        while (true) {
+            reader.mark(1);
+            int current = reader.read();
+            if (current < 0 || !Character.isWhitespace(current)) {
+                reader.reset();
+                return;
+            }
+        }
+    }
+
+    private void copyStyleSheet(File styleSheetFile) {
+        try {
+            InputStream inputStream = getClass().getResourceAsStream("style.css");
+            try {
+                OutputStream outputStream = new FileOutputStream(styleSheetFile);
+                try {
+                    IOUtils.copy(inputStream, outputStream);
+                } finally {
+                    outputStream.close();
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test report file '%s'.", styleSheetFile), e);
+        }
+    }
+
+    private void writeIndexPage(SortedMap<String, List<ClassSummary>> packages, File indexFile) {
+        ResultCounts total = new ResultCounts();
+        Map<String, ResultCounts> packageCounts = new LinkedHashMap<String, ResultCounts>();
+        for (Map.Entry<String, List<ClassSummary>> entry : packages.entrySet()) {
+            ResultCounts counts = new ResultCounts();
+            for (ClassSummary classSummary : entry.getValue()) {
+                counts.add(classSummary);
+            }
+            total.add(counts);
+            packageCounts.put(entry.getKey(), counts);
+        }
+
+        try {
+            Writer writer = openPage(indexFile, "Test results - All tests", "");
+            try {
+                writeSummary(writer, total);
+                writer.write("<h2>Packages</h2>\n");
+                writeTableHeader(writer, "Package");
+                for (Map.Entry<String, ResultCounts> entry : packageCounts.entrySet()) {
+                    writeTableRow(writer, entry.getKey(), "packages/" + entry.getKey() + ".html", entry.getValue());
+                }
+                writer.write("</table>\n");
+                closePage(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test report file '%s'.", indexFile), e);
+        }
+    }
+
+    private void writePackagePages(SortedMap<String, List<ClassSummary>> packages, final File testReportDir) {
+        if (packages.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, packages.size())));
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (final Map.Entry<String, List<ClassSummary>> entry : packages.entrySet()) {
+                results.add(executor.submit(new Runnable() {
+                    public void run() {
+                        writePackagePage(entry.getKey(), entry.getValue(), testReportDir);
+                        for (ClassSummary classSummary : entry.getValue()) {
+                            writeClassPage(classSummary, testReportDir);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                while (true) {
+                    try {
+                        result.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // Keep waiting - the pages being written must be complete before we can return
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+        } finally {
+            ThreadUtils.shutdown(executor);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new GradleException(failure);
+        }
+    }
+
+    private void writePackagePage(String packageName, List<ClassSummary> classes, File testReportDir) {
+        File packageFile = new File(testReportDir, "packages/" + packageName + ".html");
+        ResultCounts total = new ResultCounts();
+        for (ClassSummary classSummary : classes) {
+            total.add(classSummary);
+        }
+        try {
+            Writer writer = openPage(packageFile, "Test results - Package " + packageName, "../");
+            try {
+                writer.write("<p><a href=\"../index.html\">all tests</a> &gt; ");
+                StringEscapeUtils.escapeHtml(writer, packageName);
+                writer.write("</p>\n");
+                writeSummary(writer, total);
+                writer.write("<h2>Classes</h2>\n");
+                writeTableHeader(writer, "Class");
+                for (ClassSummary classSummary : classes) {
+                    writeTableRow(writer, classSummary.getSimpleName(),
+                            "../classes/" + classSummary.getClassName() + ".html", classSummary);
+                }
+                writer.write("</table>\n");
+                closePage(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test report file '%s'.", packageFile), e);
+        }
+    }
+
+    private void writeClassPage(ClassSummary classSummary, File testReportDir) {
+        File classFile = new File(testReportDir, "classes/" + classSummary.getClassName() + ".html");
+        try {
+            Writer writer = openPage(classFile, "Test results - Class " + classSummary.getClassName(), "../");
+            try {
+                writer.write("<p><a href=\"../index.html\">all tests</a> &gt; <a href=\"../packages/");
+                StringEscapeUtils.escapeHtml(writer, classSummary.getPackageName());
+                writer.write(".html\">");
+                StringEscapeUtils.escapeHtml(writer, classSummary.getPackageName());
+                writer.write("</a> &gt; ");
+                StringEscapeUtils.escapeHtml(writer, classSummary.getSimpleName());
+                writer.write("</p>\n");
+                writeSummary(writer, classSummary);
+                SAXParserFactory.newInstance().newSAXParser().parse(classSummary.getResultFile(),
+                        new ClassPageWriter(writer));
+                closePage(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not write test report file '%s'.", classFile), e);
+        }
+    }
+
+    private static Writer openPage(File file, String title, String root) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+        writer.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">\n");
+        writer.write("<html>\n<head>\n<meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n<title>");
+        StringEscapeUtils.escapeHtml(writer, title);
+        writer.write("</title>\n<link href=\"" + root + "style.css\" rel=\"stylesheet\" type=\"text/css\">\n");
+        writer.write("</head>\n<body>\n<h1>");
+        StringEscapeUtils.escapeHtml(writer, title);
+        writer.write("</h1>\n");
+        return writer;
+    }
+
+    private static void closePage(Writer writer) throws IOException {
+        writer.write("</body>\n</html>\n");
+    }
+
+    private static void writeSummary(Writer writer, ResultCounts counts) throws IOException {
+        writer.write("<table class=\"summary\">\n<tr><th>Tests</th><th>Failures</th><th>Errors</th>"
+                + "<th>Duration</th><th>Success rate</th></tr>\n");
+        writer.write(String.format("<tr class=\"%s\"><td>%d</td><td>%d</td><td>%d</td><td>%s</td><td>%s</td></tr>\n",
+                counts.getStatus(), counts.getTests(), counts.getFailures(), counts.getErrors(),
+                formatDuration(counts.getTime()), counts.getSuccessRate()));
+        writer.write("</table>\n");
+    }
+
+    private static void writeTableHeader(Writer writer, String name) throws IOException {
+        writer.write("<table>\n<tr><th>");
+        writer.write(name);
+        writer.write("</th><th>Tests</th><th>Failures</th><th>Errors</th><th>Duration</th><th>Success rate</th></tr>\n");
+    }
+
+    private static void writeTableRow(Writer writer, String name, String link, ResultCounts counts)
+            throws IOException {
+        writer.write(String.format("<tr class=\"%s\"><td><a href=\"", counts.getStatus()));
+        StringEscapeUtils.escapeHtml(writer, link);
+        writer.write("\">");
+        StringEscapeUtils.escapeHtml(writer, name);
+        writer.write(String.format("</a></td><td>%d</td><td>%d</td><td>%d</td><td>%s</td><td>%s</td></tr>\n",
+                counts.getTests(), counts.getFailures(), counts.getErrors(), formatDuration(counts.getTime()),
+                counts.getSuccessRate()));
+    }
+
+    static String formatDuration(double seconds) {
+        return String.format("%.3fs", seconds);
+    }
+
+    private static class StopParsingException extends SAXException {
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+/**
+ * The number of tests, failures and errors for some set of test classes, and the time taken to execute them.
+ */
+class ResultCounts {
+    private int tests;
+    private int failures;
+    private int errors;
+    private double time;
+
+    ResultCounts() {
+    }
+
+    ResultCounts(int tests, int failures, int errors, double time) {
+        this.tests = tests;
+        this.failures = failures;
+        this.errors = errors;
+        this.time = time;
+    }
+
+    public void add(ResultCounts counts) {
+        tests += counts.tests;
+        failures += counts.failures;
+        errors += counts.errors;
+        time += counts.time;
+    }
+
+    public int getTests() {
+        return tests;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the time taken to execute the tests, in seconds.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the style class of the results.
+     */
+    public String getStatus() {
+        return failures + errors > 0 ? "failures" : "success";
+    }
+
+    public String getSuccessRate() {
+        if (tests == 0) {
+            return "-";
+        }
+        return String.format("%d%%", (tests - failures - errors) * 100 / tests);
+    }
+}
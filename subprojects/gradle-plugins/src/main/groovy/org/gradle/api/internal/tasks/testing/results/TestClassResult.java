@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import org.gradle.api.internal.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of a test class, as held in a {@link TestResultStore}. The output of the class is not held in memory.
+ * Instead, the class holds the regions of the output file of the store which contain its output.
+ */
+public class TestClassResult {
+    private final String className;
+    private final long startTime;
+    private long endTime;
+    private final List<TestMethodResult> methods = new ArrayList<TestMethodResult>();
+    private final List<OutputRegion> outputRegions = new ArrayList<OutputRegion>();
+
+    public TestClassResult(String className, long startTime) {
+        this.className = className;
+        this.startTime = startTime;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getDuration() {
+        return endTime - startTime;
+    }
+
+    public List<TestMethodResult> getMethods() {
+        return methods;
+    }
+
+    public void add(TestMethodResult method) {
+        methods.add(method);
+    }
+
+    public int getFailureCount() {
+        int count = 0;
+        for (TestMethodResult method : methods) {
+            if (!method.getFailures().isEmpty() && method.getFailures().get(0).isAssertionFailure()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getErrorCount() {
+        int count = 0;
+        for (TestMethodResult method : methods) {
+            if (!method.getFailures().isEmpty() && !method.getFailures().get(0).isAssertionFailure()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getSkippedCount() {
+        int count = 0;
+        for (TestMethodResult method : methods) {
+            if (method.getResultType() == TestResult.ResultType.SKIPPED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    List<OutputRegion> getOutputRegions() {
+        return outputRegions;
+    }
+
+    /**
+     * Records that the given region of the output file contains output of this class. Regions which directly follow
+     * the previous region for the same destination are merged with it.
+     */
+    void addOutput(TestOutputEvent.Destination destination, long offset, long length) {
+        if (!outputRegions.isEmpty()) {
+            OutputRegion last = outputRegions.get(outputRegions.size() - 1);
+            if (last.destination == destination && last.offset + last.length == offset) {
+                last.length += length;
+                return;
+            }
+        }
+        outputRegions.add(new OutputRegion(destination, offset, length));
+    }
+
+    public static class TestMethodResult {
+        private final String name;
+        private final long startTime;
+        private long endTime;
+        private TestResult.ResultType resultType;
+        private final List<TestFailure> failures = new ArrayList<TestFailure>();
+
+        public TestMethodResult(String name, long startTime) {
+            this.name = name;
+            this.startTime = startTime;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public long getDuration() {
+            return endTime - startTime;
+        }
+
+        public TestResult.ResultType getResultType() {
+            return resultType;
+        }
+
+        public void completed(long endTime, TestResult.ResultType resultType) {
+            this.endTime = endTime;
+            this.resultType = resultType;
+        }
+
+        public List<TestFailure> getFailures() {
+            return failures;
+        }
+
+        public void add(TestFailure failure) {
+            failures.add(failure);
+        }
+    }
+
+    public static class TestFailure {
+        private final String exceptionType;
+        private final String message;
+        private final String stackTrace;
+        private final boolean assertionFailure;
+
+        public TestFailure(String exceptionType, String message, String stackTrace, boolean assertionFailure) {
+            this.exceptionType = exceptionType;
+            this.message = message;
+            this.stackTrace = stackTrace;
+            this.assertionFailure = assertionFailure;
+        }
+
+        public String getExceptionType() {
+            return exceptionType;
+        }
+
+        /**
+         * Returns the message of the exception, or null if it has no message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        public String getStackTrace() {
+            return stackTrace;
+        }
+
+        /**
+         * Returns true if the test failed an assertion, rather than failing with an unexpected exception.
+         */
+        public boolean isAssertionFailure() {
+            return assertionFailure;
+        }
+    }
+
+    static class OutputRegion {
+        final TestOutputEvent.Destination destination;
+        final long offset;
+        long length;
+
+        OutputRegion(TestOutputEvent.Destination destination, long offset, long length) {
+            this.destination = destination;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
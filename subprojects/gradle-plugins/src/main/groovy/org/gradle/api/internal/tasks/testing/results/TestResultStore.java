@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.io.*;
+
+/**
+ * An append-only store of the results of the test classes executed by a test task. The store is made up of 2 files:
+ *
+ * <ul>
+ * <li>A results file, which contains a record for each test class, written when the class completes. The record
+ * holds the tests of the class and their failures, and the regions of the output file which hold the output of the
+ * class.</li>
+ * <li>An output file, which contains the output of all test classes, appended as it is received.</li>
+ * </ul>
+ *
+ * <p>The output of a test class is never held in memory, and is only read when it is needed.</p>
+ */
+public class TestResultStore {
+    private static final byte CLASS_RECORD = 1;
+    private final File resultsFile;
+    private final File outputFile;
+
+    /**
+     * Creates the store for the given test results directory.
+     */
+    public TestResultStore(File testResultsDir) {
+        File storeDir = new File(testResultsDir, "binary");
+        resultsFile = new File(storeDir, "results.bin");
+        outputFile = new File(storeDir, "output.bin");
+    }
+
+    public File getResultsFile() {
+        return resultsFile;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Visits each test class in the store, in the order they completed. Each class is read as it is visited.
+     */
+    public void forEachClass(Action<? super TestClassResult> action) {
+        if (!resultsFile.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(resultsFile)));
+            try {
+                int recordType;
+                while ((recordType = input.read()) == CLASS_RECORD) {
+                    action.execute(readClass(input));
+                }
+                if (recordType >= 0) {
+                    throw new IOException(String.format("Unexpected record type %s.", recordType));
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read test results from '%s'.", resultsFile), e);
+        }
+    }
+
+    /**
+     * Copies the output which the given test class wrote to the given destination to the given writer.
+     */
+    public void writeOutput(TestClassResult result, TestOutputEvent.Destination destination, Writer writer) {
+        if (result.getOutputRegions().isEmpty()) {
+            return;
+        }
+        try {
+            RandomAccessFile file = new RandomAccessFile(outputFile, "r");
+            try {
+                char[] buffer = new char[8192];
+                for (TestClassResult.OutputRegion region : result.getOutputRegions()) {
+                    if (region.destination != destination) {
+                        continue;
+                    }
+                    file.seek(region.offset);
+                    Reader reader = new InputStreamReader(new BufferedInputStream(new RegionInputStream(file,
+                            region.length)), "UTF-8");
+                    int nread;
+                    while ((nread = reader.read(buffer)) > 0) {
+                        writer.write(buffer, 0, nread);
+                    }
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read test output from '%s'.", outputFile), e);
+        }
+    }
+
+    static void writeClass(TestClassResult result, DataOutputStream output) throws IOException {
+        output.writeByte(CLASS_RECORD);
+        writeString(result.getClassName(), output);
+        output.writeLong(result.getStartTime());
+        output.writeLong(result.getEndTime());
+        output.writeInt(result.getMethods().size());
+        for (TestClassResult.TestMethodResult method : result.getMethods()) {
+            writeString(method.getName(), output);
+            output.writeLong(method.getStartTime());
+            output.writeLong(method.getEndTime());
+            output.writeByte(method.getResultType().ordinal());
+            output.writeInt(method.getFailures().size());
+            for (TestClassResult.TestFailure failure : method.getFailures()) {
+                writeString(failure.getExceptionType(), output);
+                writeString(failure.getMessage(), output);
+                writeString(failure.getStackTrace(), output);
+                output.writeBoolean(failure.isAssertionFailure());
+            }
+        }
+        output.writeInt(result.getOutputRegions().size());
+        for (TestClassResult.OutputRegion region : result.getOutputRegions()) {
+            output.writeByte(region.destination.ordinal());
+            output.writeLong(region.offset);
+            output.writeLong(region.length);
+        }
+    }
+
+    private static TestClassResult readClass(DataInputStream input) throws IOException {
+        TestClassResult result = new TestClassResult(readString(input), input.readLong());
+        result.setEndTime(input.readLong());
+        int methodCount = input.readInt();
+        for (int i = 0; i < methodCount; i++) {
+            TestClassResult.TestMethodResult method = new TestClassResult.TestMethodResult(readString(input),
+                    input.readLong());
+            long endTime = input.readLong();
+            method.completed(endTime, TestResult.ResultType.values()[input.readByte()]);
+            int failureCount = input.readInt();
+            for (int j = 0; j < failureCount; j++) {
+                method.add(new TestClassResult.TestFailure(readString(input), readString(input), readString(input),
+                        input.readBoolean()));
+            }
+            result.add(method);
+        }
+        int regionCount = input.readInt();
+        for (int i = 0; i < regionCount; i++) {
+            TestOutputEvent.Destination destination = TestOutputEvent.Destination.values()[input.readByte()];
+            result.addOutput(destination, input.readLong(), input.readLong());
+        }
+        return result;
+    }
+
+    // Strings are written as UTF-8 bytes preceded by their length, rather than using writeUTF(), as stack traces
+    // can be longer than 64k
+    private static void writeString(String value, DataOutputStream output) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static class RegionInputStream extends InputStream {
+        private final RandomAccessFile file;
+        private long remaining;
+
+        private RegionInputStream(RandomAccessFile file, long length) {
+            this.file = file;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            return file.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int nread = file.read(b, off, (int) Math.min(len, remaining));
+            if (nread > 0) {
+                remaining -= nread;
+            }
+            return nread;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link TestResultProcessor} which writes the results it receives to a {@link TestResultStore}. Output is appended
+ * to the output file of the store as it is received. Only the tests of the classes which are currently executing are
+ * held in memory. The store is closed when the root test suite completes.
+ */
+public class TestResultStoreWriter implements TestResultProcessor {
+    private final TestResultStore store;
+    private final Map<Object, Object> parents = new HashMap<Object, Object>();
+    private final Map<Object, TestClassResult> classes = new HashMap<Object, TestClassResult>();
+    private final Map<Object, TestClassResult.TestMethodResult> methods
+            = new HashMap<Object, TestClassResult.TestMethodResult>();
+    private final DataOutputStream results;
+    private final OutputStream output;
+    private long outputLength;
+
+    public TestResultStoreWriter(TestResultStore store) {
+        this.store = store;
+        store.getResultsFile().getParentFile().mkdirs();
+        try {
+            results = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(store.getResultsFile())));
+            output = new BufferedOutputStream(new FileOutputStream(store.getOutputFile()));
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(String.format("Could not create test results store in '%s'.",
+                    store.getResultsFile().getParentFile()), e);
+        }
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        parents.put(test.getId(), event.getParentId());
+        if (test.isComposite()) {
+            if (test.getClassName() != null) {
+                classes.put(test.getId(), new TestClassResult(test.getClassName(), event.getStartTime()));
+            }
+        } else {
+            methods.put(test.getId(), new TestClassResult.TestMethodResult(test.getName(), event.getStartTime()));
+        }
+    }
+
+    public void addFailure(Object testId, Throwable result) {
+        TestClassResult.TestMethodResult method = methods.get(testId);
+        if (method == null) {
+            TestClassResult classResult = classes.get(testId);
+            if (classResult == null) {
+                return;
+            }
+            // A failure of the class as a whole - record it against a synthetic test
+            method = new TestClassResult.TestMethodResult("initializationError", classResult.getStartTime());
+            method.completed(classResult.getStartTime(), TestResult.ResultType.FAILURE);
+            classResult.add(method);
+        }
+        method.add(toFailure(result));
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        TestClassResult classResult = findClass(testId);
+        if (classResult == null) {
+            return;
+        }
+        try {
+            byte[] bytes = event.getMessage().getBytes("UTF-8");
+            output.write(bytes);
+            classResult.addOutput(event.getDestination(), outputLength, bytes.length);
+            outputLength += bytes.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test output to '%s'.",
+                    store.getOutputFile()), e);
+        }
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        TestClassResult.TestMethodResult method = methods.remove(testId);
+        if (method != null) {
+            if (event.getFailure() != null) {
+                method.add(toFailure(event.getFailure()));
+            }
+            TestResult.ResultType resultType = !method.getFailures().isEmpty() ? TestResult.ResultType.FAILURE
+                    : event.getResultType() != null ? event.getResultType() : TestResult.ResultType.SUCCESS;
+            method.completed(event.getEndTime(), resultType);
+            TestClassResult classResult = findClass(testId);
+            if (classResult != null) {
+                classResult.add(method);
+            }
+        }
+
+        TestClassResult classResult = classes.remove(testId);
+        if (classResult != null) {
+            classResult.setEndTime(event.getEndTime());
+            try {
+                TestResultStore.writeClass(classResult, results);
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not write test results to '%s'.",
+                        store.getResultsFile()), e);
+            }
+        }
+
+        boolean root = parents.containsKey(testId) && parents.get(testId) == null;
+        parents.remove(testId);
+        if (root) {
+            close();
+        }
+    }
+
+    private TestClassResult findClass(Object testId) {
+        for (Object id = testId; id != null; id = parents.get(id)) {
+            TestClassResult classResult = classes.get(id);
+            if (classResult != null) {
+                return classResult;
+            }
+        }
+        return null;
+    }
+
+    private static TestClassResult.TestFailure toFailure(Throwable failure) {
+        StringWriter stackTrace = new StringWriter();
+        failure.printStackTrace(new PrintWriter(stackTrace));
+        return new TestClassResult.TestFailure(failure.getClass().getName(), failure.getMessage(),
+                stackTrace.toString(), failure instanceof AssertionError);
+    }
+
+    private void close() {
+        try {
+            try {
+                results.close();
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write test results to '%s'.",
+                    store.getResultsFile()), e);
+        }
+    }
+}
@@ -71,6 +71,10 @@ public abstract class AbstractTestTask extends ConventionTask implements Pattern
 
     private Long forkEvery;
 
+    private int maxParallelForks = 1;
+
+    private boolean orderTestsByHistory;
+
     /**
      * The broadcaster for all {@link TestListener} implementations that have been registered with ListenerManager.
      */
@@ -442,7 +446,8 @@ public abstract class AbstractTestTask extends ConventionTask implements Pattern
 
     /**
      * Returns the maximum number of test classes to execute in a forked test process. The forked test process will be
-     * restarted when this limit is reached.
+     * restarted when this limit is reached. The restarted test process loads the test classes into new ClassLoaders,
+     * but may reuse the JVM of an earlier test process.
      *
      * @return The maximum number of test classes. Returns null when there is no maximum.
      */
@@ -458,4 +463,49 @@ public abstract class AbstractTestTask extends ConventionTask implements Pattern
     public void setForkEvery(Long forkEvery) {
         this.forkEvery = forkEvery;
     }
+
+    /**
+     * Returns the maximum number of forked test processes to execute in parallel. The default value is 1, that is,
+     * the test classes are executed sequentially in a single test process.
+     *
+     * @return The maximum number of forked test processes.
+     */
+    public int getMaxParallelForks() {
+        return maxParallelForks;
+    }
+
+    /**
+     * Sets the maximum number of forked test processes to execute in parallel. Set to 1 to execute the test classes
+     * sequentially.
+     *
+     * @param maxParallelForks The maximum number of forked test processes.
+     */
+    public void setMaxParallelForks(int maxParallelForks) {
+        if (maxParallelForks < 1) {
+            throw new IllegalArgumentException("Cannot set maxParallelForks to a value less than 1.");
+        }
+        this.maxParallelForks = maxParallelForks;
+    }
+
+    /**
+     * Returns whether the test classes are executed in the order which is most likely to find a failure early, based on
+     * the previous execution of this task. When enabled, the classes which failed in the previous execution are
+     * executed first, followed by the classes which are new or have changed, followed by the remaining classes. Within
+     * each of these groups, the fastest classes are executed first.
+     *
+     * @return true if the test classes are ordered by their history. Default is false.
+     */
+    public boolean isOrderTestsByHistory() {
+        return orderTestsByHistory;
+    }
+
+    /**
+     * Sets whether the test classes are executed in the order which is most likely to find a failure early, based on
+     * the previous execution of this task.
+     *
+     * @param orderTestsByHistory true to order the test classes by their history.
+     */
+    public void setOrderTestsByHistory(boolean orderTestsByHistory) {
+        this.orderTestsByHistory = orderTestsByHistory;
+    }
 }
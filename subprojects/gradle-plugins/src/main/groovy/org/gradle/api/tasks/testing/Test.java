@@ -18,27 +18,42 @@ package org.gradle.api.tasks.testing;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.changedetection.CachingHasher;
+import org.gradle.api.internal.changedetection.Hasher;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.tasks.testing.TestListenerAdapter;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.TestSummaryListener;
+import org.gradle.api.internal.tasks.testing.results.TestResultStore;
+import org.gradle.api.internal.tasks.testing.results.TestResultStoreWriter;
 import org.gradle.api.internal.tasks.util.DefaultJavaForkOptions;
 import org.gradle.api.tasks.util.JavaForkOptions;
 import org.gradle.api.tasks.util.ProcessForkOptions;
 import org.gradle.api.testing.TestClassProcessor;
 import org.gradle.api.testing.TestClassProcessorFactory;
+import org.gradle.api.testing.detection.AbstractTestFrameworkDetector;
+import org.gradle.api.testing.detection.ClassInfo;
 import org.gradle.api.testing.detection.DefaultTestClassScannerFactory;
 import org.gradle.api.testing.detection.TestClassScannerFactory;
+import org.gradle.api.testing.execution.HistoryOrderingTestClassProcessor;
+import org.gradle.api.testing.execution.MaxNParallelTestClassProcessor;
 import org.gradle.api.testing.execution.RestartEveryNTestClassProcessor;
+import org.gradle.api.testing.execution.TestHistory;
+import org.gradle.api.testing.execution.TestHistoryRecorder;
 import org.gradle.api.testing.execution.fork.ForkingTestClassProcessor;
 import org.gradle.api.testing.execution.fork.WorkerTestClassProcessorFactory;
+import org.gradle.api.testing.fabric.TestFrameworkDetector;
 import org.gradle.api.testing.fabric.TestFrameworkInstance;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.listener.ListenerBroadcast;
 import org.gradle.process.WorkerProcessFactory;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A task for executing JUnit (3.8.x or 4.x) or TestNG tests.
@@ -286,19 +301,48 @@ public class Test extends AbstractTestTask implements JavaForkOptions {
 
         final TestFrameworkInstance testFrameworkInstance = getTestFramework();
         final WorkerTestClassProcessorFactory testInstanceFactory = testFrameworkInstance.getProcessorFactory();
-        TestClassProcessorFactory processorFactory = new TestClassProcessorFactory() {
+        final TestClassProcessorFactory forkingProcessorFactory = new TestClassProcessorFactory() {
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, options, getClasspath(), testFrameworkInstance.getWorkerConfigurationAction());
             }
         };
+        final Long forkEvery = getForkEvery();
+        TestClassProcessorFactory reforkingProcessorFactory = new TestClassProcessorFactory() {
+            public TestClassProcessor create() {
+                return new RestartEveryNTestClassProcessor(forkingProcessorFactory, forkEvery == null ? 0 : forkEvery);
+            }
+        };
+
+        TestClassProcessor processor = new MaxNParallelTestClassProcessor(getMaxParallelForks(), reforkingProcessorFactory);
 
-        Long forkEvery = getForkEvery();
-        TestClassProcessor processor = new RestartEveryNTestClassProcessor(processorFactory, forkEvery == null ? 0 : forkEvery);
+        if (isOrderTestsByHistory()) {
+            PersistentIndexedCache<String, TestHistory> historyCache = getServices().get(CacheRepository.class).cache(
+                    "testHistory").forObject(getProject().getGradle()).open().openIndexedCache();
+            TestHistory history = historyCache.get(getPath());
+            processor = new HistoryOrderingTestClassProcessor(processor, history != null ? history : new TestHistory(),
+                    getTestClassesDir());
+            addTestListener(new TestHistoryRecorder(historyCache, getPath(), getTestClassesDir()));
+        }
+
+        TestFrameworkDetector detector = isScanForTestClasses() ? testFrameworkInstance.getDetector() : null;
+        if (detector instanceof AbstractTestFrameworkDetector) {
+            CacheRepository cacheRepository = getServices().get(CacheRepository.class);
+            PersistentIndexedCache<String, ClassInfo> classCache = cacheRepository.cache("testClassHierarchy").open()
+                    .openIndexedCache();
+            PersistentIndexedCache<String, Set<String>> jarCache = cacheRepository.cache("jarClasses").open()
+                    .openIndexedCache();
+            ((AbstractTestFrameworkDetector) detector).setClassHierarchyCache(classCache, jarCache,
+                    new CachingHasher(getServices().get(Hasher.class), cacheRepository));
+        }
 
         TestSummaryListener listener = new TestSummaryListener(LoggerFactory.getLogger(Test.class));
         addTestListener(listener);
 
-        TestResultProcessor resultProcessor = new TestListenerAdapter(getTestListenerBroadcaster().getSource());
+        ListenerBroadcast<TestResultProcessor> resultProcessors = new ListenerBroadcast<TestResultProcessor>(
+                TestResultProcessor.class);
+        resultProcessors.add(new TestListenerAdapter(getTestListenerBroadcaster().getSource()));
+        resultProcessors.add(new TestResultStoreWriter(new TestResultStore(getTestResultsDir())));
+        TestResultProcessor resultProcessor = resultProcessors.getSource();
         Runnable testClassScanner = testClassScannerFactory.createTestClassScanner(this, processor, resultProcessor);
         testClassScanner.run();
 
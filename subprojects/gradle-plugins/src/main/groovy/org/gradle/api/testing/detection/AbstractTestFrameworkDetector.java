@@ -16,19 +16,18 @@
 
 package org.gradle.api.testing.detection;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.gradle.api.GradleException;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.changedetection.Hasher;
 import org.gradle.api.testing.TestClassProcessor;
 import org.gradle.api.testing.fabric.DefaultTestClassRunInfo;
 import org.gradle.api.testing.fabric.TestFrameworkDetector;
+import org.gradle.cache.PersistentIndexedCache;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 
@@ -41,9 +40,11 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
 
     private final File testClassesDirectory;
     private final FileCollection testClasspath;
-    private List<File> testClassDirectories;
-    private ClassFileExtractionManager classFileExtractionManager;
-    private final Map<File, Boolean> superClasses;
+    private ClassHierarchyIndex classHierarchyIndex;
+    private PersistentIndexedCache<String, ClassInfo> classCache;
+    private PersistentIndexedCache<String, Set<String>> jarCache;
+    private Hasher hasher;
+    private final Map<String, Boolean> superClasses;
 
     protected TestClassProcessor testClassProcessor;
 
@@ -52,89 +53,88 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected AbstractTestFrameworkDetector(File testClassesDirectory, FileCollection testClasspath) {
         this.testClassesDirectory = testClassesDirectory;
         this.testClasspath = testClasspath;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new HashMap<String, Boolean>();
         this.knownTestCaseClassNames = new ArrayList<String>();
         addKnownTestCaseClassNames(TEST_CASE, GROOVY_TEST_CASE);
     }
 
     protected abstract T createClassVisitor();
 
-    protected File getSuperTestClassFile(String superClassName) {
-        prepareClasspath();
+    /**
+     * Persists the classes read by this detector in the given caches, so that later detections only need to read the
+     * classes whose class file or jar has changed.
+     *
+     * @param classCache The cache for the information read from each class.
+     * @param jarCache The cache for the names of the classes in each jar.
+     * @param hasher The hasher to use to hash class files and jars.
+     */
+    public synchronized void setClassHierarchyCache(PersistentIndexedCache<String, ClassInfo> classCache,
+                                       PersistentIndexedCache<String, Set<String>> jarCache, Hasher hasher) {
+        this.classCache = classCache;
+        this.jarCache = jarCache;
+        this.hasher = hasher;
+        classHierarchyIndex = null;
+    }
+
+    /**
+     * Locates the given super class in the test class directories or the jars of the test classpath.
+     *
+     * @return The information for the class, or null if the class cannot be found.
+     */
+    protected ClassInfo getSuperClassInfo(String superClassName) {
         if (StringUtils.isEmpty(superClassName)) {
             throw new IllegalArgumentException("superClassName is empty!");
         }
-
-        final Iterator<File> testClassDirectoriesIt = testClassDirectories.iterator();
-
-        File superTestClassFile = null;
-        while (superTestClassFile == null && testClassDirectoriesIt.hasNext()) {
-            final File testClassDirectory = testClassDirectoriesIt.next();
-            final File superTestClassFileCandidate = new File(testClassDirectory, superClassName + ".class");
-            if (superTestClassFileCandidate.exists()) {
-                superTestClassFile = superTestClassFileCandidate;
-            }
-        }
-
-        if (superTestClassFile != null) {
-            return superTestClassFile;
-        } else { // super test class file not in test class directories
-            return classFileExtractionManager.getLibraryClassFile(superClassName);
-        }
+        return getClassHierarchyIndex().find(superClassName);
     }
 
-    private void prepareClasspath() {
-        if (classFileExtractionManager != null) {
-            return;
+    private synchronized ClassHierarchyIndex getClassHierarchyIndex() {
+        if (classHierarchyIndex != null) {
+            return classHierarchyIndex;
         }
 
-        classFileExtractionManager = new ClassFileExtractionManager();
-        testClassDirectories = new ArrayList<File>();
-
+        List<File> testClassDirectories = new ArrayList<File>();
+        List<File> jars = new ArrayList<File>();
         testClassDirectories.add(testClassesDirectory);
         if (testClasspath != null) {
             for (File file : testClasspath) {
                 if (file.isDirectory()) {
                     testClassDirectories.add(file);
                 } else if (file.isFile() && file.getName().endsWith(".jar")) {
-                    classFileExtractionManager.addLibraryJar(file);
+                    jars.add(file);
                 }
             }
         }
-    }
-
-    protected TestClassVisitor classVisitor(final File testClassFile) {
-        final TestClassVisitor classVisitor = createClassVisitor();
 
-        InputStream classStream = null;
-        try {
-            classStream = new BufferedInputStream(new FileInputStream(testClassFile));
-            final ClassReader classReader = new ClassReader(classStream);
-            classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
-        } catch (Throwable e) {
-            throw new GradleException("failed to read class file " + testClassFile.getAbsolutePath(), e);
-        } finally {
-            IOUtils.closeQuietly(classStream);
+        ClassInfoReader reader = new VisitorClassInfoReader();
+        if (classCache != null) {
+            classHierarchyIndex = new ClassHierarchyIndex(testClassDirectories, jars, reader, classCache, jarCache,
+                    hasher);
+        } else {
+            classHierarchyIndex = new ClassHierarchyIndex(testClassDirectories, jars, reader);
         }
+        return classHierarchyIndex;
+    }
 
-        return classVisitor;
+    public void prepareTestClass(File testClassFile) {
+        getClassHierarchyIndex().get(testClassFile);
     }
 
     public boolean processTestClass(File testClassFile) {
-        return processTestClass(testClassFile, false);
+        return processTestClass(getClassHierarchyIndex().get(testClassFile), false);
     }
 
-    protected abstract boolean processTestClass(File testClassFile, boolean superClass);
+    protected abstract boolean processTestClass(ClassInfo classInfo, boolean superClass);
 
-    protected boolean processSuperClass(File testClassFile) {
+    protected boolean processSuperClass(ClassInfo superClassInfo) {
         boolean isTest = false;
 
-        Boolean isSuperTest = superClasses.get(testClassFile);
+        Boolean isSuperTest = superClasses.get(superClassInfo.getClassName());
 
         if (isSuperTest == null) {
-            isTest = processTestClass(testClassFile, true);
+            isTest = processTestClass(superClassInfo, true);
 
-            superClasses.put(testClassFile, isTest);
+            superClasses.put(superClassInfo.getClassName(), isTest);
         } else {
             isTest = isSuperTest;
         }
@@ -147,9 +147,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
      * class mode it musn't publish the class otherwise it will get published multiple times (for each extending
      * class).
      */
-    protected void publishTestClass(boolean isTest, TestClassVisitor classVisitor, boolean superClass) {
-        if (isTest && !classVisitor.isAbstract() && !superClass) {
-            String className = Type.getObjectType(classVisitor.getClassName()).getClassName();
+    protected void publishTestClass(boolean isTest, ClassInfo classInfo, boolean superClass) {
+        if (isTest && !classInfo.isAbstract() && !superClass) {
+            String className = Type.getObjectType(classInfo.getClassName()).getClassName();
             testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
         }
     }
@@ -177,4 +177,17 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
 
         return isKnownTestCase;
     }
+
+    private class VisitorClassInfoReader implements ClassInfoReader {
+        public String getId() {
+            return AbstractTestFrameworkDetector.this.getClass().getName();
+        }
+
+        public ClassInfo read(InputStream classStream) throws IOException {
+            TestClassVisitor classVisitor = createClassVisitor();
+            ClassReader classReader = new ClassReader(classStream);
+            classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+            return new ClassInfo(classVisitor);
+        }
+    }
 }
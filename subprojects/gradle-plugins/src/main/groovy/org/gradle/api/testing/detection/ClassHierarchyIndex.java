@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.detection;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.internal.changedetection.Hasher;
+import org.gradle.cache.PersistentIndexedCache;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An index of the classes in a set of class directories and jars. Classes are read as they are looked up, and classes
+ * in jars are read directly from the jar, without being extracted.
+ *
+ * <p>When persistent caches are given, the information read from each class is stored under the hash of the class file
+ * or jar it was read from, as is the list of classes in each jar. A class is only read again once its class file or
+ * jar changes, so that most lookups on later scans are cache hits.</p>
+ *
+ * <p>{@link #get(java.io.File)} may be called concurrently, so that class files can be read by several threads.</p>
+ */
+public class ClassHierarchyIndex {
+    private final List<File> classDirectories;
+    private final List<File> jars;
+    private final ClassInfoReader reader;
+    private final PersistentIndexedCache<String, ClassInfo> classCache;
+    private final PersistentIndexedCache<String, Set<String>> jarCache;
+    private final Hasher hasher;
+    private final Map<File, ClassInfo> classFiles = new HashMap<File, ClassInfo>();
+    private final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+    private final Map<File, JarContents> jarContents = new HashMap<File, JarContents>();
+
+    /**
+     * Creates an index which is not persisted.
+     */
+    public ClassHierarchyIndex(List<File> classDirectories, List<File> jars, ClassInfoReader reader) {
+        this(classDirectories, jars, reader, null, null, null);
+    }
+
+    /**
+     * Creates an index which is persisted in the given caches.
+     *
+     * @param classCache The cache for the information read from each class.
+     * @param jarCache The cache for the names of the classes in each jar.
+     * @param hasher The hasher to use to hash class files and jars.
+     */
+    public ClassHierarchyIndex(List<File> classDirectories, List<File> jars, ClassInfoReader reader,
+                               PersistentIndexedCache<String, ClassInfo> classCache,
+                               PersistentIndexedCache<String, Set<String>> jarCache, Hasher hasher) {
+        this.classDirectories = classDirectories;
+        this.jars = jars;
+        this.reader = reader;
+        this.classCache = classCache;
+        this.jarCache = jarCache;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Returns the information for the class in the given class file.
+     */
+    public ClassInfo get(File classFile) {
+        ClassInfo classInfo;
+        synchronized (classFiles) {
+            classInfo = classFiles.get(classFile);
+        }
+        if (classInfo != null) {
+            return classInfo;
+        }
+
+        // The class file is read and hashed without holding a lock, so that several class files can be read at once
+        String key = null;
+        if (classCache != null) {
+            key = reader.getId() + ':' + hash(classFile);
+            synchronized (classCache) {
+                classInfo = classCache.get(key);
+            }
+        }
+        if (classInfo == null) {
+            InputStream classStream = null;
+            try {
+                classStream = new BufferedInputStream(new FileInputStream(classFile));
+                classInfo = reader.read(classStream);
+            } catch (Throwable e) {
+                throw new GradleException("failed to read class file " + classFile.getAbsolutePath(), e);
+            } finally {
+                IOUtils.closeQuietly(classStream);
+            }
+            if (key != null) {
+                synchronized (classCache) {
+                    classCache.put(key, classInfo);
+                }
+            }
+        }
+        synchronized (classFiles) {
+            classFiles.put(classFile, classInfo);
+        }
+        return classInfo;
+    }
+
+    /**
+     * Locates the given class, searching the class directories and then the jars, in order.
+     *
+     * @param className The internal name of the class.
+     * @return The information for the class, or null if the class cannot be found.
+     */
+    public synchronized ClassInfo find(String className) {
+        if (classes.containsKey(className)) {
+            return classes.get(className);
+        }
+
+        ClassInfo classInfo = null;
+        for (File classDirectory : classDirectories) {
+            File classFile = new File(classDirectory, className + ".class");
+            if (classFile.isFile()) {
+                classInfo = get(classFile);
+                break;
+            }
+        }
+        if (classInfo == null) {
+            for (File jar : jars) {
+                JarContents contents = getJarContents(jar);
+                if (contents.classNames.contains(className)) {
+                    classInfo = read(jar, contents, className);
+                    break;
+                }
+            }
+        }
+        classes.put(className, classInfo);
+        return classInfo;
+    }
+
+    private JarContents getJarContents(File jar) {
+        JarContents contents = jarContents.get(jar);
+        if (contents != null) {
+            return contents;
+        }
+
+        String hash = null;
+        Set<String> classNames = null;
+        if (jarCache != null) {
+            hash = hash(jar);
+            classNames = jarCache.get(hash);
+        }
+        if (classNames == null) {
+            classNames = new HashSet<String>();
+            ZipFile zipFile = openJar(jar);
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(".class")) {
+                        classNames.add(name.substring(0, name.length() - ".class".length()));
+                    }
+                }
+            } finally {
+                closeQuietly(zipFile);
+            }
+            if (hash != null) {
+                jarCache.put(hash, classNames);
+            }
+        }
+        contents = new JarContents(hash, classNames);
+        jarContents.put(jar, contents);
+        return contents;
+    }
+
+    private ClassInfo read(File jar, JarContents contents, String className) {
+        String key = null;
+        if (classCache != null) {
+            key = reader.getId() + ':' + contents.hash + ':' + className;
+            ClassInfo classInfo;
+            synchronized (classCache) {
+                classInfo = classCache.get(key);
+            }
+            if (classInfo != null) {
+                return classInfo;
+            }
+        }
+
+        ClassInfo classInfo;
+        ZipFile zipFile = openJar(jar);
+        try {
+            InputStream classStream = zipFile.getInputStream(zipFile.getEntry(className + ".class"));
+            try {
+                classInfo = reader.read(new BufferedInputStream(classStream));
+            } finally {
+                classStream.close();
+            }
+        } catch (Throwable e) {
+            throw new GradleException("failed to read class file " + className + " from jar (" + jar + ")", e);
+        } finally {
+            closeQuietly(zipFile);
+        }
+        if (key != null) {
+            synchronized (classCache) {
+                classCache.put(key, classInfo);
+            }
+        }
+        return classInfo;
+    }
+
+    private String hash(File file) {
+        return new BigInteger(1, hasher.hash(file)).toString(16);
+    }
+
+    private static ZipFile openJar(File jar) {
+        try {
+            return new ZipFile(jar);
+        } catch (IOException e) {
+            throw new GradleException("failed to open jar (" + jar + ")", e);
+        }
+    }
+
+    private static void closeQuietly(ZipFile zipFile) {
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private static class JarContents {
+        private final String hash;
+        private final Set<String> classNames;
+
+        private JarContents(String hash, Set<String> classNames) {
+            this.hash = hash;
+            this.classNames = classNames;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.detection;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Extracts the {@link ClassInfo} from a class file.
+ */
+public interface ClassInfoReader {
+    /**
+     * Returns an identifier for the information which this reader extracts. Classes read by readers with different
+     * identifiers are indexed separately.
+     */
+    String getId();
+
+    ClassInfo read(InputStream classStream) throws IOException;
+}
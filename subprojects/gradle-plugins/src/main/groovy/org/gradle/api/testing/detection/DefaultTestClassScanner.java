@@ -23,13 +23,23 @@ import org.gradle.api.testing.TestClassProcessor;
 import org.gradle.api.testing.fabric.DefaultTestClassRunInfo;
 import org.gradle.api.testing.fabric.TestClassRunInfo;
 import org.gradle.api.testing.fabric.TestFrameworkDetector;
+import org.gradle.util.ThreadUtils;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The default test class scanner depending on the availability of a test framework detecter a detection or filename
  * scan is performed to find test classes.
+ * <p/>
+ * A detection scan can read the class files using a pool of threads. The class files are still processed by the
+ * detector in the order they are found, as soon as each has been read, so that the first test classes are passed to
+ * the test class processor while later class files are still being read.
  *
  * @author Tom Eyckmans
  */
@@ -39,15 +49,26 @@ public class DefaultTestClassScanner implements Runnable {
     private final Collection<String> excludePatterns;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final int threadCount;
 
     public DefaultTestClassScanner(File testClassDirectory, Collection<String> includePatterns,
                                    Collection<String> excludePatterns, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(testClassDirectory, includePatterns, excludePatterns, testFrameworkDetector, testClassProcessor, 1);
+    }
+
+    /**
+     * @param threadCount The number of threads to use to read class files during a detection scan.
+     */
+    public DefaultTestClassScanner(File testClassDirectory, Collection<String> includePatterns,
+                                   Collection<String> excludePatterns, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, int threadCount) {
         this.testClassDirectory = testClassDirectory;
         this.includePatterns = includePatterns;
         this.excludePatterns = excludePatterns;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.threadCount = threadCount;
     }
 
     public void run() {
@@ -66,11 +87,71 @@ public class DefaultTestClassScanner implements Runnable {
 
         testFrameworkDetector.startDetection(testClassProcessor);
 
-        testClassFileSet.visit(new ClassFileVisitor() {
-            public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
+        if (threadCount <= 1) {
+            testClassFileSet.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    testFrameworkDetector.processTestClass(fileDetails.getFile());
+                }
+            });
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final LinkedList<File> files = new LinkedList<File>();
+        final LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+        try {
+            testClassFileSet.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final File file = fileDetails.getFile();
+                    files.add(file);
+                    pending.add(executor.submit(new Runnable() {
+                        public void run() {
+                            testFrameworkDetector.prepareTestClass(file);
+                        }
+                    }));
+                    processReadClasses(files, pending, false);
+                }
+            });
+            processReadClasses(files, pending, true);
+        } finally {
+            for (Future<?> future : pending) {
+                future.cancel(false);
             }
-        });
+            ThreadUtils.shutdown(executor);
+        }
+    }
+
+    /**
+     * Passes the class files which have been read to the detector, in the order they were found.
+     *
+     * @param wait true to wait until all the class files have been read, false to stop at the first class file which
+     * has not been read yet.
+     */
+    private void processReadClasses(LinkedList<File> files, LinkedList<Future<?>> pending, boolean wait) {
+        boolean interrupted = false;
+        try {
+            while (!pending.isEmpty() && (wait || pending.getFirst().isDone())) {
+                Future<?> future = pending.removeFirst();
+                File file = files.removeFirst();
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // Keep waiting - the class file must be read before it can be processed
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        // The detector reports the failure again when the class is processed
+                        break;
+                    }
+                }
+                testFrameworkDetector.processTestClass(file);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     private void filenameScan(final FileSet testClassFileSet) {
@@ -42,7 +42,7 @@ public class DefaultTestClassScannerFactory implements TestClassScannerFactory {
             final TestFrameworkDetector testFrameworkDetector = testTask.getTestFramework().getDetector();
 
             detector = new DefaultTestClassScanner(testClassDirectory, includePatterns, excludePatterns,
-                    testFrameworkDetector, testClassProcessor);
+                    testFrameworkDetector, testClassProcessor, Runtime.getRuntime().availableProcessors());
         } else {
             detector = new DefaultTestClassScanner(testClassDirectory, includePatterns, excludePatterns, null,
                     testClassProcessor);
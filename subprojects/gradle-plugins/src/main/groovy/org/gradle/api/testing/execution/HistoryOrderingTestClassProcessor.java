@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.testing.TestClassProcessor;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link TestClassProcessor} which collects the test classes, and passes them to its delegate in the order which is
+ * most likely to find a failure early: first the classes which failed in the previous execution, then the classes
+ * which are new or whose class file has changed, then the remaining classes. Within each group, the fastest classes
+ * are executed first.
+ */
+public class HistoryOrderingTestClassProcessor implements TestClassProcessor {
+    private final TestClassProcessor processor;
+    private final TestHistory history;
+    private final File testClassesDir;
+    private final List<TestClassRunInfo> testClasses = new ArrayList<TestClassRunInfo>();
+
+    public HistoryOrderingTestClassProcessor(TestClassProcessor processor, TestHistory history, File testClassesDir) {
+        this.processor = processor;
+        this.history = history;
+        this.testClassesDir = testClassesDir;
+    }
+
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        processor.startProcessing(resultProcessor);
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        testClasses.add(testClass);
+    }
+
+    public void endProcessing() {
+        final List<ClassOrder> order = new ArrayList<ClassOrder>(testClasses.size());
+        for (TestClassRunInfo testClass : testClasses) {
+            order.add(new ClassOrder(testClass, history.get(testClass.getTestClassName())));
+        }
+        Collections.sort(order, new Comparator<ClassOrder>() {
+            public int compare(ClassOrder o1, ClassOrder o2) {
+                if (o1.group != o2.group) {
+                    return o1.group - o2.group;
+                }
+                return o1.duration < o2.duration ? -1 : o1.duration > o2.duration ? 1 : 0;
+            }
+        });
+        testClasses.clear();
+
+        for (ClassOrder classOrder : order) {
+            processor.processTestClass(classOrder.testClass);
+        }
+        processor.endProcessing();
+    }
+
+    private class ClassOrder {
+        final TestClassRunInfo testClass;
+        final int group;
+        final long duration;
+
+        private ClassOrder(TestClassRunInfo testClass, TestHistory.ClassHistory classHistory) {
+            this.testClass = testClass;
+            if (classHistory == null) {
+                group = 1;
+                duration = 0;
+                return;
+            }
+            File classFile = new File(testClassesDir, testClass.getTestClassName().replace('.', '/') + ".class");
+            if (classHistory.isFailed()) {
+                group = 0;
+            } else if (classFile.lastModified() != classHistory.getClassFileTimestamp()) {
+                group = 1;
+            } else {
+                group = 2;
+            }
+            duration = classHistory.getDuration();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.testing.TestClassProcessor;
+import org.gradle.api.testing.TestClassProcessorFactory;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.listener.ThreadSafeProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TestClassProcessor} which distributes test classes across up to N processors, round-robin. The processors
+ * may send results concurrently, so their results are serialised before being forwarded to the result processor.
+ */
+public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    private final int maxProcessors;
+    private final TestClassProcessorFactory factory;
+    private final List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
+    private TestResultProcessor resultProcessor;
+    private int pos;
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, TestClassProcessorFactory factory) {
+        this.maxProcessors = maxProcessors;
+        this.factory = factory;
+    }
+
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        this.resultProcessor = new ThreadSafeProxy<TestResultProcessor>(TestResultProcessor.class, resultProcessor)
+                .getSource();
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        TestClassProcessor processor;
+        if (processors.size() < maxProcessors) {
+            processor = factory.create();
+            processors.add(processor);
+            processor.startProcessing(resultProcessor);
+        } else {
+            processor = processors.get(pos);
+            pos = (pos + 1) % processors.size();
+        }
+        processor.processTestClass(testClass);
+    }
+
+    public void endProcessing() {
+        for (TestClassProcessor processor : processors) {
+            processor.endProcessing();
+        }
+    }
+}
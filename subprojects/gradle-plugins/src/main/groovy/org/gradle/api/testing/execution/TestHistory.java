@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.testing.execution;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The outcome of each test class from the most recent execution of a test task.
+ */
+public class TestHistory implements Serializable {
+    private final Map<String, ClassHistory> classes = new HashMap<String, ClassHistory>();
+
+    /**
+     * Returns the history of the given test class, or null if the test class was not executed.
+     */
+    public ClassHistory get(String className) {
+        return classes.get(className);
+    }
+
+    public void put(String className, ClassHistory history) {
+        classes.put(className, history);
+    }
+
+    public static class ClassHistory implements Serializable {
+        private final boolean failed;
+        private final long duration;
+        private final long classFileTimestamp;
+
+        public ClassHistory(boolean failed, long duration, long classFileTimestamp) {
+            this.failed = failed;
+            this.duration = duration;
+            this.classFileTimestamp = classFileTimestamp;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the time taken to execute the tests of the class, in milliseconds.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Returns the timestamp of the class file when the class was executed.
+         */
+        public long getClassFileTimestamp() {
+            return classFileTimestamp;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.tasks.testing.TestDescriptor;
+import org.gradle.api.tasks.testing.TestListener;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.cache.PersistentIndexedCache;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link TestListener} which collects the outcome and duration of each test class, and writes them to the given
+ * cache as a {@link TestHistory} when all tests have completed.
+ */
+public class TestHistoryRecorder implements TestListener {
+    private final PersistentIndexedCache<String, TestHistory> cache;
+    private final String key;
+    private final File testClassesDir;
+    private final Map<String, ClassState> classes = new LinkedHashMap<String, ClassState>();
+
+    public TestHistoryRecorder(PersistentIndexedCache<String, TestHistory> cache, String key, File testClassesDir) {
+        this.cache = cache;
+        this.key = key;
+        this.testClassesDir = testClassesDir;
+    }
+
+    public void beforeSuite(TestDescriptor suite) {
+    }
+
+    public void afterSuite(TestDescriptor suite, TestResult result) {
+        if (suite.getClassName() != null) {
+            // Includes failures of the class as a whole, such as a failing class level setup method
+            ClassState state = getState(suite.getClassName());
+            state.failed |= result.getResultType() == TestResult.ResultType.FAILURE;
+            state.duration = Math.max(state.duration, result.getEndTime() - result.getStartTime());
+        }
+        if (suite.getParent() == null) {
+            TestHistory history = new TestHistory();
+            for (Map.Entry<String, ClassState> entry : classes.entrySet()) {
+                File classFile = new File(testClassesDir, entry.getKey().replace('.', '/') + ".class");
+                history.put(entry.getKey(), new TestHistory.ClassHistory(entry.getValue().failed,
+                        entry.getValue().duration, classFile.lastModified()));
+            }
+            cache.put(key, history);
+            classes.clear();
+        }
+    }
+
+    public void beforeTest(TestDescriptor testDescriptor) {
+    }
+
+    public void afterTest(TestDescriptor testDescriptor, TestResult result) {
+        if (testDescriptor.getClassName() == null) {
+            return;
+        }
+        ClassState state = getState(testDescriptor.getClassName());
+        state.failed |= result.getResultType() == TestResult.ResultType.FAILURE;
+        state.testDuration += result.getEndTime() - result.getStartTime();
+        state.duration = Math.max(state.duration, state.testDuration);
+    }
+
+    private ClassState getState(String className) {
+        ClassState state = classes.get(className);
+        if (state == null) {
+            state = new ClassState();
+            classes.put(className, state);
+        }
+        return state;
+    }
+
+    private static class ClassState {
+        boolean failed;
+        long duration;
+        long testDuration;
+    }
+}
@@ -56,8 +56,8 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     public void processTestClass(TestClassRunInfo testClass) {
         if (worker == null) {
             WorkerProcessBuilder builder = workerFactory.newProcess();
+            // The test classes are loaded into an isolated ClassLoader, so that the worker process can be reused
             builder.applicationClasspath(classPath);
-            builder.setLoadApplicationInSystemClassLoader(true);
             builder.worker(new TestWorker(processorFactory));
             options.copyTo(builder.getJavaCommand());
             buildConfigAction.execute(builder);
@@ -26,4 +26,12 @@ public interface TestFrameworkDetector {
     void startDetection(TestClassProcessor testClassProcessor);
 
     boolean processTestClass(File testClassFile);
+
+    /**
+     * Reads the given class file in preparation for a later call to {@link #processTestClass(java.io.File)}, so that
+     * class files can be read by several threads while the test classes are processed in order. This method may be
+     * called concurrently, and does not pass any test classes to the test class processor. A failure to read the class
+     * file is also reported by {@link #processTestClass(java.io.File)}, so callers may ignore failures of this method.
+     */
+    void prepareTestClass(File testClassFile);
 }
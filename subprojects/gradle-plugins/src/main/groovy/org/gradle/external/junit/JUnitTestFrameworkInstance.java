@@ -17,8 +17,10 @@
 package org.gradle.external.junit;
 
 import org.gradle.api.Action;
-import org.gradle.api.internal.tasks.testing.junit.AntJUnitReport;
 import org.gradle.api.internal.tasks.testing.junit.AntJUnitTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.junit.JUnitXmlReport;
+import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
+import org.gradle.api.internal.tasks.testing.results.TestResultStore;
 import org.gradle.api.tasks.testing.AbstractTestTask;
 import org.gradle.api.tasks.testing.junit.JUnitOptions;
 import org.gradle.api.tasks.util.JavaForkOptions;
@@ -35,7 +37,8 @@ import java.io.Serializable;
  * @author Tom Eyckmans
  */
 public class JUnitTestFrameworkInstance extends AbstractTestFrameworkInstance {
-    private AntJUnitReport antJUnitReport;
+    private JUnitXmlReport xmlReport;
+    private DefaultTestReport testReport;
     private JUnitOptions options;
     private JUnitDetector detector;
 
@@ -44,14 +47,14 @@ public class JUnitTestFrameworkInstance extends AbstractTestFrameworkInstance {
     }
 
     public void initialize() {
-        antJUnitReport = new AntJUnitReport();
+        xmlReport = new JUnitXmlReport();
+        testReport = new DefaultTestReport();
         options = new JUnitOptions();
         detector = new JUnitDetector(testTask.getTestClassesDir(), testTask.getClasspath());
     }
 
     public WorkerTestClassProcessorFactory getProcessorFactory() {
-        final File testResultsDir = testTask.getTestResultsDir();
-        return new TestClassProcessorFactoryImpl(testResultsDir);
+        return new TestClassProcessorFactoryImpl();
     }
 
     public Action<WorkerProcessBuilder> getWorkerConfigurationAction() {
@@ -64,11 +67,12 @@ public class JUnitTestFrameworkInstance extends AbstractTestFrameworkInstance {
     }
 
     public void report() {
+        File testResultsDir = testTask.getTestResultsDir();
+        xmlReport.generateReport(new TestResultStore(testResultsDir), testResultsDir);
         if (!testTask.isTestReport()) {
             return;
         }
-        antJUnitReport.execute(testTask.getTestResultsDir(), testTask.getTestReportDir(),
-                testTask.getProject().getAnt());
+        testReport.generateReport(testResultsDir, testTask.getTestReportDir());
     }
 
     public JUnitOptions getOptions() {
@@ -79,12 +83,20 @@ public class JUnitTestFrameworkInstance extends AbstractTestFrameworkInstance {
         this.options = options;
     }
 
-    AntJUnitReport getAntJUnitReport() {
-        return antJUnitReport;
+    JUnitXmlReport getXmlReport() {
+        return xmlReport;
     }
 
-    void setAntJUnitReport(AntJUnitReport antJUnitReport) {
-        this.antJUnitReport = antJUnitReport;
+    void setXmlReport(JUnitXmlReport xmlReport) {
+        this.xmlReport = xmlReport;
+    }
+
+    DefaultTestReport getTestReport() {
+        return testReport;
+    }
+
+    void setTestReport(DefaultTestReport testReport) {
+        this.testReport = testReport;
     }
 
     public JUnitDetector getDetector() {
@@ -101,14 +113,8 @@ public class JUnitTestFrameworkInstance extends AbstractTestFrameworkInstance {
     }
 
     private static class TestClassProcessorFactoryImpl implements WorkerTestClassProcessorFactory, Serializable {
-        private final File testResultsDir;
-
-        public TestClassProcessorFactoryImpl(File testResultsDir) {
-            this.testResultsDir = testResultsDir;
-        }
-
         public TestClassProcessor create(IdGenerator<?> idGenerator) {
-            return new AntJUnitTestClassProcessor(testResultsDir, idGenerator);
+            return new AntJUnitTestClassProcessor(idGenerator);
         }
     }
 }
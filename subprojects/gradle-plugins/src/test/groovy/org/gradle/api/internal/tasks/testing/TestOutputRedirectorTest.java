@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing;
+
+import org.gradle.util.JUnit4GroovyMockery;
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class TestOutputRedirectorTest {
+    private final JUnit4GroovyMockery context = new JUnit4GroovyMockery();
+    private final TestResultProcessor resultProcessor = context.mock(TestResultProcessor.class);
+    private final TestOutputRedirector redirector = new TestOutputRedirector(resultProcessor);
+    private final PrintStream originalStdOut = System.out;
+    private final PrintStream originalStdErr = System.err;
+
+    @After
+    public void restoreStreams() {
+        System.setOut(originalStdOut);
+        System.setErr(originalStdErr);
+    }
+
+    @Test
+    public void sendsEachLineOfOutputToTest() {
+        context.checking(new Expectations() {{
+            one(resultProcessor).output(with(equalTo("test")), with(event(TestOutputEvent.Destination.StdOut, "line 1\n")));
+            one(resultProcessor).output(with(equalTo("test")), with(event(TestOutputEvent.Destination.StdErr, "error\n")));
+            one(resultProcessor).output(with(equalTo("test")), with(event(TestOutputEvent.Destination.StdOut, "line 2\n")));
+            one(resultProcessor).output(with(equalTo("test")), with(event(TestOutputEvent.Destination.StdOut, "partial")));
+        }});
+
+        redirector.startRedirecting("test");
+        System.out.println("line 1");
+        System.err.println("error");
+        System.out.print("line 2\npartial");
+        redirector.stopRedirecting();
+
+        assertThat(System.out, sameInstance(originalStdOut));
+        assertThat(System.err, sameInstance(originalStdErr));
+    }
+
+    @Test
+    public void flushesOutputOfPreviousTestWhenRedirectingToAnotherTest() {
+        context.checking(new Expectations() {{
+            one(resultProcessor).output(with(equalTo("test1")), with(event(TestOutputEvent.Destination.StdOut, "partial")));
+            one(resultProcessor).output(with(equalTo("test2")), with(event(TestOutputEvent.Destination.StdOut, "line\n")));
+        }});
+
+        redirector.startRedirecting("test1");
+        System.out.print("partial");
+        redirector.startRedirecting("test2");
+        System.out.println("line");
+        redirector.stopRedirecting();
+
+        assertThat(System.out, sameInstance(originalStdOut));
+    }
+
+    @Test
+    public void splitsLongLinesIntoMultipleEvents() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < TestOutputRedirector.MAX_EVENT_SIZE + 10; i++) {
+            line.append('x');
+        }
+        final String content = line.toString();
+
+        context.checking(new Expectations() {{
+            one(resultProcessor).output(with(equalTo("test")), with(event(TestOutputEvent.Destination.StdOut,
+                    content.substring(0, TestOutputRedirector.MAX_EVENT_SIZE))));
+            one(resultProcessor).output(with(equalTo("test")), with(event(TestOutputEvent.Destination.StdOut,
+                    content.substring(TestOutputRedirector.MAX_EVENT_SIZE) + "\n")));
+        }});
+
+        redirector.startRedirecting("test");
+        System.out.println(content);
+        redirector.stopRedirecting();
+    }
+
+    @Test
+    public void stopDoesNothingWhenNotRedirecting() {
+        redirector.stopRedirecting();
+
+        assertThat(System.out, sameInstance(originalStdOut));
+    }
+
+    private static Matcher<TestOutputEvent> event(final TestOutputEvent.Destination destination,
+                                                  final String message) {
+        return new BaseMatcher<TestOutputEvent>() {
+            public boolean matches(Object o) {
+                TestOutputEvent event = (TestOutputEvent) o;
+                return event.getDestination() == destination && event.getMessage().equals(message);
+            }
+
+            public void describeTo(Description description) {
+                description.appendText("output event ").appendValue(destination).appendText(" ").appendValue(message);
+            }
+        };
+    }
+}
@@ -20,16 +20,15 @@ package org.gradle.api.internal.tasks.testing.junit
 import junit.framework.TestCase
 import org.gradle.api.internal.tasks.testing.TestCompleteEvent
 import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
+import org.gradle.api.internal.tasks.testing.TestOutputEvent
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.api.internal.tasks.testing.TestStartEvent
 import org.gradle.api.testing.fabric.TestClassRunInfo
 import org.gradle.util.JUnit4GroovyMockery
 import org.gradle.util.LongIdGenerator
-import org.gradle.util.TemporaryFolder
 import org.jmock.integration.junit4.JMock
 import org.junit.Before
 import org.junit.Ignore
-import org.junit.Rule
 import org.junit.Test
 import org.junit.runner.Description
 import org.junit.runner.RunWith
@@ -42,9 +41,8 @@ import static org.junit.Assert.*
 @RunWith(JMock.class)
 class AntJUnitTestClassProcessorTest {
     private final JUnit4GroovyMockery context = new JUnit4GroovyMockery()
-    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
     private final TestResultProcessor resultProcessor = context.mock(TestResultProcessor.class);
-    private final AntJUnitTestClassProcessor processor = new AntJUnitTestClassProcessor(tmpDir.dir, new LongIdGenerator());
+    private final AntJUnitTestClassProcessor processor = new AntJUnitTestClassProcessor(new LongIdGenerator());
 
     @Test
     public void executesATestClass() {
@@ -78,6 +76,36 @@ class AntJUnitTestClassProcessorTest {
         processor.endProcessing();
     }
 
+    @Test
+    public void sendsOutputOfTestClassToResultProcessor() {
+        PrintStream originalStdOut = System.out
+        PrintStream originalStdErr = System.err
+
+        context.checking {
+            one(resultProcessor).started(withParam(notNullValue()), withParam(notNullValue()))
+            one(resultProcessor).started(withParam(notNullValue()), withParam(notNullValue()))
+            one(resultProcessor).output(withParam(equalTo(1L)), withParam(notNullValue()))
+            will { id, TestOutputEvent event ->
+                assertThat(event.destination, equalTo(TestOutputEvent.Destination.StdOut))
+                assertThat(event.message, equalTo(String.format('output%n')))
+            }
+            one(resultProcessor).output(withParam(equalTo(1L)), withParam(notNullValue()))
+            will { id, TestOutputEvent event ->
+                assertThat(event.destination, equalTo(TestOutputEvent.Destination.StdErr))
+                assertThat(event.message, equalTo('error'))
+            }
+            one(resultProcessor).completed(withParam(equalTo(2L)), withParam(notNullValue()))
+            one(resultProcessor).completed(withParam(equalTo(1L)), withParam(notNullValue()))
+        }
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(testClass(ATestClassWithOutput.class));
+        processor.endProcessing();
+
+        assertThat(System.out, sameInstance(originalStdOut))
+        assertThat(System.err, sameInstance(originalStdErr))
+    }
+
     @Test
     public void executesAJUnit3TestClass() {
         context.checking {
@@ -395,6 +423,14 @@ public static class ATestClass {
     }
 }
 
+public static class ATestClassWithOutput {
+    @Test
+    public void ok() {
+        System.out.println('output')
+        System.err.print('error')
+    }
+}
+
 public static class ATestClassWithBrokenConstructor {
     static RuntimeException failure = new RuntimeException()
 
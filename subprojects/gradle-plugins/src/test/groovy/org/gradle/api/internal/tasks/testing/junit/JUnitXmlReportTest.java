@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.internal.tasks.testing.results.TestResultStore;
+import org.gradle.api.internal.tasks.testing.results.TestResultStoreWriter;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class JUnitXmlReportTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestFile resultsDir = tmpDir.getDir().file("results");
+    private final TestResultStore store = new TestResultStore(resultsDir);
+    private final JUnitXmlReport report = new JUnitXmlReport();
+
+    @Test
+    public void writesResultsFileForEachTestClass() throws Exception {
+        TestResultStoreWriter writer = new TestResultStoreWriter(store);
+        writer.started(new DefaultTestSuiteDescriptor("root", "all tests"), new TestStartEvent(0));
+        writer.started(new DefaultTestClassDescriptor("class1", "org.gradle.SomeTest"), new TestStartEvent(1000, "root"));
+        writer.started(new DefaultTestDescriptor("test1", "org.gradle.SomeTest", "ok"), new TestStartEvent(1000, "class1"));
+        writer.output("class1", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "some <output> & ]]>\n"));
+        writer.completed("test1", new TestCompleteEvent(1250));
+        writer.started(new DefaultTestDescriptor("test2", "org.gradle.SomeTest", "broken"), new TestStartEvent(1250, "class1"));
+        writer.addFailure("test2", new AssertionError("a \"message\""));
+        writer.completed("test2", new TestCompleteEvent(1500));
+        writer.started(new DefaultTestDescriptor("test3", "org.gradle.SomeTest", "error"), new TestStartEvent(1500, "class1"));
+        writer.output("class1", new TestOutputEvent(TestOutputEvent.Destination.StdErr, "some error\u0000\n"));
+        writer.completed("test3", new TestCompleteEvent(2000, null, new IllegalStateException()));
+        writer.completed("class1", new TestCompleteEvent(3000));
+        writer.started(new DefaultTestClassDescriptor("class2", "org.gradle.OtherTest"), new TestStartEvent(3000, "root"));
+        writer.completed("class2", new TestCompleteEvent(3000));
+        writer.completed("root", new TestCompleteEvent(4000));
+
+        report.generateReport(store, resultsDir);
+
+        Element testSuite = parse(resultsDir.file("TEST-org.gradle.SomeTest.xml"));
+        assertThat(testSuite.getAttribute("name"), equalTo("org.gradle.SomeTest"));
+        assertThat(testSuite.getAttribute("tests"), equalTo("3"));
+        assertThat(testSuite.getAttribute("failures"), equalTo("1"));
+        assertThat(testSuite.getAttribute("errors"), equalTo("1"));
+        assertThat(testSuite.getAttribute("time"), equalTo("2.0"));
+
+        NodeList testCases = testSuite.getElementsByTagName("testcase");
+        assertThat(testCases.getLength(), equalTo(3));
+        Element ok = (Element) testCases.item(0);
+        assertThat(ok.getAttribute("name"), equalTo("ok"));
+        assertThat(ok.getAttribute("classname"), equalTo("org.gradle.SomeTest"));
+        assertThat(ok.getAttribute("time"), equalTo("0.25"));
+        assertThat(ok.getChildNodes().getLength(), equalTo(0));
+
+        Element failure = (Element) ((Element) testCases.item(1)).getElementsByTagName("failure").item(0);
+        assertThat(failure.getAttribute("message"), equalTo("a \"message\""));
+        assertThat(failure.getAttribute("type"), equalTo(AssertionError.class.getName()));
+        assertThat(failure.getTextContent(), startsWith("java.lang.AssertionError: a \"message\""));
+
+        Element error = (Element) ((Element) testCases.item(2)).getElementsByTagName("error").item(0);
+        assertFalse(error.hasAttribute("message"));
+        assertThat(error.getAttribute("type"), equalTo(IllegalStateException.class.getName()));
+
+        assertThat(testSuite.getElementsByTagName("system-out").item(0).getTextContent(),
+                equalTo("some <output> & ]]>\n"));
+        assertThat(testSuite.getElementsByTagName("system-err").item(0).getTextContent(), equalTo("some error?\n"));
+
+        Element otherSuite = parse(resultsDir.file("TEST-org.gradle.OtherTest.xml"));
+        assertThat(otherSuite.getAttribute("tests"), equalTo("0"));
+        assertThat(otherSuite.getElementsByTagName("system-out").item(0).getTextContent(), equalTo(""));
+    }
+
+    @Test
+    public void writesNothingWhenStoreIsEmpty() {
+        report.generateReport(store, resultsDir);
+
+        resultsDir.assertIsDir();
+        assertThat(resultsDir.list().length, equalTo(0));
+    }
+
+    private Element parse(TestFile file) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        return document.getDocumentElement();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import org.gradle.api.GradleException;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DefaultTestReportTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestFile resultsDir = tmpDir.getDir().file("results");
+    private final TestFile reportDir = tmpDir.getDir().file("report");
+    private final DefaultTestReport report = new DefaultTestReport(2);
+
+    @Test
+    public void generatesIndexPageWithTotalsForEachPackage() {
+        writeResults("org.gradle.SomeTest", "<testsuite name=\"org.gradle.SomeTest\" tests=\"2\" failures=\"1\" errors=\"0\" time=\"1.5\">"
+                + "<testcase name=\"ok\" time=\"0.5\"/><testcase name=\"broken\" time=\"1.0\"><failure message=\"boom\">stack</failure></testcase>"
+                + "</testsuite>");
+        writeResults("org.gradle.OtherTest", "<testsuite name=\"org.gradle.OtherTest\" tests=\"1\" failures=\"0\" errors=\"0\" time=\"0.25\">"
+                + "<testcase name=\"ok\" time=\"0.25\"/></testsuite>");
+        writeResults("DefaultPackageTest", "<testsuite name=\"DefaultPackageTest\" tests=\"1\" failures=\"0\" errors=\"1\" time=\"0\">"
+                + "<testcase name=\"ok\" time=\"0\"><error message=\"npe\">trace</error></testcase></testsuite>");
+
+        report.generateReport(resultsDir, reportDir);
+
+        String index = reportDir.file("index.html").getText();
+        assertThat(index, containsString("<td>4</td><td>1</td><td>1</td><td>1.750s</td><td>50%</td>"));
+        assertThat(index, containsString("<a href=\"packages/org.gradle.html\">org.gradle</a></td><td>3</td><td>1</td><td>0</td>"));
+        assertThat(index, containsString("<a href=\"packages/default-package.html\">default-package</a></td><td>1</td><td>0</td><td>1</td>"));
+        reportDir.file("style.css").assertIsFile();
+
+        String packagePage = reportDir.file("packages/org.gradle.html").getText();
+        assertThat(packagePage, containsString("<a href=\"../classes/org.gradle.SomeTest.html\">SomeTest</a>"));
+        assertThat(packagePage, containsString("<a href=\"../classes/org.gradle.OtherTest.html\">OtherTest</a>"));
+        reportDir.file("packages/default-package.html").assertIsFile();
+    }
+
+    @Test
+    public void generatesClassPageWithTestsFailuresAndOutput() {
+        writeResults("org.gradle.SomeTest", "<testsuite name=\"org.gradle.SomeTest\" tests=\"3\" failures=\"1\" errors=\"0\" time=\"1.5\">"
+                + "<properties><property name=\"p\" value=\"v\"/></properties>"
+                + "<testcase name=\"ok\" time=\"0.5\"/>"
+                + "<testcase name=\"broken\" time=\"1.0\"><failure message=\"boom\">java.lang.AssertionError: a &lt; b</failure></testcase>"
+                + "<testcase name=\"ignored\" time=\"0\"><skipped/></testcase>"
+                + "<system-out><![CDATA[some <output>]]></system-out><system-err><![CDATA[some error]]></system-err>"
+                + "</testsuite>");
+
+        report.generateReport(resultsDir, reportDir);
+
+        String classPage = reportDir.file("classes/org.gradle.SomeTest.html").getText();
+        assertThat(classPage, containsString("<tr class=\"success\"><td>ok</td><td>0.500s</td><td>passed</td></tr>"));
+        assertThat(classPage, containsString("<tr class=\"failures\"><td>broken</td><td>1.000s</td><td>failed</td></tr>"));
+        assertThat(classPage, containsString("<pre>java.lang.AssertionError: a &lt; b</pre>"));
+        assertThat(classPage, containsString("<tr class=\"skipped\"><td>ignored</td><td>0.000s</td><td>ignored</td></tr>"));
+        assertThat(classPage, containsString("<h2>Standard output</h2>\n<pre>some &lt;output&gt;</pre>"));
+        assertThat(classPage, containsString("<h2>Standard error</h2>\n<pre>some error</pre>"));
+        assertThat(classPage, not(containsString(">v<")));
+    }
+
+    @Test
+    public void aggregatesResultFilesIntoASingleFile() {
+        writeResults("org.gradle.SomeTest", "<testsuite name=\"org.gradle.SomeTest\" tests=\"0\" failures=\"0\" errors=\"0\" time=\"0\"/>");
+        writeResults("org.gradle.OtherTest", "<testsuite name=\"org.gradle.OtherTest\" tests=\"0\" failures=\"0\" errors=\"0\" time=\"0\"/>");
+
+        report.generateReport(resultsDir, reportDir);
+
+        String aggregate = resultsDir.file("TESTS-TestSuites.xml").getText();
+        assertThat(aggregate, startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<testsuites>\n"));
+        assertThat(aggregate, containsString("<testsuite name=\"org.gradle.OtherTest\" tests=\"0\" failures=\"0\" errors=\"0\" time=\"0\"/>\n"
+                + "<testsuite name=\"org.gradle.SomeTest\" tests=\"0\" failures=\"0\" errors=\"0\" time=\"0\"/>\n</testsuites>\n"));
+
+        report.generateReport(resultsDir, reportDir);
+
+        assertThat(resultsDir.file("TESTS-TestSuites.xml").getText(), equalTo(aggregate));
+    }
+
+    @Test
+    public void generatesEmptyReportWhenThereAreNoResults() {
+        resultsDir.createDir();
+
+        report.generateReport(resultsDir, reportDir);
+
+        assertThat(reportDir.file("index.html").getText(), containsString("<td>0</td><td>0</td><td>0</td><td>0.000s</td><td>-</td>"));
+    }
+
+    @Test
+    public void reportsBrokenResultsFile() {
+        resultsDir.file("TEST-org.gradle.SomeTest.xml").write("<testsuite");
+
+        try {
+            report.generateReport(resultsDir, reportDir);
+            fail();
+        } catch (GradleException e) {
+            assertThat(e.getMessage(), equalTo(String.format("Could not read test results file '%s'.",
+                    resultsDir.file("TEST-org.gradle.SomeTest.xml"))));
+        }
+    }
+
+    private void writeResults(String className, String content) {
+        resultsDir.file("TEST-" + className + ".xml").write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" + content);
+    }
+}
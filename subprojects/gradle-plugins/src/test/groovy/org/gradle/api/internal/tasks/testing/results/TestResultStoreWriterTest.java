@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.results;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.util.TemporaryFolder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class TestResultStoreWriterTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestResultStore store = new TestResultStore(tmpDir.getDir());
+    private final TestResultStoreWriter writer = new TestResultStoreWriter(store);
+
+    @Test
+    public void writesResultsOfEachTestClass() {
+        writer.started(new DefaultTestSuiteDescriptor("root", "all tests"), new TestStartEvent(0));
+        writer.started(new DefaultTestClassDescriptor("class", "org.gradle.SomeTest"), new TestStartEvent(100, "root"));
+        writer.started(new DefaultTestDescriptor("test1", "org.gradle.SomeTest", "ok"), new TestStartEvent(110, "class"));
+        writer.completed("test1", new TestCompleteEvent(120));
+        writer.started(new DefaultTestDescriptor("test2", "org.gradle.SomeTest", "broken"), new TestStartEvent(130, "class"));
+        writer.addFailure("test2", new AssertionError("broken"));
+        writer.completed("test2", new TestCompleteEvent(140));
+        writer.started(new DefaultTestDescriptor("test3", "org.gradle.SomeTest", "error"), new TestStartEvent(150, "class"));
+        writer.completed("test3", new TestCompleteEvent(160, null, new RuntimeException()));
+        writer.started(new DefaultTestDescriptor("test4", "org.gradle.SomeTest", "skipped"), new TestStartEvent(170, "class"));
+        writer.completed("test4", new TestCompleteEvent(170, TestResult.ResultType.SKIPPED, null));
+        writer.completed("class", new TestCompleteEvent(200));
+        writer.completed("root", new TestCompleteEvent(300));
+
+        List<TestClassResult> results = readResults();
+        assertThat(results.size(), equalTo(1));
+        TestClassResult result = results.get(0);
+        assertThat(result.getClassName(), equalTo("org.gradle.SomeTest"));
+        assertThat(result.getStartTime(), equalTo(100L));
+        assertThat(result.getEndTime(), equalTo(200L));
+        assertThat(result.getFailureCount(), equalTo(1));
+        assertThat(result.getErrorCount(), equalTo(1));
+        assertThat(result.getSkippedCount(), equalTo(1));
+
+        List<TestClassResult.TestMethodResult> methods = result.getMethods();
+        assertThat(methods.size(), equalTo(4));
+        assertThat(methods.get(0).getName(), equalTo("ok"));
+        assertThat(methods.get(0).getDuration(), equalTo(10L));
+        assertThat(methods.get(0).getResultType(), equalTo(TestResult.ResultType.SUCCESS));
+        assertThat(methods.get(0).getFailures().size(), equalTo(0));
+
+        assertThat(methods.get(1).getResultType(), equalTo(TestResult.ResultType.FAILURE));
+        TestClassResult.TestFailure failure = methods.get(1).getFailures().get(0);
+        assertThat(failure.getExceptionType(), equalTo(AssertionError.class.getName()));
+        assertThat(failure.getMessage(), equalTo("broken"));
+        assertThat(failure.getStackTrace(), startsWith("java.lang.AssertionError: broken"));
+        assertTrue(failure.isAssertionFailure());
+
+        assertThat(methods.get(2).getResultType(), equalTo(TestResult.ResultType.FAILURE));
+        failure = methods.get(2).getFailures().get(0);
+        assertThat(failure.getExceptionType(), equalTo(RuntimeException.class.getName()));
+        assertThat(failure.getMessage(), nullValue());
+        assertFalse(failure.isAssertionFailure());
+
+        assertThat(methods.get(3).getResultType(), equalTo(TestResult.ResultType.SKIPPED));
+    }
+
+    @Test
+    public void writesOutputOfConcurrentlyExecutingTestClasses() {
+        writer.started(new DefaultTestSuiteDescriptor("root", "all tests"), new TestStartEvent(0));
+        writer.started(new DefaultTestClassDescriptor("class1", "org.gradle.Test1"), new TestStartEvent(100, "root"));
+        writer.started(new DefaultTestClassDescriptor("class2", "org.gradle.Test2"), new TestStartEvent(100, "root"));
+        writer.started(new DefaultTestDescriptor("test1", "org.gradle.Test1", "ok"), new TestStartEvent(110, "class1"));
+        writer.output("class1", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "line 1\n"));
+        writer.output("class2", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "other\n"));
+        writer.output("test1", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "line 2\n"));
+        writer.output("class1", new TestOutputEvent(TestOutputEvent.Destination.StdErr, "error \u20ac\n"));
+        writer.output("class1", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "line 3\n"));
+        writer.completed("test1", new TestCompleteEvent(120));
+        writer.completed("class2", new TestCompleteEvent(150));
+        writer.completed("class1", new TestCompleteEvent(200));
+        writer.output("root", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "ignored\n"));
+        writer.completed("root", new TestCompleteEvent(300));
+
+        List<TestClassResult> results = readResults();
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.get(0).getClassName(), equalTo("org.gradle.Test2"));
+        assertThat(output(results.get(0), TestOutputEvent.Destination.StdOut), equalTo("other\n"));
+        assertThat(output(results.get(0), TestOutputEvent.Destination.StdErr), equalTo(""));
+        assertThat(results.get(1).getClassName(), equalTo("org.gradle.Test1"));
+        assertThat(output(results.get(1), TestOutputEvent.Destination.StdOut), equalTo("line 1\nline 2\nline 3\n"));
+        assertThat(output(results.get(1), TestOutputEvent.Destination.StdErr), equalTo("error \u20ac\n"));
+    }
+
+    @Test
+    public void mergesAdjacentOutputOfTestClass() {
+        writer.started(new DefaultTestSuiteDescriptor("root", "all tests"), new TestStartEvent(0));
+        writer.started(new DefaultTestClassDescriptor("class", "org.gradle.SomeTest"), new TestStartEvent(100, "root"));
+        for (int i = 0; i < 100; i++) {
+            writer.output("class", new TestOutputEvent(TestOutputEvent.Destination.StdOut, "line " + i + "\n"));
+        }
+        writer.completed("class", new TestCompleteEvent(200));
+        writer.completed("root", new TestCompleteEvent(300));
+
+        TestClassResult result = readResults().get(0);
+        assertThat(result.getOutputRegions().size(), equalTo(1));
+        assertThat(output(result, TestOutputEvent.Destination.StdOut), endsWith("line 98\nline 99\n"));
+    }
+
+    @Test
+    public void recordsFailureOfTestClassAsSyntheticTest() {
+        writer.started(new DefaultTestSuiteDescriptor("root", "all tests"), new TestStartEvent(0));
+        writer.started(new DefaultTestClassDescriptor("class", "org.gradle.SomeTest"), new TestStartEvent(100, "root"));
+        writer.addFailure("class", new RuntimeException("broken"));
+        writer.completed("class", new TestCompleteEvent(200));
+        writer.completed("root", new TestCompleteEvent(300));
+
+        TestClassResult result = readResults().get(0);
+        assertThat(result.getMethods().size(), equalTo(1));
+        assertThat(result.getMethods().get(0).getName(), equalTo("initializationError"));
+        assertThat(result.getMethods().get(0).getFailures().get(0).getMessage(), equalTo("broken"));
+        assertThat(result.getErrorCount(), equalTo(1));
+    }
+
+    @Test
+    public void storeIsEmptyWhenNoTestClassesExecuted() {
+        writer.started(new DefaultTestSuiteDescriptor("root", "all tests"), new TestStartEvent(0));
+        writer.completed("root", new TestCompleteEvent(300));
+
+        assertThat(readResults().size(), equalTo(0));
+    }
+
+    private List<TestClassResult> readResults() {
+        final List<TestClassResult> results = new ArrayList<TestClassResult>();
+        store.forEachClass(new Action<TestClassResult>() {
+            public void execute(TestClassResult result) {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+
+    private String output(TestClassResult result, TestOutputEvent.Destination destination) {
+        StringWriter output = new StringWriter();
+        store.writeOutput(result, destination, output);
+        return output.toString();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.detection;
+
+import org.gradle.api.internal.changedetection.DefaultHasher;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.gradle.util.WrapUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ClassHierarchyIndexTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestFile classesDir = tmpDir.getDir().file("classes");
+    private final TestFile libDir = tmpDir.getDir().file("lib");
+    private final TestFile jar = tmpDir.getDir().file("lib.jar");
+    private final CountingReader reader = new CountingReader();
+    private final InMemoryIndexedCache<ClassInfo> classCache = new InMemoryIndexedCache<ClassInfo>();
+    private final InMemoryIndexedCache<Set<String>> jarCache = new InMemoryIndexedCache<Set<String>>();
+
+    @Test
+    public void readsClassFromClassFile() throws IOException {
+        TestFile classFile = writeClass(classesDir, "org/gradle/SomeTest", "org/gradle/AbstractTest", false);
+        ClassHierarchyIndex index = new ClassHierarchyIndex(WrapUtil.<File>toList(classesDir), Collections.<File>emptyList(), reader);
+
+        ClassInfo classInfo = index.get(classFile);
+
+        assertThat(classInfo.getClassName(), equalTo("org/gradle/SomeTest"));
+        assertThat(classInfo.getSuperClassName(), equalTo("org/gradle/AbstractTest"));
+        assertFalse(classInfo.isAbstract());
+        assertTrue(classInfo.isTest());
+        assertThat(index.get(classFile), sameInstance(classInfo));
+        assertThat(reader.count, equalTo(1));
+    }
+
+    @Test
+    public void findsClassInClassDirectoriesInOrderThenInJars() throws IOException {
+        writeClass(libDir, "org/gradle/Base", "java/lang/Object", true);
+        writeJar(jar, "org/gradle/Base", "org/gradle/Other");
+        ClassHierarchyIndex index = new ClassHierarchyIndex(WrapUtil.<File>toList(classesDir, libDir), WrapUtil.<File>toList(jar), reader);
+
+        ClassInfo base = index.find("org/gradle/Base");
+        assertThat(base.getClassName(), equalTo("org/gradle/Base"));
+        assertTrue(base.isAbstract());
+
+        ClassInfo other = index.find("org/gradle/Other");
+        assertThat(other.getClassName(), equalTo("org/gradle/Other"));
+        assertFalse(other.isAbstract());
+
+        assertThat(index.find("org/gradle/Unknown"), nullValue());
+        assertThat(index.find("org/gradle/Base"), sameInstance(base));
+        assertThat(reader.count, equalTo(2));
+    }
+
+    @Test
+    public void usesPersistedClassesWhenClassFilesAndJarsHaveNotChanged() throws IOException {
+        TestFile classFile = writeClass(classesDir, "org/gradle/SomeTest", "org/gradle/Base", false);
+        writeJar(jar, "org/gradle/Base");
+
+        ClassHierarchyIndex index = createPersistentIndex();
+        index.get(classFile);
+        index.find("org/gradle/Base");
+        assertThat(reader.count, equalTo(2));
+
+        index = createPersistentIndex();
+        ClassInfo classInfo = index.get(classFile);
+        ClassInfo base = index.find("org/gradle/Base");
+
+        assertThat(reader.count, equalTo(2));
+        assertThat(classInfo.getClassName(), equalTo("org/gradle/SomeTest"));
+        assertThat(base.getClassName(), equalTo("org/gradle/Base"));
+        assertThat(index.find("org/gradle/Unknown"), nullValue());
+    }
+
+    @Test
+    public void readsClassesAgainWhenClassFilesAndJarsHaveChanged() throws IOException {
+        TestFile classFile = writeClass(classesDir, "org/gradle/SomeTest", "org/gradle/Base", false);
+        writeJar(jar, "org/gradle/Base");
+
+        ClassHierarchyIndex index = createPersistentIndex();
+        index.get(classFile);
+        index.find("org/gradle/Base");
+
+        writeClass(classesDir, "org/gradle/SomeTest", "org/gradle/OtherBase", false);
+        writeJar(jar, "org/gradle/Base", "org/gradle/OtherBase");
+
+        index = createPersistentIndex();
+        assertThat(index.get(classFile).getSuperClassName(), equalTo("org/gradle/OtherBase"));
+        assertThat(index.find("org/gradle/OtherBase").getClassName(), equalTo("org/gradle/OtherBase"));
+        assertThat(reader.count, equalTo(4));
+    }
+
+    private ClassHierarchyIndex createPersistentIndex() {
+        return new ClassHierarchyIndex(WrapUtil.<File>toList(classesDir), WrapUtil.<File>toList(jar), reader, classCache, jarCache,
+                new DefaultHasher());
+    }
+
+    private TestFile writeClass(TestFile dir, String className, String superClassName, boolean isAbstract)
+            throws IOException {
+        TestFile classFile = dir.file(className + ".class");
+        classFile.getParentFile().mkdirs();
+        FileOutputStream outstr = new FileOutputStream(classFile);
+        try {
+            outstr.write(classBytes(className, superClassName, isAbstract));
+        } finally {
+            outstr.close();
+        }
+        return classFile;
+    }
+
+    private void writeJar(TestFile jarFile, String... classNames) throws IOException {
+        ZipOutputStream outstr = new ZipOutputStream(new FileOutputStream(jarFile));
+        try {
+            for (String className : classNames) {
+                outstr.putNextEntry(new ZipEntry(className + ".class"));
+                outstr.write(classBytes(className, "java/lang/Object", false));
+                outstr.closeEntry();
+            }
+        } finally {
+            outstr.close();
+        }
+    }
+
+    private byte[] classBytes(String className, String superClassName, boolean isAbstract) {
+        ClassWriter writer = new ClassWriter(0);
+        int access = Opcodes.ACC_PUBLIC | (isAbstract ? Opcodes.ACC_ABSTRACT : 0);
+        writer.visit(Opcodes.V1_5, access, className, null, superClassName, null);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static class CountingReader implements ClassInfoReader {
+        private int count;
+
+        public String getId() {
+            return "test";
+        }
+
+        public ClassInfo read(InputStream classStream) throws IOException {
+            count++;
+            ClassReader classReader = new ClassReader(classStream);
+            boolean isAbstract = (classReader.getAccess() & Opcodes.ACC_ABSTRACT) != 0;
+            return new ClassInfo(classReader.getClassName(), classReader.getSuperName(), isAbstract,
+                    classReader.getClassName().endsWith("Test"));
+        }
+    }
+
+    private static class InMemoryIndexedCache<V> implements PersistentIndexedCache<String, V> {
+        private final Map<String, V> entries = new HashMap<String, V>();
+
+        public V get(String key) {
+            return entries.get(key);
+        }
+
+        public Map<String, V> getAll(Collection<? extends String> keys) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void put(String key, V value) {
+            entries.put(key, value);
+        }
+
+        public void remove(String key) {
+            entries.remove(key);
+        }
+    }
+}
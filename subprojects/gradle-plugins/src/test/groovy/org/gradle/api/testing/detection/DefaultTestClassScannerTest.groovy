@@ -26,6 +26,8 @@ import org.gradle.util.TemporaryFolder
 import org.gradle.api.testing.fabric.TestFrameworkDetector
 import org.gradle.api.testing.TestClassProcessor
 import org.jmock.Sequence
+import static org.junit.Assert.*
+import static org.hamcrest.Matchers.*
 
 @RunWith(JMock.class)
 public class DefaultTestClassScannerTest {
@@ -61,4 +63,53 @@ public class DefaultTestClassScannerTest {
         
         scanner.run()
     }
+
+    @Test
+    public void readsClassFilesUsingMultipleThreadsBeforePassingThemToTestClassDetector() {
+        RecordingDetector detector = new RecordingDetector()
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(tmpDir.dir, ['**/Class*'] as Set, ['**/excluded*'] as Set, detector, processor, 4)
+
+        tmpDir.dir.create {
+            dir1 {
+                file 'Class1.class'
+                file 'Class2.class'
+            }
+            dir2 {
+                file 'Class3.class'
+                file 'excluded.class'
+            }
+        }
+
+        scanner.run()
+
+        def files = [tmpDir.file('dir1/Class1.class'), tmpDir.file('dir1/Class2.class'), tmpDir.file('dir2/Class3.class')] as Set
+        assertThat(detector.processor, sameInstance(processor))
+        assertThat(detector.prepared as Set, equalTo(files))
+        assertThat(detector.processed as Set, equalTo(files))
+        assertThat(detector.processed.size(), equalTo(3))
+        detector.processed.each { file ->
+            assertTrue(detector.prepared.contains(file))
+        }
+    }
+
+    private static class RecordingDetector implements TestFrameworkDetector {
+        TestClassProcessor processor
+        final List<File> prepared = Collections.synchronizedList(new ArrayList<File>())
+        final List<File> processed = new ArrayList<File>()
+
+        void startDetection(TestClassProcessor testClassProcessor) {
+            processor = testClassProcessor
+        }
+
+        void prepareTestClass(File testClassFile) {
+            prepared << testClassFile
+        }
+
+        boolean processTestClass(File testClassFile) {
+            // Each class file must have been read before it is processed
+            assertTrue(prepared.contains(testClassFile))
+            processed << testClassFile
+            return true
+        }
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.testing.TestClassProcessor;
+import org.gradle.api.testing.fabric.DefaultTestClassRunInfo;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class HistoryOrderingTestClassProcessorTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestClassProcessor delegate = context.mock(TestClassProcessor.class);
+    private final TestResultProcessor resultProcessor = context.mock(TestResultProcessor.class);
+    private final TestHistory history = new TestHistory();
+
+    @Test
+    public void passesTestClassesToDelegateWhenProcessingEnds() {
+        final TestClassRunInfo test1 = testClass("Test1");
+        final TestClassRunInfo test2 = testClass("Test2");
+        HistoryOrderingTestClassProcessor processor = processor();
+
+        context.checking(new Expectations() {{
+            one(delegate).startProcessing(resultProcessor);
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.processTestClass(test2);
+
+        final Sequence sequence = context.sequence("seq");
+        context.checking(new Expectations() {{
+            one(delegate).processTestClass(test1);
+            inSequence(sequence);
+            one(delegate).processTestClass(test2);
+            inSequence(sequence);
+            one(delegate).endProcessing();
+            inSequence(sequence);
+        }});
+
+        processor.endProcessing();
+    }
+
+    @Test
+    public void ordersFailedThenChangedThenRemainingTestClasses() {
+        final TestClassRunInfo unchanged = testClass("Unchanged", false, 10);
+        final TestClassRunInfo changed = testClass("Changed", false, 10);
+        classFile("Changed").setLastModified(classFile("Changed").lastModified() - 5000);
+        final TestClassRunInfo added = testClass("Added");
+        final TestClassRunInfo failed = testClass("Failed", true, 10);
+
+        final Sequence sequence = context.sequence("seq");
+        context.checking(new Expectations() {{
+            one(delegate).startProcessing(resultProcessor);
+            one(delegate).processTestClass(failed);
+            inSequence(sequence);
+            one(delegate).processTestClass(added);
+            inSequence(sequence);
+            one(delegate).processTestClass(changed);
+            inSequence(sequence);
+            one(delegate).processTestClass(unchanged);
+            inSequence(sequence);
+            one(delegate).endProcessing();
+            inSequence(sequence);
+        }});
+
+        HistoryOrderingTestClassProcessor processor = processor();
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(unchanged);
+        processor.processTestClass(changed);
+        processor.processTestClass(added);
+        processor.processTestClass(failed);
+        processor.endProcessing();
+    }
+
+    @Test
+    public void ordersTestClassesWithSameHistoryByDuration() {
+        final TestClassRunInfo slow = testClass("Slow", false, 1000);
+        final TestClassRunInfo fast = testClass("Fast", false, 10);
+        final TestClassRunInfo medium = testClass("Medium", false, 100);
+
+        final Sequence sequence = context.sequence("seq");
+        context.checking(new Expectations() {{
+            one(delegate).startProcessing(resultProcessor);
+            one(delegate).processTestClass(fast);
+            inSequence(sequence);
+            one(delegate).processTestClass(medium);
+            inSequence(sequence);
+            one(delegate).processTestClass(slow);
+            inSequence(sequence);
+            one(delegate).endProcessing();
+            inSequence(sequence);
+        }});
+
+        HistoryOrderingTestClassProcessor processor = processor();
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(slow);
+        processor.processTestClass(fast);
+        processor.processTestClass(medium);
+        processor.endProcessing();
+    }
+
+    private HistoryOrderingTestClassProcessor processor() {
+        return new HistoryOrderingTestClassProcessor(delegate, history, tmpDir.getDir());
+    }
+
+    private TestFile classFile(String name) {
+        return tmpDir.file("org/gradle/" + name + ".class");
+    }
+
+    private TestClassRunInfo testClass(String name) {
+        classFile(name).write("content");
+        return new DefaultTestClassRunInfo("org.gradle." + name);
+    }
+
+    private TestClassRunInfo testClass(String name, boolean failed, long duration) {
+        TestClassRunInfo testClass = testClass(name);
+        history.put(testClass.getTestClassName(), new TestHistory.ClassHistory(failed, duration, classFile(name)
+                .lastModified()));
+        return testClass;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.testing.TestClassProcessor;
+import org.gradle.api.testing.TestClassProcessorFactory;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.util.JUnit4GroovyMockery;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.gradle.util.Matchers.*;
+import static org.hamcrest.Matchers.*;
+
+@RunWith(JMock.class)
+public class MaxNParallelTestClassProcessorTest {
+    private final JUnit4GroovyMockery context = new JUnit4GroovyMockery();
+    private final TestClassProcessorFactory factory = context.mock(TestClassProcessorFactory.class);
+    private final TestClassProcessor delegate1 = context.mock(TestClassProcessor.class, "delegate1");
+    private final TestClassProcessor delegate2 = context.mock(TestClassProcessor.class, "delegate2");
+    private final TestClassRunInfo test1 = context.mock(TestClassRunInfo.class, "test1");
+    private final TestClassRunInfo test2 = context.mock(TestClassRunInfo.class, "test2");
+    private final TestClassRunInfo test3 = context.mock(TestClassRunInfo.class, "test3");
+    private final TestResultProcessor resultProcessor = context.mock(TestResultProcessor.class);
+    private final MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(2, factory);
+
+    @Test
+    public void createsAProcessorForEachTestUntilMaximumReached() {
+        context.checking(new Expectations() {{
+            one(factory).create();
+            will(returnValue(delegate1));
+            one(delegate1).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            one(delegate1).processTestClass(test1);
+
+            one(factory).create();
+            will(returnValue(delegate2));
+            one(delegate2).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            one(delegate2).processTestClass(test2);
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.processTestClass(test2);
+    }
+
+    @Test
+    public void distributesTestsAcrossProcessorsOnceMaximumReached() {
+        context.checking(new Expectations() {{
+            one(factory).create();
+            will(returnValue(delegate1));
+            one(delegate1).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            one(delegate1).processTestClass(test1);
+
+            one(factory).create();
+            will(returnValue(delegate2));
+            one(delegate2).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            one(delegate2).processTestClass(test2);
+
+            one(delegate1).processTestClass(test3);
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.processTestClass(test2);
+        processor.processTestClass(test3);
+    }
+
+    @Test
+    public void endProcessingEndsProcessingOnEachProcessor() {
+        context.checking(new Expectations() {{
+            one(factory).create();
+            will(returnValue(delegate1));
+            one(delegate1).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            one(delegate1).processTestClass(test1);
+
+            one(factory).create();
+            will(returnValue(delegate2));
+            one(delegate2).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            one(delegate2).processTestClass(test2);
+
+            one(delegate1).endProcessing();
+            one(delegate2).endProcessing();
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.processTestClass(test2);
+        processor.endProcessing();
+    }
+
+    @Test
+    public void forwardsResultsFromEachProcessorToResultProcessor() {
+        final Collector<TestResultProcessor> collector = collector();
+        final TestCompleteEvent event = new TestCompleteEvent(100L);
+
+        context.checking(new Expectations() {{
+            one(factory).create();
+            will(returnValue(delegate1));
+            one(delegate1).startProcessing(with(notNullValue(TestResultProcessor.class)));
+            will(collectTo(collector));
+            one(delegate1).processTestClass(test1);
+
+            one(resultProcessor).completed("id", event);
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        collector.get().completed("id", event);
+    }
+
+    @Test
+    public void doesNothingWhenNoTestsProcessed() {
+        processor.startProcessing(resultProcessor);
+        processor.endProcessing();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor;
+import org.gradle.api.internal.tasks.testing.DefaultTestResult;
+import org.gradle.api.internal.tasks.testing.DefaultTestSuiteDescriptor;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.util.JUnit4GroovyMockery;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class TestHistoryRecorderTest {
+    private final JUnit4GroovyMockery context = new JUnit4GroovyMockery();
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    @SuppressWarnings("unchecked")
+    private final PersistentIndexedCache<String, TestHistory> cache = context.mock(PersistentIndexedCache.class);
+    private final TestDescriptorInternal root = new DefaultTestSuiteDescriptor("root", "");
+    private TestHistoryRecorder recorder;
+
+    @Test
+    public void recordsOutcomeAndDurationOfEachTestClassWhenAllTestsComplete() {
+        TestFile classFile = tmpDir.createFile("org/gradle/SomeTest.class");
+        recorder = new TestHistoryRecorder(cache, ":test", tmpDir.getDir());
+
+        TestDescriptorInternal testClass = new DefaultTestClassDescriptor(1, "org.gradle.SomeTest");
+        testClass.setParent(root);
+        TestDescriptorInternal test1 = new DefaultTestDescriptor(2, "org.gradle.SomeTest", "test1");
+        test1.setParent(testClass);
+        TestDescriptorInternal test2 = new DefaultTestDescriptor(3, "org.gradle.SomeTest", "test2");
+        test2.setParent(testClass);
+
+        recorder.afterTest(test1, result(TestResult.ResultType.SUCCESS, 100, 150));
+        recorder.afterTest(test2, result(TestResult.ResultType.FAILURE, 150, 170));
+        recorder.afterSuite(testClass, result(TestResult.ResultType.FAILURE, 90, 180));
+
+        TestHistory history = expectHistoryWritten();
+
+        TestHistory.ClassHistory classHistory = history.get("org.gradle.SomeTest");
+        assertTrue(classHistory.isFailed());
+        assertThat(classHistory.getDuration(), equalTo(90L));
+        assertThat(classHistory.getClassFileTimestamp(), equalTo(classFile.lastModified()));
+    }
+
+    @Test
+    public void recordsTestClassWhichHasNoTestClassSuite() {
+        recorder = new TestHistoryRecorder(cache, ":test", tmpDir.getDir());
+
+        TestDescriptorInternal test1 = new DefaultTestDescriptor(2, "org.gradle.SomeTest", "test1");
+        test1.setParent(root);
+        TestDescriptorInternal test2 = new DefaultTestDescriptor(3, "org.gradle.SomeTest", "test2");
+        test2.setParent(root);
+
+        recorder.afterTest(test1, result(TestResult.ResultType.SUCCESS, 100, 150));
+        recorder.afterTest(test2, result(TestResult.ResultType.SUCCESS, 150, 170));
+
+        TestHistory history = expectHistoryWritten();
+
+        TestHistory.ClassHistory classHistory = history.get("org.gradle.SomeTest");
+        assertFalse(classHistory.isFailed());
+        assertThat(classHistory.getDuration(), equalTo(70L));
+    }
+
+    private TestHistory expectHistoryWritten() {
+        final TestHistory[] history = new TestHistory[1];
+        context.checking(new Expectations() {{
+            one(cache).put(with(equalTo(":test")), with(notNullValue(TestHistory.class)));
+            will(new CustomAction("collect history") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    history[0] = (TestHistory) invocation.getParameter(1);
+                    return null;
+                }
+            });
+        }});
+
+        recorder.afterSuite(root, result(TestResult.ResultType.SUCCESS, 0, 200));
+        return history[0];
+    }
+
+    private TestResult result(TestResult.ResultType type, long startTime, long endTime) {
+        return new DefaultTestResult(type, null, startTime, endTime, 1, 0, 0);
+    }
+}
@@ -113,8 +113,6 @@ public class ForkingTestClassProcessorTest {
 
             one(builder).applicationClasspath(appClassPath);
 
-            one(builder).setLoadApplicationInSystemClassLoader(true);
-
             one(action).execute(builder);
             
             allowing(builder).getJavaCommand();
@@ -16,9 +16,11 @@
 
 package org.gradle.external.junit;
 
-import org.gradle.api.internal.tasks.testing.junit.AntJUnitReport;
 import org.gradle.api.tasks.testing.AbstractTestFrameworkInstanceTest;
 import org.gradle.api.internal.tasks.testing.junit.AntJUnitTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.junit.JUnitXmlReport;
+import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
+import org.gradle.api.internal.tasks.testing.results.TestResultStore;
 import org.gradle.api.tasks.testing.junit.JUnitOptions;
 import org.gradle.api.testing.TestClassProcessor;
 import org.gradle.util.IdGenerator;
@@ -36,7 +38,8 @@ public class JUnitTestFrameworkInstanceTest extends AbstractTestFrameworkInstanc
 
     private JUnitTestFrameworkInstance jUnitTestFrameworkInstance;
 
-    private AntJUnitReport antJUnitReportMock;
+    private JUnitXmlReport xmlReportMock;
+    private DefaultTestReport testReportMock;
     private JUnitOptions jUnitOptionsMock;
     private IdGenerator<?> idGenerator;
 
@@ -45,7 +48,8 @@ public class JUnitTestFrameworkInstanceTest extends AbstractTestFrameworkInstanc
         super.setUp();
 
         JUnitTestFramework jUnitTestFrameworkMock = context.mock(JUnitTestFramework.class);
-        antJUnitReportMock = context.mock(AntJUnitReport.class);
+        xmlReportMock = context.mock(JUnitXmlReport.class);
+        testReportMock = context.mock(DefaultTestReport.class);
         jUnitOptionsMock = context.mock(JUnitOptions.class);
         idGenerator = context.mock(IdGenerator.class);
 
@@ -64,17 +68,14 @@ public class JUnitTestFrameworkInstanceTest extends AbstractTestFrameworkInstanc
         jUnitTestFrameworkInstance.initialize();
 
         assertNotNull(jUnitTestFrameworkInstance.getOptions());
-        assertNotNull(jUnitTestFrameworkInstance.getAntJUnitReport());
+        assertNotNull(jUnitTestFrameworkInstance.getXmlReport());
+        assertNotNull(jUnitTestFrameworkInstance.getTestReport());
     }
 
     @org.junit.Test
     public void testCreatesTestProcessor() {
         setMocks();
 
-        context.checking(new Expectations() {{
-            one(testMock).getTestResultsDir(); will(returnValue(testResultsDir));
-        }});
-
         TestClassProcessor testClassProcessor = jUnitTestFrameworkInstance.getProcessorFactory().create(idGenerator);
         assertThat(testClassProcessor, instanceOf(AntJUnitTestClassProcessor.class));
     }
@@ -86,12 +87,9 @@ public class JUnitTestFrameworkInstanceTest extends AbstractTestFrameworkInstanc
         context.checking(new Expectations() {{
             one(testMock).getTestResultsDir(); will(returnValue(testResultsDir));
             one(testMock).getTestReportDir(); will(returnValue(testReportDir));
-            one(projectMock).getAnt(); will(returnValue(antBuilderMock));
+            one(xmlReportMock).generateReport(with(notNullValue(TestResultStore.class)), with(equalTo(testResultsDir)));
             one(testMock).isTestReport(); will(returnValue(true));
-            one(antJUnitReportMock).execute(
-                    testResultsDir, testReportDir,
-                    antBuilderMock
-            );
+            one(testReportMock).generateReport(testResultsDir, testReportDir);
         }});
 
         jUnitTestFrameworkInstance.report();
@@ -102,6 +100,8 @@ public class JUnitTestFrameworkInstanceTest extends AbstractTestFrameworkInstanc
         setMocks();
 
         context.checking(new Expectations() {{
+            one(testMock).getTestResultsDir(); will(returnValue(testResultsDir));
+            one(xmlReportMock).generateReport(with(notNullValue(TestResultStore.class)), with(equalTo(testResultsDir)));
             one(testMock).isTestReport(); will(returnValue(false));
         }});
 
@@ -109,7 +109,8 @@ public class JUnitTestFrameworkInstanceTest extends AbstractTestFrameworkInstanc
     }
 
     private void setMocks() {
-        jUnitTestFrameworkInstance.setAntJUnitReport(antJUnitReportMock);
+        jUnitTestFrameworkInstance.setXmlReport(xmlReportMock);
+        jUnitTestFrameworkInstance.setTestReport(testReportMock);
         jUnitTestFrameworkInstance.setOptions(jUnitOptionsMock);
     }
 }